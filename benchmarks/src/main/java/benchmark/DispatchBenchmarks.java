@@ -0,0 +1,106 @@
+package benchmark;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import client.sdk.BParkSdkClient;
+import controllers.InMemoryParkingController;
+import controllers.InMemoryReportController;
+import entities.Message;
+import entities.Message.MessageType;
+import server.ParkingServer;
+import services.EmailService;
+import services.InMemoryNotificationSink;
+
+/**
+ * The ParkingServer dispatch path end to end: a client request over loopback TCP,
+ * decoded, handled by the server on in-memory controllers, answered and decoded again.
+ * "availabilityPipelined" sends a batch before waiting and reports the time per request,
+ * which shows throughput rather than round-trip latency.
+ * The server's console logging is silenced while the suite runs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatchBenchmarks {
+
+    private static final int PORT = Integer.getInteger("bpark.benchmark.port", 5598);
+    private static final int PIPELINE = 32;
+
+    private PrintStream stdout;
+    private ParkingServer server;
+    private BParkSdkClient client;
+
+    @Setup
+    public void setUp() throws Exception {
+        stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        EmailService.setNotificationSink(new InMemoryNotificationSink());
+        InMemoryParkingController parkingController = new InMemoryParkingController(100, 100);
+        ParkingServer.parkingController = parkingController;
+        ParkingServer.reportController = new InMemoryReportController(parkingController);
+
+        server = new ParkingServer(PORT);
+        server.listen();
+        client = new BParkSdkClient("localhost", PORT);
+        client.connect();
+        client.login("sub1").join();
+    }
+
+    @Benchmark
+    public Object availabilityRoundTrip() {
+        return client.getAvailableSpots().join();
+    }
+
+    @Benchmark
+    public Object historyPageRoundTrip() {
+        return client.getParkingHistoryPage("sub1", 50, null).join();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PIPELINE)
+    public Object availabilityPipelined() {
+        List<CompletableFuture<Message>> calls = new ArrayList<>(PIPELINE);
+        for (int i = 0; i < PIPELINE; i++) {
+            calls.add(client.request(new Message(MessageType.CHECK_PARKING_AVAILABILITY, null)));
+        }
+        return CompletableFuture.allOf(calls.toArray(new CompletableFuture<?>[0])).join();
+    }
+
+    @TearDown
+    public void tearDown() {
+        try {
+            if (client != null) {
+                client.close();
+            }
+            if (server != null) {
+                server.shutdown();
+            }
+            ParkingServer.parkingController = null;
+            ParkingServer.reportController = null;
+        } finally {
+            System.setOut(stdout);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import services.EmailService;
+import services.EmailService.NotificationType;
+
+/**
+ * Rendering notification emails from their templates (no sending)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EmailTemplateBenchmarks {
+
+    @Benchmark
+    public Object renderReservationConfirmation() {
+        return EmailService.renderNotification(NotificationType.RESERVATION_CONFIRMATION, "sub42@bpark.local",
+                                               "Subscriber 42", "123456", "2025-03-01 09:00", "Spot 17");
+    }
+
+    @Benchmark
+    public Object renderLatePickup() {
+        return EmailService.renderNotification(NotificationType.LATE_PICKUP, "sub42@bpark.local", "Subscriber 42");
+    }
+
+    @Benchmark
+    public Object renderExtensionConfirmation() {
+        return EmailService.renderNotification(NotificationType.EXTENSION_CONFIRMATION, "sub42@bpark.local",
+                                               "Subscriber 42", "1042", 2, "2025-03-01T15:00");
+    }
+}
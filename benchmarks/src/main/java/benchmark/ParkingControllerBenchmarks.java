@@ -0,0 +1,134 @@
+package benchmark;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import controllers.EmbeddedParkingDatabase;
+import controllers.ParkingController;
+import services.EmailService;
+import services.InMemoryNotificationSink;
+
+/**
+ * ParkingController's availability, reservation, entry and exit rules - the real controller
+ * and its SQL, with the MySQL store replaced by an in-memory H2 database in MySQL mode
+ * (100 spots, 60 taken, 30 reservations booked). The benchmarks that write undo their change
+ * (enter then exit, reserve then cancel), and the finished rows are removed after every
+ * iteration, so the tables stay the same size.
+ * H2 is not MySQL: compare these numbers between versions, not with the production database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParkingControllerBenchmarks {
+
+    private static final int SUBSCRIBERS = 200;
+    private static final int SPOTS = 100;
+    private static final DateTimeFormatter FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+    private PrintStream stdout;
+    private ParkingController controller;
+    private String[] reservationDates;
+    private int operations = 0;
+
+    @Setup
+    public void setUp() throws SQLException {
+        stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        EmailService.setNotificationSink(new InMemoryNotificationSink());
+        controller = EmbeddedParkingDatabase.open(EmbeddedParkingDatabase.DEFAULT_URL, SUBSCRIBERS, SPOTS);
+
+        for (int i = 1; i <= 60; i++) {
+            controller.enterParking("sub" + i);
+        }
+        LocalDateTime day = LocalDateTime.now().plusDays(3).withHour(9).withMinute(0);
+        for (int i = 61; i <= 90; i++) {
+            controller.makeReservation("sub" + i, day.plusHours(i % 8).format(FORMAT));
+        }
+
+        LocalDateTime base = LocalDateTime.now().plusDays(2).withMinute(0);
+        reservationDates = new String[64];
+        for (int i = 0; i < reservationDates.length; i++) {
+            reservationDates[i] = base.plusHours(i).format(FORMAT);
+        }
+    }
+
+    @Benchmark
+    public int availableSpots() {
+        return controller.getAvailableParkingSpots();
+    }
+
+    @Benchmark
+    public boolean canMakeReservation() {
+        return controller.canMakeReservation();
+    }
+
+    @Benchmark
+    public String reserveAndCancel() {
+        int n = operations++;
+        String reservation = controller.makeReservation("sub" + (100 + n % 100), reservationDates[n % reservationDates.length]);
+        String code = numberAfter(reservation, "Confirmation code: ");
+        return code == null ? reservation : controller.cancelReservation(Integer.parseInt(code));
+    }
+
+    @Benchmark
+    public String enterAndExit() {
+        int n = operations++;
+        String entry = controller.enterParking("sub" + (100 + n % 100));
+        String code = numberAfter(entry, "Parking code: ");
+        return code == null ? entry : controller.exitParking(code);
+    }
+
+    @TearDown(Level.Iteration)
+    public void removeFinishedSessions() throws SQLException {
+        try (Statement stmt = controller.getConnection().createStatement()) {
+            stmt.executeUpdate("DELETE FROM parkinginfo WHERE statusEnum IN ('finished', 'cancelled')");
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        try {
+            controller.getConnection().close();
+        } finally {
+            System.setOut(stdout);
+        }
+    }
+
+    /**
+     * The number after the label in a controller result ("... Parking code: 1234. Spot: 5"), or null
+     */
+    private static String numberAfter(String result, String label) {
+        int at = result.indexOf(label);
+        if (at < 0) {
+            return null;
+        }
+        int from = at + label.length();
+        int to = from;
+        while (to < result.length() && Character.isDigit(result.charAt(to))) {
+            to++;
+        }
+        return result.substring(from, to);
+    }
+}
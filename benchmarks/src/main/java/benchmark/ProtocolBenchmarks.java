@@ -0,0 +1,80 @@
+package benchmark;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import common.MessageCodec;
+import entities.Message;
+import entities.Message.MessageType;
+import entities.ParkingOrder;
+
+/**
+ * The wire format: serializing and reading back a small request and a history response
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProtocolBenchmarks {
+
+    private Message request;
+    private Message history;
+    private byte[] requestBytes;
+    private byte[] historyBytes;
+
+    @Setup
+    public void setUp() {
+        request = new Message(MessageType.ENTER_PARKING, "sub42");
+        request.setRequestId(17);
+
+        ArrayList<ParkingOrder> orders = new ArrayList<>();
+        LocalDateTime start = LocalDateTime.of(2025, 3, 1, 8, 0);
+        for (int i = 0; i < 50; i++) {
+            ParkingOrder order = new ParkingOrder(1000 + i, String.valueOf(1000 + i), "Subscriber 42", "no",
+                                                  start.plusDays(i), start.plusDays(i).plusHours(4));
+            order.setExitTime(start.plusDays(i).plusHours(3));
+            order.setOrderDate(start.plusDays(i));
+            order.setSpotNumber("Spot " + (i % 100 + 1));
+            order.setStatus("finished");
+            orders.add(order);
+        }
+        history = new Message(MessageType.PARKING_HISTORY_RESPONSE, orders);
+
+        requestBytes = MessageCodec.serialize(request);
+        historyBytes = MessageCodec.serialize(history);
+    }
+
+    @Benchmark
+    public byte[] serializeRequest() {
+        return MessageCodec.serialize(request);
+    }
+
+    @Benchmark
+    public Object deserializeRequest() {
+        return MessageCodec.deserialize(requestBytes);
+    }
+
+    @Benchmark
+    public byte[] serializeHistory50() {
+        return MessageCodec.serialize(history);
+    }
+
+    @Benchmark
+    public Object deserializeHistory50() {
+        return MessageCodec.deserialize(historyBytes);
+    }
+}
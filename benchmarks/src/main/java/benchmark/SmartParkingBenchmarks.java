@@ -0,0 +1,82 @@
+package benchmark;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import controllers.SmartParkingController;
+
+/**
+ * SmartParkingController's 15-minute slot computation, with the occupancy lookups answered
+ * from memory (40 cars parked, a reservation on each of the next 200 hours' spots)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SmartParkingBenchmarks {
+
+    /**
+     * The smart controller over in-memory occupancy instead of MySQL
+     */
+    private static class InMemorySmartParking extends SmartParkingController {
+        private final int occupied;
+        private final List<LocalDate> reservationDates = new ArrayList<>();
+
+        InMemorySmartParking(int occupied) {
+            this.occupied = occupied;
+        }
+
+        @Override
+        protected int getCurrentlyOccupiedSpots() {
+            return occupied;
+        }
+
+        @Override
+        protected int countReservationOverlaps(LocalDateTime startTime, LocalDateTime endTime) {
+            LocalDate from = startTime.toLocalDate();
+            LocalDate to = endTime.toLocalDate();
+            int count = 0;
+            for (LocalDate date : reservationDates) {
+                if (!date.isBefore(from) && !date.isAfter(to)) {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+
+    private InMemorySmartParking controller;
+    private LocalDate date;
+
+    @Setup
+    public void setUp() {
+        controller = new InMemorySmartParking(40);
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < 200; i++) {
+            controller.reservationDates.add(now.plusHours(i * 3L).toLocalDate());
+        }
+        date = now.toLocalDate().plusDays(2);
+    }
+
+    @Benchmark
+    public Object availableTimeSlots() {
+        return controller.getAvailableTimeSlots(date, LocalTime.of(9, 0));
+    }
+}
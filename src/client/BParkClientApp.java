@@ -10,12 +10,39 @@ import entities.Message;
 import ocsf.client.ObservableClient;
 import controllers.*;
 import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
 public class BParkClientApp extends Application {
     private static BParkClient client;
     private static String serverIP = "localhost";
     private static int serverPort = 5555;
     
+    // Requests waiting for their response (sendRequest)
+    private static final PendingRequests pendingRequests = new PendingRequests();
+    private static final long REQUEST_TIMEOUT_MILLIS = Long.getLong("bpark.client.requestTimeoutMillis", 15000);
+    
+    // Decodes server messages off the FX thread and applies them in batched UI pulses
+    private static final MessageDispatcher dispatcher = new MessageDispatcher(pendingRequests);
+    
+    // Reconnect after a dropped connection: full-jitter exponential backoff
+    private static final long RECONNECT_BASE_MILLIS = 50;
+    private static final long RECONNECT_MAX_MILLIS = 5000;
+    private static final int RECONNECT_ATTEMPTS = Integer.getInteger("bpark.client.reconnectAttempts", 30);
+    private static final ScheduledExecutorService reconnector = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "client-reconnect");
+        t.setDaemon(true);
+        return t;
+    });
+    private static volatile boolean closing = false;
+    
+    // Issued at login, sent with every message so the session survives a reconnect
+    private static volatile String sessionToken;
+    
     // Current user info
     private static String currentUser;
     private static String userType; // "sub", "emp", "mng"
@@ -40,6 +67,7 @@ public class BParkClientApp extends Application {
     
     public static void connectToServer() {
         try {
+            closing = false;
             client = new BParkClient(serverIP, serverPort);
             client.openConnection();
         } catch (Exception e) {
@@ -90,26 +118,12 @@ public class BParkClientApp extends Application {
         
         @Override
         protected void handleMessageFromServer(Object msg) {
-            Platform.runLater(() -> {
-                try {
-                    Object message = msg;
-                    if (message instanceof byte[]) {
-                        message = ClientMessageHandler.deserialize(message);
-                    }
-                    
-                    if (message instanceof Message) {
-                        ClientMessageHandler.handleMessage((Message) message);
-                    } else if (message instanceof String) {
-                        ClientMessageHandler.handleStringMessage((String) message);
-                    }
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
-            });
+            dispatcher.received(msg);
         }
         
         @Override
         protected void connectionClosed() {
+            pendingRequests.failAll(new IOException("Connection closed"));
             Platform.runLater(() -> {
                 System.out.println("Connection closed");
                 // Show reconnect dialog
@@ -118,10 +132,69 @@ public class BParkClientApp extends Application {
         
         @Override
         protected void connectionException(Exception exception) {
-            Platform.runLater(() -> {
-                System.out.println("Connection error: " + exception.getMessage());
-                // Show error dialog
-            });
+            if (closing) {
+                pendingRequests.failAll(exception);
+                return;
+            }
+            // Keep the open requests - they are replayed once the connection is back
+            System.out.println("Connection error: " + exception.getMessage() + " - reconnecting");
+            scheduleReconnect(0);
+        }
+    }
+    
+    /**
+     * Try to reconnect after a random delay of up to base * 2^attempt (capped), so clients
+     * dropped together by a server restart don't all come back at the same moment
+     */
+    private static void scheduleReconnect(int attempt) {
+        if (attempt >= RECONNECT_ATTEMPTS) {
+            System.out.println("Could not reconnect after " + attempt + " attempts");
+            pendingRequests.failAll(new IOException("Connection lost"));
+            return;
+        }
+        long ceiling = Math.min(RECONNECT_MAX_MILLIS, RECONNECT_BASE_MILLIS << Math.min(attempt, 16));
+        long delay = ThreadLocalRandom.current().nextLong(ceiling + 1);
+        reconnector.schedule(() -> tryReconnect(attempt), delay, TimeUnit.MILLISECONDS);
+    }
+    
+    private static void tryReconnect(int attempt) {
+        if (closing) {
+            return;
+        }
+        try {
+            // The old reader thread may still be finishing - openConnection does nothing until it has
+            if (client.isConnected()) {
+                scheduleReconnect(attempt);
+                return;
+            }
+            client.openConnection();
+        } catch (IOException e) {
+            scheduleReconnect(attempt + 1);
+            return;
+        }
+        System.out.println("Reconnected after " + (attempt + 1) + " attempt(s)");
+        resumeSession();
+    }
+    
+    /**
+     * Attach the new connection to the session, then send the requests that never got a
+     * response again, in their original order and with their original IDs. The server
+     * answers the ones it already handled from its memory instead of running them twice.
+     */
+    private static void resumeSession() {
+        List<Message> open = pendingRequests.getOpenRequests();
+        if (sessionToken != null) {
+            sendMessage(new Message(Message.MessageType.RESUME_SESSION, null));
+        }
+        for (Message request : open) {
+            try {
+                write(ClientMessageHandler.serialize(request));
+            } catch (IOException e) {
+                pendingRequests.fail(request.getRequestId(), e);
+            }
+        }
+        if (!open.isEmpty()) {
+            System.out.println("Replayed " + open.size() + " open request(s)");
         }
     }
     
@@ -129,23 +202,67 @@ public class BParkClientApp extends Application {
     public static void sendMessage(Message msg) {
         try {
             if (client != null && client.isConnected()) {
-                client.sendToServer(ClientMessageHandler.serialize(msg));
+                // Registered like a request so it is replayed after a reconnect; the response - or the
+                // server's ERROR_RESPONSE - still goes to ClientMessageHandler
+                pendingRequests.register(msg, REQUEST_TIMEOUT_MILLIS).whenComplete((response, error) -> {
+                    if (response != null) {
+                        dispatcher.route(response);
+                    } else if (error instanceof PendingRequests.ServerError) {
+                        dispatcher.route(((PendingRequests.ServerError) error).getResponse());
+                    }
+                });
+                msg.setSessionToken(sessionToken);
+                write(ClientMessageHandler.serialize(msg));
             }
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
     
+    /**
+     * Send a request and get its response as a future, instead of through ClientMessageHandler.
+     * Requests are independent: several can be outstanding at once, and cancelling the
+     * future just drops the response when it arrives.
+     * The future completes on the decoder thread - use Platform.runLater to touch the UI.
+     */
+    public static CompletableFuture<Message> sendRequest(Message msg) {
+        return sendRequest(msg, REQUEST_TIMEOUT_MILLIS);
+    }
+    
+    /**
+     * @param timeoutMillis the future fails with a TimeoutException after this long
+     */
+    public static CompletableFuture<Message> sendRequest(Message msg, long timeoutMillis) {
+        CompletableFuture<Message> future = pendingRequests.register(msg, timeoutMillis);
+        try {
+            if (client == null || !client.isConnected()) {
+                throw new IOException("Not connected to the server");
+            }
+            msg.setSessionToken(sessionToken);
+            write(ClientMessageHandler.serialize(msg));
+        } catch (IOException e) {
+            pendingRequests.fail(msg.getRequestId(), e);
+        }
+        return future;
+    }
+    
     public static void sendStringMessage(String msg) {
         try {
             if (client != null && client.isConnected()) {
-                client.sendToServer(msg);
+                write(msg);
             }
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
     
+    /**
+     * Requests can be sent from any thread (e.g. from a response future), so writes to the socket take turns
+     */
+    private static synchronized void write(Object data) throws IOException {
+        client.sendToServer(data);
+    }
+    
     // Getters and setters
     public static String getCurrentUser() {
         return currentUser;
@@ -167,7 +284,16 @@ public class BParkClientApp extends Application {
         serverIP = ip;
     }
     
+    public static String getSessionToken() {
+        return sessionToken;
+    }
+    
+    public static void setSessionToken(String token) {
+        sessionToken = token;
+    }
+    
     public static void disconnect() {
+        closing = true;
         try {
             if (client != null && client.isConnected()) {
                 client.sendToServer("ClientDisconnect");
@@ -182,6 +308,8 @@ public class BParkClientApp extends Application {
     public void stop() throws Exception {
         // Clean up when application closes
         disconnect();
+        System.out.println(dispatcher.getStatistics());
+        System.out.println(ResponseCache.getStatistics());
         super.stop();
     }
     
@@ -1,12 +1,12 @@
 package client;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 
+import common.MessageCodec;
+import controllers.ManagerController;
+import entities.ExportChunk;
 import entities.Message;
+import entities.OccupancyHeatmap;
 import entities.ParkingOrder;
 import entities.ParkingReport;
 import entities.ParkingSubscriber;
@@ -108,6 +108,28 @@ public class ClientMessageHandler {
                 handleSystemStatusResponse(message);
                 break;
                 
+            case EXPORT_CHUNK:
+                handleExportChunk(message);
+                break;
+                
+            case OCCUPANCY_HEATMAP_RESPONSE:
+                handleOccupancyHeatmap(message);
+                break;
+                
+            case RESUME_SESSION_RESPONSE:
+                handleResumeSessionResponse(message);
+                break;
+                
+            case ERROR_RESPONSE:
+                showAlert("Server Error", String.valueOf(message.getContent()));
+                break;
+                
+            case ACTIVE_PARKINGS_DELTA_RESPONSE:
+            case PARKING_HISTORY_PAGE_RESPONSE:
+            case NOT_MODIFIED:
+                // Requested with sendRequest - only a response that arrived after its timeout ends up here
+                break;
+                
             default:
                 System.out.println("Unknown message type: " + message.getType());
         }
@@ -172,6 +194,7 @@ public class ClientMessageHandler {
     private static void handleLoginResponse(Message message) {
         ParkingSubscriber subscriber = (ParkingSubscriber) message.getContent();
         if (subscriber != null) {
+            BParkClientApp.setSessionToken(message.getSessionToken());
             BParkClientApp.setCurrentUser(subscriber.getSubscriberCode());
             BParkClientApp.setUserType(subscriber.getUserType());
             BParkClientApp.switchToMainScreen(subscriber.getUserType());
@@ -180,6 +203,14 @@ public class ClientMessageHandler {
         }
     }
     
+    private static void handleResumeSessionResponse(Message message) {
+        String response = (String) message.getContent();
+        if ("EXPIRED".equals(response)) {
+            BParkClientApp.setSessionToken(null);
+            showAlert("Session Expired", "The connection was restored, but your session expired. Please log in again.");
+        }
+    }
+    
     private static void handleParkingAvailability(Message message) {
         Integer availableSpots = (Integer) message.getContent();
         // Update UI with available spots
@@ -294,6 +325,7 @@ public class ClientMessageHandler {
     private static void handleManagerLoginResponse(Message message) {
         ParkingSubscriber manager = (ParkingSubscriber) message.getContent();
         if (manager != null && "mng".equals(manager.getUserType())) {
+            BParkClientApp.setSessionToken(message.getSessionToken());
             BParkClientApp.setCurrentUser(manager.getSubscriberCode());
             BParkClientApp.setUserType(manager.getUserType());
             BParkClientApp.switchToMainScreen(manager.getUserType());
@@ -334,6 +366,30 @@ public class ClientMessageHandler {
         showAlert("System Status", response);
     }
     
+    private static void handleOccupancyHeatmap(Message message) {
+        OccupancyHeatmap heatmap = (OccupancyHeatmap) message.getContent();
+        ManagerController manager = ManagerController.getInstance();
+        if (manager != null && heatmap != null) {
+            manager.updateHeatmap(heatmap);
+        }
+    }
+    
+    private static void handleExportChunk(Message message) {
+        ExportChunk chunk = (ExportChunk) message.getContent();
+        try {
+            java.nio.file.Path file = ExportDownloads.handleChunk(chunk);
+            if (file != null) {
+                if (chunk.getErrorMessage() != null) {
+                    showErrorAlert("Export Failed", chunk.getErrorMessage());
+                } else {
+                    showAlert("Export Complete", chunk.getTotalRows() + " rows saved to " + file.toAbsolutePath());
+                }
+            }
+        } catch (Exception e) {
+            showErrorAlert("Export Failed", "Could not write export file: " + e.getMessage());
+        }
+    }
+    
     // String message handlers (legacy)
     
     private static void handleStringLoginResponse(String data) {
@@ -355,31 +411,14 @@ public class ClientMessageHandler {
      * Serialize a Message object to byte array
      */
     public static byte[] serialize(Message msg) {
-        try {
-            ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
-            ObjectOutputStream out = new ObjectOutputStream(byteStream);
-            out.writeObject(msg);
-            out.flush();
-            return byteStream.toByteArray();
-        } catch (Exception ex) {
-            ex.printStackTrace();
-            return null;
-        }
+        return MessageCodec.serialize(msg);
     }
     
     /**
      * Deserialize byte array to object
      */
     public static Object deserialize(Object msg) {
-        try {
-            byte[] messageBytes = (byte[]) msg;
-            ByteArrayInputStream byteStream = new ByteArrayInputStream(messageBytes);
-            ObjectInputStream objectStream = new ObjectInputStream(byteStream);
-            return objectStream.readObject();
-        } catch (Exception ex) {
-            ex.printStackTrace();
-            return null;
-        }
+        return MessageCodec.deserialize(msg);
     }
     
     /**
@@ -0,0 +1,66 @@
+package client;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+import entities.ExportChunk;
+import entities.Message;
+import entities.Message.MessageType;
+
+/**
+ * Receives streamed exports from the server and appends each chunk straight
+ * to a file, so the client never holds a whole export in memory.
+ * Files are written to the "exports" folder next to the application.
+ */
+public class ExportDownloads {
+    
+    private static final Path EXPORT_DIR = Paths.get("exports");
+    
+    // Open files by export id
+    private static final Map<String, FileChannel> openExports = new HashMap<>();
+    
+    /**
+     * Ask the server to stream a dataset
+     * @param dataset "PARKING_HISTORY" or "REPORTS"
+     * @param format "CSV" or "BINARY"
+     * @param userName limit the history to one subscriber, or null for everyone
+     */
+    public static void requestExport(String dataset, String format, String userName) {
+        String request = dataset + "," + format + (userName != null ? "," + userName : "");
+        BParkClientApp.sendMessage(new Message(MessageType.EXPORT_DATA, request));
+    }
+    
+    /**
+     * Write one chunk; returns the finished file when the last chunk arrives, otherwise null
+     */
+    public static synchronized Path handleChunk(ExportChunk chunk) throws IOException {
+        Path file = EXPORT_DIR.resolve(chunk.getExportId() + "." + chunk.getFileExtension());
+        FileChannel channel = openExports.get(chunk.getExportId());
+        
+        if (channel == null) {
+            Files.createDirectories(EXPORT_DIR);
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, 
+                                       StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            openExports.put(chunk.getExportId(), channel);
+        }
+        
+        ByteBuffer data = ByteBuffer.wrap(chunk.getData());
+        while (data.hasRemaining()) {
+            channel.write(data);
+        }
+        
+        if (chunk.isLast()) {
+            openExports.remove(chunk.getExportId());
+            channel.close();
+            return file;
+        }
+        return null;
+    }
+}
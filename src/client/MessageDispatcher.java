@@ -0,0 +1,155 @@
+package client;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import entities.Message;
+import entities.Message.MessageType;
+import javafx.application.Platform;
+
+/**
+ * MessageDispatcher takes what the server sends and gets it to the UI in two stages:
+ * - decode: on a background thread, one message at a time (keeps the server's order).
+ *   Responses to sendRequest complete their future here, and export chunks are written
+ *   to disk here - neither needs the FX thread.
+ * - render: decoded messages are queued and handed to ClientMessageHandler in one
+ *   Platform.runLater pulse. A burst of messages costs one pulse, and within a pulse
+ *   only the newest of each snapshot response (availability, active sessions, ...) is applied.
+ */
+public class MessageDispatcher {
+
+    // Responses that replace the previous one of their type completely
+    private static final Set<MessageType> SNAPSHOT_TYPES = EnumSet.of(
+        MessageType.PARKING_AVAILABILITY_RESPONSE,
+        MessageType.ACTIVE_PARKINGS_RESPONSE,
+        MessageType.OCCUPANCY_HEATMAP_RESPONSE,
+        MessageType.SYSTEM_STATUS_RESPONSE
+    );
+
+    private final PendingRequests pendingRequests;
+    private final ExecutorService decoder = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "client-decoder");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Decoded messages waiting for the next pulse
+    private List<Object> ready = new ArrayList<>();
+    private boolean pulseScheduled = false;
+
+    // Statistics
+    private long pulses = 0;
+    private long dispatched = 0;
+    private long coalesced = 0;
+
+    public MessageDispatcher(PendingRequests pendingRequests) {
+        this.pendingRequests = pendingRequests;
+    }
+
+    /**
+     * Called on the network thread for everything the server sends
+     */
+    public void received(Object msg) {
+        decoder.execute(() -> decode(msg));
+    }
+
+    private void decode(Object msg) {
+        try {
+            Object message = msg;
+            if (message instanceof byte[]) {
+                message = ClientMessageHandler.deserialize(message);
+            }
+
+            if (message instanceof Message) {
+                Message decoded = (Message) message;
+                if (pendingRequests.complete(decoded)) {
+                    return;
+                }
+                route(decoded);
+                return;
+            }
+            if (message != null) {
+                enqueue(message);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Hand a decoded message to ClientMessageHandler - export chunks right here, the rest in the next pulse.
+     * Also used for responses to sendMessage, which complete a future first so they can be replayed.
+     */
+    void route(Message message) {
+        if (message.getType() == MessageType.EXPORT_CHUNK) {
+            ClientMessageHandler.handleMessage(message);
+            return;
+        }
+        enqueue(message);
+    }
+
+    private void enqueue(Object message) {
+        synchronized (this) {
+            ready.add(message);
+            if (pulseScheduled) {
+                return;
+            }
+            pulseScheduled = true;
+        }
+        Platform.runLater(this::pulse);
+    }
+
+    /**
+     * On the FX thread: apply everything decoded since the last pulse
+     */
+    private void pulse() {
+        List<Object> batch;
+        synchronized (this) {
+            batch = ready;
+            ready = new ArrayList<>();
+            pulseScheduled = false;
+            pulses++;
+        }
+
+        // Walk backwards so the newest snapshot of each type is the one kept
+        Set<MessageType> seen = EnumSet.noneOf(MessageType.class);
+        List<Object> toDispatch = new ArrayList<>(batch.size());
+        for (int i = batch.size() - 1; i >= 0; i--) {
+            Object message = batch.get(i);
+            if (message instanceof Message) {
+                MessageType type = ((Message) message).getType();
+                if (SNAPSHOT_TYPES.contains(type) && !seen.add(type)) {
+                    continue;
+                }
+            }
+            toDispatch.add(message);
+        }
+
+        for (int i = toDispatch.size() - 1; i >= 0; i--) {
+            Object message = toDispatch.get(i);
+            try {
+                if (message instanceof Message) {
+                    ClientMessageHandler.handleMessage((Message) message);
+                } else if (message instanceof String) {
+                    ClientMessageHandler.handleStringMessage((String) message);
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+
+        synchronized (this) {
+            dispatched += toDispatch.size();
+            coalesced += batch.size() - toDispatch.size();
+        }
+    }
+
+    public synchronized String getStatistics() {
+        return String.format("Client dispatch - %d messages in %d UI pulses, %d superseded snapshots skipped",
+                             dispatched, pulses, coalesced);
+    }
+}
@@ -0,0 +1,113 @@
+package client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import entities.Message;
+import entities.Message.MessageType;
+
+/**
+ * The requests sent with BParkClientApp.sendRequest (or a BParkSdkClient) that still wait for a response, by request ID.
+ *
+ * Each request gets its own future, so any number of them can be outstanding at once.
+ * A future leaves the table when its response arrives, when it times out or when the
+ * caller cancels it; a response that arrives after that is dropped.
+ * The requests themselves are kept until then, so they can be sent again after a reconnect.
+ */
+public class PendingRequests {
+
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final Map<Long, CompletableFuture<Message>> pending = new ConcurrentHashMap<>();
+    private final Map<Long, Message> requests = new ConcurrentSkipListMap<>();    // by ID = send order
+
+    /**
+     * Give the request a fresh ID and register a future for its response
+     * @param timeoutMillis the future fails with a TimeoutException after this long
+     */
+    public CompletableFuture<Message> register(Message request, long timeoutMillis) {
+        long id = nextId.getAndIncrement();
+        request.setRequestId(id);
+
+        CompletableFuture<Message> future = new CompletableFuture<>();
+        pending.put(id, future);
+        requests.put(id, request);
+        future.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS)
+              .whenComplete((response, error) -> {
+                  pending.remove(id);
+                  requests.remove(id);
+              });
+        return future;
+    }
+
+    /**
+     * Complete the future waiting for this response
+     * @return false if nothing waits for it (not a request response, or already timed out / cancelled)
+     */
+    public boolean complete(Message response) {
+        if (response.getRequestId() == 0) {
+            return false;
+        }
+        CompletableFuture<Message> future = pending.remove(response.getRequestId());
+        if (future != null && response.getType() == MessageType.ERROR_RESPONSE) {
+            return future.completeExceptionally(new ServerError(response));
+        }
+        return future != null && future.complete(response);
+    }
+
+    /**
+     * Fail one request, e.g. because it could not be sent
+     */
+    public void fail(long requestId, Throwable error) {
+        CompletableFuture<Message> future = pending.remove(requestId);
+        if (future != null) {
+            future.completeExceptionally(error);
+        }
+    }
+
+    /**
+     * Fail every outstanding request (connection lost)
+     */
+    public void failAll(Throwable error) {
+        for (Long id : pending.keySet()) {
+            fail(id, error);
+        }
+    }
+
+    /**
+     * The requests still waiting for a response, oldest first
+     */
+    public List<Message> getOpenRequests() {
+        return new ArrayList<>(requests.values());
+    }
+
+    public int size() {
+        return pending.size();
+    }
+
+    /**
+     * What a request's future fails with when the server answered ERROR_RESPONSE
+     */
+    public static class ServerError extends IllegalStateException {
+        private static final long serialVersionUID = 1L;
+
+        private final transient Message response;
+
+        public ServerError(Message response) {
+            super("Server error: " + response.getContent());
+            this.response = response;
+        }
+
+        /**
+         * The ERROR_RESPONSE itself
+         */
+        public Message getResponse() {
+            return response;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package client;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
+
+import entities.Message;
+import entities.Message.MessageType;
+
+/**
+ * Client cache of versioned responses (parking history, reports), keyed by request.
+ *
+ * A cached response is revalidated by sending its etag with the request: the server answers
+ * NOT_MODIFIED (no content) if it is still current. Responses the caller marks as immutable
+ * (e.g. history pages of finished sessions) are served from the cache without asking at all.
+ *
+ * Kept in memory (the most recent MAX_ENTRIES); with -Dbpark.client.diskCache=true also
+ * written to the "cache" folder so they survive a restart.
+ */
+public class ResponseCache {
+
+    private static final int MAX_ENTRIES = 200;
+    private static final boolean DISK_ENABLED = Boolean.getBoolean("bpark.client.diskCache");
+    private static final Path CACHE_DIR = Paths.get("cache");
+
+    /**
+     * A cached response and whether it can change
+     */
+    private static class Entry implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        final Message response;
+        final boolean immutable;
+
+        Entry(Message response, boolean immutable) {
+            this.response = response;
+            this.immutable = immutable;
+        }
+    }
+
+    private static final Map<String, Entry> memory = new LinkedHashMap<>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    // Statistics
+    private static long hits = 0;
+    private static long notModified = 0;
+    private static long misses = 0;
+
+    /**
+     * Send a request through the cache
+     */
+    public static CompletableFuture<Message> request(Message request) {
+        return request(request, response -> false);
+    }
+
+    /**
+     * Send a request through the cache
+     * @param immutable tells whether a response can never change (then it's never revalidated)
+     */
+    public static CompletableFuture<Message> request(Message request, Predicate<Message> immutable) {
+        String key = keyOf(request);
+        Entry cached = get(key);
+
+        if (cached != null && cached.immutable) {
+            count(1, 0, 0);
+            return CompletableFuture.completedFuture(cached.response);
+        }
+        if (cached != null) {
+            request.setEtag(cached.response.getEtag());
+        }
+
+        return BParkClientApp.sendRequest(request).thenApply(response -> {
+            if (response.getType() == MessageType.NOT_MODIFIED && cached != null) {
+                count(0, 1, 0);
+                return cached.response;
+            }
+            count(0, 0, 1);
+            if (response.getEtag() != null) {
+                put(key, new Entry(response, immutable.test(response)));
+            }
+            return response;
+        });
+    }
+
+    /**
+     * Forget the in-memory copies (on logout); disk entries are keyed by user and stay valid
+     */
+    public static void clear() {
+        synchronized (memory) {
+            memory.clear();
+        }
+    }
+
+    public static synchronized String getStatistics() {
+        return String.format("Response cache - %d served from cache, %d revalidated, %d fetched",
+                             hits, notModified, misses);
+    }
+
+    private static synchronized void count(int hit, int revalidated, int miss) {
+        hits += hit;
+        notModified += revalidated;
+        misses += miss;
+    }
+
+    private static String keyOf(Message request) {
+        return request.getType() + ":" + request.getContent();
+    }
+
+    private static Entry get(String key) {
+        synchronized (memory) {
+            Entry entry = memory.get(key);
+            if (entry != null || !DISK_ENABLED) {
+                return entry;
+            }
+        }
+
+        Entry entry = readFromDisk(key);
+        if (entry != null) {
+            synchronized (memory) {
+                memory.put(key, entry);
+            }
+        }
+        return entry;
+    }
+
+    private static void put(String key, Entry entry) {
+        synchronized (memory) {
+            memory.put(key, entry);
+        }
+        if (DISK_ENABLED) {
+            writeToDisk(key, entry);
+        }
+    }
+
+    private static Path fileOf(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            return CACHE_DIR.resolve(HexFormat.of().formatHex(digest) + ".bin");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Entry readFromDisk(String key) {
+        Path file = fileOf(key);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(Files.readAllBytes(file)))) {
+            return (Entry) in.readObject();
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            // Unreadable (e.g. written by an older version) - fetch it again
+            return null;
+        }
+    }
+
+    private static void writeToDisk(String key, Entry entry) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                out.writeObject(entry);
+            }
+            Files.createDirectories(CACHE_DIR);
+            Files.write(fileOf(key), bytes.toByteArray());
+        } catch (IOException e) {
+            System.out.println("Could not write response cache: " + e.getMessage());
+        }
+    }
+}
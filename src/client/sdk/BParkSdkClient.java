@@ -0,0 +1,211 @@
+package client.sdk;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+import client.PendingRequests;
+import common.MessageCodec;
+import entities.Message;
+import entities.Message.MessageType;
+import entities.ParkingHistoryPage;
+import entities.ParkingOrder;
+import entities.ParkingSubscriber;
+import ocsf.client.AbstractClient;
+
+/**
+ * BParkSdkClient is a headless BPark client for gate controllers, kiosks and load generators.
+ *
+ * It speaks the same protocol as the JavaFX client, but keeps all of its state (user,
+ * session token, open requests) in the instance, so any number of clients can run in
+ * one JVM. Every call returns a future that completes with the typed response, on the
+ * client's network thread - don't block in a callback.
+ *
+ * Messages the server pushes on its own (not answers to a call) go to the push listener.
+ * Usage:
+ *   BParkSdkClient gate = new BParkSdkClient("localhost", 5555);
+ *   gate.connect();
+ *   gate.login("sub42").thenCompose(s -> gate.enterParking("sub42")).thenAccept(System.out::println);
+ */
+public class BParkSdkClient extends AbstractClient {
+
+    public static final long DEFAULT_TIMEOUT_MILLIS = Long.getLong("bpark.client.requestTimeoutMillis", 15000);
+
+    private final PendingRequests pendingRequests = new PendingRequests();
+    private final long timeoutMillis;
+
+    private volatile String sessionToken;
+    private volatile String currentUser;
+    private volatile Consumer<Message> pushListener = message -> { };
+
+    public BParkSdkClient(String host, int port) {
+        this(host, port, DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * @param timeoutMillis calls fail with a TimeoutException after this long
+     */
+    public BParkSdkClient(String host, int port, long timeoutMillis) {
+        super(host, port);
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Open the connection to the server
+     */
+    public void connect() throws IOException {
+        openConnection();
+    }
+
+    /**
+     * Tell the server and close the connection; open calls fail
+     */
+    public void close() {
+        try {
+            if (isConnected()) {
+                if (currentUser != null) {
+                    write("LoggedOut " + currentUser);
+                }
+                write("ClientDisconnect");
+                closeConnection();
+            }
+        } catch (IOException e) {
+            System.out.println("Error closing SDK client: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Receive the messages the server sends without being asked (e.g. broadcasts)
+     */
+    public void setPushListener(Consumer<Message> listener) {
+        this.pushListener = listener != null ? listener : message -> { };
+    }
+
+    // Calls ************************************************************
+
+    /**
+     * Log in as a subscriber; later calls run in this user's session
+     * @return the subscriber, or null if the code is unknown
+     */
+    public CompletableFuture<ParkingSubscriber> login(String subscriberCode) {
+        return request(new Message(MessageType.SUBSCRIBER_LOGIN, subscriberCode)).thenApply(response -> {
+            ParkingSubscriber subscriber = (ParkingSubscriber) response.getContent();
+            if (subscriber != null) {
+                sessionToken = response.getSessionToken();
+                currentUser = subscriber.getSubscriberCode();
+            }
+            return subscriber;
+        });
+    }
+
+    public CompletableFuture<Integer> getAvailableSpots() {
+        return call(new Message(MessageType.CHECK_PARKING_AVAILABILITY, null), Integer.class);
+    }
+
+    /**
+     * Enter the parking without a reservation
+     * @return the server's result text (the parking code on success)
+     */
+    public CompletableFuture<String> enterParking(String userName) {
+        return call(new Message(MessageType.ENTER_PARKING, userName), String.class);
+    }
+
+    public CompletableFuture<String> exitParking(String parkingCode) {
+        return call(new Message(MessageType.EXIT_PARKING, parkingCode), String.class);
+    }
+
+    /**
+     * @param date the reservation date, as the subscriber screen sends it
+     */
+    public CompletableFuture<String> reserve(String userName, String date) {
+        return call(new Message(MessageType.RESERVE_PARKING, userName + "," + date), String.class);
+    }
+
+    public CompletableFuture<String> extendParking(String parkingCode, int hours) {
+        return call(new Message(MessageType.EXTEND_PARKING, parkingCode + "," + hours), String.class);
+    }
+
+    @SuppressWarnings("unchecked")
+    public CompletableFuture<ArrayList<ParkingOrder>> getParkingHistory(String userName) {
+        return request(new Message(MessageType.GET_PARKING_HISTORY, userName))
+            .thenApply(response -> (ArrayList<ParkingOrder>) response.getContent());
+    }
+
+    /**
+     * @param cursor null for the newest page, else the previous page's next cursor
+     */
+    public CompletableFuture<ParkingHistoryPage> getParkingHistoryPage(String userName, int pageSize, String cursor) {
+        return call(new Message(MessageType.GET_PARKING_HISTORY_PAGE, ParkingHistoryPage.request(userName, pageSize, cursor)),
+                    ParkingHistoryPage.class);
+    }
+
+    /**
+     * Send any request and get its raw response
+     */
+    public CompletableFuture<Message> request(Message msg) {
+        CompletableFuture<Message> future = pendingRequests.register(msg, timeoutMillis);
+        try {
+            if (!isConnected()) {
+                throw new IOException("Not connected to the server");
+            }
+            msg.setSessionToken(sessionToken);
+            write(MessageCodec.serialize(msg));
+        } catch (IOException e) {
+            pendingRequests.fail(msg.getRequestId(), e);
+        }
+        return future;
+    }
+
+    private <T> CompletableFuture<T> call(Message msg, Class<T> contentType) {
+        return request(msg).thenApply(response -> contentType.cast(response.getContent()));
+    }
+
+    // Accessors ********************************************************
+
+    public String getCurrentUser() {
+        return currentUser;
+    }
+
+    public String getSessionToken() {
+        return sessionToken;
+    }
+
+    /**
+     * Calls still waiting for their response
+     */
+    public int getOpenRequestCount() {
+        return pendingRequests.size();
+    }
+
+    // Connection hooks *************************************************
+
+    @Override
+    protected void handleMessageFromServer(Object msg) {
+        Object message = msg instanceof byte[] ? MessageCodec.deserialize(msg) : msg;
+        if (!(message instanceof Message)) {
+            return;    // the legacy string replies are only used by the UI client
+        }
+        Message decoded = (Message) message;
+        if (!pendingRequests.complete(decoded) && decoded.getRequestId() == 0) {
+            pushListener.accept(decoded);    // a late response to a timed-out call is dropped
+        }
+    }
+
+    @Override
+    protected void connectionClosed() {
+        pendingRequests.failAll(new IOException("Connection closed"));
+    }
+
+    @Override
+    protected void connectionException(Exception exception) {
+        pendingRequests.failAll(exception);
+    }
+
+    /**
+     * Calls can come from any thread (e.g. from a response future), so writes to the socket take turns
+     */
+    private synchronized void write(Object data) throws IOException {
+        sendToServer(data);
+    }
+}
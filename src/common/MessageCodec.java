@@ -0,0 +1,48 @@
+package common;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import entities.Message;
+
+/**
+ * The wire format shared by the server and every client: a Message is sent as
+ * the bytes of its Java serialization (plain Strings are sent as they are).
+ */
+public class MessageCodec {
+
+    /**
+     * Serialize a Message to bytes
+     * @return null if it could not be serialized
+     */
+    public static byte[] serialize(Message msg) {
+        try {
+            ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
+            ObjectOutputStream out = new ObjectOutputStream(byteStream);
+            out.writeObject(msg);
+            out.flush();
+            return byteStream.toByteArray();
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Deserialize bytes received from the other side
+     * @return the object (usually a Message), or null if the bytes could not be read
+     */
+    public static Object deserialize(Object msg) {
+        try {
+            byte[] messageBytes = (byte[]) msg;
+            ByteArrayInputStream byteStream = new ByteArrayInputStream(messageBytes);
+            ObjectInputStream objectStream = new ObjectInputStream(byteStream);
+            return objectStream.readObject();
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            return null;
+        }
+    }
+}
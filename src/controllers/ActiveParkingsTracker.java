@@ -0,0 +1,176 @@
+package controllers;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import entities.ActiveParkingsDelta;
+import entities.ParkingOrder;
+
+/**
+ * ActiveParkingsTracker versions the list of active parking sessions, so the attendant
+ * screens get only what changed since their last refresh instead of the whole list.
+ *
+ * The list is reloaded when a parking event arrives (or every few seconds, which catches
+ * extensions) and compared with the previous one; every difference becomes a new version.
+ * The last HISTORY_SIZE versions are kept - a client further behind, or from before a
+ * server restart, gets a full snapshot.
+ */
+public class ActiveParkingsTracker implements ParkingEventListener {
+
+    private static final int HISTORY_SIZE = 64;
+    private static final long REFRESH_MILLIS = 2000;
+
+    /**
+     * What one version changed
+     */
+    private static class Change {
+        final long version;
+        final Map<Integer, ParkingOrder> added = new LinkedHashMap<>();
+        final Map<Integer, ParkingOrder> changed = new LinkedHashMap<>();
+        final Set<Integer> removed = new HashSet<>();
+
+        Change(long version) {
+            this.version = version;
+        }
+
+        boolean isEmpty() {
+            return added.isEmpty() && changed.isEmpty() && removed.isEmpty();
+        }
+    }
+
+    private final ParkingController parkingController;
+    private final long epoch = System.currentTimeMillis();
+
+    private Map<Integer, ParkingOrder> current = new LinkedHashMap<>();
+    private long version = 0;
+    private final Deque<Change> history = new ArrayDeque<>();
+    private long lastRefresh = 0;
+    private volatile boolean dirty = true;
+
+    // Statistics
+    private long snapshotsSent = 0;
+    private long deltasSent = 0;
+
+    public ActiveParkingsTracker(ParkingController parkingController) {
+        this.parkingController = parkingController;
+    }
+
+    @Override
+    public void onParkingEvent(ParkingEvent event) {
+        dirty = true;
+    }
+
+    /**
+     * Changes since the client's version, or a full snapshot if they can't be given
+     */
+    public synchronized ActiveParkingsDelta getDelta(long clientEpoch, long clientVersion) {
+        refreshIfNeeded();
+
+        long oldestKnown = history.isEmpty() ? version : history.peekFirst().version - 1;
+        if (clientEpoch != epoch || clientVersion <= 0 || clientVersion > version || clientVersion < oldestKnown) {
+            ActiveParkingsDelta snapshot = new ActiveParkingsDelta(epoch, 0, version, true);
+            snapshot.getAdded().addAll(current.values());
+            snapshotsSent++;
+            return snapshot;
+        }
+
+        // Fold the versions after the client's into one change
+        Change merged = new Change(version);
+        for (Change change : history) {
+            if (change.version <= clientVersion) {
+                continue;
+            }
+            for (Integer id : change.removed) {
+                if (merged.added.remove(id) == null) {
+                    merged.changed.remove(id);
+                    merged.removed.add(id);
+                }
+            }
+            for (Map.Entry<Integer, ParkingOrder> entry : change.changed.entrySet()) {
+                if (merged.added.containsKey(entry.getKey())) {
+                    merged.added.put(entry.getKey(), entry.getValue());
+                } else {
+                    merged.changed.put(entry.getKey(), entry.getValue());
+                }
+            }
+            for (Map.Entry<Integer, ParkingOrder> entry : change.added.entrySet()) {
+                if (merged.removed.remove(entry.getKey())) {
+                    merged.changed.put(entry.getKey(), entry.getValue());    // the client still has the old row
+                } else {
+                    merged.added.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+
+        ActiveParkingsDelta delta = new ActiveParkingsDelta(epoch, clientVersion, version, false);
+        delta.getAdded().addAll(merged.added.values());
+        delta.getChanged().addAll(merged.changed.values());
+        delta.getRemoved().addAll(merged.removed);
+        deltasSent++;
+        return delta;
+    }
+
+    /**
+     * Reload the active sessions if something happened, and record the differences as a new version
+     */
+    private void refreshIfNeeded() {
+        long now = System.currentTimeMillis();
+        if (!dirty && now - lastRefresh < REFRESH_MILLIS) {
+            return;
+        }
+        dirty = false;
+        lastRefresh = now;
+
+        Map<Integer, ParkingOrder> next = new LinkedHashMap<>();
+        for (ParkingOrder order : parkingController.getActiveParkings()) {
+            next.put(order.getOrderID(), order);
+        }
+
+        Change change = new Change(version + 1);
+        for (Map.Entry<Integer, ParkingOrder> entry : next.entrySet()) {
+            ParkingOrder previous = current.get(entry.getKey());
+            if (previous == null) {
+                change.added.put(entry.getKey(), entry.getValue());
+            } else if (!sameRow(previous, entry.getValue())) {
+                change.changed.put(entry.getKey(), entry.getValue());
+            }
+        }
+        for (Integer id : current.keySet()) {
+            if (!next.containsKey(id)) {
+                change.removed.add(id);
+            }
+        }
+        current = next;
+
+        if (!change.isEmpty() || version == 0) {
+            version = change.version;
+            history.addLast(change);
+            while (history.size() > HISTORY_SIZE) {
+                history.removeFirst();
+            }
+        }
+    }
+
+    /**
+     * Same values in every column the attendant table shows
+     */
+    private static boolean sameRow(ParkingOrder a, ParkingOrder b) {
+        return Objects.equals(a.getSubscriberName(), b.getSubscriberName())
+            && Objects.equals(a.getSpotNumber(), b.getSpotNumber())
+            && Objects.equals(a.getOrderType(), b.getOrderType())
+            && Objects.equals(a.getEntryTime(), b.getEntryTime())
+            && Objects.equals(a.getExpectedExitTime(), b.getExpectedExitTime())
+            && Objects.equals(a.getStatus(), b.getStatus());
+    }
+
+    public synchronized String getStatistics() {
+        return String.format("Active sessions - %d sessions at version %d, %d deltas and %d snapshots sent",
+                             current.size(), version, deltasSent, snapshotsSent);
+    }
+}
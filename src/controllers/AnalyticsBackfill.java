@@ -0,0 +1,394 @@
+package controllers;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * AnalyticsBackfill recomputes an aggregate (a BackfillJob) over the whole parking history.
+ *
+ * The ParkingInfo_ID space is cut into fixed chunks of bpark.backfill.chunkSize IDs
+ * (default 50000, aligned to multiples of the size so they line up between runs).
+ * Chunks are processed with fork/join, each on a pooled connection, and each chunk's
+ * aggregates are written together with its checkpoint row in one transaction -
+ * an interrupted run resumes where it stopped and never counts a row twice.
+ *
+ * Rows are sealed, not chunks: a chunk's checkpoint is a high-water mark below which every
+ * row is finished or cancelled and has been counted. A run counts the rows from the old mark
+ * up to the chunk's first preorder/active session (or the highest ID at the start of the run)
+ * and moves the mark there, so a session that is still open only holds back the rows after
+ * it in its own chunk, and the tail chunk fills in as it grows.
+ *
+ * Throttling, so the gate keeps its latency while a backfill runs:
+ * - at most bpark.backfill.maxRowsPerSecond rows are read (default 20000);
+ * - before each chunk the active-session query is timed, and the worker backs off
+ *   while it is much slower than the fastest time seen.
+ *
+ * Usage: java controllers.AnalyticsBackfill &lt;database&gt; &lt;password&gt; [job] [--restart]
+ */
+public class AnalyticsBackfill {
+
+    private static final int CHUNK_SIZE = Integer.getInteger("bpark.backfill.chunkSize", 50_000);
+    private static final int MAX_ROWS_PER_SECOND = Integer.getInteger("bpark.backfill.maxRowsPerSecond", 20_000);
+    private static final long MAX_BACKOFF_MILLIS = 8000;
+
+    private final ConnectionPool pool;
+    private final int parallelism;
+
+    // Progress of the current run
+    private final AtomicLong rowsRead = new AtomicLong();
+    private final AtomicLong chunksDone = new AtomicLong();
+    private final AtomicLong chunksSkipped = new AtomicLong();
+    private final AtomicLong chunksOpen = new AtomicLong();
+    private final AtomicLong throttlePauses = new AtomicLong();
+    private long chunksTotal;
+
+    // Rate limit - the time the next chunk may start
+    private long nextStartNanos = System.nanoTime();
+
+    // Gate probe - fastest time seen, in nanoseconds
+    private volatile long baselineProbeNanos = Long.MAX_VALUE;
+
+    public AnalyticsBackfill(ConnectionPool pool, int parallelism) {
+        this.pool = pool;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Run (or resume) a job over every chunk of the history
+     * @param restart forget the checkpoints and empty the target first
+     * @return rows read by this run
+     */
+    public <P> long run(BackfillJob<P> job, boolean restart) throws SQLException {
+        long minId;
+        long maxId;
+        // By Chunk_Start: the high-water mark so far, and the first preorder/active session
+        Map<Long, Long> sealedTo = new HashMap<>();
+        Map<Long, Long> firstOpenId = new HashMap<>();
+
+        Connection connection = pool.borrow();
+        try {
+            createCheckpointTable(connection);
+            job.prepare(connection);
+            if (restart) {
+                try (PreparedStatement stmt = connection.prepareStatement(
+                        "DELETE FROM analytics_backfill_checkpoint WHERE Job_Name = ?")) {
+                    stmt.setString(1, job.getName());
+                    stmt.executeUpdate();
+                }
+                job.reset(connection);
+            }
+
+            try (PreparedStatement stmt = connection.prepareStatement(
+                    "SELECT Chunk_Start, Sealed_To FROM analytics_backfill_checkpoint WHERE Job_Name = ? AND Chunk_Size = ?")) {
+                stmt.setString(1, job.getName());
+                stmt.setInt(2, CHUNK_SIZE);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        sealedTo.put(rs.getLong(1), rs.getLong(2));
+                    }
+                }
+            }
+
+            try (Statement stmt = connection.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT MIN(ParkingInfo_ID), MAX(ParkingInfo_ID) FROM parkinginfo_all")) {
+                rs.next();
+                minId = rs.getLong(1);
+                maxId = rs.getLong(2);
+            }
+
+            // Read after MAX - a session opened in between gets an ID above it and isn't counted anyway
+            try (PreparedStatement stmt = connection.prepareStatement("""
+                    SELECT FLOOR(ParkingInfo_ID / ?) as Chunk, MIN(ParkingInfo_ID)
+                    FROM parkinginfo
+                    WHERE statusEnum IN ('preorder', 'active')
+                    GROUP BY Chunk
+                    """)) {
+                stmt.setInt(1, CHUNK_SIZE);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        firstOpenId.put(rs.getLong(1) * CHUNK_SIZE, rs.getLong(2));
+                    }
+                }
+            }
+        } finally {
+            pool.release(connection);
+        }
+
+        long firstChunk = minId / CHUNK_SIZE;
+        long lastChunk = maxId / CHUNK_SIZE;
+        chunksTotal = maxId == 0 ? 0 : lastChunk - firstChunk + 1;
+        long alreadyDone = sealedTo.entrySet().stream()
+            .filter(e -> e.getValue() >= e.getKey() + CHUNK_SIZE).count();
+        rowsRead.set(0);
+        chunksDone.set(0);
+        chunksSkipped.set(0);
+        chunksOpen.set(0);
+        throttlePauses.set(0);
+
+        System.out.println("Backfill '" + job.getName() + "': " + chunksTotal + " chunks of " + CHUNK_SIZE +
+                           " IDs, " + alreadyDone + " already done, " + firstOpenId.size() +
+                           " with open sessions, " + parallelism + " workers");
+        long start = System.currentTimeMillis();
+
+        if (chunksTotal > 0) {
+            ForkJoinPool workers = new ForkJoinPool(parallelism, fjPool -> {
+                ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(fjPool);
+                t.setName("backfill-worker-" + t.getPoolIndex());
+                t.setPriority(Thread.MIN_PRIORITY);
+                return t;
+            }, null, false);
+            try {
+                workers.invoke(new ChunkRange<>(job, new Marks(sealedTo, firstOpenId, maxId + 1), firstChunk, lastChunk + 1));
+            } finally {
+                workers.shutdown();
+            }
+        }
+
+        System.out.println("Backfill '" + job.getName() + "' finished: " + getProgress() + " in " +
+                           (System.currentTimeMillis() - start) + " ms");
+        return rowsRead.get();
+    }
+
+    /**
+     * Where each chunk's counting starts and may go up to in this run (read-only once the run starts)
+     */
+    private static class Marks {
+        final Map<Long, Long> sealedTo;
+        final Map<Long, Long> firstOpenId;
+        final long endId;    // one past the highest ID at the start of the run
+
+        Marks(Map<Long, Long> sealedTo, Map<Long, Long> firstOpenId, long endId) {
+            this.sealedTo = sealedTo;
+            this.firstOpenId = firstOpenId;
+            this.endId = endId;
+        }
+    }
+
+    /**
+     * Chunks [from, to) - split in half until a single chunk is left
+     */
+    private class ChunkRange<P> extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient BackfillJob<P> job;
+        private final transient Marks marks;
+        private final long from;
+        private final long to;
+
+        ChunkRange(BackfillJob<P> job, Marks marks, long from, long to) {
+            this.job = job;
+            this.marks = marks;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                long mid = (from + to) >>> 1;
+                invokeAll(new ChunkRange<>(job, marks, from, mid), new ChunkRange<>(job, marks, mid, to));
+                return;
+            }
+
+            long chunkStart = from * CHUNK_SIZE;
+            long chunkEnd = chunkStart + CHUNK_SIZE;
+            long sealedFrom = marks.sealedTo.getOrDefault(chunkStart, chunkStart);
+            long sealTo = Math.min(chunkEnd, Math.min(marks.endId, marks.firstOpenId.getOrDefault(chunkStart, chunkEnd)));
+            if (sealTo < chunkEnd) {
+                chunksOpen.incrementAndGet();
+            }
+            if (sealTo <= sealedFrom) {
+                chunksSkipped.incrementAndGet();
+                return;
+            }
+            try {
+                processChunk(job, chunkStart, sealedFrom, sealTo);
+            } catch (SQLException e) {
+                // The mark stays where it was - the next run retries these rows
+                System.out.println("Backfill chunk " + chunkStart + " failed: " + e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Count the rows [from, to) of a chunk and move its mark to 'to', in one transaction
+     */
+    private <P> void processChunk(BackfillJob<P> job, long chunkStart, long from, long to)
+            throws SQLException, InterruptedException {
+        waitForTurn();
+
+        Connection connection = pool.borrow();
+        try {
+            waitForGate(connection);
+
+            P partial = job.newPartial();
+            long rows = 0;
+            connection.setAutoCommit(false);
+            try {
+                try (PreparedStatement stmt = connection.prepareStatement(job.getQuery(),
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                    stmt.setFetchSize(Integer.MIN_VALUE);    // MySQL: stream rows one by one
+                    stmt.setLong(1, from);
+                    stmt.setLong(2, to);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            job.accumulate(partial, rs);
+                            rows++;
+                        }
+                    }
+                }
+
+                job.write(connection, partial);
+
+                try (PreparedStatement stmt = connection.prepareStatement("""
+                        INSERT INTO analytics_backfill_checkpoint
+                        (Job_Name, Chunk_Start, Chunk_Size, Sealed_To, Row_Count, Completed_At)
+                        VALUES (?, ?, ?, ?, ?, NOW())
+                        ON DUPLICATE KEY UPDATE
+                            Sealed_To = VALUES(Sealed_To),
+                            Row_Count = Row_Count + VALUES(Row_Count),
+                            Completed_At = VALUES(Completed_At)
+                        """)) {
+                    stmt.setString(1, job.getName());
+                    stmt.setLong(2, chunkStart);
+                    stmt.setInt(3, CHUNK_SIZE);
+                    stmt.setLong(4, to);
+                    stmt.setLong(5, rows);
+                    stmt.executeUpdate();
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+
+            rowsRead.addAndGet(rows);
+            reserveRows(rows);
+            long done = chunksDone.incrementAndGet();
+            if (done % 20 == 0) {
+                System.out.println("Backfill '" + job.getName() + "': " + getProgress());
+            }
+        } finally {
+            pool.release(connection);
+        }
+    }
+
+    /**
+     * Row rate limit: each chunk pushes the next start time forward by rows / rate
+     */
+    private void reserveRows(long rows) {
+        synchronized (this) {
+            long now = System.nanoTime();
+            nextStartNanos = Math.max(nextStartNanos, now) + rows * 1_000_000_000L / MAX_ROWS_PER_SECOND;
+        }
+    }
+
+    private void waitForTurn() throws InterruptedException {
+        long waitNanos;
+        synchronized (this) {
+            waitNanos = nextStartNanos - System.nanoTime();
+        }
+        if (waitNanos > 0) {
+            Thread.sleep(waitNanos / 1_000_000, (int) (waitNanos % 1_000_000));
+        }
+    }
+
+    /**
+     * Back off while the gate's active-session query is much slower than usual
+     */
+    private void waitForGate(Connection connection) throws SQLException, InterruptedException {
+        long backoff = 250;
+        while (true) {
+            long start = System.nanoTime();
+            try (Statement stmt = connection.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM parkinginfo WHERE statusEnum IN ('preorder', 'active')")) {
+                rs.next();
+            }
+            long probe = System.nanoTime() - start;
+            if (probe < baselineProbeNanos) {
+                baselineProbeNanos = probe;
+            }
+
+            // Slow = three times the best time, and at least 20 ms worse
+            if (probe < baselineProbeNanos * 3 || probe - baselineProbeNanos < 20_000_000L) {
+                return;
+            }
+            throttlePauses.incrementAndGet();
+            Thread.sleep(backoff);
+            backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+        }
+    }
+
+    public String getProgress() {
+        return String.format("%d/%d chunks (%d skipped, %d open), %d rows, %d throttle pauses",
+            chunksDone.get() + chunksSkipped.get(), chunksTotal, chunksSkipped.get(), chunksOpen.get(), rowsRead.get(),
+            throttlePauses.get());
+    }
+
+    private static void createCheckpointTable(Connection connection) throws SQLException {
+        String table = """
+            CREATE TABLE IF NOT EXISTS analytics_backfill_checkpoint (
+                Job_Name VARCHAR(64) NOT NULL,
+                Chunk_Start BIGINT NOT NULL,
+                Chunk_Size INT NOT NULL,
+                Sealed_To BIGINT NOT NULL,
+                Row_Count BIGINT NOT NULL,
+                Completed_At DATETIME NOT NULL,
+                PRIMARY KEY (Job_Name, Chunk_Start, Chunk_Size)
+            )
+            """;
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute(table);
+        }
+    }
+
+    /**
+     * Known jobs, by name
+     */
+    private static Map<String, BackfillJob<?>> jobs() {
+        Map<String, BackfillJob<?>> jobs = new LinkedHashMap<>();
+        BackfillJob<?> spotDaily = new SpotDailyUsageJob();
+        jobs.put(spotDaily.getName(), spotDaily);
+        return jobs;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.out.println("Usage: AnalyticsBackfill <database> <password> [job] [--restart]");
+            System.out.println("Jobs: " + jobs().keySet());
+            return;
+        }
+
+        boolean restart = Arrays.asList(args).contains("--restart");
+        String jobName = args.length > 2 && !args[2].startsWith("--") ? args[2] : "spot-daily";
+        BackfillJob<?> job = jobs().get(jobName);
+        if (job == null) {
+            System.out.println("Unknown job '" + jobName + "'. Jobs: " + jobs().keySet());
+            return;
+        }
+
+        int parallelism = Integer.getInteger("bpark.backfill.parallelism", 4);
+        String url = "jdbc:mysql://localhost/" + args[0] + "?serverTimezone=Asia/Jerusalem";
+        ConnectionPool pool = new ConnectionPool(url, "root", args[1], parallelism);
+        try {
+            new AnalyticsBackfill(pool, parallelism).run(job, restart);
+        } finally {
+            pool.close();
+        }
+    }
+}
@@ -11,9 +11,14 @@ import javafx.animation.Timeline;
 import javafx.animation.KeyFrame;
 import javafx.util.Duration;
 import java.net.URL;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
 import java.util.ResourceBundle;
+import java.util.Set;
 
 import client.BParkClientApp;
+import entities.ActiveParkingsDelta;
 import entities.Message;
 import entities.Message.MessageType;
 import entities.ParkingOrder;
@@ -49,6 +54,10 @@ public class AttendantController implements Initializable {
     
     private ObservableList<ParkingOrder> activeParkings = FXCollections.observableArrayList();
     
+    // Version of the active sessions the table shows (0 = nothing yet, get a snapshot)
+    private long activeEpoch = 0;
+    private long activeVersion = 0;
+    
     @Override
     public void initialize(URL location, ResourceBundle resources) {
         setupUI();
@@ -142,8 +151,16 @@ public class AttendantController implements Initializable {
     
     @FXML
     private void loadActiveParkings() {
-        Message msg = new Message(MessageType.GET_ACTIVE_PARKINGS, null);
-        BParkClientApp.sendMessage(msg);
+        // Only the changes since the version on screen
+        Message msg = new Message(MessageType.GET_ACTIVE_PARKINGS_DELTA, 
+                                  ActiveParkingsDelta.request(activeEpoch, activeVersion));
+        BParkClientApp.sendRequest(msg).thenAccept(response -> {
+            ActiveParkingsDelta delta = (ActiveParkingsDelta) response.getContent();
+            Platform.runLater(() -> applyActiveParkingsDelta(delta));
+        }).exceptionally(error -> {
+            System.out.println("Active parkings refresh failed: " + error.getMessage());
+            return null;
+        });
     }
     
     @FXML
@@ -304,6 +321,52 @@ public class AttendantController implements Initializable {
     
     // ===== UI Update Methods =====
     
+    /**
+     * Apply the server's changes to the table with as few list operations as possible,
+     * so only the affected rows are redrawn. A full snapshot replaces the list.
+     */
+    private void applyActiveParkingsDelta(ActiveParkingsDelta delta) {
+        if (delta.isFullSnapshot()) {
+            activeParkings.setAll(delta.getAdded());
+        } else if (delta.getEpoch() != activeEpoch || delta.getFromVersion() != activeVersion) {
+            // A response to an older refresh - nothing new if we're already past it, otherwise catch up
+            if (delta.getEpoch() != activeEpoch || delta.getToVersion() > activeVersion) {
+                loadActiveParkings();
+            }
+            return;
+        } else {
+            if (!delta.getRemoved().isEmpty()) {
+                Set<Integer> removed = new HashSet<>(delta.getRemoved());
+                activeParkings.removeIf(order -> removed.contains(order.getOrderID()));
+            }
+            
+            if (!delta.getChanged().isEmpty()) {
+                Map<Integer, Integer> positions = new HashMap<>();
+                for (int i = 0; i < activeParkings.size(); i++) {
+                    positions.put(activeParkings.get(i).getOrderID(), i);
+                }
+                for (ParkingOrder order : delta.getChanged()) {
+                    Integer position = positions.get(order.getOrderID());
+                    if (position != null) {
+                        activeParkings.set(position, order);
+                    } else {
+                        activeParkings.add(order);
+                    }
+                }
+            }
+            
+            if (!delta.getAdded().isEmpty()) {
+                activeParkings.addAll(delta.getAdded());
+            }
+        }
+        
+        activeEpoch = delta.getEpoch();
+        activeVersion = delta.getToVersion();
+        if (lblParkingStatus != null) {
+            lblParkingStatus.setText(String.format("Active Sessions: %d", activeParkings.size()));
+        }
+    }
+    
     public void updateActiveParkings(ObservableList<ParkingOrder> parkings) {
         this.activeParkings.clear();
         this.activeParkings.addAll(parkings);
@@ -0,0 +1,48 @@
+package controllers;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * An aggregate that AnalyticsBackfill can recompute from the whole parking history.
+ *
+ * The history is cut into ParkingInfo_ID ranges; each range is read into a fresh partial
+ * result, which is then written in the same transaction as the range's checkpoint.
+ * Every session in a range is finished or cancelled, so a range is read only once.
+ * write() must therefore add to what is already stored (e.g. ON DUPLICATE KEY UPDATE x = x + ...),
+ * since other ranges contribute to the same rows.
+ *
+ * @param <P> the partial result of one range
+ */
+public interface BackfillJob<P> {
+
+    /**
+     * Unique name, used as the checkpoint key
+     */
+    String getName();
+
+    /**
+     * Create the target table if needed
+     */
+    void prepare(Connection connection) throws SQLException;
+
+    /**
+     * Empty the target table (before a run that starts over)
+     */
+    void reset(Connection connection) throws SQLException;
+
+    /**
+     * The rows to read; the first two parameters are bound to [from, to) of ParkingInfo_ID
+     */
+    String getQuery();
+
+    P newPartial();
+
+    void accumulate(P partial, ResultSet row) throws SQLException;
+
+    /**
+     * Write one range's partial result (batched); runs inside the range's transaction
+     */
+    void write(Connection connection, P partial) throws SQLException;
+}
@@ -0,0 +1,118 @@
+package controllers;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A small fixed-size pool of JDBC connections.
+ * Connections are opened up front; a borrowed connection that turned out to be
+ * closed or broken is replaced with a fresh one.
+ */
+public class ConnectionPool {
+
+    private static final int BORROW_TIMEOUT_SECONDS = 30;
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final BlockingQueue<Connection> idle;
+    private final List<Connection> all = new ArrayList<>();
+
+    public ConnectionPool(String url, String user, String password, int size) throws SQLException {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.idle = new ArrayBlockingQueue<>(size);
+
+        for (int i = 0; i < size; i++) {
+            Connection connection = DriverManager.getConnection(url, user, password);
+            synchronized (all) {
+                all.add(connection);
+            }
+            idle.add(connection);
+        }
+    }
+
+    /**
+     * Take a connection, waiting if all of them are in use
+     */
+    public Connection borrow() throws SQLException {
+        Connection connection;
+        try {
+            connection = idle.poll(BORROW_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection");
+        }
+        if (connection == null) {
+            throw new SQLException("No database connection available after " + BORROW_TIMEOUT_SECONDS + " seconds");
+        }
+
+        if (!connection.isValid(2)) {
+            connection = replace(connection);
+        }
+        return connection;
+    }
+
+    /**
+     * Return a borrowed connection to the pool
+     */
+    public void release(Connection connection) {
+        if (connection != null) {
+            idle.offer(connection);
+        }
+    }
+
+    private Connection replace(Connection broken) throws SQLException {
+        try {
+            broken.close();
+        } catch (SQLException e) {
+            // Already broken - nothing to do
+        }
+
+        Connection fresh;
+        try {
+            fresh = DriverManager.getConnection(url, user, password);
+        } catch (SQLException e) {
+            // Keep the pool size - the broken one will be retried on the next borrow
+            idle.offer(broken);
+            throw e;
+        }
+
+        synchronized (all) {
+            all.remove(broken);
+            all.add(fresh);
+        }
+        return fresh;
+    }
+
+    public int getSize() {
+        synchronized (all) {
+            return all.size();
+        }
+    }
+
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    public void close() {
+        synchronized (all) {
+            for (Connection connection : all) {
+                try {
+                    connection.close();
+                } catch (SQLException e) {
+                    System.out.println("Error closing pooled connection: " + e.getMessage());
+                }
+            }
+            all.clear();
+        }
+        idle.clear();
+    }
+}
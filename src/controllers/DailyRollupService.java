@@ -0,0 +1,267 @@
+package controllers;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.LocalDate;
+
+/**
+ * DailyRollupService keeps one row of aggregates per day in parking_daily_rollup,
+ * updated on every exit/cancel event instead of rescanning parkinginfo for each report.
+ * Days are keyed by Date_Of_Placing_Order, like the reports always were.
+ *
+ * parking_daily_rollup_users holds the (day, user) pairs seen so far, which gives
+ * the per-day distinct user count and lets a month's distinct users be counted
+ * without touching parkinginfo.
+ */
+public class DailyRollupService implements ParkingEventListener {
+
+    private final Connection conn;
+    private volatile Clock clock = Clock.systemDefaultZone();
+
+    public DailyRollupService(Connection conn) {
+        this.conn = conn;
+    }
+
+    /**
+     * Replace the system clock (ReportController.setClock)
+     */
+    public void setClock(Clock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Create the rollup tables if needed and build them from history the first time
+     */
+    public void initialize() {
+        String rollupTable = """
+            CREATE TABLE IF NOT EXISTS parking_daily_rollup (
+                Rollup_Date DATE NOT NULL PRIMARY KEY,
+                Finished_Count INT NOT NULL DEFAULT 0,
+                Total_Duration_Min BIGINT NOT NULL DEFAULT 0,
+                Min_Duration_Min INT NULL,
+                Max_Duration_Min INT NULL,
+                Late_Count INT NOT NULL DEFAULT 0,
+                Extended_Count INT NOT NULL DEFAULT 0,
+                Reservation_Count INT NOT NULL DEFAULT 0,
+                Immediate_Count INT NOT NULL DEFAULT 0,
+                Cancelled_Count INT NOT NULL DEFAULT 0,
+                Distinct_Users INT NOT NULL DEFAULT 0
+            )
+            """;
+
+        String usersTable = """
+            CREATE TABLE IF NOT EXISTS parking_daily_rollup_users (
+                Rollup_Date DATE NOT NULL,
+                User_ID INT NOT NULL,
+                PRIMARY KEY (Rollup_Date, User_ID)
+            )
+            """;
+
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(rollupTable);
+            stmt.execute(usersTable);
+        } catch (SQLException e) {
+            System.out.println("Error creating rollup tables: " + e.getMessage());
+            return;
+        }
+
+        if (isEmpty()) {
+            System.out.println("Building daily rollups from parking history...");
+            rebuild(LocalDate.of(2000, 1, 1), LocalDate.now(clock).plusDays(1));
+        }
+    }
+
+    private boolean isEmpty() {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT 1 FROM parking_daily_rollup LIMIT 1")) {
+            return !rs.next();
+        } catch (SQLException e) {
+            System.out.println("Error checking rollup table: " + e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public void onParkingEvent(ParkingEvent event) {
+        try {
+            switch (event.getType()) {
+                case EXIT:
+                    addFinishedParking(event);
+                    break;
+                case CANCEL:
+                    addCancellation(event);
+                    break;
+                default:
+                    return;
+            }
+            addUser(event.getOrderDate(), event.getUserId());
+        } catch (SQLException e) {
+            System.out.println("Error updating daily rollup for " + event + ": " + e.getMessage());
+        }
+    }
+
+    private void addFinishedParking(ParkingEvent event) throws SQLException {
+        String qry = """
+            INSERT INTO parking_daily_rollup
+            (Rollup_Date, Finished_Count, Total_Duration_Min, Min_Duration_Min, Max_Duration_Min,
+             Late_Count, Extended_Count, Reservation_Count, Immediate_Count)
+            VALUES (?, 1, ?, ?, ?, ?, ?, ?, ?)
+            ON DUPLICATE KEY UPDATE
+                Finished_Count = Finished_Count + 1,
+                Total_Duration_Min = Total_Duration_Min + VALUES(Total_Duration_Min),
+                Min_Duration_Min = LEAST(COALESCE(Min_Duration_Min, VALUES(Min_Duration_Min)), VALUES(Min_Duration_Min)),
+                Max_Duration_Min = GREATEST(COALESCE(Max_Duration_Min, VALUES(Max_Duration_Min)), VALUES(Max_Duration_Min)),
+                Late_Count = Late_Count + VALUES(Late_Count),
+                Extended_Count = Extended_Count + VALUES(Extended_Count),
+                Reservation_Count = Reservation_Count + VALUES(Reservation_Count),
+                Immediate_Count = Immediate_Count + VALUES(Immediate_Count)
+            """;
+
+        int duration = event.getDurationMinutes();
+        try (PreparedStatement stmt = conn.prepareStatement(qry)) {
+            stmt.setObject(1, event.getOrderDate());
+            stmt.setInt(2, duration);
+            stmt.setInt(3, duration);
+            stmt.setInt(4, duration);
+            stmt.setInt(5, event.isLate() ? 1 : 0);
+            stmt.setInt(6, event.isExtended() ? 1 : 0);
+            stmt.setInt(7, event.isReservation() ? 1 : 0);
+            stmt.setInt(8, event.isReservation() ? 0 : 1);
+            stmt.executeUpdate();
+        }
+    }
+
+    private void addCancellation(ParkingEvent event) throws SQLException {
+        String qry = """
+            INSERT INTO parking_daily_rollup (Rollup_Date, Cancelled_Count) VALUES (?, 1)
+            ON DUPLICATE KEY UPDATE Cancelled_Count = Cancelled_Count + 1
+            """;
+
+        try (PreparedStatement stmt = conn.prepareStatement(qry)) {
+            stmt.setObject(1, event.getOrderDate());
+            stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Count the user once per day
+     */
+    private void addUser(LocalDate day, int userId) throws SQLException {
+        int inserted;
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "INSERT IGNORE INTO parking_daily_rollup_users (Rollup_Date, User_ID) VALUES (?, ?)")) {
+            stmt.setObject(1, day);
+            stmt.setInt(2, userId);
+            inserted = stmt.executeUpdate();
+        }
+
+        if (inserted > 0) {
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "UPDATE parking_daily_rollup SET Distinct_Users = Distinct_Users + 1 WHERE Rollup_Date = ?")) {
+                stmt.setObject(1, day);
+                stmt.executeUpdate();
+            }
+        }
+    }
+
+    /**
+     * Recompute the rollups of [from, to) from parkinginfo.
+     * Used on first start and to repair a range after manual changes to the table.
+     */
+    public void rebuild(LocalDate from, LocalDate to) {
+        Timestamp fromTs = Timestamp.valueOf(from.atStartOfDay());
+        Timestamp toTs = Timestamp.valueOf(to.atStartOfDay());
+
+        String finishedQry = """
+            INSERT INTO parking_daily_rollup
+            (Rollup_Date, Finished_Count, Total_Duration_Min, Min_Duration_Min, Max_Duration_Min,
+             Late_Count, Extended_Count, Reservation_Count, Immediate_Count)
+            SELECT
+                DATE(Date_Of_Placing_Order),
+                COUNT(*),
+                COALESCE(SUM(TIMESTAMPDIFF(MINUTE, Actual_start_time, Actual_end_time)), 0),
+                MIN(TIMESTAMPDIFF(MINUTE, Actual_start_time, Actual_end_time)),
+                MAX(TIMESTAMPDIFF(MINUTE, Actual_start_time, Actual_end_time)),
+                SUM(CASE WHEN IsLate = 'yes' THEN 1 ELSE 0 END),
+                SUM(CASE WHEN IsExtended = 'yes' THEN 1 ELSE 0 END),
+                SUM(CASE WHEN IsOrderedEnum = 'yes' THEN 1 ELSE 0 END),
+                SUM(CASE WHEN IsOrderedEnum = 'no' THEN 1 ELSE 0 END)
+            FROM parkinginfo_all
+            WHERE statusEnum = 'finished'
+            AND Date_Of_Placing_Order >= ? AND Date_Of_Placing_Order < ?
+            GROUP BY DATE(Date_Of_Placing_Order)
+            """;
+
+        String cancelledQry = """
+            INSERT INTO parking_daily_rollup (Rollup_Date, Cancelled_Count)
+            SELECT DATE(Date_Of_Placing_Order), COUNT(*)
+            FROM parkinginfo_all
+            WHERE statusEnum = 'cancelled'
+            AND Date_Of_Placing_Order >= ? AND Date_Of_Placing_Order < ?
+            GROUP BY DATE(Date_Of_Placing_Order)
+            ON DUPLICATE KEY UPDATE Cancelled_Count = VALUES(Cancelled_Count)
+            """;
+
+        String usersQry = """
+            INSERT IGNORE INTO parking_daily_rollup_users (Rollup_Date, User_ID)
+            SELECT DISTINCT DATE(Date_Of_Placing_Order), User_ID
+            FROM parkinginfo_all
+            WHERE statusEnum IN ('finished', 'cancelled')
+            AND Date_Of_Placing_Order >= ? AND Date_Of_Placing_Order < ?
+            """;
+
+        String distinctQry = """
+            UPDATE parking_daily_rollup r
+            SET Distinct_Users = (SELECT COUNT(*) FROM parking_daily_rollup_users u WHERE u.Rollup_Date = r.Rollup_Date)
+            WHERE r.Rollup_Date >= ? AND r.Rollup_Date < ?
+            """;
+
+        try {
+            conn.setAutoCommit(false);
+
+            for (String table : new String[] {"parking_daily_rollup", "parking_daily_rollup_users"}) {
+                try (PreparedStatement stmt = conn.prepareStatement(
+                        "DELETE FROM " + table + " WHERE Rollup_Date >= ? AND Rollup_Date < ?")) {
+                    stmt.setObject(1, from);
+                    stmt.setObject(2, to);
+                    stmt.executeUpdate();
+                }
+            }
+
+            for (String qry : new String[] {finishedQry, cancelledQry, usersQry}) {
+                try (PreparedStatement stmt = conn.prepareStatement(qry)) {
+                    stmt.setTimestamp(1, fromTs);
+                    stmt.setTimestamp(2, toTs);
+                    stmt.executeUpdate();
+                }
+            }
+
+            try (PreparedStatement stmt = conn.prepareStatement(distinctQry)) {
+                stmt.setObject(1, from);
+                stmt.setObject(2, to);
+                stmt.executeUpdate();
+            }
+
+            conn.commit();
+            System.out.println("Daily rollups rebuilt for " + from + " to " + to.minusDays(1));
+        } catch (SQLException e) {
+            try {
+                conn.rollback();
+            } catch (SQLException rollbackEx) {
+                System.out.println("Failed to rollback: " + rollbackEx.getMessage());
+            }
+            System.out.println("Error rebuilding daily rollups: " + e.getMessage());
+        } finally {
+            try {
+                conn.setAutoCommit(true);
+            } catch (SQLException e) {
+                System.out.println("Failed to reset auto-commit: " + e.getMessage());
+            }
+        }
+    }
+}
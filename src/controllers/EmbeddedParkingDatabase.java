@@ -0,0 +1,102 @@
+package controllers;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * A real ParkingController on an embedded H2 database in MySQL mode instead of the MySQL
+ * server - the same rules and SQL as production, with a fresh parkingspot/parkinginfo/users
+ * schema. Used by the ParkingSimulator and the benchmarks; H2 has to be on the classpath.
+ *
+ * Subscribers "sub1".."subN" (email subN@bpark.local) and spots 1..M exist from the start.
+ * No services are started: the caller runs SimpleAutoCancellationService.runChecks() itself.
+ */
+public final class EmbeddedParkingDatabase {
+
+    public static final String DEFAULT_URL =
+        "jdbc:h2:mem:bpark;MODE=MySQL;DATABASE_TO_LOWER=TRUE;CASE_INSENSITIVE_IDENTIFIERS=TRUE;DB_CLOSE_DELAY=-1";
+
+    private EmbeddedParkingDatabase() {
+    }
+
+    /**
+     * Connect a ParkingController to the database at url and create the schema in it
+     * @throws SQLException if the database can't be reached or already has the tables
+     */
+    public static ParkingController open(String url, int subscribers, int spots) throws SQLException {
+        ParkingController controller = new ParkingController();
+        controller.connectToDB(url, "");
+        if (controller.getConnection() == null) {
+            throw new SQLException("Could not connect to " + url + " (is H2 on the classpath?)");
+        }
+        createSchema(controller.getConnection(), subscribers, spots);
+        return controller;
+    }
+
+    /**
+     * The tables and columns ParkingController and SimpleAutoCancellationService use
+     */
+    private static void createSchema(Connection connection, int subscribers, int spots) throws SQLException {
+        String users = """
+            CREATE TABLE users (
+                User_ID INT AUTO_INCREMENT PRIMARY KEY,
+                UserName VARCHAR(50) NOT NULL UNIQUE,
+                Name VARCHAR(100),
+                Phone VARCHAR(20),
+                Email VARCHAR(100),
+                CarNum VARCHAR(20),
+                UserTypeEnum ENUM('sub', 'emp', 'mng') NOT NULL DEFAULT 'sub'
+            )
+            """;
+        String parkingSpots = """
+            CREATE TABLE parkingspot (
+                ParkingSpot_ID INT PRIMARY KEY,
+                isOccupied BOOLEAN NOT NULL DEFAULT FALSE
+            )
+            """;
+        String sessions = """
+            CREATE TABLE parkinginfo (
+                ParkingInfo_ID INT AUTO_INCREMENT PRIMARY KEY,
+                ParkingSpot_ID INT,
+                User_ID INT NOT NULL,
+                Date_Of_Placing_Order DATETIME,
+                Actual_start_time DATETIME,
+                Actual_end_time DATETIME,
+                Estimated_start_time DATETIME,
+                Estimated_end_time DATETIME,
+                IsOrderedEnum ENUM('yes', 'no') NOT NULL DEFAULT 'no',
+                IsLate ENUM('yes', 'no') NOT NULL DEFAULT 'no',
+                IsExtended ENUM('yes', 'no') NOT NULL DEFAULT 'no',
+                statusEnum ENUM('preorder', 'active', 'finished', 'cancelled') NOT NULL
+            )
+            """;
+
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute(users);
+            stmt.execute(parkingSpots);
+            stmt.execute(sessions);
+            stmt.execute("CREATE INDEX idx_status ON parkinginfo (statusEnum)");
+        }
+        try (PreparedStatement stmt = connection.prepareStatement(
+                "INSERT INTO users (UserName, Name, Phone, Email, CarNum) VALUES (?, ?, ?, ?, ?)")) {
+            for (int i = 1; i <= subscribers; i++) {
+                stmt.setString(1, "sub" + i);
+                stmt.setString(2, "Subscriber " + i);
+                stmt.setString(3, String.format("050%07d", i));
+                stmt.setString(4, "sub" + i + "@bpark.local");
+                stmt.setString(5, String.format("%07d", i));
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+        try (PreparedStatement stmt = connection.prepareStatement("INSERT INTO parkingspot (ParkingSpot_ID) VALUES (?)")) {
+            for (int i = 1; i <= spots; i++) {
+                stmt.setInt(1, i);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+}
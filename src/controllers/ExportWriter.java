@@ -0,0 +1,180 @@
+package controllers;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.Date;
+
+/**
+ * ExportWriter encodes rows into a fixed-size buffer and flushes it to a channel
+ * whenever it fills up, so an export of any size uses the same amount of memory.
+ *
+ * Formats:
+ * CSV    - UTF-8, header line, RFC 4180 quoting.
+ * BINARY - "BPX1", column count (int) and column names, then one record per row:
+ *          for each column a type tag byte followed by the value
+ *          (0 null, 1 int, 2 long, 3 double, 4 UTF-8 string with int length,
+ *          5 timestamp as epoch millis). The stream ends with the tag 0x7F.
+ */
+public class ExportWriter implements AutoCloseable {
+
+    public enum Format {
+        CSV,
+        BINARY
+    }
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final byte[] MAGIC = {'B', 'P', 'X', '1'};
+    private static final byte END_OF_STREAM = 0x7F;
+
+    private final WritableByteChannel channel;
+    private final Format format;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private long rowsWritten = 0;
+
+    public ExportWriter(WritableByteChannel channel, Format format) {
+        this.channel = channel;
+        this.format = format;
+    }
+
+    public void writeHeader(String[] columns) throws IOException {
+        if (format == Format.CSV) {
+            for (int i = 0; i < columns.length; i++) {
+                if (i > 0) {
+                    put((byte) ',');
+                }
+                putCsvField(columns[i]);
+            }
+            put((byte) '\n');
+        } else {
+            put(MAGIC);
+            putInt(columns.length);
+            for (String column : columns) {
+                putString(column);
+            }
+        }
+    }
+
+    public void writeRow(Object[] values) throws IOException {
+        if (format == Format.CSV) {
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    put((byte) ',');
+                }
+                if (values[i] != null) {
+                    putCsvField(values[i].toString());
+                }
+            }
+            put((byte) '\n');
+        } else {
+            for (Object value : values) {
+                putBinaryValue(value);
+            }
+        }
+        rowsWritten++;
+    }
+
+    public long getRowsWritten() {
+        return rowsWritten;
+    }
+
+    /**
+     * Write whatever is buffered (and the end marker for BINARY) and close the channel
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (format == Format.BINARY) {
+                put(END_OF_STREAM);
+            }
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void putBinaryValue(Object value) throws IOException {
+        if (value == null) {
+            put((byte) 0);
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            put((byte) 1);
+            putInt(((Number) value).intValue());
+        } else if (value instanceof Long) {
+            put((byte) 2);
+            putLong((Long) value);
+        } else if (value instanceof Double || value instanceof Float || value instanceof BigDecimal) {
+            put((byte) 3);
+            ensureSpace(8);
+            buffer.putDouble(((Number) value).doubleValue());
+        } else if (value instanceof Timestamp || value instanceof Date) {
+            put((byte) 5);
+            putLong(((Date) value).getTime());
+        } else {
+            put((byte) 4);
+            putString(value.toString());
+        }
+    }
+
+    private void putCsvField(String value) throws IOException {
+        boolean quote = value.indexOf(',') >= 0 || value.indexOf('"') >= 0
+                     || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0;
+        if (quote) {
+            put((byte) '"');
+            put(value.replace("\"", "\"\"").getBytes(StandardCharsets.UTF_8));
+            put((byte) '"');
+        } else {
+            put(value.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private void putString(String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        putInt(bytes.length);
+        put(bytes);
+    }
+
+    private void putInt(int value) throws IOException {
+        ensureSpace(4);
+        buffer.putInt(value);
+    }
+
+    private void putLong(long value) throws IOException {
+        ensureSpace(8);
+        buffer.putLong(value);
+    }
+
+    private void put(byte value) throws IOException {
+        ensureSpace(1);
+        buffer.put(value);
+    }
+
+    /**
+     * Copy bytes in, flushing as often as needed (a value may be larger than the buffer)
+     */
+    private void put(byte[] bytes) throws IOException {
+        int offset = 0;
+        while (offset < bytes.length) {
+            ensureSpace(1);
+            int length = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, length);
+            offset += length;
+        }
+    }
+
+    private void ensureSpace(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,390 @@
+package controllers;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import entities.ParkingHistoryPage;
+import entities.ParkingOrder;
+import entities.ParkingSubscriber;
+import services.EmailService;
+
+/**
+ * InMemoryParkingController runs the gate operations the server needs (login, availability,
+ * enter, exit, extend, reserve, history) on in-memory tables instead of MySQL, following the
+ * same rules and returning the same texts as ParkingController.
+ *
+ * Used to run a ParkingServer locally without a database, e.g. for the load harness.
+ * Subscribers "sub1".."subN" exist from the start. Nothing is persisted.
+ */
+public class InMemoryParkingController extends ParkingController {
+
+    private static final int RESERVATION_MIN_HOURS = 24;
+    private static final int RESERVATION_MAX_DAYS = 7;
+    private static final int DEFAULT_HOURS = 4;
+
+    /**
+     * One parkinginfo row
+     */
+    private static class Session {
+        final int id;
+        final int userId;
+        final int spotId;
+        final LocalDateTime orderTime;
+        final boolean reservation;
+        LocalDateTime startTime;
+        LocalDateTime endTime;
+        LocalDateTime expectedStart;
+        LocalDateTime expectedEnd;
+        boolean late;
+        boolean extended;
+        String status;
+
+        Session(int id, int userId, int spotId, LocalDateTime orderTime, boolean reservation) {
+            this.id = id;
+            this.userId = userId;
+            this.spotId = spotId;
+            this.orderTime = orderTime;
+            this.reservation = reservation;
+        }
+    }
+
+    private final int spotCount;
+    private final Map<String, ParkingSubscriber> users = new LinkedHashMap<>();
+    private final Map<Integer, ParkingSubscriber> usersById = new HashMap<>();
+    private final Map<Integer, Session> sessions = new LinkedHashMap<>();
+    private final Map<Integer, Session> openSessions = new LinkedHashMap<>();    // active and preorder
+    private final Map<Integer, List<Session>> sessionsByUser = new HashMap<>();
+    private int nextSessionId = 1000;
+
+    /**
+     * @param subscribers how many subscribers (sub1..subN) to create
+     * @param spotCount the number of parking spots
+     */
+    public InMemoryParkingController(int subscribers, int spotCount) {
+        this.spotCount = spotCount;
+        for (int i = 1; i <= subscribers; i++) {
+            ParkingSubscriber user = new ParkingSubscriber();
+            user.setSubscriberID(i);
+            user.setFirstName("Subscriber " + i);
+            user.setPhoneNumber("050" + String.format("%07d", i));
+            user.setEmail("sub" + i + "@bpark.local");
+            user.setCarNumber(String.format("%08d", i));
+            user.setSubscriberCode("sub" + i);
+            user.setUserType("sub");
+            users.put("sub" + i, user);
+            usersById.put(i, user);
+        }
+    }
+
+    @Override
+    public synchronized String checkLogin(String userName, String password) {
+        ParkingSubscriber user = users.get(userName);
+        return user != null ? user.getUserType() : "None";
+    }
+
+    @Override
+    public synchronized ParkingSubscriber getUserInfo(String userName) {
+        return users.get(userName);
+    }
+
+    @Override
+    public synchronized int getAvailableParkingSpots() {
+        LocalDateTime now = now();
+        return getAvailableSpotsForTimeSlot(now, now.plusHours(DEFAULT_HOURS));
+    }
+
+    @Override
+    public synchronized int getAvailableSpotsForTimeSlot(LocalDateTime startTime, LocalDateTime endTime) {
+        int taken = 0;
+        for (Session session : openSessions.values()) {
+            if (overlaps(session, startTime, endTime)) {
+                taken++;
+            }
+        }
+        return Math.max(0, spotCount - taken);
+    }
+
+    @Override
+    public synchronized boolean canMakeReservation() {
+        return getAvailableParkingSpots() >= spotCount * 0.4;
+    }
+
+    @Override
+    public synchronized String makeReservation(String userName, String reservationDateTimeStr) {
+        if (!canMakeReservation()) {
+            return "Not enough available spots for reservation (need 40% available)";
+        }
+
+        LocalDateTime start;
+        try {
+            start = parse(reservationDateTimeStr);
+        } catch (DateTimeParseException e) {
+            return "Reservation failed: Invalid date format: " + reservationDateTimeStr;
+        }
+        LocalDateTime now = now();
+        if (start.isBefore(now.plusHours(RESERVATION_MIN_HOURS))) {
+            return "Reservation must be at least 24 hours in advance";
+        }
+        if (start.isAfter(now.plusDays(RESERVATION_MAX_DAYS))) {
+            return "Reservation cannot be more than 7 days in advance";
+        }
+        ParkingSubscriber user = users.get(userName);
+        if (user == null) {
+            return "User not found";
+        }
+
+        LocalDateTime end = start.plusHours(DEFAULT_HOURS);
+        int spotId = findFreeSpot(start, end);
+        if (spotId == -1) {
+            return "No parking spots available for the requested time slot";
+        }
+
+        Session session = new Session(nextSessionId++, user.getSubscriberID(), spotId, now, true);
+        session.expectedStart = start;
+        session.expectedEnd = end;
+        session.status = "preorder";
+        add(session);
+
+        String formattedDateTime = start.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm"));
+        EmailService.sendReservationConfirmation(user.getEmail(), user.getFirstName(),
+            String.valueOf(session.id), formattedDateTime, "Spot " + spotId);
+        return "Reservation confirmed for " + formattedDateTime + ". Confirmation code: " + session.id + ". Spot: " + spotId;
+    }
+
+    @Override
+    public synchronized String enterParking(String userName) {
+        ParkingSubscriber user = users.get(userName);
+        if (user == null) {
+            return "Invalid user code";
+        }
+        if (getAvailableParkingSpots() <= 0) {
+            return "No parking spots available";
+        }
+
+        LocalDateTime now = now();
+        LocalDateTime estimatedEnd = now.plusHours(DEFAULT_HOURS);
+        int spotId = findFreeSpot(now, estimatedEnd);
+        if (spotId == -1) {
+            return "No available parking spot found";
+        }
+
+        Session session = new Session(nextSessionId++, user.getSubscriberID(), spotId, now, false);
+        session.startTime = now;
+        session.expectedStart = now;
+        session.expectedEnd = estimatedEnd;
+        session.status = "active";
+        add(session);
+        publish(ParkingEvent.Type.ENTRY, session);
+        return "Entry successful. Parking code: " + session.id + ". Spot: " + spotId;
+    }
+
+    @Override
+    public synchronized String exitParking(String parkingCodeStr) {
+        Session session;
+        try {
+            session = sessions.get(Integer.parseInt(parkingCodeStr));
+        } catch (NumberFormatException e) {
+            return "Invalid parking code format";
+        }
+        if (session == null || !"active".equals(session.status)) {
+            return "Invalid parking code or already exited";
+        }
+
+        LocalDateTime now = now();
+        session.endTime = now;
+        session.late = now.isAfter(session.expectedEnd);
+        session.status = "finished";
+        openSessions.remove(session.id);
+        publish(ParkingEvent.Type.EXIT, session);
+
+        if (session.late) {
+            return "Exit successful. You were late - please arrive on time for future reservations";
+        }
+        return "Exit successful. Thank you for using ParkB!";
+    }
+
+    @Override
+    public synchronized String extendParkingTime(String parkingCodeStr, int additionalHours) {
+        if (additionalHours < 1 || additionalHours > 4) {
+            return "Can only extend parking by 1-4 hours";
+        }
+        Session session;
+        try {
+            session = sessions.get(Integer.parseInt(parkingCodeStr));
+        } catch (NumberFormatException e) {
+            return "Invalid parking code format";
+        }
+        if (session == null || !"active".equals(session.status)) {
+            return "Invalid parking code or parking session not active";
+        }
+
+        session.expectedEnd = session.expectedEnd.plusHours(additionalHours);
+        session.extended = true;
+
+        ParkingSubscriber user = usersById.get(session.userId);
+        EmailService.sendExtensionConfirmation(user.getEmail(), user.getFirstName(), parkingCodeStr,
+            additionalHours, session.expectedEnd.toString());
+        return "Parking time extended by " + additionalHours + " hours until " + session.expectedEnd;
+    }
+
+    @Override
+    public synchronized ArrayList<ParkingOrder> getParkingHistory(String userName) {
+        ArrayList<ParkingOrder> history = new ArrayList<>();
+        ParkingSubscriber user = users.get(userName);
+        if (user != null) {
+            for (Session session : newestFirst(user.getSubscriberID())) {
+                history.add(toOrder(session));
+            }
+        }
+        return history;
+    }
+
+    @Override
+    public synchronized ParkingHistoryPage getParkingHistoryPage(String userName, int pageSize, String cursor) {
+        int limit = Math.max(1, Math.min(pageSize, ParkingHistoryPage.MAX_PAGE_SIZE));
+        ParkingHistoryPage page = new ParkingHistoryPage();
+        ParkingSubscriber user = users.get(userName);
+        if (user == null) {
+            return page;
+        }
+
+        LocalDateTime afterDate = LocalDateTime.of(9999, 12, 31, 23, 59);
+        int afterId = Integer.MAX_VALUE;
+        if (cursor != null && !cursor.isEmpty()) {
+            String[] cursorParts = cursor.split("/");
+            afterDate = LocalDateTime.parse(cursorParts[0]);
+            afterId = Integer.parseInt(cursorParts[1]);
+        }
+
+        for (Session session : newestFirst(user.getSubscriberID())) {
+            int byDate = session.orderTime.compareTo(afterDate);
+            if (byDate > 0 || (byDate == 0 && session.id >= afterId)) {
+                continue;
+            }
+            if (page.getOrders().size() == limit) {
+                ParkingOrder last = page.getOrders().get(limit - 1);
+                page.setNextCursor(last.getOrderDate() + "/" + last.getOrderID());
+                break;
+            }
+            page.getOrders().add(toOrder(session));
+        }
+        return page;
+    }
+
+    @Override
+    public synchronized ArrayList<ParkingOrder> getActiveParkings() {
+        ArrayList<ParkingOrder> active = new ArrayList<>();
+        for (Session session : openSessions.values()) {
+            if ("active".equals(session.status)) {
+                ParkingOrder order = toOrder(session);
+                order.setSubscriberName(usersById.get(session.userId).getFirstName());
+                active.add(order);
+            }
+        }
+        active.sort(Comparator.comparing(ParkingOrder::getEntryTime));
+        return active;
+    }
+
+    @Override
+    public void logoutUser(String userName) {
+        // Nothing is tracked per login
+    }
+
+    @Override
+    public void initializeParkingSpots() {
+        // All spots exist from the start
+    }
+
+    /**
+     * Every session so far (all statuses), for the in-memory reports
+     */
+    synchronized List<ParkingOrder> getAllSessions() {
+        List<ParkingOrder> all = new ArrayList<>(sessions.size());
+        for (Session session : sessions.values()) {
+            ParkingOrder order = toOrder(session);
+            order.setSubscriberName(usersById.get(session.userId).getFirstName());
+            all.add(order);
+        }
+        return all;
+    }
+
+    synchronized int getSubscriberCount() {
+        return users.size();
+    }
+
+    // Helpers **********************************************************
+
+    private void add(Session session) {
+        sessions.put(session.id, session);
+        openSessions.put(session.id, session);
+        sessionsByUser.computeIfAbsent(session.userId, id -> new ArrayList<>()).add(session);
+    }
+
+    /**
+     * Whether an open session holds its spot during [start, end) - a parked car holds it until it leaves
+     */
+    private static boolean overlaps(Session session, LocalDateTime start, LocalDateTime end) {
+        if ("active".equals(session.status)) {
+            return true;
+        }
+        return session.expectedStart.isBefore(end) && session.expectedEnd.isAfter(start);
+    }
+
+    private int findFreeSpot(LocalDateTime start, LocalDateTime end) {
+        BitSet taken = new BitSet(spotCount + 1);
+        for (Session session : openSessions.values()) {
+            if (overlaps(session, start, end)) {
+                taken.set(session.spotId);
+            }
+        }
+        int spot = taken.nextClearBit(1);
+        return spot <= spotCount ? spot : -1;
+    }
+
+    private List<Session> newestFirst(int userId) {
+        List<Session> result = new ArrayList<>(sessionsByUser.getOrDefault(userId, List.of()));
+        result.sort(Comparator.comparing((Session s) -> s.orderTime).thenComparingInt(s -> s.id).reversed());
+        return result;
+    }
+
+    private ParkingOrder toOrder(Session session) {
+        ParkingOrder order = new ParkingOrder();
+        order.setOrderID(session.id);
+        order.setParkingCode(String.valueOf(session.id));
+        order.setOrderType(session.reservation ? "yes" : "no");
+        order.setSpotNumber("Spot " + session.spotId);
+        order.setOrderDate(session.orderTime);
+        order.setEntryTime(session.startTime);
+        order.setExitTime(session.endTime);
+        order.setExpectedExitTime(session.expectedEnd);
+        order.setLate(session.late);
+        order.setExtended(session.extended);
+        order.setStatus(session.status);
+        return order;
+    }
+
+    private void publish(ParkingEvent.Type type, Session session) {
+        publishParkingEvent(new ParkingEvent(type, session.id, session.userId, session.spotId,
+            session.orderTime, session.startTime, session.endTime, session.expectedEnd,
+            session.late, session.extended, session.reservation));
+    }
+
+    private static LocalDateTime parse(String dateTimeStr) {
+        String value = dateTimeStr.trim();
+        if (value.length() == 16) {
+            return LocalDateTime.parse(value, DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm"));
+        }
+        if (value.length() == 19 && value.charAt(10) == ' ') {
+            return LocalDateTime.parse(value, DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+        }
+        return LocalDateTime.parse(value);
+    }
+}
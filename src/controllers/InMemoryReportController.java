@@ -0,0 +1,164 @@
+package controllers;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import entities.ParkingOrder;
+import entities.ParkingReport;
+
+/**
+ * InMemoryReportController generates the live and monthly reports from the sessions of an
+ * InMemoryParkingController, so a ParkingServer can run without a database.
+ * The occupancy heatmap comes from the (in-memory) OccupancyTracker as usual - register it
+ * with the parking controller.
+ */
+public class InMemoryReportController extends ReportController {
+
+    private final InMemoryParkingController parkingController;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "report-worker");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public InMemoryReportController(InMemoryParkingController parkingController) {
+        super(parkingController.getClock());
+        this.parkingController = parkingController;
+    }
+
+    @Override
+    public CompletableFuture<ArrayList<ParkingReport>> getParkingReportsAsync(String reportType) {
+        LocalDate today = now().toLocalDate();
+        return generateAsync(reportType.toUpperCase(), today, today.minusDays(30), today.plusDays(1));
+    }
+
+    @Override
+    public CompletableFuture<ArrayList<ParkingReport>> generateMonthlyReportsAsync(String monthYear) {
+        LocalDate reportDate;
+        try {
+            String[] parts = monthYear.split("-");
+            reportDate = LocalDate.of(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), 1);
+        } catch (Exception e) {
+            System.out.println("Error generating monthly reports: " + e.getMessage());
+            return CompletableFuture.completedFuture(new ArrayList<>());
+        }
+        return generateAsync("ALL", reportDate, reportDate, reportDate.plusMonths(1));
+    }
+
+    @Override
+    public void shutdown() {
+        executor.shutdown();
+        super.shutdown();
+    }
+
+    /**
+     * The reports of the sessions ordered in [from, to)
+     */
+    private CompletableFuture<ArrayList<ParkingReport>> generateAsync(String reportType, LocalDate reportDate,
+                                                                      LocalDate from, LocalDate to) {
+        return CompletableFuture.supplyAsync(() -> {
+            LocalDateTime now = now();
+            List<ParkingOrder> sessions = new ArrayList<>();
+            for (ParkingOrder order : parkingController.getAllSessions()) {
+                LocalDate day = order.getOrderDate().toLocalDate();
+                if (!day.isBefore(from) && day.isBefore(to)) {
+                    sessions.add(order);
+                }
+            }
+
+            ArrayList<ParkingReport> reports = new ArrayList<>();
+            if (reportType.equals("PARKING_TIME") || reportType.equals("ALL")) {
+                reports.add(parkingTimeReport(sessions, reportDate, now));
+            }
+            if (reportType.equals("SUBSCRIBER_STATUS") || reportType.equals("ALL")) {
+                reports.add(subscriberStatusReport(sessions, reportDate, now));
+            }
+            return reports;
+        }, executor);
+    }
+
+    private static ParkingReport parkingTimeReport(List<ParkingOrder> sessions, LocalDate reportDate, LocalDateTime now) {
+        ParkingReport report = new ParkingReport("PARKING_TIME", reportDate);
+        QuantileSketch durations = new QuantileSketch();
+        QuantileSketch lateness = new QuantileSketch();
+        int late = 0;
+        int extended = 0;
+
+        for (ParkingOrder order : sessions) {
+            if (order.getEntryTime() == null || "cancelled".equals(order.getStatus())) {
+                continue;
+            }
+            durations.add(minutes(order.getEntryTime(), order.getExitTime(), now));
+            if (order.isLate()) {
+                late++;
+                lateness.add(minutes(order.getExpectedExitTime(), order.getExitTime(), now));
+            }
+            if (order.isExtended()) {
+                extended++;
+            }
+        }
+
+        report.setTotalParkings((int) durations.getCount());
+        report.setAverageParkingTime(durations.getMean());
+        report.setLateExits(late);
+        report.setExtensions(extended);
+        report.setMinParkingTime((int) durations.getMin());
+        report.setMaxParkingTime((int) durations.getMax());
+        report.setMedianParkingTime((int) durations.quantile(0.5));
+        report.setP90ParkingTime((int) durations.quantile(0.9));
+        report.setP99ParkingTime((int) durations.quantile(0.99));
+        report.setMedianLateMinutes((int) lateness.quantile(0.5));
+        report.setP90LateMinutes((int) lateness.quantile(0.9));
+        report.setP99LateMinutes((int) lateness.quantile(0.99));
+        return report;
+    }
+
+    private static ParkingReport subscriberStatusReport(List<ParkingOrder> sessions, LocalDate reportDate,
+                                                        LocalDateTime now) {
+        ParkingReport report = new ParkingReport("SUBSCRIBER_STATUS", reportDate);
+        Set<String> subscribers = new HashSet<>();
+        int orders = 0;
+        int reservations = 0;
+        int cancelled = 0;
+        long totalMinutes = 0;
+
+        for (ParkingOrder order : sessions) {
+            subscribers.add(order.getSubscriberName());
+            if ("cancelled".equals(order.getStatus())) {
+                cancelled++;
+                continue;
+            }
+            if (order.getEntryTime() == null) {
+                continue;
+            }
+            orders++;
+            if ("yes".equals(order.getOrderType())) {
+                reservations++;
+            }
+            totalMinutes += minutes(order.getEntryTime(), order.getExitTime(), now);
+        }
+
+        report.setActiveSubscribers(subscribers.size());
+        report.setTotalOrders(orders);
+        report.setReservations(reservations);
+        report.setImmediateEntries(orders - reservations);
+        report.setCancelledReservations(cancelled);
+        report.setAverageSessionDuration(orders > 0 ? (double) totalMinutes / orders : 0);
+        return report;
+    }
+
+    /**
+     * Minutes from start to end (or to now if the session is still running)
+     */
+    private static long minutes(LocalDateTime start, LocalDateTime end, LocalDateTime now) {
+        return Math.max(0, Duration.between(start, end != null ? end : now).toMinutes());
+    }
+}
@@ -7,19 +7,28 @@ import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
 import javafx.scene.chart.*;
 import javafx.scene.control.*;
+import javafx.scene.layout.GridPane;
 import javafx.animation.Timeline;
 import javafx.animation.KeyFrame;
 import javafx.util.Duration;
 import java.net.URL;
+import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.time.format.TextStyle;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
 import java.util.ResourceBundle;
+import java.util.concurrent.CompletableFuture;
 
 import client.BParkClientApp;
+import client.ExportDownloads;
+import client.ResponseCache;
 import entities.Message;
 import entities.Message.MessageType;
+import entities.OccupancyHeatmap;
 import entities.ParkingOrder;
 import entities.ParkingReport;
 
@@ -50,6 +59,8 @@ public class ManagerController implements Initializable {
     @FXML private Label lblTotalParkings;
     @FXML private Label lblLateExits;
     @FXML private Label lblExtensions;
+    @FXML private Label lblDurationPercentiles;
+    @FXML private Label lblLatePercentiles;
     @FXML private Label lblActiveSubscribers;
     @FXML private Label lblTotalOrders;
     @FXML private Label lblReservationCount;
@@ -59,9 +70,11 @@ public class ManagerController implements Initializable {
     @FXML private Label lblAutoCancelStatus;
     @FXML private ComboBox<String> comboMonth;
     @FXML private ComboBox<String> comboYear;
+    @FXML private ComboBox<String> comboExportFormat;
     @FXML private Label lblTotalUsers;
     @FXML private Label lblPeakHours;
     @FXML private Label lblAvgDailyUsage;
+    @FXML private GridPane heatmapGrid;
     
     // Embedded Attendant Controller (if using include)
     @FXML private AttendantController attendantController;
@@ -69,8 +82,16 @@ public class ManagerController implements Initializable {
     private Timeline refreshTimeline;
     private ObservableList<ParkingReport> currentReports = FXCollections.observableArrayList();
     
+    // The open manager screen, for responses that arrive through ClientMessageHandler
+    private static ManagerController instance;
+    
+    public static ManagerController getInstance() {
+        return instance;
+    }
+    
     @Override
     public void initialize(URL location, ResourceBundle resources) {
+        instance = this;
         setupUI();
         loadInitialData();
         startAutoRefresh();
@@ -103,6 +124,11 @@ public class ManagerController implements Initializable {
             comboYear.setValue(String.valueOf(currentYear));
         }
         
+        if (comboExportFormat != null) {
+            comboExportFormat.getItems().addAll("CSV", "BINARY");
+            comboExportFormat.setValue("CSV");
+        }
+        
         // Set date picker defaults
         if (datePickerFrom != null && datePickerTo != null) {
             datePickerTo.setValue(LocalDate.now());
@@ -155,6 +181,8 @@ public class ManagerController implements Initializable {
         // Load initial reports
         loadReports("ALL");
         
+        loadOccupancyHeatmap();
+        
         // Update timestamp
         updateLastRefreshTime();
     }
@@ -164,6 +192,7 @@ public class ManagerController implements Initializable {
         refreshTimeline = new Timeline(
             new KeyFrame(Duration.seconds(30), event -> {
                 checkParkingStatus();
+                loadOccupancyHeatmap();
                 updateLastRefreshTime();
             })
         );
@@ -210,22 +239,59 @@ public class ManagerController implements Initializable {
         String monthYear = String.format("%s-%02d", year, monthNum);
         
         Message msg = new Message(MessageType.GENERATE_MONTHLY_REPORTS, monthYear);
-        BParkClientApp.sendMessage(msg);
+        requestReports(msg);
+    }
+    
+    @FXML
+    private void handleExportHistory() {
+        ExportDownloads.requestExport("PARKING_HISTORY", getExportFormat(), null);
     }
     
     @FXML
+    private void handleExportReports() {
+        ExportDownloads.requestExport("REPORTS", getExportFormat(), null);
+    }
+    
+    private String getExportFormat() {
+        String format = comboExportFormat.getValue();
+        return format != null ? format : "CSV";
+    }
+    
+    @FXML
+    @SuppressWarnings("unchecked")
     private void checkParkingStatus() {
-        Message msg = new Message(MessageType.CHECK_PARKING_AVAILABILITY, null);
-        BParkClientApp.sendMessage(msg);
+        // Both requests are in flight together; the dashboard updates when both are back
+        CompletableFuture<Message> availability = 
+            BParkClientApp.sendRequest(new Message(MessageType.CHECK_PARKING_AVAILABILITY, null));
+        CompletableFuture<Message> active = 
+            BParkClientApp.sendRequest(new Message(MessageType.GET_ACTIVE_PARKINGS, null));
         
-        // Also get active parkings for statistics
-        Message activeMsg = new Message(MessageType.GET_ACTIVE_PARKINGS, null);
-        BParkClientApp.sendMessage(activeMsg);
+        availability.thenAcceptBoth(active, (spots, parkings) -> {
+            updateParkingStatus((Integer) spots.getContent());
+            updateActiveParkings((ArrayList<ParkingOrder>) parkings.getContent());
+        }).exceptionally(error -> {
+            System.out.println("Dashboard refresh failed: " + error.getMessage());
+            return null;
+        });
     }
     
     private void loadReports(String type) {
         Message msg = new Message(MessageType.MANAGER_GET_REPORTS, type);
-        BParkClientApp.sendMessage(msg);
+        requestReports(msg);
+    }
+    
+    /**
+     * Reports go through the response cache: a report that hasn't changed since
+     * the last time costs a NOT_MODIFIED instead of the whole report
+     */
+    @SuppressWarnings("unchecked")
+    private void requestReports(Message msg) {
+        ResponseCache.request(msg).thenAccept(response -> 
+            updateReports((ArrayList<ParkingReport>) response.getContent())
+        ).exceptionally(error -> {
+            System.out.println("Loading reports failed: " + error.getMessage());
+            return null;
+        });
     }
     
     // ===== UI Update Methods =====
@@ -290,6 +356,14 @@ public class ManagerController implements Initializable {
             lblExtensions.setText(String.format("%d (%.1f%%)", 
                 report.getExtensions(), report.getExtensionPercentage()));
         }
+        if (lblDurationPercentiles != null) {
+            lblDurationPercentiles.setText(String.format("%d / %d / %d min", 
+                report.getMedianParkingTime(), report.getP90ParkingTime(), report.getP99ParkingTime()));
+        }
+        if (lblLatePercentiles != null) {
+            lblLatePercentiles.setText(String.format("%d / %d / %d min", 
+                report.getMedianLateMinutes(), report.getP90LateMinutes(), report.getP99LateMinutes()));
+        }
         
         // Update parking time chart
         updateParkingTimeChart(report);
@@ -327,9 +401,6 @@ public class ManagerController implements Initializable {
             
             // Update parking types pie chart
             updateParkingTypesChart(activeParkings);
-            
-            // Calculate peak hours
-            calculatePeakHours(activeParkings);
         });
     }
     
@@ -396,12 +467,46 @@ public class ManagerController implements Initializable {
         }
     }
     
-    private void calculatePeakHours(ArrayList<ParkingOrder> parkings) {
-        // Simple peak hour calculation
-        // In real implementation, would analyze entry times
-        if (lblPeakHours != null) {
-            lblPeakHours.setText("9:00-11:00, 14:00-16:00");
-        }
+    private void loadOccupancyHeatmap() {
+        BParkClientApp.sendMessage(new Message(MessageType.GET_OCCUPANCY_HEATMAP, null));
+    }
+    
+    /**
+     * Show the occupancy heatmap: one cell per weekday and hour, darker when more cars are parked
+     */
+    public void updateHeatmap(OccupancyHeatmap heatmap) {
+        Platform.runLater(() -> {
+            if (lblPeakHours != null) {
+                List<String> peaks = heatmap.getPeakHours(3);
+                lblPeakHours.setText(peaks.isEmpty() ? "--" : String.join(", ", peaks));
+            }
+            if (heatmapGrid == null) {
+                return;
+            }
+            
+            heatmapGrid.getChildren().clear();
+            for (int hour = 0; hour < OccupancyHeatmap.HOURS; hour += 3) {
+                heatmapGrid.add(new Label(String.format("%02d", hour)), hour + 1, 0, 3, 1);
+            }
+            
+            double max = Math.max(heatmap.getMaxOccupancy(), 0.1);
+            for (DayOfWeek day : DayOfWeek.values()) {
+                int row = day.getValue();
+                heatmapGrid.add(new Label(day.getDisplayName(TextStyle.SHORT, Locale.ENGLISH)), 0, row);
+                
+                for (int hour = 0; hour < OccupancyHeatmap.HOURS; hour++) {
+                    double occupancy = heatmap.getAverageOccupancy(day, hour);
+                    Label cell = new Label();
+                    cell.setMinSize(18, 18);
+                    cell.setStyle(String.format("-fx-background-color: rgba(192, 57, 43, %.2f);", 
+                        0.05 + 0.95 * occupancy / max));
+                    cell.setTooltip(new Tooltip(String.format("%s %02d:00 - %.1f cars, %d entries, %d exits", 
+                        day.getDisplayName(TextStyle.SHORT, Locale.ENGLISH), hour, occupancy,
+                        heatmap.getEntries(day, hour), heatmap.getExits(day, hour))));
+                    heatmapGrid.add(cell, hour + 1, row);
+                }
+            }
+        });
     }
     
     private void updateLastRefreshTime() {
@@ -437,6 +542,9 @@ public class ManagerController implements Initializable {
         if (refreshTimeline != null) {
             refreshTimeline.stop();
         }
+        instance = null;
+        ResponseCache.clear();
+        BParkClientApp.setSessionToken(null);
         
         // Send logout notification
         BParkClientApp.sendStringMessage("LoggedOut " + BParkClientApp.getCurrentUser());
@@ -0,0 +1,384 @@
+package controllers;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import entities.ParkingReport;
+
+/**
+ * MonthlyReportScheduler computes the reports of every closed month once, shortly after
+ * the month ends, and keeps them in monthly_reports. Manager requests for a closed month
+ * then read the stored rows instead of generating anything.
+ *
+ * The work runs once a day in a low-traffic window (bpark.reports.precomputeHour, default 3 -
+ * 03:00) and once at startup, which backfills any month that has rollups but no stored reports.
+ * A parking event that lands in a closed month (a session ordered before the month ended and
+ * finished after it) marks that month stale; it is recomputed on the next request or run.
+ * Each report is stored as plain columns (one per ParkingReport field), so the rows stay
+ * readable by SQL and by later versions of the class.
+ */
+public class MonthlyReportScheduler implements ParkingEventListener {
+
+    private static final int PRECOMPUTE_HOUR = Integer.getInteger("bpark.reports.precomputeHour", 3);
+
+    // One row per report of a month - a month is complete when all of them are stored
+    private static final int REPORTS_PER_MONTH = 2;
+
+    private final ReportController reports;
+    private final Set<LocalDate> staleMonths = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "monthly-report-scheduler");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public MonthlyReportScheduler(ReportController reports) {
+        this.reports = reports;
+    }
+
+    // The ParkingReport fields, in the order bindReport sets them and readReport reads them
+    private static final String REPORT_COLUMNS = """
+        Report_Date, Total_Parkings, Average_Parking_Time, Late_Exits, Extensions,
+        Min_Parking_Time, Max_Parking_Time, Median_Parking_Time, P90_Parking_Time, P99_Parking_Time,
+        Median_Late_Minutes, P90_Late_Minutes, P99_Late_Minutes,
+        Active_Subscribers, Total_Orders, Reservations, Immediate_Entries, Cancelled_Reservations,
+        Average_Session_Duration""";
+    private static final int REPORT_COLUMN_COUNT = 19;
+
+    /**
+     * Create the table, backfill missing months in the background and schedule the daily run
+     */
+    public void start() {
+        String table = """
+            CREATE TABLE IF NOT EXISTS monthly_reports (
+                Report_Month DATE NOT NULL,
+                Report_Type VARCHAR(40) NOT NULL,
+                Generated_Date DATETIME NOT NULL,
+                Report_Date DATE,
+                Total_Parkings INT NOT NULL DEFAULT 0,
+                Average_Parking_Time DOUBLE NOT NULL DEFAULT 0,
+                Late_Exits INT NOT NULL DEFAULT 0,
+                Extensions INT NOT NULL DEFAULT 0,
+                Min_Parking_Time INT NOT NULL DEFAULT 0,
+                Max_Parking_Time INT NOT NULL DEFAULT 0,
+                Median_Parking_Time INT NOT NULL DEFAULT 0,
+                P90_Parking_Time INT NOT NULL DEFAULT 0,
+                P99_Parking_Time INT NOT NULL DEFAULT 0,
+                Median_Late_Minutes INT NOT NULL DEFAULT 0,
+                P90_Late_Minutes INT NOT NULL DEFAULT 0,
+                P99_Late_Minutes INT NOT NULL DEFAULT 0,
+                Active_Subscribers INT NOT NULL DEFAULT 0,
+                Total_Orders INT NOT NULL DEFAULT 0,
+                Reservations INT NOT NULL DEFAULT 0,
+                Immediate_Entries INT NOT NULL DEFAULT 0,
+                Cancelled_Reservations INT NOT NULL DEFAULT 0,
+                Average_Session_Duration DOUBLE NOT NULL DEFAULT 0,
+                PRIMARY KEY (Report_Month, Report_Type)
+            )
+            """;
+
+        Connection connection = null;
+        try {
+            connection = reports.borrowConnection();
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute(table);
+            }
+        } catch (SQLException e) {
+            System.out.println("Error creating monthly_reports table: " + e.getMessage());
+            return;
+        } finally {
+            reports.releaseConnection(connection);
+        }
+
+        timer.execute(this::precomputeMissingMonths);
+
+        // The timer itself runs on wall time, whatever clock the reports use
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime nextRun = now.toLocalDate().atTime(PRECOMPUTE_HOUR, 0);
+        if (!nextRun.isAfter(now)) {
+            nextRun = nextRun.plusDays(1);
+        }
+        timer.scheduleAtFixedRate(this::precomputeMissingMonths, Duration.between(now, nextRun).toMinutes(),
+                                  TimeUnit.DAYS.toMinutes(1), TimeUnit.MINUTES);
+        System.out.println("Monthly reports scheduled daily at " + String.format("%02d:00", PRECOMPUTE_HOUR));
+    }
+
+    public void shutdown() {
+        timer.shutdownNow();
+    }
+
+    /**
+     * A month is closed once the current month has started
+     */
+    public boolean isClosedMonth(LocalDate month) {
+        return month.withDayOfMonth(1).isBefore(reports.now().toLocalDate().withDayOfMonth(1));
+    }
+
+    @Override
+    public void onParkingEvent(ParkingEvent event) {
+        if (event.getType() == ParkingEvent.Type.ENTRY) {
+            return;    // monthly reports only count finished and cancelled sessions
+        }
+        LocalDate month = event.getOrderDate().withDayOfMonth(1);
+        if (isClosedMonth(month)) {
+            staleMonths.add(month);
+        }
+    }
+
+    /**
+     * The reports of a closed month - the stored rows, or computed (and stored) if they are missing or stale
+     */
+    public CompletableFuture<ArrayList<ParkingReport>> getMonthlyReportsAsync(LocalDate month) {
+        LocalDate firstDay = month.withDayOfMonth(1);
+        return CompletableFuture.supplyAsync(() -> staleMonths.contains(firstDay) ? null : loadMonth(firstDay),
+                                             reports.getReportExecutor())
+            .thenCompose(stored -> stored != null && stored.size() == REPORTS_PER_MONTH
+                ? CompletableFuture.completedFuture(stored)
+                : precompute(firstDay));
+    }
+
+    /**
+     * Compute a month's reports and store them if all of them were generated
+     */
+    public CompletableFuture<ArrayList<ParkingReport>> precompute(LocalDate month) {
+        LocalDate firstDay = month.withDayOfMonth(1);
+        // Cleared before computing, so an event that arrives meanwhile marks it stale again
+        staleMonths.remove(firstDay);
+        return reports.computeMonthlyReportsAsync(firstDay).thenApply(monthlyReports -> {
+            if (monthlyReports.size() == REPORTS_PER_MONTH) {
+                storeMonth(firstDay, monthlyReports);
+            }
+            return monthlyReports;
+        });
+    }
+
+    /**
+     * Compute every closed month that has parking activity but no stored reports, and every stale month
+     */
+    private void precomputeMissingMonths() {
+        TreeSet<LocalDate> months = new TreeSet<>(staleMonths);
+        months.addAll(findMissingMonths());
+        if (months.isEmpty()) {
+            return;
+        }
+
+        System.out.println("Precomputing monthly reports for " + months.size() + " month(s)...");
+        int stored = 0;
+        for (LocalDate month : months) {
+            try {
+                // One month at a time so the batch never takes more than one report worker per report
+                if (precompute(month).join().size() == REPORTS_PER_MONTH) {
+                    stored++;
+                }
+            } catch (Exception e) {
+                System.out.println("Error precomputing reports for " + month + ": " + e.getMessage());
+            }
+        }
+        System.out.println("Monthly reports stored for " + stored + "/" + months.size() + " month(s)");
+    }
+
+    /**
+     * Closed months from the first rollup day to last month that don't have all their reports stored
+     */
+    private List<LocalDate> findMissingMonths() {
+        List<LocalDate> missing = new ArrayList<>();
+        String firstDayQry = "SELECT MIN(Rollup_Date) FROM parking_daily_rollup";
+        String storedQry = """
+            SELECT Report_Month FROM monthly_reports
+            GROUP BY Report_Month
+            HAVING COUNT(*) >= ?
+            """;
+
+        Connection connection = null;
+        try {
+            connection = reports.borrowConnection();
+
+            LocalDate first = null;
+            try (Statement stmt = connection.createStatement();
+                 ResultSet rs = stmt.executeQuery(firstDayQry)) {
+                if (rs.next() && rs.getDate(1) != null) {
+                    first = rs.getDate(1).toLocalDate().withDayOfMonth(1);
+                }
+            }
+            if (first == null) {
+                return missing;
+            }
+
+            Set<LocalDate> stored = new TreeSet<>();
+            try (PreparedStatement stmt = connection.prepareStatement(storedQry)) {
+                stmt.setInt(1, REPORTS_PER_MONTH);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        stored.add(rs.getDate("Report_Month").toLocalDate());
+                    }
+                }
+            }
+
+            for (LocalDate month = first; isClosedMonth(month); month = month.plusMonths(1)) {
+                if (!stored.contains(month)) {
+                    missing.add(month);
+                }
+            }
+        } catch (SQLException e) {
+            System.out.println("Error finding months without reports: " + e.getMessage());
+        } finally {
+            reports.releaseConnection(connection);
+        }
+        return missing;
+    }
+
+    private ArrayList<ParkingReport> loadMonth(LocalDate month) {
+        return loadStoredReports(null, month, month);
+    }
+
+    /**
+     * Stored reports whose month is between the months of fromDate and toDate
+     * @param reportType only this type, or null for all of them
+     */
+    public ArrayList<ParkingReport> loadStoredReports(String reportType, LocalDate fromDate, LocalDate toDate) {
+        ArrayList<ParkingReport> stored = new ArrayList<>();
+        String qry = "SELECT Report_Type, " + REPORT_COLUMNS + """
+             FROM monthly_reports
+            WHERE Report_Month BETWEEN ? AND ?
+            AND (? IS NULL OR Report_Type = ?)
+            ORDER BY Report_Month DESC, Report_Type
+            """;
+
+        Connection connection = null;
+        try {
+            connection = reports.borrowConnection();
+            try (PreparedStatement stmt = connection.prepareStatement(qry)) {
+                stmt.setObject(1, fromDate.withDayOfMonth(1));
+                stmt.setObject(2, toDate.withDayOfMonth(1));
+                stmt.setString(3, reportType);
+                stmt.setString(4, reportType);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        stored.add(readReport(rs));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            System.out.println("Error loading stored monthly reports: " + e.getMessage());
+        } finally {
+            reports.releaseConnection(connection);
+        }
+        return stored;
+    }
+
+    private void storeMonth(LocalDate month, List<ParkingReport> monthlyReports) {
+        StringBuilder updates = new StringBuilder("Generated_Date = VALUES(Generated_Date)");
+        for (String column : REPORT_COLUMNS.split(",")) {
+            updates.append(", ").append(column.trim()).append(" = VALUES(").append(column.trim()).append(")");
+        }
+        String qry = "INSERT INTO monthly_reports (Report_Month, Report_Type, Generated_Date, " + REPORT_COLUMNS + ")"
+                   + " VALUES (?, ?, ?" + ", ?".repeat(REPORT_COLUMN_COUNT) + ")"
+                   + " ON DUPLICATE KEY UPDATE " + updates;
+
+        boolean firstTime;
+        Connection connection = null;
+        try {
+            connection = reports.borrowConnection();
+            try (PreparedStatement stmt = connection.prepareStatement(
+                    "SELECT COUNT(*) FROM monthly_reports WHERE Report_Month = ?")) {
+                stmt.setObject(1, month);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    firstTime = !rs.next() || rs.getInt(1) == 0;
+                }
+            }
+            try (PreparedStatement stmt = connection.prepareStatement(qry)) {
+                for (ParkingReport report : monthlyReports) {
+                    stmt.setObject(1, month);
+                    stmt.setString(2, report.getReportType());
+                    stmt.setTimestamp(3, Timestamp.valueOf(reports.now()));
+                    bindReport(stmt, 4, report);
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+            }
+        } catch (SQLException e) {
+            System.out.println("Error storing reports for " + month + ": " + e.getMessage());
+            return;
+        } finally {
+            reports.releaseConnection(connection);
+        }
+
+        // Keep the generation log in the reports table as before - one entry per month, not per recompute
+        if (firstTime) {
+            reports.storeMonthlyReports(new ArrayList<>(monthlyReports));
+        }
+    }
+
+    /**
+     * Set the REPORT_COLUMNS parameters of a statement, starting at parameter index first
+     */
+    private static void bindReport(PreparedStatement stmt, int first, ParkingReport report) throws SQLException {
+        int i = first;
+        stmt.setObject(i++, report.getReportDate());
+        stmt.setInt(i++, report.getTotalParkings());
+        stmt.setDouble(i++, report.getAverageParkingTime());
+        stmt.setInt(i++, report.getLateExits());
+        stmt.setInt(i++, report.getExtensions());
+        stmt.setInt(i++, report.getMinParkingTime());
+        stmt.setInt(i++, report.getMaxParkingTime());
+        stmt.setInt(i++, report.getMedianParkingTime());
+        stmt.setInt(i++, report.getP90ParkingTime());
+        stmt.setInt(i++, report.getP99ParkingTime());
+        stmt.setInt(i++, report.getMedianLateMinutes());
+        stmt.setInt(i++, report.getP90LateMinutes());
+        stmt.setInt(i++, report.getP99LateMinutes());
+        stmt.setInt(i++, report.getActiveSubscribers());
+        stmt.setInt(i++, report.getTotalOrders());
+        stmt.setInt(i++, report.getReservations());
+        stmt.setInt(i++, report.getImmediateEntries());
+        stmt.setInt(i++, report.getCancelledReservations());
+        stmt.setDouble(i++, report.getAverageSessionDuration());
+    }
+
+    private static ParkingReport readReport(ResultSet rs) throws SQLException {
+        Date reportDate = rs.getDate("Report_Date");
+        ParkingReport report = new ParkingReport(rs.getString("Report_Type"),
+                                                 reportDate != null ? reportDate.toLocalDate() : null);
+        report.setTotalParkings(rs.getInt("Total_Parkings"));
+        report.setAverageParkingTime(rs.getDouble("Average_Parking_Time"));
+        report.setLateExits(rs.getInt("Late_Exits"));
+        report.setExtensions(rs.getInt("Extensions"));
+        report.setMinParkingTime(rs.getInt("Min_Parking_Time"));
+        report.setMaxParkingTime(rs.getInt("Max_Parking_Time"));
+        report.setMedianParkingTime(rs.getInt("Median_Parking_Time"));
+        report.setP90ParkingTime(rs.getInt("P90_Parking_Time"));
+        report.setP99ParkingTime(rs.getInt("P99_Parking_Time"));
+        report.setMedianLateMinutes(rs.getInt("Median_Late_Minutes"));
+        report.setP90LateMinutes(rs.getInt("P90_Late_Minutes"));
+        report.setP99LateMinutes(rs.getInt("P99_Late_Minutes"));
+        report.setActiveSubscribers(rs.getInt("Active_Subscribers"));
+        report.setTotalOrders(rs.getInt("Total_Orders"));
+        report.setReservations(rs.getInt("Reservations"));
+        report.setImmediateEntries(rs.getInt("Immediate_Entries"));
+        report.setCancelledReservations(rs.getInt("Cancelled_Reservations"));
+        report.setAverageSessionDuration(rs.getDouble("Average_Session_Duration"));
+        return report;
+    }
+
+    public String getStatus() {
+        return "Monthly reports - stale months: " + staleMonths.size() + ", daily run at "
+             + String.format("%02d:00", PRECOMPUTE_HOUR);
+    }
+}
@@ -0,0 +1,248 @@
+package controllers;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import entities.OccupancyHeatmap;
+
+/**
+ * OccupancyTracker keeps entries, exits and occupied time per hour for the last
+ * WINDOW_DAYS days in flat primitive arrays (one row of 24 cells per day, used as a ring:
+ * a day's row is cleared when the ring comes back to it).
+ *
+ * Loaded once from parkinginfo at startup and then updated by ENTRY/EXIT/CANCEL events,
+ * so the 7x24 heatmap is folded from memory without touching the database.
+ * Sessions still parked are kept aside and counted up to "now" when a heatmap is built.
+ */
+public class OccupancyTracker implements ParkingEventListener {
+
+    public static final int WINDOW_DAYS = 28;
+    private static final int HOURS = 24;
+
+    // Row d covers the day slotDay[d]; cell d * 24 + h is hour h of that day
+    private final long[] slotDay = new long[WINDOW_DAYS];
+    private final int[] entries = new int[WINDOW_DAYS * HOURS];
+    private final int[] exits = new int[WINDOW_DAYS * HOURS];
+    private final long[] occupiedSeconds = new long[WINDOW_DAYS * HOURS];
+
+    // Sessions that entered and haven't left, by ParkingInfo_ID
+    private final Map<Integer, LocalDateTime> parked = new HashMap<>();
+
+    // Events are held back until the initial load is done
+    private final List<ParkingEvent> pendingEvents = new ArrayList<>();
+    private volatile boolean loaded = false;
+
+    // Source of "today" for the window and of "now" for the cars still parked
+    private volatile Clock clock = Clock.systemDefaultZone();
+
+    public OccupancyTracker() {
+        Arrays.fill(slotDay, Long.MIN_VALUE);
+    }
+
+    /**
+     * Replay the sessions that touch the window (streamed, one row at a time)
+     */
+    public void load(Connection connection) {
+        String qry = """
+            SELECT ParkingInfo_ID, Actual_start_time, Actual_end_time, statusEnum
+            FROM parkinginfo
+            WHERE Actual_start_time IS NOT NULL
+            AND (Actual_end_time >= ? OR (Actual_end_time IS NULL AND statusEnum = 'active'))
+            """;
+
+        long start = System.currentTimeMillis();
+        BitSet seenEntry = new BitSet();
+        BitSet seenExit = new BitSet();
+        try (PreparedStatement stmt = connection.prepareStatement(qry, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            stmt.setFetchSize(Integer.MIN_VALUE);    // MySQL: stream rows one by one
+            stmt.setTimestamp(1, Timestamp.valueOf(windowStart().atStartOfDay()));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    int id = rs.getInt("ParkingInfo_ID");
+                    LocalDateTime entered = rs.getTimestamp("Actual_start_time").toLocalDateTime();
+                    Timestamp endTime = rs.getTimestamp("Actual_end_time");
+
+                    seenEntry.set(id);
+                    synchronized (this) {
+                        addEntry(id, entered);
+                        if (endTime != null) {
+                            seenExit.set(id);
+                            addExit(id, entered, endTime.toLocalDateTime());
+                        }
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            System.out.println("Error loading occupancy tracker: " + e.getMessage());
+        }
+
+        synchronized (this) {
+            // Apply events from before/during the load that the load didn't already see
+            for (ParkingEvent event : pendingEvents) {
+                boolean seen = event.getType() == ParkingEvent.Type.ENTRY ? seenEntry.get(event.getParkingInfoId())
+                                                                          : seenExit.get(event.getParkingInfoId());
+                if (!seen) {
+                    apply(event);
+                }
+            }
+            pendingEvents.clear();
+            loaded = true;
+        }
+
+        System.out.println("Occupancy tracker loaded: " + parked.size() + " cars parked, " + WINDOW_DAYS +
+                           " day window in " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Replace the system clock (ReportController.setClock)
+     */
+    public void setClock(Clock clock) {
+        this.clock = clock;
+    }
+
+    @Override
+    public synchronized void onParkingEvent(ParkingEvent event) {
+        if (event.getStartTime() == null) {
+            return;    // a reservation cancelled before the car arrived
+        }
+        if (loaded) {
+            apply(event);
+        } else {
+            pendingEvents.add(event);
+        }
+    }
+
+    private void apply(ParkingEvent event) {
+        if (event.getType() == ParkingEvent.Type.ENTRY) {
+            addEntry(event.getParkingInfoId(), event.getStartTime());
+        } else if (event.getEndTime() != null) {
+            addExit(event.getParkingInfoId(), event.getStartTime(), event.getEndTime());
+        } else {
+            parked.remove(event.getParkingInfoId());    // ended without an exit time - stop counting it
+        }
+    }
+
+    private void addEntry(int parkingInfoId, LocalDateTime entered) {
+        int cell = cellOf(entered);
+        if (cell >= 0) {
+            entries[cell]++;
+        }
+        parked.put(parkingInfoId, entered);
+    }
+
+    private void addExit(int parkingInfoId, LocalDateTime entered, LocalDateTime left) {
+        int cell = cellOf(left);
+        if (cell >= 0) {
+            exits[cell]++;
+        }
+        addOccupancy(occupiedSeconds, entered, left);
+        parked.remove(parkingInfoId);
+    }
+
+    /**
+     * Spread [from, to) over the hour cells it covers (parts outside the window are dropped)
+     */
+    private void addOccupancy(long[] target, LocalDateTime from, LocalDateTime to) {
+        LocalDateTime windowStart = windowStart().atStartOfDay();
+        LocalDateTime cursor = from.isBefore(windowStart) ? windowStart : from;
+        while (cursor.isBefore(to)) {
+            LocalDateTime hourEnd = cursor.truncatedTo(ChronoUnit.HOURS).plusHours(1);
+            LocalDateTime end = hourEnd.isBefore(to) ? hourEnd : to;
+            int cell = cellOf(cursor);
+            if (cell >= 0) {
+                target[cell] += ChronoUnit.SECONDS.between(cursor, end);
+            }
+            cursor = end;
+        }
+    }
+
+    /**
+     * The ring cell of a moment, claiming (and clearing) its day's row if needed.
+     * @return -1 if the moment is outside the window
+     */
+    private int cellOf(LocalDateTime time) {
+        long day = time.toLocalDate().toEpochDay();
+        if (day < windowStart().toEpochDay()) {
+            return -1;
+        }
+        int row = (int) Math.floorMod(day, (long) WINDOW_DAYS);
+        if (slotDay[row] != day) {
+            if (slotDay[row] > day) {
+                return -1;    // the row already holds a later day
+            }
+            slotDay[row] = day;
+            Arrays.fill(entries, row * HOURS, (row + 1) * HOURS, 0);
+            Arrays.fill(exits, row * HOURS, (row + 1) * HOURS, 0);
+            Arrays.fill(occupiedSeconds, row * HOURS, (row + 1) * HOURS, 0L);
+        }
+        return row * HOURS + time.getHour();
+    }
+
+    private LocalDate windowStart() {
+        return LocalDate.now(clock).minusDays(WINDOW_DAYS - 1);
+    }
+
+    /**
+     * Fold the window into a day-of-week x hour heatmap.
+     * Occupancy is averaged over the days of the window that fell on each weekday.
+     */
+    public synchronized OccupancyHeatmap getHeatmap() {
+        LocalDateTime now = LocalDateTime.now(clock);
+        OccupancyHeatmap heatmap = new OccupancyHeatmap(WINDOW_DAYS, now);
+
+        // Claim the rows up to today first, so clearing a recycled row can't leave stale data in the copy
+        LocalDate windowStart = now.toLocalDate().minusDays(WINDOW_DAYS - 1);
+        for (LocalDate day = windowStart; !day.isAfter(now.toLocalDate()); day = day.plusDays(1)) {
+            cellOf(day.atStartOfDay());
+        }
+
+        // Cars still parked count up to now
+        long[] occupied = occupiedSeconds.clone();
+        for (LocalDateTime entered : parked.values()) {
+            addOccupancy(occupied, entered, now);
+        }
+
+        long firstDay = windowStart.toEpochDay();
+        long today = now.toLocalDate().toEpochDay();
+        int[] daysPerWeekday = new int[OccupancyHeatmap.DAYS];
+        for (long day = firstDay; day <= today; day++) {
+            daysPerWeekday[LocalDate.ofEpochDay(day).getDayOfWeek().getValue() - 1]++;
+        }
+
+        for (int row = 0; row < WINDOW_DAYS; row++) {
+            long day = slotDay[row];
+            if (day < firstDay || day > today) {
+                continue;
+            }
+            int weekday = LocalDate.ofEpochDay(day).getDayOfWeek().getValue() - 1;
+            for (int hour = 0; hour < HOURS; hour++) {
+                int cell = row * HOURS + hour;
+                heatmap.getEntries()[weekday][hour] += entries[cell];
+                heatmap.getExits()[weekday][hour] += exits[cell];
+                heatmap.getAverageOccupancy()[weekday][hour] += occupied[cell] / 3600.0 / daysPerWeekday[weekday];
+            }
+        }
+        return heatmap;
+    }
+
+    public synchronized int getParkedCount() {
+        return parked.size();
+    }
+}
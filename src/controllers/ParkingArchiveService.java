@@ -0,0 +1,387 @@
+package controllers;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ParkingArchiveService moves finished and cancelled sessions older than
+ * bpark.archive.ageDays (default 90) out of parkinginfo into one table per order month,
+ * parkinginfo_archive_YYYYMM, so the gate queries only scan recent rows.
+ *
+ * Rows move in batches of bpark.archive.batchSize (default 1000), each batch in its own
+ * transaction on a dedicated connection, with a short pause between batches.
+ * The job runs daily at bpark.archive.hour (default 04:00).
+ *
+ * History reads go through the parkinginfo_all view (parkinginfo plus every archive table),
+ * which is recreated whenever a new archive month appears. Paged per-user history reads
+ * the tables one by one instead (getArchiveTables), each through the
+ * (User_ID, Date_Of_Placing_Order, ParkingInfo_ID) index that archive tables copy from parkinginfo.
+ */
+public class ParkingArchiveService {
+
+    public static final String HISTORY_VIEW = "parkinginfo_all";
+    public static final String HISTORY_INDEX = "idx_user_history";
+
+    // Live reports and the occupancy window look back 30 days - never archive anything they read
+    private static final int MIN_AGE_DAYS = 35;
+    private static final int ARCHIVE_AGE_DAYS = Math.max(MIN_AGE_DAYS, Integer.getInteger("bpark.archive.ageDays", 90));
+    private static final int BATCH_SIZE = Integer.getInteger("bpark.archive.batchSize", 1000);
+    private static final int ARCHIVE_HOUR = Integer.getInteger("bpark.archive.hour", 4);
+    private static final long BATCH_PAUSE_MILLIS = 200;
+    private static final int PROBE_RUNS = 5;
+
+    private final Connection conn;
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "parking-archiver");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Statistics - volatile, so getStatus never waits for a run in progress
+    private volatile long archivedRows = 0;
+    private volatile LocalDateTime lastRun;
+    private volatile String lastProbe = "not measured";
+
+    // Archive tables, newest month first - refreshed with the view
+    private volatile List<String> archiveTables = Collections.emptyList();
+
+    // Source of "now" for the archive cutoff (the daily timer itself runs on wall time)
+    private volatile Clock clock = Clock.systemDefaultZone();
+
+    public ParkingArchiveService(String url, String pass) throws SQLException {
+        this.conn = DriverManager.getConnection(url, "root", pass);
+    }
+
+    /**
+     * Replace the system clock (ParkingController.setClock)
+     */
+    public void setClock(Clock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Make sure the history index and view exist (run before anything reads history)
+     */
+    public void initialize() {
+        try {
+            ensureHistoryIndex();
+        } catch (SQLException e) {
+            System.out.println("Error creating " + HISTORY_INDEX + " index: " + e.getMessage());
+        }
+        try {
+            refreshHistoryView();
+        } catch (SQLException e) {
+            System.out.println("Error creating " + HISTORY_VIEW + " view: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Schedule the daily archive run
+     */
+    public void start() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime nextRun = now.toLocalDate().atTime(ARCHIVE_HOUR, 0);
+        if (!nextRun.isAfter(now)) {
+            nextRun = nextRun.plusDays(1);
+        }
+        timer.scheduleAtFixedRate(this::archiveNow, Duration.between(now, nextRun).toMinutes(),
+                                  TimeUnit.DAYS.toMinutes(1), TimeUnit.MINUTES);
+        timer.execute(() -> lastProbe = measureHotPath());
+        System.out.println("Parking archive scheduled daily at " + String.format("%02d:00", ARCHIVE_HOUR) +
+                           " (sessions older than " + ARCHIVE_AGE_DAYS + " days)");
+    }
+
+    public void shutdown() {
+        timer.shutdownNow();
+        try {
+            conn.close();
+        } catch (SQLException e) {
+            System.out.println("Error closing archive connection: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Archive everything past the cutoff, one batch at a time (one run at a time)
+     * @return number of rows moved
+     */
+    public synchronized int archiveNow() {
+        LocalDateTime cutoff = LocalDateTime.now(clock).minusDays(ARCHIVE_AGE_DAYS);
+        String before = measureHotPath();
+        long start = System.currentTimeMillis();
+        int moved = 0;
+
+        try {
+            int batch;
+            do {
+                batch = archiveBatch(cutoff);
+                moved += batch;
+                if (batch == BATCH_SIZE) {
+                    Thread.sleep(BATCH_PAUSE_MILLIS);    // let the gate operations through
+                }
+            } while (batch == BATCH_SIZE);
+        } catch (SQLException e) {
+            System.out.println("Error archiving parking sessions: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        archivedRows += moved;
+        lastRun = LocalDateTime.now(clock);
+        lastProbe = measureHotPath();
+        if (moved > 0) {
+            System.out.println("Archived " + moved + " parking sessions in " + (System.currentTimeMillis() - start) + " ms");
+            System.out.println("   hot path before: " + before);
+            System.out.println("   hot path after:  " + lastProbe);
+        }
+        return moved;
+    }
+
+    /**
+     * Move one batch of old sessions, grouped by order month, in a single transaction
+     * @return number of rows moved
+     */
+    private int archiveBatch(LocalDateTime cutoff) throws SQLException {
+        String selectQry = """
+            SELECT ParkingInfo_ID, DATE_FORMAT(Date_Of_Placing_Order, '%Y%m') as Archive_Month
+            FROM parkinginfo
+            WHERE statusEnum IN ('finished', 'cancelled')
+            AND Date_Of_Placing_Order < ?
+            ORDER BY ParkingInfo_ID
+            LIMIT ?
+            """;
+
+        Map<String, List<Integer>> byMonth = new TreeMap<>();
+        int rows = 0;
+        try (PreparedStatement stmt = conn.prepareStatement(selectQry)) {
+            stmt.setTimestamp(1, Timestamp.valueOf(cutoff));
+            stmt.setInt(2, BATCH_SIZE);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    byMonth.computeIfAbsent(rs.getString("Archive_Month"), m -> new ArrayList<>())
+                           .add(rs.getInt("ParkingInfo_ID"));
+                    rows++;
+                }
+            }
+        }
+        if (rows == 0) {
+            return 0;
+        }
+
+        // DDL commits implicitly in MySQL, so the tables are created before the transaction starts
+        boolean newTable = false;
+        for (String month : byMonth.keySet()) {
+            newTable |= createArchiveTable(month);
+        }
+        if (newTable) {
+            refreshHistoryView();
+        }
+
+        conn.setAutoCommit(false);
+        try {
+            for (Map.Entry<String, List<Integer>> entry : byMonth.entrySet()) {
+                List<Integer> ids = entry.getValue();
+                String placeholders = String.join(",", Collections.nCopies(ids.size(), "?"));
+
+                int copied;
+                try (PreparedStatement stmt = conn.prepareStatement(
+                        "INSERT INTO " + archiveTable(entry.getKey()) + " SELECT * FROM parkinginfo WHERE ParkingInfo_ID IN (" + placeholders + ")")) {
+                    bindIds(stmt, ids);
+                    copied = stmt.executeUpdate();
+                }
+
+                int deleted;
+                try (PreparedStatement stmt = conn.prepareStatement(
+                        "DELETE FROM parkinginfo WHERE statusEnum IN ('finished', 'cancelled') AND ParkingInfo_ID IN (" + placeholders + ")")) {
+                    bindIds(stmt, ids);
+                    deleted = stmt.executeUpdate();
+                }
+
+                if (copied != ids.size() || deleted != ids.size()) {
+                    throw new SQLException("Archive batch for " + entry.getKey() + " changed under us (" +
+                                           copied + " copied, " + deleted + " deleted, " + ids.size() + " expected)");
+                }
+            }
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+        return rows;
+    }
+
+    private static void bindIds(PreparedStatement stmt, List<Integer> ids) throws SQLException {
+        for (int i = 0; i < ids.size(); i++) {
+            stmt.setInt(i + 1, ids.get(i));
+        }
+    }
+
+    private static String archiveTable(String month) {
+        return "parkinginfo_archive_" + month;
+    }
+
+    /**
+     * @return true if the table did not exist before
+     */
+    private boolean createArchiveTable(String month) throws SQLException {
+        if (listArchiveTables().contains(archiveTable(month))) {
+            return false;
+        }
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS " + archiveTable(month) + " LIKE parkinginfo");
+        }
+        System.out.println("Created archive table " + archiveTable(month));
+        return true;
+    }
+
+    private List<String> listArchiveTables() throws SQLException {
+        String qry = """
+            SELECT TABLE_NAME FROM information_schema.TABLES
+            WHERE TABLE_SCHEMA = DATABASE()
+            AND TABLE_NAME LIKE 'parkinginfo\\_archive\\_%'
+            ORDER BY TABLE_NAME
+            """;
+
+        List<String> tables = new ArrayList<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(qry)) {
+            while (rs.next()) {
+                tables.add(rs.getString(1));
+            }
+        }
+        return tables;
+    }
+
+    /**
+     * parkinginfo_all = archive months, oldest first, then the hot table
+     */
+    private void refreshHistoryView() throws SQLException {
+        List<String> tables = listArchiveTables();
+        StringBuilder view = new StringBuilder("CREATE OR REPLACE VIEW " + HISTORY_VIEW + " AS ");
+        for (String table : tables) {
+            view.append("SELECT * FROM ").append(table).append(" UNION ALL ");
+        }
+        view.append("SELECT * FROM parkinginfo");
+
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(view.toString());
+        }
+
+        List<String> newestFirst = new ArrayList<>(tables);
+        Collections.reverse(newestFirst);
+        archiveTables = Collections.unmodifiableList(newestFirst);
+    }
+
+    /**
+     * Add the per-user history index to parkinginfo and to archive tables created before it
+     * (new archive tables get it from parkinginfo through CREATE TABLE ... LIKE)
+     */
+    private void ensureHistoryIndex() throws SQLException {
+        String indexedQry = """
+            SELECT DISTINCT TABLE_NAME FROM information_schema.STATISTICS
+            WHERE TABLE_SCHEMA = DATABASE() AND INDEX_NAME = ?
+            """;
+
+        List<String> indexed = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement(indexedQry)) {
+            stmt.setString(1, HISTORY_INDEX);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    indexed.add(rs.getString(1));
+                }
+            }
+        }
+
+        List<String> tables = new ArrayList<>(listArchiveTables());
+        tables.add(0, "parkinginfo");
+        for (String table : tables) {
+            if (indexed.contains(table)) {
+                continue;
+            }
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("CREATE INDEX " + HISTORY_INDEX + " ON " + table +
+                             " (User_ID, Date_Of_Placing_Order, ParkingInfo_ID)");
+            }
+            System.out.println("Created index " + HISTORY_INDEX + " on " + table);
+        }
+    }
+
+    /**
+     * The archive tables (parkinginfo_archive_YYYYMM), newest month first
+     */
+    public List<String> getArchiveTables() {
+        return archiveTables;
+    }
+
+    /**
+     * Time the queries every gate operation runs against parkinginfo (median of a few runs)
+     */
+    public String measureHotPath() {
+        String activeQry = "SELECT COUNT(*) FROM parkinginfo WHERE statusEnum IN ('preorder', 'active')";
+        String overlapQry = """
+            SELECT COUNT(DISTINCT ParkingSpot_ID) FROM parkinginfo
+            WHERE statusEnum IN ('preorder', 'active')
+            AND Estimated_start_time < ? AND Estimated_end_time > ?
+            """;
+
+        try {
+            long hotRows;
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM parkinginfo")) {
+                rs.next();
+                hotRows = rs.getLong(1);
+            }
+
+            double[] active = new double[PROBE_RUNS];
+            double[] overlap = new double[PROBE_RUNS];
+            LocalDateTime now = LocalDateTime.now(clock);
+            for (int i = 0; i < PROBE_RUNS; i++) {
+                long start = System.nanoTime();
+                try (Statement stmt = conn.createStatement();
+                     ResultSet rs = stmt.executeQuery(activeQry)) {
+                    rs.next();
+                }
+                active[i] = (System.nanoTime() - start) / 1_000_000.0;
+
+                start = System.nanoTime();
+                try (PreparedStatement stmt = conn.prepareStatement(overlapQry)) {
+                    stmt.setTimestamp(1, Timestamp.valueOf(now.plusHours(4)));
+                    stmt.setTimestamp(2, Timestamp.valueOf(now));
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        rs.next();
+                    }
+                }
+                overlap[i] = (System.nanoTime() - start) / 1_000_000.0;
+            }
+            Arrays.sort(active);
+            Arrays.sort(overlap);
+            return String.format("%d hot rows, active scan %.2f ms, overlap check %.2f ms",
+                                 hotRows, active[PROBE_RUNS / 2], overlap[PROBE_RUNS / 2]);
+        } catch (SQLException e) {
+            return "probe failed: " + e.getMessage();
+        }
+    }
+
+    public String getStatus() {
+        return "Parking archive - " + archivedRows + " rows archived since start, last run: " +
+               (lastRun != null ? lastRun.withNano(0) : "never") + ", hot path: " + lastProbe;
+    }
+}
@@ -6,11 +6,18 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.time.Clock;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
 
+import entities.ParkingHistoryPage;
 import entities.ParkingOrder;
 import entities.ParkingSubscriber;
 import services.EmailService;
@@ -97,6 +104,18 @@ public class ParkingController {
     
     // Enhanced monitoring service (auto-cancellation + late pickup detection)
     private SimpleAutoCancellationService autoCancellationService;
+    
+    // Moves old finished/cancelled sessions out of parkinginfo
+    private ParkingArchiveService archiveService;
+    
+    // Listeners notified after a parking session changes state (rollups, caches)
+    private final List<ParkingEventListener> eventListeners = new CopyOnWriteArrayList<>();
+    
+    // Versioned active-session list for the attendant screens (created on first use)
+    private volatile ActiveParkingsTracker activeParkingsTracker;
+    
+    // Source of "now" for every time rule (24h/7d window, late exits, 15-minute grace)
+    private volatile Clock clock = Clock.systemDefaultZone();
 
     public ParkingController(String dbname, String pass) {
         String connectPath = "jdbc:mysql://localhost/" + dbname + "?serverTimezone=IST";
@@ -106,13 +125,75 @@ public class ParkingController {
         if (successFlag == 1) {
             this.autoCancellationService = new SimpleAutoCancellationService(this);
             startAutoCancellationService();
+            
+            try {
+                archiveService = new ParkingArchiveService(connectPath, pass);
+                archiveService.initialize();
+                archiveService.start();
+            } catch (SQLException e) {
+                System.out.println("Parking archive unavailable: " + e.getMessage());
+            }
         }
     }
 
+    /**
+     * No database yet - for subclasses that keep the data elsewhere (InMemoryParkingController)
+     * and for EmbeddedParkingDatabase, which connects it to an embedded store
+     */
+    protected ParkingController() {
+    }
+
+    /**
+     * The archive job (null if it couldn't connect)
+     */
+    public ParkingArchiveService getArchiveService() {
+        return archiveService;
+    }
+
+    /**
+     * Changes to the active sessions since a client's version
+     */
+    public ActiveParkingsTracker getActiveParkingsTracker() {
+        ActiveParkingsTracker tracker = activeParkingsTracker;
+        if (tracker == null) {
+            synchronized (eventListeners) {
+                tracker = activeParkingsTracker;
+                if (tracker == null) {
+                    // Starts out of date, so its first delta reloads the list - no event is missed
+                    tracker = new ActiveParkingsTracker(this);
+                    addParkingEventListener(tracker);
+                    activeParkingsTracker = tracker;
+                }
+            }
+        }
+        return tracker;
+    }
+
     public Connection getConnection() {
         return conn;
     }
 
+    public Clock getClock() {
+        return clock;
+    }
+
+    /**
+     * Replace the system clock, e.g. with a SimulatedClock to run a day in seconds
+     */
+    public void setClock(Clock clock) {
+        this.clock = clock;
+        if (archiveService != null) {
+            archiveService.setClock(clock);
+        }
+    }
+
+    /**
+     * The current time on this controller's clock
+     */
+    protected LocalDateTime now() {
+        return LocalDateTime.now(clock);
+    }
+
     public void connectToDB(String path, String pass) {
         try {
             Class.forName("com.mysql.cj.jdbc.Driver");
@@ -162,6 +243,82 @@ public class ParkingController {
         if (autoCancellationService != null) {
             autoCancellationService.shutdown();
         }
+        if (archiveService != null) {
+            archiveService.shutdown();
+        }
+        
+        // Close the shared SMTP connection
+        EmailService.shutdown();
+    }
+
+    /**
+     * Register a listener for parking lifecycle events (exit, cancel)
+     */
+    public void addParkingEventListener(ParkingEventListener listener) {
+        eventListeners.add(listener);
+    }
+
+    public void removeParkingEventListener(ParkingEventListener listener) {
+        eventListeners.remove(listener);
+    }
+
+    /**
+     * Load the current state of a parking session and notify the listeners.
+     * Call after the change has been written to parkinginfo.
+     */
+    void publishParkingEvent(ParkingEvent.Type type, int parkingInfoId) {
+        if (eventListeners.isEmpty()) {
+            return;
+        }
+
+        String qry = """
+            SELECT User_ID, ParkingSpot_ID, Date_Of_Placing_Order, Actual_start_time, Actual_end_time,
+                   Estimated_end_time, IsLate, IsExtended, IsOrderedEnum
+            FROM parkinginfo
+            WHERE ParkingInfo_ID = ?
+            """;
+
+        ParkingEvent event = null;
+        try (PreparedStatement stmt = conn.prepareStatement(qry)) {
+            stmt.setInt(1, parkingInfoId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    Timestamp orderTime = rs.getTimestamp("Date_Of_Placing_Order");
+                    Timestamp startTime = rs.getTimestamp("Actual_start_time");
+                    Timestamp endTime = rs.getTimestamp("Actual_end_time");
+                    Timestamp expectedEndTime = rs.getTimestamp("Estimated_end_time");
+                    event = new ParkingEvent(type, parkingInfoId,
+                        rs.getInt("User_ID"), rs.getInt("ParkingSpot_ID"),
+                        orderTime != null ? orderTime.toLocalDateTime() : now(),
+                        startTime != null ? startTime.toLocalDateTime() : null,
+                        endTime != null ? endTime.toLocalDateTime() : null,
+                        expectedEndTime != null ? expectedEndTime.toLocalDateTime() : null,
+                        "yes".equals(rs.getString("IsLate")),
+                        "yes".equals(rs.getString("IsExtended")),
+                        "yes".equals(rs.getString("IsOrderedEnum")));
+                }
+            }
+        } catch (SQLException e) {
+            System.out.println("Error loading parking event " + parkingInfoId + ": " + e.getMessage());
+            return;
+        }
+
+        if (event != null) {
+            publishParkingEvent(event);
+        }
+    }
+
+    /**
+     * Notify the listeners of an event
+     */
+    protected void publishParkingEvent(ParkingEvent event) {
+        for (ParkingEventListener listener : eventListeners) {
+            try {
+                listener.onParkingEvent(event);
+            } catch (Exception e) {
+                System.out.println("Parking event listener failed on " + event + ": " + e.getMessage());
+            }
+        }
     }
 
     // ========== ALL YOUR EXISTING METHODS UPDATED ==========
@@ -214,7 +371,7 @@ public class ParkingController {
      * For reservations, use getAvailableSpotsForTimeSlot() instead
      */
     public int getAvailableParkingSpots() {
-        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime now = now();
         LocalDateTime fourHoursLater = now.plusHours(4);
         return getAvailableSpotsForTimeSlot(now, fourHoursLater);
     }
@@ -280,7 +437,7 @@ public class ParkingController {
             LocalDateTime reservationDateTime = parseDateTime(reservationDateTimeStr);
             
             // Validate reservation is within allowed time range (24 hours to 7 days)
-            LocalDateTime now = LocalDateTime.now();
+            LocalDateTime now = now();
             if (reservationDateTime.isBefore(now.plusHours(24))) {
                 return "Reservation must be at least 24 hours in advance";
             }
@@ -308,14 +465,15 @@ public class ParkingController {
                 INSERT INTO parkinginfo 
                 (ParkingSpot_ID, User_ID, Date_Of_Placing_Order, Estimated_start_time, 
                  Estimated_end_time, IsOrderedEnum, IsLate, IsExtended, statusEnum) 
-                VALUES (?, ?, NOW(), ?, ?, 'yes', 'no', 'no', 'preorder')
+                VALUES (?, ?, ?, ?, ?, 'yes', 'no', 'no', 'preorder')
                 """;
             
             try (PreparedStatement stmt = conn.prepareStatement(qry, PreparedStatement.RETURN_GENERATED_KEYS)) {
                 stmt.setInt(1, parkingSpotID);
                 stmt.setInt(2, userID);
-                stmt.setTimestamp(3, Timestamp.valueOf(reservationDateTime));
-                stmt.setTimestamp(4, Timestamp.valueOf(estimatedEndTime));
+                stmt.setTimestamp(3, Timestamp.valueOf(now));
+                stmt.setTimestamp(4, Timestamp.valueOf(reservationDateTime));
+                stmt.setTimestamp(5, Timestamp.valueOf(estimatedEndTime));
                 stmt.executeUpdate();
                 
                 // Get the generated ParkingInfo_ID (this is our reservation code)
@@ -438,7 +596,7 @@ public class ParkingController {
         }
 
         // Find available parking spot for immediate use
-        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime now = now();
         LocalDateTime estimatedEnd = now.plusHours(4); // Default 4 hours
         
         int spotID = findAvailableSpotForTimeSlot(now, estimatedEnd);
@@ -451,7 +609,7 @@ public class ParkingController {
             INSERT INTO parkinginfo 
             (ParkingSpot_ID, User_ID, Date_Of_Placing_Order, Actual_start_time, 
              Estimated_start_time, Estimated_end_time, IsOrderedEnum, IsLate, IsExtended, statusEnum) 
-            VALUES (?, ?, NOW(), ?, ?, ?, 'no', 'no', 'no', 'active')
+            VALUES (?, ?, ?, ?, ?, ?, 'no', 'no', 'no', 'active')
             """;
         
         try (PreparedStatement stmt = conn.prepareStatement(qry, PreparedStatement.RETURN_GENERATED_KEYS)) {
@@ -459,7 +617,8 @@ public class ParkingController {
             stmt.setInt(2, userID);
             stmt.setTimestamp(3, Timestamp.valueOf(now));
             stmt.setTimestamp(4, Timestamp.valueOf(now));
-            stmt.setTimestamp(5, Timestamp.valueOf(estimatedEnd));
+            stmt.setTimestamp(5, Timestamp.valueOf(now));
+            stmt.setTimestamp(6, Timestamp.valueOf(estimatedEnd));
             stmt.executeUpdate();
 
             // Get the generated ParkingInfo_ID (parking code)
@@ -469,6 +628,7 @@ public class ParkingController {
                     
                     // Mark parking spot as occupied
                     updateParkingSpotStatus(spotID, true);
+                    publishParkingEvent(ParkingEvent.Type.ENTRY, parkingCode);
                     
                     return "Entry successful. Parking code: " + parkingCode + ". Spot: " + spotID;
                 }
@@ -501,7 +661,7 @@ public class ParkingController {
                     int parkingSpotID = rs.getInt("ParkingSpot_ID");
                     
                     // Check if reservation is for today
-                    LocalDateTime now = LocalDateTime.now();
+                    LocalDateTime now = now();
                     if (!estimatedStartTime.toLocalDate().equals(now.toLocalDate())) {
                         if (estimatedStartTime.isBefore(now)) {
                             // Cancel expired reservation
@@ -526,6 +686,7 @@ public class ParkingController {
                         
                         // NOW mark parking spot as occupied (only when they actually arrive)
                         updateParkingSpotStatus(parkingSpotID, true);
+                        publishParkingEvent(ParkingEvent.Type.ENTRY, reservationCode);
                         
                         System.out.println("Reservation " + reservationCode + " activated (preorder → active), Spot " + parkingSpotID + " marked as occupied");
                         return "Entry successful! Reservation activated. Parking code: " + reservationCode + ". Spot: " + parkingSpotID;
@@ -677,7 +838,7 @@ public class ParkingController {
                         Timestamp estimatedEndTime = rs.getTimestamp("Estimated_end_time");
                         int userID = rs.getInt("User_ID");
                         
-                        LocalDateTime now = LocalDateTime.now();
+                        LocalDateTime now = now();
                         LocalDateTime estimatedEnd = estimatedEndTime.toLocalDateTime();
                         
                         // Check if parking exceeded estimated time
@@ -700,6 +861,7 @@ public class ParkingController {
                             updateParkingSpotStatus(spotID, false);
                             
                             System.out.println("Parking " + parkingCode + " finished, Spot " + spotID + " freed (isOccupied = 0)");
+                            publishParkingEvent(ParkingEvent.Type.EXIT, parkingInfoID);
                             
                             if (isLate) {
                                 sendLateExitNotification(userID);
@@ -817,45 +979,25 @@ public class ParkingController {
      */
     public ArrayList<ParkingOrder> getParkingHistory(String userName) {
         ArrayList<ParkingOrder> history = new ArrayList<>();
+        int userID = getUserID(userName);
+        if (userID == -1) {
+            return history;
+        }
+        
+        // Hot and archived sessions; filtered by the constant User_ID so each part of the view uses its index
         String qry = """
             SELECT pi.*, ps.ParkingSpot_ID 
-            FROM parkinginfo pi 
-            JOIN users u ON pi.User_ID = u.User_ID 
+            FROM parkinginfo_all pi 
             JOIN parkingspot ps ON pi.ParkingSpot_ID = ps.ParkingSpot_ID 
-            WHERE u.UserName = ? 
+            WHERE pi.User_ID = ? 
             ORDER BY pi.Date_Of_Placing_Order DESC
             """;
         
         try (PreparedStatement stmt = conn.prepareStatement(qry)) {
-            stmt.setString(1, userName);
+            stmt.setInt(1, userID);
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
-                    ParkingOrder order = new ParkingOrder();
-                    order.setOrderID(rs.getInt("ParkingInfo_ID"));
-                    order.setParkingCode(String.valueOf(rs.getInt("ParkingInfo_ID")));
-                    order.setOrderType(rs.getString("IsOrderedEnum"));
-                    order.setSpotNumber("Spot " + rs.getInt("ParkingSpot_ID"));
-                    
-                    // Convert Timestamps to LocalDateTime
-                    Timestamp actualStart = rs.getTimestamp("Actual_start_time");
-                    Timestamp actualEnd = rs.getTimestamp("Actual_end_time");
-                    Timestamp estimatedEnd = rs.getTimestamp("Estimated_end_time");
-                    
-                    if (actualStart != null) {
-                        order.setEntryTime(actualStart.toLocalDateTime());
-                    }
-                    if (actualEnd != null) {
-                        order.setExitTime(actualEnd.toLocalDateTime());
-                    }
-                    if (estimatedEnd != null) {
-                        order.setExpectedExitTime(estimatedEnd.toLocalDateTime());
-                    }
-                    
-                    order.setLate("yes".equals(rs.getString("IsLate")));
-                    order.setExtended("yes".equals(rs.getString("IsExtended")));
-                    order.setStatus(rs.getString("statusEnum"));
-                    
-                    history.add(order);
+                    history.add(readHistoryRow(rs));
                 }
             }
         } catch (SQLException e) {
@@ -864,6 +1006,155 @@ public class ParkingController {
         return history;
     }
 
+    /**
+     * Gets one page of a user's parking history, newest first.
+     * Keyset paging: the page starts after the cursor (order date + ID of the last row
+     * of the previous page), so every page costs the same however deep the user scrolls.
+     * The hot table is read first, then the archive months newest first, each with its own
+     * ORDER BY ... LIMIT on the user's history index; older months are skipped once the page
+     * is filled with rows newer than anything they hold.
+     * @param cursor null for the first page, otherwise ParkingHistoryPage.getNextCursor() of the previous page
+     */
+    public ParkingHistoryPage getParkingHistoryPage(String userName, int pageSize, String cursor) {
+        int limit = Math.max(1, Math.min(pageSize, ParkingHistoryPage.MAX_PAGE_SIZE));
+        ParkingHistoryPage page = new ParkingHistoryPage();
+        int userID = getUserID(userName);
+        if (userID == -1) {
+            return page;
+        }
+        
+        // No cursor = start after the newest possible row
+        LocalDateTime afterDate = LocalDateTime.of(9999, 12, 31, 23, 59);
+        int afterId = Integer.MAX_VALUE;
+        if (cursor != null && !cursor.isEmpty()) {
+            String[] cursorParts = cursor.split("/");
+            afterDate = LocalDateTime.parse(cursorParts[0]);
+            afterId = Integer.parseInt(cursorParts[1]);
+        }
+        
+        List<String> tables = new ArrayList<>();
+        if (archiveService != null) {
+            tables.add("parkinginfo");
+            tables.addAll(archiveService.getArchiveTables());
+        } else {
+            tables.add(ParkingArchiveService.HISTORY_VIEW);    // no archive job - read the view as one table
+        }
+        
+        // One extra row tells whether there is another page
+        List<ParkingOrder> rows = new ArrayList<>();
+        try {
+            for (String table : tables) {
+                YearMonth month = archiveMonth(table);
+                if (month != null) {
+                    if (month.atDay(1).atStartOfDay().isAfter(afterDate)) {
+                        continue;    // the whole month is before the cursor
+                    }
+                    if (rows.size() > limit && !rows.get(limit).getOrderDate().isBefore(month.plusMonths(1).atDay(1).atStartOfDay())) {
+                        break;       // this month and the older ones can't make the page
+                    }
+                }
+                readHistoryPart(table, userID, afterDate, afterId, limit + 1, rows);
+            }
+        } catch (SQLException e) {
+            System.out.println("Error getting parking history page: " + e.getMessage());
+        }
+        
+        for (ParkingOrder order : rows) {
+            if (page.getOrders().size() == limit) {
+                ParkingOrder last = page.getOrders().get(limit - 1);
+                page.setNextCursor(last.getOrderDate() + "/" + last.getOrderID());
+                break;
+            }
+            page.getOrders().add(order);
+        }
+        return page;
+    }
+    
+    private static final Comparator<ParkingOrder> NEWEST_FIRST =
+        Comparator.comparing(ParkingOrder::getOrderDate).thenComparingInt(ParkingOrder::getOrderID).reversed();
+    
+    /**
+     * Add up to limit history rows of one table after the cursor to rows, keeping rows newest first.
+     * A session moved to the archive between two reads shows up in both - it is only kept once.
+     */
+    private void readHistoryPart(String table, int userID, LocalDateTime afterDate, int afterId, int limit,
+                                 List<ParkingOrder> rows) throws SQLException {
+        String qry = "SELECT pi.*, ps.ParkingSpot_ID FROM " + table + " pi " + """
+            JOIN parkingspot ps ON pi.ParkingSpot_ID = ps.ParkingSpot_ID 
+            WHERE pi.User_ID = ? 
+            AND (pi.Date_Of_Placing_Order < ? OR (pi.Date_Of_Placing_Order = ? AND pi.ParkingInfo_ID < ?))
+            ORDER BY pi.Date_Of_Placing_Order DESC, pi.ParkingInfo_ID DESC
+            LIMIT ?
+            """;
+        
+        HashSet<Integer> seen = new HashSet<>();
+        for (ParkingOrder order : rows) {
+            seen.add(order.getOrderID());
+        }
+        try (PreparedStatement stmt = conn.prepareStatement(qry)) {
+            stmt.setInt(1, userID);
+            stmt.setTimestamp(2, Timestamp.valueOf(afterDate));
+            stmt.setTimestamp(3, Timestamp.valueOf(afterDate));
+            stmt.setInt(4, afterId);
+            stmt.setInt(5, limit);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    ParkingOrder order = readHistoryRow(rs);
+                    if (seen.add(order.getOrderID())) {
+                        rows.add(order);
+                    }
+                }
+            }
+        }
+        rows.sort(NEWEST_FIRST);
+    }
+    
+    /**
+     * The month of a parkinginfo_archive_YYYYMM table, or null for any other table
+     */
+    private static YearMonth archiveMonth(String table) {
+        String prefix = "parkinginfo_archive_";
+        if (!table.startsWith(prefix)) {
+            return null;
+        }
+        return YearMonth.parse(table.substring(prefix.length()), DateTimeFormatter.ofPattern("yyyyMM"));
+    }
+
+    /**
+     * One parkinginfo row as a history entry
+     */
+    private ParkingOrder readHistoryRow(ResultSet rs) throws SQLException {
+        ParkingOrder order = new ParkingOrder();
+        order.setOrderID(rs.getInt("ParkingInfo_ID"));
+        order.setParkingCode(String.valueOf(rs.getInt("ParkingInfo_ID")));
+        order.setOrderType(rs.getString("IsOrderedEnum"));
+        order.setSpotNumber("Spot " + rs.getInt("ParkingSpot_ID"));
+        
+        // Convert Timestamps to LocalDateTime
+        Timestamp orderDate = rs.getTimestamp("Date_Of_Placing_Order");
+        Timestamp actualStart = rs.getTimestamp("Actual_start_time");
+        Timestamp actualEnd = rs.getTimestamp("Actual_end_time");
+        Timestamp estimatedEnd = rs.getTimestamp("Estimated_end_time");
+        
+        if (orderDate != null) {
+            order.setOrderDate(orderDate.toLocalDateTime());
+        }
+        if (actualStart != null) {
+            order.setEntryTime(actualStart.toLocalDateTime());
+        }
+        if (actualEnd != null) {
+            order.setExitTime(actualEnd.toLocalDateTime());
+        }
+        if (estimatedEnd != null) {
+            order.setExpectedExitTime(estimatedEnd.toLocalDateTime());
+        }
+        
+        order.setLate("yes".equals(rs.getString("IsLate")));
+        order.setExtended("yes".equals(rs.getString("IsExtended")));
+        order.setStatus(rs.getString("statusEnum"));
+        return order;
+    }
+
     /**
      * Gets all active parking sessions (for attendant view)
      */
@@ -990,6 +1281,7 @@ public class ParkingController {
                 } else {
                     System.out.println("Preorder reservation cancelled, Spot " + spotId + " remains available");
                 }
+                publishParkingEvent(ParkingEvent.Type.CANCEL, reservationCode);
                 
                 // Send email notification
                 if (userEmail != null && userName != null) {
@@ -1181,14 +1473,16 @@ public class ParkingController {
         // Check if reservation exists and is in preorder status
         String checkQry = """
             SELECT pi.*, u.UserName,
-                   TIMESTAMPDIFF(MINUTE, pi.Estimated_start_time, NOW()) as minutes_since_start
+                   TIMESTAMPDIFF(MINUTE, pi.Estimated_start_time, ?) as minutes_since_start
             FROM parkinginfo pi 
             JOIN users u ON pi.User_ID = u.User_ID 
             WHERE pi.ParkingInfo_ID = ? AND pi.statusEnum = 'preorder'
             """;
         
+        LocalDateTime now = now();
         try (PreparedStatement stmt = conn.prepareStatement(checkQry)) {
-            stmt.setInt(1, reservationCode);
+            stmt.setTimestamp(1, Timestamp.valueOf(now));
+            stmt.setInt(2, reservationCode);
             
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
@@ -1203,7 +1497,6 @@ public class ParkingController {
                     }
                     
                     // Update reservation status to ACTIVE and set actual start time
-                    LocalDateTime now = LocalDateTime.now();
                     String updateQry = """
                         UPDATE parkinginfo 
                         SET statusEnum = 'active', 
@@ -1220,6 +1513,7 @@ public class ParkingController {
                         
                         // Mark parking spot as occupied
                         updateParkingSpotStatus(spotId, true);
+                        publishParkingEvent(ParkingEvent.Type.ENTRY, reservationCode);
                         
                         String lateMessage = minutesSinceStart > 0 ? 
                             " (Note: " + minutesSinceStart + " minutes late)" : "";
@@ -1293,6 +1587,7 @@ public class ParkingController {
                 if (spotId != null) {
                     updateParkingSpotStatus(spotId, false);
                 }
+                publishParkingEvent(ParkingEvent.Type.CANCEL, reservationCode);
                 
                 // Send email notification
                 if (userEmail != null && userName != null) {
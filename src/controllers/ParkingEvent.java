@@ -0,0 +1,123 @@
+package controllers;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * A change in the lifecycle of a parking session, published by ParkingController
+ * after the change is written to parkinginfo.
+ * Carries the row's values so listeners don't have to query the table again.
+ */
+public class ParkingEvent {
+
+    public enum Type {
+        ENTRY,      // car entered (statusEnum -> 'active', Actual_start_time set)
+        EXIT,       // active parking finished (statusEnum -> 'finished')
+        CANCEL      // preorder/active reservation cancelled (statusEnum -> 'cancelled')
+    }
+
+    private final Type type;
+    private final int parkingInfoId;
+    private final int userId;
+    private final int spotId;
+    private final LocalDateTime orderTime;     // Date_Of_Placing_Order
+    private final LocalDateTime startTime;     // Actual_start_time (null if the car never entered)
+    private final LocalDateTime endTime;       // Actual_end_time
+    private final LocalDateTime expectedEndTime; // Estimated_end_time
+    private final boolean late;
+    private final boolean extended;
+    private final boolean reservation;         // IsOrderedEnum = 'yes'
+
+    public ParkingEvent(Type type, int parkingInfoId, int userId, int spotId,
+                        LocalDateTime orderTime, LocalDateTime startTime, LocalDateTime endTime,
+                        LocalDateTime expectedEndTime, boolean late, boolean extended, boolean reservation) {
+        this.type = type;
+        this.parkingInfoId = parkingInfoId;
+        this.userId = userId;
+        this.spotId = spotId;
+        this.orderTime = orderTime;
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.expectedEndTime = expectedEndTime;
+        this.late = late;
+        this.extended = extended;
+        this.reservation = reservation;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public int getParkingInfoId() {
+        return parkingInfoId;
+    }
+
+    public int getUserId() {
+        return userId;
+    }
+
+    public int getSpotId() {
+        return spotId;
+    }
+
+    public LocalDateTime getOrderTime() {
+        return orderTime;
+    }
+
+    /**
+     * The day the session is reported under (the day the order was placed)
+     */
+    public LocalDate getOrderDate() {
+        return orderTime.toLocalDate();
+    }
+
+    public LocalDateTime getStartTime() {
+        return startTime;
+    }
+
+    public LocalDateTime getEndTime() {
+        return endTime;
+    }
+
+    public LocalDateTime getExpectedEndTime() {
+        return expectedEndTime;
+    }
+
+    public boolean isLate() {
+        return late;
+    }
+
+    public boolean isExtended() {
+        return extended;
+    }
+
+    public boolean isReservation() {
+        return reservation;
+    }
+
+    /**
+     * Parking duration in whole minutes (0 if the car never entered)
+     */
+    public int getDurationMinutes() {
+        if (startTime == null || endTime == null) {
+            return 0;
+        }
+        return (int) Duration.between(startTime, endTime).toMinutes();
+    }
+
+    /**
+     * Minutes past the expected end time for a late session (0 if not late)
+     */
+    public int getLateMinutes() {
+        if (!late || expectedEndTime == null || endTime == null) {
+            return 0;
+        }
+        return (int) Math.max(0, Duration.between(expectedEndTime, endTime).toMinutes());
+    }
+
+    @Override
+    public String toString() {
+        return "ParkingEvent{" + type + " #" + parkingInfoId + ", user=" + userId + ", spot=" + spotId + "}";
+    }
+}
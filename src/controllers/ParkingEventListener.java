@@ -0,0 +1,10 @@
+package controllers;
+
+/**
+ * Receives parking lifecycle events from ParkingController.
+ * Called on the thread that made the change, so implementations should be quick.
+ */
+public interface ParkingEventListener {
+
+    void onParkingEvent(ParkingEvent event);
+}
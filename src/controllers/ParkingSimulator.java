@@ -0,0 +1,451 @@
+package controllers;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import services.EmailService;
+import services.InMemoryNotificationSink;
+
+/**
+ * ParkingSimulator replays a day or a week of walk-ins, reservations, no-shows, extensions and
+ * late exits against the real ParkingController and SimpleAutoCancellationService on a
+ * SimulatedClock, in seconds of wall time. The controller runs on an embedded H2 database
+ * (EmbeddedParkingDatabase), so every rule - 24h/7d booking window, 40% rule, 15-minute grace,
+ * late exits - is the production SQL, only the clock is simulated.
+ *
+ * It is a discrete-event simulation: every arrival, booking, extension and departure is an
+ * event in a time-ordered queue, the clock jumps from one event to the next, and the
+ * auto-cancellation checks run once per simulated minute.
+ *
+ * The run starts with a warm-up week that is simulated but not reported, so the first
+ * reported day already has a realistic book of reservations and parked cars.
+ *
+ * Usage (H2 has to be on the classpath, e.g. the benchmarks jar has it):
+ *   java -cp benchmarks/target/benchmarks.jar controllers.ParkingSimulator [key=value ...]
+ * (see SimulationScenario)
+ */
+public class ParkingSimulator {
+
+    private static final int WARMUP_DAYS = 6;
+    private static final int DEFAULT_HOURS = 4;
+    private static final DateTimeFormatter RESERVATION_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+    private enum EventType { BOOK, WALK_IN, RESERVED_ARRIVAL, EXTEND, DEPART, MONITOR }
+
+    /**
+     * Something that happens at a point of simulated time
+     */
+    private static class Event implements Comparable<Event> {
+        final LocalDateTime time;
+        final long sequence;
+        final EventType type;
+        final String userName;
+        final String code;                 // parking or reservation code
+        final LocalDateTime target;        // reservation start (BOOK) or expected exit (arrivals)
+        final int hours;                   // extension hours (EXTEND)
+
+        Event(LocalDateTime time, long sequence, EventType type, String userName, String code,
+              LocalDateTime target, int hours) {
+            this.time = time;
+            this.sequence = sequence;
+            this.type = type;
+            this.userName = userName;
+            this.code = code;
+            this.target = target;
+            this.hours = hours;
+        }
+
+        @Override
+        public int compareTo(Event other) {
+            int byTime = time.compareTo(other.time);
+            return byTime != 0 ? byTime : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    /**
+     * The counts of one simulated day
+     */
+    private static class DayStats {
+        int walkIns;
+        int turnedAway;
+        int reserved;
+        int bookingsRejected;
+        int reservedArrivals;
+        int noShows;
+        int tooLate;
+        long autoCancelled;
+        int exits;
+        int lateExits;
+        long latePickups;
+        int extensions;
+        int peakParked;
+        long parkedMinutes;
+    }
+
+    private final SimulationScenario scenario;
+    private final Random random;
+    private final LocalDateTime start;
+    private final LocalDateTime end;
+    private final SimulatedClock clock;
+    private ParkingController parkingController;
+    private SimpleAutoCancellationService autoCancellation;
+    private final InMemoryNotificationSink notificationSink = new InMemoryNotificationSink(1);
+    private final PriorityQueue<Event> events = new PriorityQueue<>();
+    private final DayStats[] days;
+    private final DayStats warmUp = new DayStats();
+    private final long[] parkedByHour = new long[24];
+    private final long[] samplesByHour = new long[24];
+    private long sequence = 0;
+    private long processed = 0;
+
+    public ParkingSimulator(SimulationScenario scenario) {
+        this.scenario = scenario;
+        this.random = new Random(scenario.seed);
+        this.start = scenario.start.atStartOfDay();
+        this.end = start.plusDays(scenario.days);
+        this.clock = new SimulatedClock(start.minusDays(WARMUP_DAYS));
+        this.days = new DayStats[scenario.days];
+        for (int i = 0; i < days.length; i++) {
+            days[i] = new DayStats();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        SimulationScenario scenario = SimulationScenario.parse(args);
+        String report = new ParkingSimulator(scenario).run();
+
+        System.out.println(report);
+        if (scenario.reportFile != null) {
+            Files.writeString(Paths.get(scenario.reportFile), report);
+            System.out.println("Report written to " + scenario.reportFile);
+        }
+    }
+
+    /**
+     * Simulate the scenario
+     * @return the report
+     * @throws SQLException if the embedded database can't be created or read
+     */
+    public String run() throws SQLException {
+        // Digest windows run on wall time, which means nothing here - send every email as it happens
+        if (System.getProperty("bpark.notification.coalesceSeconds") == null) {
+            System.setProperty("bpark.notification.coalesceSeconds", "0");
+        }
+        EmailService.setNotificationSink(notificationSink);
+        schedule();
+
+        // The controllers log every operation - keep the simulated days off the console
+        PrintStream out = System.out;
+        long wallStart = System.nanoTime();
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            parkingController = EmbeddedParkingDatabase.open(scenario.databaseUrl, scenario.subscribers, scenario.spots);
+            parkingController.setClock(clock);
+            autoCancellation = new SimpleAutoCancellationService(parkingController);
+
+            while (!events.isEmpty() && events.peek().time.isBefore(end)) {
+                Event event = events.poll();
+                clock.advanceTo(event.time);
+                handle(event);
+                processed++;
+            }
+        } finally {
+            System.setOut(out);
+        }
+        double wallSeconds = (System.nanoTime() - wallStart) / 1_000_000_000.0;
+        try {
+            return report(wallSeconds);
+        } finally {
+            parkingController.getConnection().close();
+        }
+    }
+
+    // Events ***********************************************************
+
+    private void schedule() {
+        for (int day = -WARMUP_DAYS; day < scenario.days; day++) {
+            LocalDateTime midnight = start.plusDays(day);
+
+            int bookings = poisson(scenario.reservationsPerDay);
+            for (int i = 0; i < bookings; i++) {
+                LocalDateTime bookedAt = atMinuteOfDay(midnight, scenario.pickMinuteOfDay(random));
+                int targetMinute = scenario.pickMinuteOfDay(random) / 15 * 15;
+                LocalDateTime target = midnight.plusDays(2 + random.nextInt(5)).plusMinutes(targetMinute);
+                if (target.isBefore(end)) {
+                    add(bookedAt, EventType.BOOK, randomSubscriber(), null, target);
+                }
+            }
+
+            int walkIns = poisson(scenario.walkInsPerDay);
+            for (int i = 0; i < walkIns; i++) {
+                add(atMinuteOfDay(midnight, scenario.pickMinuteOfDay(random)), EventType.WALK_IN,
+                    randomSubscriber(), null, null);
+            }
+        }
+        add(clock.getTime(), EventType.MONITOR, null, null, null);
+    }
+
+    private void handle(Event event) throws SQLException {
+        LocalDateTime now = event.time;
+        switch (event.type) {
+        case BOOK:
+            DayStats targetDay = dayOf(event.target);
+            String booking = parkingController.makeReservation(event.userName, event.target.format(RESERVATION_TIME));
+            String reservationCode = codeAfter(booking, "Confirmation code: ");
+            if (reservationCode == null) {
+                targetDay.bookingsRejected++;
+                break;
+            }
+            targetDay.reserved++;
+            if (random.nextDouble() < scenario.noShowRate) {
+                targetDay.noShows++;
+            } else if (random.nextDouble() < scenario.lateArrivalRate) {
+                add(event.target.plusMinutes(16 + random.nextInt(45)), EventType.RESERVED_ARRIVAL,
+                    event.userName, reservationCode, event.target.plusHours(DEFAULT_HOURS));
+            } else {
+                add(event.target.plusMinutes(random.nextInt(25) - 10), EventType.RESERVED_ARRIVAL,
+                    event.userName, reservationCode, event.target.plusHours(DEFAULT_HOURS));
+            }
+            break;
+
+        case WALK_IN:
+            DayStats walkInDay = dayOf(now);
+            walkInDay.walkIns++;
+            String parkingCode = codeAfter(parkingController.enterParking(event.userName), "Parking code: ");
+            if (parkingCode == null) {
+                walkInDay.turnedAway++;
+            } else {
+                planStay(now, parkingCode, now.plusHours(DEFAULT_HOURS));
+            }
+            break;
+
+        case RESERVED_ARRIVAL:
+            DayStats arrivalDay = dayOf(now);
+            String activated = parkingController.activateReservation(event.userName, Integer.parseInt(event.code));
+            if (activated.startsWith("Reservation activated")) {
+                arrivalDay.reservedArrivals++;
+                planStay(now, event.code, event.target);
+            } else {
+                arrivalDay.tooLate++;
+            }
+            break;
+
+        case EXTEND:
+            String extended = parkingController.extendParkingTime(event.code, event.hours);
+            if (extended.startsWith("Parking time extended")) {
+                dayOf(now).extensions++;
+            }
+            break;
+
+        case DEPART:
+            DayStats exitDay = dayOf(now);
+            String exit = parkingController.exitParking(event.code);
+            if (exit.startsWith("Exit successful")) {
+                exitDay.exits++;
+                if (exit.contains("late")) {
+                    exitDay.lateExits++;
+                }
+            }
+            break;
+
+        case MONITOR:
+            monitor(now);
+            if (now.plusMinutes(1).isBefore(end)) {
+                add(now.plusMinutes(1), EventType.MONITOR, null, null, null);
+            }
+            break;
+        }
+    }
+
+    /**
+     * Schedule the extension (if any) and the departure of a car that just parked
+     */
+    private void planStay(LocalDateTime now, String parkingCode, LocalDateTime expectedExit) {
+        LocalDateTime leaveFrom = now.plusMinutes(30);
+        if (random.nextDouble() < scenario.extendRate) {
+            int hours = 1 + random.nextInt(2);
+            LocalDateTime extendAt = latest(now.plusMinutes(1), expectedExit.minusMinutes(30));
+            events.add(new Event(extendAt, sequence++, EventType.EXTEND, null, parkingCode, null, hours));
+            expectedExit = expectedExit.plusHours(hours);
+            leaveFrom = extendAt.plusMinutes(10);
+        }
+
+        LocalDateTime departure;
+        if (random.nextDouble() < scenario.overstayRate) {
+            departure = expectedExit.plusMinutes(5 + random.nextInt(116));
+        } else {
+            long window = Math.max(1, Duration.between(leaveFrom, expectedExit.minusMinutes(5)).toMinutes());
+            departure = leaveFrom.plusMinutes(random.nextInt((int) window));
+        }
+        add(departure, EventType.DEPART, null, parkingCode, null);
+    }
+
+    /**
+     * Run the 15-minute checks and sample the occupancy
+     */
+    private void monitor(LocalDateTime now) throws SQLException {
+        DayStats day = dayOf(now);
+        long cancelledBefore = autoCancellation.getCancelledCount();
+        long lateBefore = autoCancellation.getLatePickupCount();
+        autoCancellation.runChecks();
+        day.autoCancelled += autoCancellation.getCancelledCount() - cancelledBefore;
+        day.latePickups += autoCancellation.getLatePickupCount() - lateBefore;
+
+        int parked = countParked();
+        day.peakParked = Math.max(day.peakParked, parked);
+        day.parkedMinutes += parked;
+        if (day != warmUp) {
+            parkedByHour[now.getHour()] += parked;
+            samplesByHour[now.getHour()]++;
+        }
+    }
+
+    // Helpers **********************************************************
+
+    /**
+     * Spots with a car in them now
+     */
+    private int countParked() throws SQLException {
+        try (Statement stmt = parkingController.getConnection().createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM parkinginfo WHERE statusEnum = 'active'")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    private void add(LocalDateTime time, EventType type, String userName, String code, LocalDateTime target) {
+        events.add(new Event(time, sequence++, type, userName, code, target, 0));
+    }
+
+    private DayStats dayOf(LocalDateTime time) {
+        int day = (int) ChronoUnit.DAYS.between(start.toLocalDate(), time.toLocalDate());
+        return day < 0 ? warmUp : days[Math.min(days.length - 1, day)];
+    }
+
+    private LocalDateTime atMinuteOfDay(LocalDateTime midnight, int minute) {
+        return midnight.plusMinutes(minute).plusSeconds(random.nextInt(60));
+    }
+
+    private String randomSubscriber() {
+        return "sub" + (1 + random.nextInt(scenario.subscribers));
+    }
+
+    private static LocalDateTime latest(LocalDateTime a, LocalDateTime b) {
+        return a.isAfter(b) ? a : b;
+    }
+
+    /**
+     * The code in "...<label>1234. ..." (null if the text has no such code)
+     */
+    private static String codeAfter(String result, String label) {
+        int at = result.indexOf(label);
+        if (at < 0) {
+            return null;
+        }
+        int from = at + label.length();
+        int to = from;
+        while (to < result.length() && Character.isDigit(result.charAt(to))) {
+            to++;
+        }
+        return to > from ? result.substring(from, to) : null;
+    }
+
+    private int poisson(double mean) {
+        if (mean > 30) {
+            return (int) Math.max(0, Math.round(mean + Math.sqrt(mean) * random.nextGaussian()));
+        }
+        double limit = Math.exp(-mean);
+        double product = random.nextDouble();
+        int count = 0;
+        while (product > limit) {
+            product *= random.nextDouble();
+            count++;
+        }
+        return count;
+    }
+
+    // Report ***********************************************************
+
+    private String report(double wallSeconds) throws SQLException {
+        StringBuilder report = new StringBuilder();
+        report.append("=== Parking simulation: ").append(scenario).append(" ===").append(System.lineSeparator());
+        report.append(String.format("%d day(s) simulated in %.2f s wall time, %d events%n",
+                                    scenario.days, wallSeconds, processed));
+        report.append(String.format("%-10s %8s %7s %8s %8s %8s %7s %8s %8s %6s %8s %8s %8s %5s %6s%n",
+                                    "Day", "walk-ins", "turned", "reserved", "rejected", "arrived", "no-show",
+                                    "too late", "auto-cxl", "exits", "late exit", "late pick", "extended",
+                                    "peak", "avg %"));
+
+        DayStats total = new DayStats();
+        for (int i = 0; i < days.length; i++) {
+            DayStats day = days[i];
+            appendRow(report, start.toLocalDate().plusDays(i).toString(), day, 1);
+            total.walkIns += day.walkIns;
+            total.turnedAway += day.turnedAway;
+            total.reserved += day.reserved;
+            total.bookingsRejected += day.bookingsRejected;
+            total.reservedArrivals += day.reservedArrivals;
+            total.noShows += day.noShows;
+            total.tooLate += day.tooLate;
+            total.autoCancelled += day.autoCancelled;
+            total.exits += day.exits;
+            total.lateExits += day.lateExits;
+            total.latePickups += day.latePickups;
+            total.extensions += day.extensions;
+            total.peakParked = Math.max(total.peakParked, day.peakParked);
+            total.parkedMinutes += day.parkedMinutes;
+        }
+        if (days.length > 1) {
+            appendRow(report, "TOTAL", total, days.length);
+        }
+
+        report.append("Average occupancy by hour (% of spots):").append(System.lineSeparator());
+        for (int hour = 0; hour < 24; hour++) {
+            double average = samplesByHour[hour] > 0 ? (double) parkedByHour[hour] / samplesByHour[hour] : 0;
+            report.append(String.format("%02d:%3.0f%s", hour, average * 100 / scenario.spots, hour % 12 == 11
+                                        ? System.lineSeparator() : "  "));
+        }
+
+        QuantileSketch stays = new QuantileSketch();
+        String qry = """
+            SELECT Actual_start_time, Actual_end_time
+            FROM parkinginfo
+            WHERE statusEnum = 'finished' AND Actual_start_time >= ?
+            """;
+        try (PreparedStatement stmt = parkingController.getConnection().prepareStatement(qry)) {
+            stmt.setTimestamp(1, Timestamp.valueOf(start));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    stays.add(Duration.between(rs.getTimestamp("Actual_start_time").toLocalDateTime(),
+                                               rs.getTimestamp("Actual_end_time").toLocalDateTime()).toMinutes());
+                }
+            }
+        }
+        report.append(String.format("Stay: %d sessions, p50 %d min, p90 %d min, p99 %d min, max %d min%n",
+                                    stays.getCount(), stays.quantile(0.5), stays.quantile(0.9),
+                                    stays.quantile(0.99), stays.getMax()));
+        report.append("Emails sent: ").append(notificationSink.getAcceptedCount()).append(System.lineSeparator());
+        return report.toString();
+    }
+
+    private void appendRow(StringBuilder report, String label, DayStats day, int dayCount) {
+        double averageOccupancy = (double) day.parkedMinutes / (dayCount * 24 * 60) * 100 / scenario.spots;
+        report.append(String.format("%-10s %8d %7d %8d %8d %8d %7d %8d %8d %6d %8d %8d %8d %5d %6.1f%n", label,
+                                    day.walkIns, day.turnedAway, day.reserved, day.bookingsRejected,
+                                    day.reservedArrivals, day.noShows, day.tooLate, day.autoCancelled,
+                                    day.exits, day.lateExits, day.latePickups, day.extensions,
+                                    day.peakParked, averageOccupancy));
+    }
+}
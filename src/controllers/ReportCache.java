@@ -0,0 +1,155 @@
+package controllers;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import entities.ParkingReport;
+
+/**
+ * ReportCache keeps computed ParkingReport objects keyed by report type and period,
+ * so repeated manager requests don't regenerate the same report.
+ *
+ * Reports of closed months never expire; reports that cover the current month
+ * expire after a TTL (bpark.reports.cacheTtlSeconds, default 60).
+ * A parking event drops every cached report whose period contains the event's
+ * order date, so a session that finishes after its month closed still updates that month.
+ * The cache is an LRU bounded by bpark.reports.cacheSize entries (default 64).
+ */
+public class ReportCache implements ParkingEventListener {
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final LinkedHashMap<String, CachedReport> entries;
+    private long invalidationEpoch = 0;    // bumped on every invalidation
+    private volatile Clock clock = Clock.systemDefaultZone();    // decides which months are closed
+
+    // Statistics
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+    private long invalidations = 0;
+
+    public ReportCache() {
+        this(Integer.getInteger("bpark.reports.cacheSize", 64),
+             Integer.getInteger("bpark.reports.cacheTtlSeconds", 60) * 1000L);
+    }
+
+    public ReportCache(int maxEntries, long ttlMillis) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        // Access order - the least recently used report is evicted first
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedReport> eldest) {
+                if (size() > ReportCache.this.maxEntries) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Return the cached report for [from, to) or generate and cache it.
+     * @param from first day of the period
+     * @param to day after the last day of the period
+     * @param generator starts computing the report on a miss (a null result is not cached)
+     */
+    public CompletableFuture<ParkingReport> getOrComputeAsync(String reportType, LocalDate from, LocalDate to,
+                                                              Supplier<CompletableFuture<ParkingReport>> generator) {
+        String key = reportType + ":" + from + ":" + to;
+        long epoch;
+
+        synchronized (this) {
+            CachedReport cached = entries.get(key);
+            if (cached != null && !cached.isExpired()) {
+                hits++;
+                return CompletableFuture.completedFuture(cached.report);
+            }
+            misses++;
+            epoch = invalidationEpoch;
+        }
+
+        // Generated outside the lock so a slow report doesn't block other lookups
+        return generator.get().thenApply(report -> {
+            if (report != null) {
+                boolean closed = !to.isAfter(LocalDate.now(clock).withDayOfMonth(1));
+                long expiresAt = closed ? Long.MAX_VALUE : System.currentTimeMillis() + ttlMillis;
+                synchronized (this) {
+                    // Don't cache a result that may predate an event received while it was computed
+                    if (epoch == invalidationEpoch) {
+                        entries.put(key, new CachedReport(report, from, to, expiresAt));
+                    }
+                }
+            }
+            return report;
+        });
+    }
+
+    /**
+     * Replace the system clock (ReportController.setClock)
+     */
+    public void setClock(Clock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Drop every report whose period contains the day
+     */
+    public synchronized void invalidate(LocalDate day) {
+        invalidationEpoch++;
+        Iterator<CachedReport> it = entries.values().iterator();
+        while (it.hasNext()) {
+            CachedReport cached = it.next();
+            if (!day.isBefore(cached.from) && day.isBefore(cached.to)) {
+                it.remove();
+                invalidations++;
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    @Override
+    public void onParkingEvent(ParkingEvent event) {
+        invalidate(event.getOrderDate());
+    }
+
+    public synchronized double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0.0 : (double) hits / lookups * 100;
+    }
+
+    public synchronized String getStatistics() {
+        return String.format("Report cache - entries: %d/%d, hits: %d, misses: %d (%.1f%% hit rate), evictions: %d, invalidations: %d",
+            entries.size(), maxEntries, hits, misses, getHitRate(), evictions, invalidations);
+    }
+
+    private static class CachedReport {
+        final ParkingReport report;
+        final LocalDate from;
+        final LocalDate to;
+        final long expiresAt;
+
+        CachedReport(ParkingReport report, LocalDate from, LocalDate to, long expiresAt) {
+            this.report = report;
+            this.from = from;
+            this.to = to;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired() {
+            return System.currentTimeMillis() >= expiresAt;
+        }
+    }
+}
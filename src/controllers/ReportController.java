@@ -1,16 +1,30 @@
 package controllers;
 
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.time.Clock;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import entities.OccupancyHeatmap;
 import entities.ParkingReport;
 
 /**
@@ -20,16 +34,211 @@ import entities.ParkingReport;
 public class ReportController {
     protected Connection conn;
     public int successFlag;
+    
+    // Per-day aggregates kept up to date by parking events
+    private DailyRollupService rollupService;
+    
+    // Computed reports, dropped when a parking event touches their period
+    private final ReportCache reportCache = new ReportCache();
+    
+    // Finished sessions in memory for the monthly totals, daily statistics and peak hours
+    // (loaded in the background at startup)
+    private final SessionColumnStore sessionStore = new SessionColumnStore();
+    
+    // Live day-of-week x hour usage, fed by entry/exit events (loaded in the background at startup)
+    private final OccupancyTracker occupancyTracker = new OccupancyTracker();
+    
+    // Duration/lateness percentiles per day and per spot (loaded in the background at startup)
+    private final SessionSketches sessionSketches = new SessionSketches();
+    
+    // Closed months are computed once after month end and read from monthly_reports afterwards
+    private MonthlyReportScheduler monthlyReportScheduler;
+    
+    // Report queries run on their own connections and threads, away from the gate operations
+    private static final int REPORT_POOL_SIZE = Integer.getInteger("bpark.reports.poolSize", 4);
+    private ConnectionPool reportPool;
+    private final ExecutorService reportExecutor = Executors.newFixedThreadPool(REPORT_POOL_SIZE, r -> {
+        Thread t = new Thread(r, "report-worker");
+        t.setDaemon(true);
+        return t;
+    });
+    
+    // Source of "today" for the report periods, the heatmap window and closed months
+    private volatile Clock clock = Clock.systemDefaultZone();
 
     public ReportController(String dbname, String pass) {
         String connectPath = "jdbc:mysql://localhost/" + dbname + "?serverTimezone=Asia/Jerusalem";
         connectToDB(connectPath, pass);
+        
+        if (successFlag == 1) {
+            rollupService = new DailyRollupService(conn);
+            rollupService.initialize();
+            
+            try {
+                reportPool = new ConnectionPool(connectPath, "root", pass, REPORT_POOL_SIZE);
+                System.out.println("Report connection pool opened (" + REPORT_POOL_SIZE + " connections)");
+            } catch (SQLException e) {
+                System.out.println("Report connection pool failed, reports will share the main connection: " + e.getMessage());
+            }
+            
+            // One loader thread, so the report workers are free for requests while these load
+            Thread loader = new Thread(() -> {
+                loadSessionStore();
+                loadSessionSketches();
+                loadOccupancyTracker();
+            }, "report-loader");
+            loader.setDaemon(true);
+            loader.start();
+            
+            monthlyReportScheduler = new MonthlyReportScheduler(this);
+            monthlyReportScheduler.start();
+        } else {
+            sessionSketches.skipLoad();
+        }
+    }
+
+    /**
+     * No database - for subclasses that generate the reports elsewhere (InMemoryReportController)
+     * @param clock the clock of the sessions the reports are about
+     */
+    protected ReportController(Clock clock) {
+        sessionSketches.skipLoad();
+        this.clock = clock;
+        reportCache.setClock(clock);
+        occupancyTracker.setClock(clock);
     }
 
     public Connection getConnection() {
         return conn;
     }
 
+    public Clock getClock() {
+        return clock;
+    }
+
+    /**
+     * Replace the system clock - use the parking controller's, so reports and sessions agree on "now"
+     */
+    public void setClock(Clock clock) {
+        this.clock = clock;
+        reportCache.setClock(clock);
+        occupancyTracker.setClock(clock);
+        if (rollupService != null) {
+            rollupService.setClock(clock);
+        }
+    }
+
+    /**
+     * The current time on this controller's clock
+     */
+    protected LocalDateTime now() {
+        return LocalDateTime.now(clock);
+    }
+
+    /**
+     * The rollup maintainer - register it with ParkingController.addParkingEventListener
+     */
+    public DailyRollupService getRollupService() {
+        return rollupService;
+    }
+
+    /**
+     * The report cache - register it with ParkingController.addParkingEventListener
+     */
+    public ReportCache getReportCache() {
+        return reportCache;
+    }
+
+    /**
+     * The in-memory session store - register it with ParkingController.addParkingEventListener
+     */
+    public SessionColumnStore getSessionStore() {
+        return sessionStore;
+    }
+
+    /**
+     * The occupancy tracker - register it with ParkingController.addParkingEventListener
+     */
+    public OccupancyTracker getOccupancyTracker() {
+        return occupancyTracker;
+    }
+
+    /**
+     * The percentile sketches - register them with ParkingController.addParkingEventListener
+     */
+    public SessionSketches getSessionSketches() {
+        return sessionSketches;
+    }
+
+    /**
+     * The monthly report scheduler - register it with ParkingController.addParkingEventListener
+     * (or null if the database connection failed)
+     */
+    public MonthlyReportScheduler getMonthlyReportScheduler() {
+        return monthlyReportScheduler;
+    }
+
+    ExecutorService getReportExecutor() {
+        return reportExecutor;
+    }
+
+    private void loadSessionStore() {
+        Connection connection = null;
+        try {
+            connection = borrowConnection();
+            sessionStore.load(connection);
+        } catch (SQLException e) {
+            System.out.println("Error loading session column store: " + e.getMessage());
+        } finally {
+            releaseConnection(connection);
+        }
+    }
+
+    private void loadSessionSketches() {
+        Connection connection = null;
+        try {
+            connection = borrowConnection();
+            sessionSketches.load(connection);
+        } catch (SQLException e) {
+            System.out.println("Error loading session sketches: " + e.getMessage());
+            sessionSketches.skipLoad();
+        } finally {
+            releaseConnection(connection);
+        }
+    }
+
+    private void loadOccupancyTracker() {
+        Connection connection = null;
+        try {
+            connection = borrowConnection();
+            occupancyTracker.load(connection);
+        } catch (SQLException e) {
+            System.out.println("Error loading occupancy tracker: " + e.getMessage());
+        } finally {
+            releaseConnection(connection);
+        }
+    }
+
+    /**
+     * Gets the occupancy heatmap of the last four weeks (from memory)
+     */
+    public OccupancyHeatmap getOccupancyHeatmap() {
+        return occupancyTracker.getHeatmap();
+    }
+
+    /**
+     * Stop the report workers and close the pooled connections
+     */
+    public void shutdown() {
+        if (monthlyReportScheduler != null) {
+            monthlyReportScheduler.shutdown();
+        }
+        reportExecutor.shutdown();
+        if (reportPool != null) {
+            reportPool.close();
+        }
+    }
+
     /**
      * Establishes connection to the MySQL database
      */
@@ -59,113 +268,173 @@ public class ReportController {
      * @return ArrayList of ParkingReport objects
      */
     public ArrayList<ParkingReport> getParkingReports(String reportType) {
-        ArrayList<ParkingReport> reports = new ArrayList<>();
+        return getParkingReportsAsync(reportType).join();
+    }
+
+    /**
+     * Same as getParkingReports, but runs on the report executor.
+     * With "ALL" both reports, and the queries inside each report, run at the same time.
+     */
+    public CompletableFuture<ArrayList<ParkingReport>> getParkingReportsAsync(String reportType) {
+        // The live reports cover the last 30 days
+        LocalDate today = now().toLocalDate();
+        LocalDate from = today.minusDays(30);
+        LocalDate to = today.plusDays(1);
+        
+        List<CompletableFuture<ParkingReport>> parts = new ArrayList<>();
         
         switch (reportType.toUpperCase()) {
             case "PARKING_TIME":
-                reports.add(generateParkingTimeReport());
+                parts.add(reportCache.getOrComputeAsync("PARKING_TIME", from, to, this::generateParkingTimeReport));
                 break;
             case "SUBSCRIBER_STATUS":
-                reports.add(generateSubscriberStatusReport());
+                parts.add(reportCache.getOrComputeAsync("SUBSCRIBER_STATUS", from, to, this::generateSubscriberStatusReport));
                 break;
             case "ALL":
-                reports.add(generateParkingTimeReport());
-                reports.add(generateSubscriberStatusReport());
+                parts.add(reportCache.getOrComputeAsync("PARKING_TIME", from, to, this::generateParkingTimeReport));
+                parts.add(reportCache.getOrComputeAsync("SUBSCRIBER_STATUS", from, to, this::generateSubscriberStatusReport));
                 break;
             default:
                 System.out.println("Unknown report type: " + reportType);
                 break;
         }
         
-        return reports;
+        return collect(parts);
     }
 
     /**
-     * Generates monthly reports automatically at the end of each month
+     * Gets the monthly reports of a month. Closed months are read from the reports stored
+     * at month end; the current month is generated live and not stored.
      * @param monthYear Format: "YYYY-MM"
      * @return ArrayList of monthly reports
      */
     public ArrayList<ParkingReport> generateMonthlyReports(String monthYear) {
-        ArrayList<ParkingReport> monthlyReports = new ArrayList<>();
-        
+        return generateMonthlyReportsAsync(monthYear).join();
+    }
+
+    /**
+     * Same as generateMonthlyReports, but runs on the report executor
+     */
+    public CompletableFuture<ArrayList<ParkingReport>> generateMonthlyReportsAsync(String monthYear) {
+        LocalDate reportDate;
         try {
             // Parse the month-year string
             String[] parts = monthYear.split("-");
             int year = Integer.parseInt(parts[0]);
             int month = Integer.parseInt(parts[1]);
             
-            LocalDate reportDate = LocalDate.of(year, month, 1);
-            
-            // Generate parking time report for the specific month
-            ParkingReport parkingTimeReport = generateMonthlyParkingTimeReport(reportDate);
-            if (parkingTimeReport != null) {
-                monthlyReports.add(parkingTimeReport);
-            }
-            
-            // Generate subscriber status report for the specific month
-            ParkingReport subscriberReport = generateMonthlySubscriberStatusReport(reportDate);
-            if (subscriberReport != null) {
-                monthlyReports.add(subscriberReport);
-            }
-            
-            // Store reports in database
-            storeMonthlyReports(monthlyReports);
-            
+            reportDate = LocalDate.of(year, month, 1);
         } catch (Exception e) {
             System.out.println("Error generating monthly reports: " + e.getMessage());
+            return CompletableFuture.completedFuture(new ArrayList<>());
+        }
+        
+        if (monthlyReportScheduler != null && monthlyReportScheduler.isClosedMonth(reportDate)) {
+            return monthlyReportScheduler.getMonthlyReportsAsync(reportDate);
         }
         
-        return monthlyReports;
+        // The month is still running - generate it from the rollups, cached until the next event
+        LocalDate nextMonth = reportDate.plusMonths(1);
+        List<CompletableFuture<ParkingReport>> parts = new ArrayList<>();
+        parts.add(reportCache.getOrComputeAsync("MONTHLY_PARKING_TIME", reportDate, nextMonth, 
+            () -> generateMonthlyParkingTimeReport(reportDate)));
+        parts.add(reportCache.getOrComputeAsync("MONTHLY_SUBSCRIBER_STATUS", reportDate, nextMonth, 
+            () -> generateMonthlySubscriberStatusReport(reportDate)));
+        return collect(parts);
+    }
+
+    /**
+     * Generate both monthly reports of a month, bypassing the cache (used by the scheduler)
+     */
+    CompletableFuture<ArrayList<ParkingReport>> computeMonthlyReportsAsync(LocalDate month) {
+        List<CompletableFuture<ParkingReport>> parts = new ArrayList<>();
+        parts.add(generateMonthlyParkingTimeReport(month));
+        parts.add(generateMonthlySubscriberStatusReport(month));
+        return collect(parts);
+    }
+
+    /**
+     * Wait for all report parts and return them in order, skipping the ones that failed
+     */
+    private static CompletableFuture<ArrayList<ParkingReport>> collect(List<CompletableFuture<ParkingReport>> parts) {
+        return CompletableFuture.allOf(parts.toArray(new CompletableFuture<?>[0])).thenApply(v -> {
+            ArrayList<ParkingReport> reports = new ArrayList<>();
+            for (CompletableFuture<ParkingReport> part : parts) {
+                ParkingReport report = part.join();
+                if (report != null) {
+                    reports.add(report);
+                }
+            }
+            return reports;
+        });
     }
 
     /**
      * Generates a parking time report showing usage patterns, delays, and extensions
      */
-    private ParkingReport generateParkingTimeReport() {
-        ParkingReport report = new ParkingReport("PARKING_TIME", LocalDate.now());
+    private CompletableFuture<ParkingReport> generateParkingTimeReport() {
+        LocalDateTime now = now();
+        LocalDate today = now.toLocalDate();
+        ParkingReport report = new ParkingReport("PARKING_TIME", today);
         
+        // Running sessions count up to now
         String qry = """
             SELECT 
                 COUNT(*) as total_parkings,
-                AVG(TIMESTAMPDIFF(MINUTE, Actual_start_time, COALESCE(Actual_end_time, NOW()))) as avg_duration,
+                AVG(TIMESTAMPDIFF(MINUTE, Actual_start_time, COALESCE(Actual_end_time, ?))) as avg_duration,
                 SUM(CASE WHEN IsLate = 'yes' THEN 1 ELSE 0 END) as late_exits,
                 SUM(CASE WHEN IsExtended = 'yes' THEN 1 ELSE 0 END) as extensions,
-                MIN(TIMESTAMPDIFF(MINUTE, Actual_start_time, COALESCE(Actual_end_time, NOW()))) as min_duration,
-                MAX(TIMESTAMPDIFF(MINUTE, Actual_start_time, COALESCE(Actual_end_time, NOW()))) as max_duration
+                MIN(TIMESTAMPDIFF(MINUTE, Actual_start_time, COALESCE(Actual_end_time, ?))) as min_duration,
+                MAX(TIMESTAMPDIFF(MINUTE, Actual_start_time, COALESCE(Actual_end_time, ?))) as max_duration
             FROM parkinginfo 
             WHERE statusEnum IN ('active', 'finished')
-            AND Date_Of_Placing_Order >= DATE_SUB(CURDATE(), INTERVAL 30 DAY)
+            AND Date_Of_Placing_Order >= ?
             """;
         
-        try (PreparedStatement stmt = conn.prepareStatement(qry)) {
-            try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    report.setTotalParkings(rs.getInt("total_parkings"));
-                    report.setAverageParkingTime(rs.getDouble("avg_duration"));
-                    report.setLateExits(rs.getInt("late_exits"));
-                    report.setExtensions(rs.getInt("extensions"));
-                    report.setMinParkingTime(rs.getInt("min_duration"));
-                    report.setMaxParkingTime(rs.getInt("max_duration"));
-                }
+        Timestamp nowParam = Timestamp.valueOf(now);
+        return withPercentiles(queryAsync("Error generating parking time report", qry, rs -> {
+            report.setTotalParkings(rs.getInt("total_parkings"));
+            report.setAverageParkingTime(rs.getDouble("avg_duration"));
+            report.setLateExits(rs.getInt("late_exits"));
+            report.setExtensions(rs.getInt("extensions"));
+            report.setMinParkingTime(rs.getInt("min_duration"));
+            report.setMaxParkingTime(rs.getInt("max_duration"));
+        }, nowParam, nowParam, nowParam, today.minusDays(30)).thenApply(ok -> report), today.minusDays(30), today.plusDays(1));
+    }
+
+    /**
+     * Fill in the duration and lateness percentiles of [from, to) from the day sketches
+     */
+    private CompletableFuture<ParkingReport> withPercentiles(CompletableFuture<ParkingReport> reportFuture,
+                                                             LocalDate from, LocalDate to) {
+        return reportFuture.thenCombine(sessionSketches.whenLoaded(), (report, loaded) -> {
+            if (report != null) {
+                SessionSketches.Sketches period = sessionSketches.getPeriod(from, to);
+                report.setMedianParkingTime((int) period.getDuration().quantile(0.5));
+                report.setP90ParkingTime((int) period.getDuration().quantile(0.9));
+                report.setP99ParkingTime((int) period.getDuration().quantile(0.99));
+                report.setMedianLateMinutes((int) period.getLateness().quantile(0.5));
+                report.setP90LateMinutes((int) period.getLateness().quantile(0.9));
+                report.setP99LateMinutes((int) period.getLateness().quantile(0.99));
             }
-        } catch (SQLException e) {
-            System.out.println("Error generating parking time report: " + e.getMessage());
-        }
-        
-        return report;
+            return report;
+        });
     }
 
     /**
-     * Generates a subscriber status report showing subscriber activity and usage patterns
+     * Generates a subscriber status report showing subscriber activity and usage patterns.
+     * The three queries are independent and run at the same time on separate connections.
      */
-    private ParkingReport generateSubscriberStatusReport() {
-        ParkingReport report = new ParkingReport("SUBSCRIBER_STATUS", LocalDate.now());
+    private CompletableFuture<ParkingReport> generateSubscriberStatusReport() {
+        LocalDateTime now = now();
+        LocalDate from = now.toLocalDate().minusDays(30);
+        ParkingReport report = new ParkingReport("SUBSCRIBER_STATUS", now.toLocalDate());
         
         // Get active subscribers count
         String activeSubQry = """
             SELECT COUNT(DISTINCT User_ID) as active_subscribers 
             FROM parkinginfo 
-            WHERE Date_Of_Placing_Order >= DATE_SUB(CURDATE(), INTERVAL 30 DAY)
+            WHERE Date_Of_Placing_Order >= ?
             """;
         
         // Get total orders, reservations, and immediate entries
@@ -174,9 +443,9 @@ public class ReportController {
                 COUNT(*) as total_orders,
                 SUM(CASE WHEN IsOrderedEnum = 'yes' THEN 1 ELSE 0 END) as reservations,
                 SUM(CASE WHEN IsOrderedEnum = 'no' THEN 1 ELSE 0 END) as immediate_entries,
-                AVG(TIMESTAMPDIFF(MINUTE, Actual_start_time, COALESCE(Actual_end_time, NOW()))) as avg_session_duration
+                AVG(TIMESTAMPDIFF(MINUTE, Actual_start_time, COALESCE(Actual_end_time, ?))) as avg_session_duration
             FROM parkinginfo 
-            WHERE Date_Of_Placing_Order >= DATE_SUB(CURDATE(), INTERVAL 30 DAY)
+            WHERE Date_Of_Placing_Order >= ?
             AND statusEnum IN ('active', 'finished')
             """;
         
@@ -185,236 +454,350 @@ public class ReportController {
             SELECT COUNT(*) as cancelled_reservations 
             FROM parkinginfo 
             WHERE statusEnum = 'cancelled' 
-            AND Date_Of_Placing_Order >= DATE_SUB(CURDATE(), INTERVAL 30 DAY)
+            AND Date_Of_Placing_Order >= ?
             """;
         
-        try {
-            // Get active subscribers
-            try (PreparedStatement stmt = conn.prepareStatement(activeSubQry)) {
-                try (ResultSet rs = stmt.executeQuery()) {
-                    if (rs.next()) {
-                        report.setActiveSubscribers(rs.getInt("active_subscribers"));
-                    }
-                }
-            }
-            
-            // Get order statistics
-            try (PreparedStatement stmt = conn.prepareStatement(ordersQry)) {
-                try (ResultSet rs = stmt.executeQuery()) {
-                    if (rs.next()) {
-                        report.setTotalOrders(rs.getInt("total_orders"));
-                        report.setReservations(rs.getInt("reservations"));
-                        report.setImmediateEntries(rs.getInt("immediate_entries"));
-                        report.setAverageSessionDuration(rs.getDouble("avg_session_duration"));
-                    }
-                }
-            }
-            
-            // Get cancelled reservations
-            try (PreparedStatement stmt = conn.prepareStatement(cancelledQry)) {
-                try (ResultSet rs = stmt.executeQuery()) {
-                    if (rs.next()) {
-                        report.setCancelledReservations(rs.getInt("cancelled_reservations"));
-                    }
-                }
-            }
-            
-        } catch (SQLException e) {
-            System.out.println("Error generating subscriber status report: " + e.getMessage());
-        }
+        String error = "Error generating subscriber status report";
+        
+        CompletableFuture<Boolean> activeSubscribers = queryAsync(error, activeSubQry, 
+            rs -> report.setActiveSubscribers(rs.getInt("active_subscribers")), from);
         
-        return report;
+        CompletableFuture<Boolean> orders = queryAsync(error, ordersQry, rs -> {
+            report.setTotalOrders(rs.getInt("total_orders"));
+            report.setReservations(rs.getInt("reservations"));
+            report.setImmediateEntries(rs.getInt("immediate_entries"));
+            report.setAverageSessionDuration(rs.getDouble("avg_session_duration"));
+        }, Timestamp.valueOf(now), from);
+        
+        CompletableFuture<Boolean> cancelled = queryAsync(error, cancelledQry, 
+            rs -> report.setCancelledReservations(rs.getInt("cancelled_reservations")), from);
+        
+        return CompletableFuture.allOf(activeSubscribers, orders, cancelled).thenApply(v -> report);
     }
 
     /**
-     * Generates a monthly parking time report for a specific month
+     * Generates a monthly parking time report for a specific month.
+     * Scanned from the session store once it is loaded; until then read from the daily
+     * rollups - at most 31 rows, however long the history is.
      */
-    private ParkingReport generateMonthlyParkingTimeReport(LocalDate reportDate) {
+    private CompletableFuture<ParkingReport> generateMonthlyParkingTimeReport(LocalDate reportDate) {
         ParkingReport report = new ParkingReport("PARKING_TIME", reportDate);
+        LocalDate firstDay = reportDate.withDayOfMonth(1);
+        
+        if (sessionStore.isLoaded()) {
+            int fromDay = (int) firstDay.toEpochDay();
+            int toDay = (int) firstDay.plusMonths(1).toEpochDay();
+            return withPercentiles(CompletableFuture.supplyAsync(() -> {
+                SessionColumnStore.GroupStats month = sessionStore.aggregate(
+                    (c, row) -> c.orderDay(row) >= fromDay && c.orderDay(row) < toDay);
+                report.setTotalParkings((int) month.count[0]);
+                report.setAverageParkingTime(month.averageDuration(0));
+                report.setLateExits((int) month.lateCount[0]);
+                report.setExtensions((int) month.extendedCount[0]);
+                report.setMinParkingTime(month.count[0] > 0 ? month.minDuration[0] : 0);
+                report.setMaxParkingTime(month.count[0] > 0 ? month.maxDuration[0] : 0);
+                return report;
+            }, reportExecutor), firstDay, firstDay.plusMonths(1));
+        }
         
         String qry = """
             SELECT 
-                COUNT(*) as total_parkings,
-                AVG(TIMESTAMPDIFF(MINUTE, Actual_start_time, COALESCE(Actual_end_time, Estimated_end_time))) as avg_duration,
-                SUM(CASE WHEN IsLate = 'yes' THEN 1 ELSE 0 END) as late_exits,
-                SUM(CASE WHEN IsExtended = 'yes' THEN 1 ELSE 0 END) as extensions,
-                MIN(TIMESTAMPDIFF(MINUTE, Actual_start_time, COALESCE(Actual_end_time, Estimated_end_time))) as min_duration,
-                MAX(TIMESTAMPDIFF(MINUTE, Actual_start_time, COALESCE(Actual_end_time, Estimated_end_time))) as max_duration
-            FROM parkinginfo 
-            WHERE YEAR(Date_Of_Placing_Order) = ? AND MONTH(Date_Of_Placing_Order) = ?
-            AND statusEnum IN ('active', 'finished')
+                COALESCE(SUM(Finished_Count), 0) as total_parkings,
+                COALESCE(SUM(Total_Duration_Min) / NULLIF(SUM(Finished_Count), 0), 0) as avg_duration,
+                COALESCE(SUM(Late_Count), 0) as late_exits,
+                COALESCE(SUM(Extended_Count), 0) as extensions,
+                COALESCE(MIN(Min_Duration_Min), 0) as min_duration,
+                COALESCE(MAX(Max_Duration_Min), 0) as max_duration
+            FROM parking_daily_rollup 
+            WHERE Rollup_Date >= ? AND Rollup_Date < ?
             """;
         
-        try (PreparedStatement stmt = conn.prepareStatement(qry)) {
-            stmt.setInt(1, reportDate.getYear());
-            stmt.setInt(2, reportDate.getMonthValue());
-            
-            try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    report.setTotalParkings(rs.getInt("total_parkings"));
-                    report.setAverageParkingTime(rs.getDouble("avg_duration"));
-                    report.setLateExits(rs.getInt("late_exits"));
-                    report.setExtensions(rs.getInt("extensions"));
-                    report.setMinParkingTime(rs.getInt("min_duration"));
-                    report.setMaxParkingTime(rs.getInt("max_duration"));
-                    
-                    return report;
-                }
-            }
-        } catch (SQLException e) {
-            System.out.println("Error generating monthly parking time report: " + e.getMessage());
-        }
-        
-        return null;
+        return withPercentiles(queryAsync("Error generating monthly parking time report", qry, rs -> {
+            report.setTotalParkings(rs.getInt("total_parkings"));
+            report.setAverageParkingTime(rs.getDouble("avg_duration"));
+            report.setLateExits(rs.getInt("late_exits"));
+            report.setExtensions(rs.getInt("extensions"));
+            report.setMinParkingTime(rs.getInt("min_duration"));
+            report.setMaxParkingTime(rs.getInt("max_duration"));
+        }, firstDay, firstDay.plusMonths(1)).thenApply(ok -> ok ? report : null), firstDay, firstDay.plusMonths(1));
     }
 
     /**
-     * Generates a monthly subscriber status report for a specific month
+     * Generates a monthly subscriber status report for a specific month (from the daily rollups)
      */
-    private ParkingReport generateMonthlySubscriberStatusReport(LocalDate reportDate) {
+    private CompletableFuture<ParkingReport> generateMonthlySubscriberStatusReport(LocalDate reportDate) {
         ParkingReport report = new ParkingReport("SUBSCRIBER_STATUS", reportDate);
         
-        // Get active subscribers for the month
+        // Distinct users can't be summed across days, so count them from the per-day user list
         String activeSubQry = """
             SELECT COUNT(DISTINCT User_ID) as active_subscribers 
-            FROM parkinginfo 
-            WHERE YEAR(Date_Of_Placing_Order) = ? AND MONTH(Date_Of_Placing_Order) = ?
+            FROM parking_daily_rollup_users 
+            WHERE Rollup_Date >= ? AND Rollup_Date < ?
             """;
         
-        // Get monthly order statistics
+        // Get monthly order statistics and cancelled reservations
         String ordersQry = """
             SELECT 
-                COUNT(*) as total_orders,
-                SUM(CASE WHEN IsOrderedEnum = 'yes' THEN 1 ELSE 0 END) as reservations,
-                SUM(CASE WHEN IsOrderedEnum = 'no' THEN 1 ELSE 0 END) as immediate_entries,
-                AVG(TIMESTAMPDIFF(MINUTE, Actual_start_time, COALESCE(Actual_end_time, Estimated_end_time))) as avg_session_duration
-            FROM parkinginfo 
-            WHERE YEAR(Date_Of_Placing_Order) = ? AND MONTH(Date_Of_Placing_Order) = ?
-            AND statusEnum IN ('active', 'finished')
+                COALESCE(SUM(Finished_Count), 0) as total_orders,
+                COALESCE(SUM(Reservation_Count), 0) as reservations,
+                COALESCE(SUM(Immediate_Count), 0) as immediate_entries,
+                COALESCE(SUM(Total_Duration_Min) / NULLIF(SUM(Finished_Count), 0), 0) as avg_session_duration,
+                COALESCE(SUM(Cancelled_Count), 0) as cancelled_reservations
+            FROM parking_daily_rollup 
+            WHERE Rollup_Date >= ? AND Rollup_Date < ?
             """;
         
-        // Get cancelled reservations for the month
-        String cancelledQry = """
-            SELECT COUNT(*) as cancelled_reservations 
-            FROM parkinginfo 
-            WHERE statusEnum = 'cancelled' 
-            AND YEAR(Date_Of_Placing_Order) = ? AND MONTH(Date_Of_Placing_Order) = ?
-            """;
+        String error = "Error generating monthly subscriber status report";
+        LocalDate firstDay = reportDate.withDayOfMonth(1);
+        LocalDate nextMonth = firstDay.plusMonths(1);
         
-        try {
-            // Get active subscribers
-            try (PreparedStatement stmt = conn.prepareStatement(activeSubQry)) {
-                stmt.setInt(1, reportDate.getYear());
-                stmt.setInt(2, reportDate.getMonthValue());
-                try (ResultSet rs = stmt.executeQuery()) {
-                    if (rs.next()) {
-                        report.setActiveSubscribers(rs.getInt("active_subscribers"));
-                    }
-                }
-            }
-            
-            // Get order statistics
-            try (PreparedStatement stmt = conn.prepareStatement(ordersQry)) {
-                stmt.setInt(1, reportDate.getYear());
-                stmt.setInt(2, reportDate.getMonthValue());
-                try (ResultSet rs = stmt.executeQuery()) {
-                    if (rs.next()) {
-                        report.setTotalOrders(rs.getInt("total_orders"));
-                        report.setReservations(rs.getInt("reservations"));
-                        report.setImmediateEntries(rs.getInt("immediate_entries"));
-                        report.setAverageSessionDuration(rs.getDouble("avg_session_duration"));
+        CompletableFuture<Boolean> activeSubscribers = queryAsync(error, activeSubQry, 
+            rs -> report.setActiveSubscribers(rs.getInt("active_subscribers")), firstDay, nextMonth);
+        
+        CompletableFuture<Boolean> orders = queryAsync(error, ordersQry, rs -> {
+            report.setTotalOrders(rs.getInt("total_orders"));
+            report.setReservations(rs.getInt("reservations"));
+            report.setImmediateEntries(rs.getInt("immediate_entries"));
+            report.setAverageSessionDuration(rs.getDouble("avg_session_duration"));
+            report.setCancelledReservations(rs.getInt("cancelled_reservations"));
+        }, firstDay, nextMonth);
+        
+        return activeSubscribers.thenCombine(orders, (a, b) -> a && b ? report : null);
+    }
+
+    /**
+     * Bind [first day of month, first day of next month) to the first two parameters
+     */
+    private void setMonthRange(PreparedStatement stmt, LocalDate month) throws SQLException {
+        LocalDate firstDay = month.withDayOfMonth(1);
+        stmt.setObject(1, firstDay);
+        stmt.setObject(2, firstDay.plusMonths(1));
+    }
+
+    /**
+     * Reads the single row of an aggregate query
+     */
+    @FunctionalInterface
+    private interface RowReader {
+        void read(ResultSet rs) throws SQLException;
+    }
+
+    /**
+     * Run a single-row query on a pooled connection in the report executor.
+     * @return a future that completes with false (after logging) if the query failed
+     */
+    private CompletableFuture<Boolean> queryAsync(String errorMessage, String qry, RowReader reader, Object... params) {
+        return CompletableFuture.supplyAsync(() -> {
+            Connection connection = null;
+            try {
+                connection = borrowConnection();
+                try (PreparedStatement stmt = connection.prepareStatement(qry)) {
+                    for (int i = 0; i < params.length; i++) {
+                        stmt.setObject(i + 1, params[i]);
                     }
-                }
-            }
-            
-            // Get cancelled reservations
-            try (PreparedStatement stmt = conn.prepareStatement(cancelledQry)) {
-                stmt.setInt(1, reportDate.getYear());
-                stmt.setInt(2, reportDate.getMonthValue());
-                try (ResultSet rs = stmt.executeQuery()) {
-                    if (rs.next()) {
-                        report.setCancelledReservations(rs.getInt("cancelled_reservations"));
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        if (rs.next()) {
+                            reader.read(rs);
+                        }
                     }
                 }
+                return true;
+            } catch (SQLException e) {
+                System.out.println(errorMessage + ": " + e.getMessage());
+                return false;
+            } finally {
+                releaseConnection(connection);
             }
-            
-            return report;
-            
-        } catch (SQLException e) {
-            System.out.println("Error generating monthly subscriber status report: " + e.getMessage());
+        }, reportExecutor);
+    }
+
+    /**
+     * A connection for report work - from the pool, or the main connection if the pool couldn't be opened
+     */
+    Connection borrowConnection() throws SQLException {
+        return reportPool != null ? reportPool.borrow() : conn;
+    }
+
+    void releaseConnection(Connection connection) {
+        if (reportPool != null && connection != null) {
+            reportPool.release(connection);
         }
-        
-        return null;
     }
 
     /**
-     * Stores monthly reports in the database
+     * Logs generated monthly reports in the reports table
      */
-    private void storeMonthlyReports(ArrayList<ParkingReport> reports) {
-        String qry = "INSERT INTO reports (Report_Type, Generated_Date, Report_Data) VALUES (?, NOW(), ?)";
+    void storeMonthlyReports(ArrayList<ParkingReport> reports) {
+        String qry = "INSERT INTO reports (Report_Type, Generated_Date, Report_Data) VALUES (?, ?, ?)";
         
-        try (PreparedStatement stmt = conn.prepareStatement(qry)) {
-            for (ParkingReport report : reports) {
-                stmt.setString(1, report.getReportType());
-                stmt.setString(2, report.toString()); // Store as JSON or formatted string
-                stmt.executeUpdate();
+        Connection connection = null;
+        try {
+            connection = borrowConnection();
+            try (PreparedStatement stmt = connection.prepareStatement(qry)) {
+                for (ParkingReport report : reports) {
+                    stmt.setString(1, report.getReportType());
+                    stmt.setTimestamp(2, Timestamp.valueOf(now()));
+                    stmt.setString(3, report.toString()); // Store as JSON or formatted string
+                    stmt.executeUpdate();
+                }
             }
             System.out.println("Monthly reports stored successfully");
         } catch (SQLException e) {
             System.out.println("Error storing monthly reports: " + e.getMessage());
+        } finally {
+            releaseConnection(connection);
         }
     }
 
     /**
-     * Gets historical reports from the database
+     * Stream a dataset to a channel without materializing it.
+     * Rows are read with a forward-only streaming cursor and written through a fixed-size buffer,
+     * so memory use does not depend on the size of the export.
+     * @param dataset "PARKING_HISTORY" (all parkings, or one user's if userName is given) or "REPORTS"
+     * @param userName limit PARKING_HISTORY to this subscriber, or null for everyone
+     * @param out where the encoded rows go (a file or the client) - closed when the export ends
+     * @return number of rows exported
      */
-    public ArrayList<ParkingReport> getHistoricalReports(String reportType, LocalDate fromDate, LocalDate toDate) {
-        ArrayList<ParkingReport> reports = new ArrayList<>();
+    public long exportData(String dataset, ExportWriter.Format format, String userName, WritableByteChannel out) 
+            throws SQLException, IOException {
+        String qry;
+        List<Object> params = new ArrayList<>();
         
-        String qry = """
-            SELECT * FROM reports 
-            WHERE Report_Type = ? 
-            AND DATE(Generated_Date) BETWEEN ? AND ? 
-            ORDER BY Generated_Date DESC
-            """;
+        switch (dataset.toUpperCase()) {
+            case "PARKING_HISTORY":
+                if (userName != null && !userName.isEmpty()) {
+                    qry = """
+                        SELECT pi.* FROM parkinginfo_all pi
+                        WHERE pi.User_ID = (SELECT User_ID FROM users WHERE UserName = ?)
+                        ORDER BY pi.ParkingInfo_ID
+                        """;
+                    params.add(userName);
+                } else {
+                    // A UNION ALL view has no defined order, so sort it like the per-user export
+                    qry = "SELECT * FROM parkinginfo_all ORDER BY ParkingInfo_ID";
+                }
+                break;
+            case "REPORTS":
+                qry = "SELECT * FROM reports ORDER BY Generated_Date";
+                break;
+            default:
+                out.close();
+                throw new IllegalArgumentException("Unknown export dataset: " + dataset);
+        }
         
-        try (PreparedStatement stmt = conn.prepareStatement(qry)) {
-            stmt.setString(1, reportType);
-            stmt.setString(2, fromDate.toString());
-            stmt.setString(3, toDate.toString());
+        Connection connection = borrowConnection();
+        try (ExportWriter writer = new ExportWriter(out, format);
+             PreparedStatement stmt = connection.prepareStatement(qry, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            stmt.setFetchSize(Integer.MIN_VALUE);    // MySQL: stream rows instead of buffering the result
+            for (int i = 0; i < params.size(); i++) {
+                stmt.setObject(i + 1, params.get(i));
+            }
             
             try (ResultSet rs = stmt.executeQuery()) {
+                ResultSetMetaData meta = rs.getMetaData();
+                int columnCount = meta.getColumnCount();
+                String[] columns = new String[columnCount];
+                for (int i = 0; i < columnCount; i++) {
+                    columns[i] = meta.getColumnLabel(i + 1);
+                }
+                writer.writeHeader(columns);
+                
+                Object[] row = new Object[columnCount];
                 while (rs.next()) {
-                    // This would need to be enhanced to parse the stored report data
-                    // For now, we'll create a basic report object
-                    ParkingReport report = new ParkingReport();
-                    report.setReportType(rs.getString("Report_Type"));
-                    Timestamp genDate = rs.getTimestamp("Generated_Date");
-                    if (genDate != null) {
-                        report.setReportDate(genDate.toLocalDateTime().toLocalDate());
+                    for (int i = 0; i < columnCount; i++) {
+                        row[i] = rs.getObject(i + 1);
                     }
-                    reports.add(report);
+                    writer.writeRow(row);
                 }
             }
-        } catch (SQLException e) {
-            System.out.println("Error getting historical reports: " + e.getMessage());
+            return writer.getRowsWritten();
+        } finally {
+            releaseConnection(connection);
         }
-        
-        return reports;
     }
 
     /**
-     * Gets peak usage hours for analysis
+     * Run an export on the report executor
+     */
+    public CompletableFuture<Long> exportDataAsync(String dataset, ExportWriter.Format format, String userName, 
+                                                   WritableByteChannel out) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return exportData(dataset, format, userName, out);
+            } catch (SQLException | IOException e) {
+                throw new CompletionException(e);
+            }
+        }, reportExecutor);
+    }
+
+    /**
+     * Export a dataset straight into a file (for scheduled or server-side exports)
+     */
+    public long exportToFile(String dataset, ExportWriter.Format format, String userName, Path file) 
+            throws SQLException, IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, 
+                                               StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        return exportData(dataset, format, userName, channel);
+    }
+
+    /**
+     * Gets historical reports from the reports stored at each month end
+     * @return the stored reports of the months between fromDate and toDate, newest first
+     */
+    public ArrayList<ParkingReport> getHistoricalReports(String reportType, LocalDate fromDate, LocalDate toDate) {
+        if (monthlyReportScheduler == null) {
+            return new ArrayList<>();
+        }
+        return monthlyReportScheduler.loadStoredReports(reportType, fromDate, toDate);
+    }
+
+    /**
+     * Parking duration percentiles of every spot, over all finished sessions
+     */
+    public ArrayList<String> getSpotDurationPercentiles() {
+        ArrayList<String> spots = new ArrayList<>();
+        for (Map.Entry<Integer, SessionSketches.Sketches> entry : sessionSketches.getSpots().entrySet()) {
+            QuantileSketch duration = entry.getValue().getDuration();
+            spots.add(String.format("Spot %d: %d sessions, p50 %d min, p90 %d min, p99 %d min",
+                entry.getKey(), duration.getCount(), duration.quantile(0.5), duration.quantile(0.9), duration.quantile(0.99)));
+        }
+        return spots;
+    }
+
+    /**
+     * Gets peak usage hours for analysis.
+     * Answered from the occupancy tracker (last four weeks) once it is loaded, before that
+     * from the session store (finished sessions of the last 30 days), else from SQL.
      */
     public ArrayList<String> getPeakUsageHours() {
         ArrayList<String> peakHours = new ArrayList<>();
         
+        if (occupancyTracker.isLoaded()) {
+            long[] byHour = new long[OccupancyHeatmap.HOURS];
+            for (int[] day : occupancyTracker.getHeatmap().getEntries()) {
+                for (int hour = 0; hour < byHour.length; hour++) {
+                    byHour[hour] += day[hour];
+                }
+            }
+            addTopHours(peakHours, byHour);
+            return peakHours;
+        }
+        
+        if (sessionStore.isLoaded()) {
+            int fromDay = (int) now().toLocalDate().minusDays(30).toEpochDay();
+            SessionColumnStore.GroupStats byHour = sessionStore.groupBy(
+                (c, row) -> c.orderDay(row) >= fromDay,
+                (c, row) -> c.startHour(row), OccupancyHeatmap.HOURS);
+            addTopHours(peakHours, byHour.count);
+            return peakHours;
+        }
+        
         String qry = """
             SELECT 
                 HOUR(Actual_start_time) as entry_hour,
                 COUNT(*) as entry_count
             FROM parkinginfo 
-            WHERE Date_Of_Placing_Order >= DATE_SUB(CURDATE(), INTERVAL 30 DAY)
+            WHERE Date_Of_Placing_Order >= ?
             AND Actual_start_time IS NOT NULL
             GROUP BY HOUR(Actual_start_time)
             ORDER BY entry_count DESC
@@ -422,6 +805,7 @@ public class ReportController {
             """;
         
         try (PreparedStatement stmt = conn.prepareStatement(qry)) {
+            stmt.setObject(1, now().toLocalDate().minusDays(30));
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
                     int hour = rs.getInt("entry_hour");
@@ -437,26 +821,59 @@ public class ReportController {
     }
 
     /**
-     * Gets daily parking statistics for the current month
+     * Top 5 hours by number of entries
+     */
+    private static void addTopHours(ArrayList<String> peakHours, long[] byHour) {
+        List<Integer> hours = new ArrayList<>();
+        for (int hour = 0; hour < byHour.length; hour++) {
+            if (byHour[hour] > 0) {
+                hours.add(hour);
+            }
+        }
+        hours.sort((a, b) -> Long.compare(byHour[b], byHour[a]));
+        for (int hour : hours.subList(0, Math.min(5, hours.size()))) {
+            peakHours.add(String.format("%02d:00 - %d entries", hour, byHour[hour]));
+        }
+    }
+
+    /**
+     * Gets daily parking statistics for the current month (one rollup row per day)
      */
     public ArrayList<String> getDailyStatistics() {
         ArrayList<String> dailyStats = new ArrayList<>();
         
+        if (sessionStore.isLoaded()) {
+            LocalDate firstDay = now().toLocalDate().withDayOfMonth(1);
+            int fromDay = (int) firstDay.toEpochDay();
+            int days = firstDay.lengthOfMonth();
+            SessionColumnStore.GroupStats byDay = sessionStore.groupBy(
+                (c, row) -> c.orderDay(row) >= fromDay && c.orderDay(row) < fromDay + days,
+                (c, row) -> c.orderDay(row) - fromDay, days);
+            
+            for (int day = days - 1; day >= 0; day--) {
+                if (byDay.count[day] > 0) {
+                    dailyStats.add(String.format("%s: %d entries, %d late exits, %.1f min avg duration", 
+                                                firstDay.plusDays(day), byDay.count[day], byDay.lateCount[day], 
+                                                byDay.averageDuration(day)));
+                }
+            }
+            return dailyStats;
+        }
+        
         String qry = """
             SELECT 
-                DATE(Date_Of_Placing_Order) as order_date,
-                COUNT(*) as daily_entries,
-                SUM(CASE WHEN IsLate = 'yes' THEN 1 ELSE 0 END) as daily_late_exits,
-                AVG(TIMESTAMPDIFF(MINUTE, Actual_start_time, COALESCE(Actual_end_time, NOW()))) as avg_daily_duration
-            FROM parkinginfo 
-            WHERE YEAR(Date_Of_Placing_Order) = YEAR(CURDATE()) 
-            AND MONTH(Date_Of_Placing_Order) = MONTH(CURDATE())
-            AND statusEnum IN ('active', 'finished')
-            GROUP BY DATE(Date_Of_Placing_Order)
-            ORDER BY order_date DESC
+                Rollup_Date as order_date,
+                Finished_Count as daily_entries,
+                Late_Count as daily_late_exits,
+                COALESCE(Total_Duration_Min / NULLIF(Finished_Count, 0), 0) as avg_daily_duration
+            FROM parking_daily_rollup 
+            WHERE Rollup_Date >= ? AND Rollup_Date < ?
+            AND Finished_Count > 0
+            ORDER BY Rollup_Date DESC
             """;
         
         try (PreparedStatement stmt = conn.prepareStatement(qry)) {
+            setMonthRange(stmt, now().toLocalDate());
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
                     String date = rs.getDate("order_date").toString();
@@ -474,4 +891,4 @@ public class ReportController {
         
         return dailyStats;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,372 @@
+package controllers;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * SessionColumnStore is an append-only, in-memory copy of all finished parking sessions,
+ * kept as one primitive array per column instead of one object per session.
+ * It is loaded from parkinginfo at startup and then fed by EXIT events, so analytics
+ * never have to go back to MySQL.
+ *
+ * Queries are a filter plus a group-by over row indexes, scanned in parallel with fork/join:
+ * <pre>
+ *   GroupStats byHour = store.groupBy(
+ *       (c, row) -> c.orderDay(row) >= fromDay,
+ *       (c, row) -> c.startHour(row), 24);
+ * </pre>
+ */
+public class SessionColumnStore implements ParkingEventListener {
+
+    public static final int FLAG_LATE = 1;
+    public static final int FLAG_EXTENDED = 2;
+    public static final int FLAG_RESERVATION = 4;
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int SCAN_CHUNK = 64 * 1024;    // rows per fork/join leaf task
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    // Columns - row i of every array is the same session
+    private int[] parkingInfoId = new int[INITIAL_CAPACITY];
+    private long[] startEpoch = new long[INITIAL_CAPACITY];    // Actual_start_time, seconds
+    private byte[] startHour = new byte[INITIAL_CAPACITY];     // hour of day of Actual_start_time
+    private int[] orderDay = new int[INITIAL_CAPACITY];        // Date_Of_Placing_Order, epoch day
+    private int[] durationMinutes = new int[INITIAL_CAPACITY];
+    private int[] userId = new int[INITIAL_CAPACITY];
+    private int[] spotId = new int[INITIAL_CAPACITY];
+    private byte[] flags = new byte[INITIAL_CAPACITY];
+    private int size = 0;
+
+    // Exit events that arrive while the initial load is running
+    private boolean loading = false;
+    private final List<ParkingEvent> pendingEvents = new ArrayList<>();
+    private volatile boolean loaded = false;
+
+    /**
+     * Load every finished session from the database.
+     * Rows are streamed so the result set is never held in memory as a whole.
+     */
+    public void load(Connection connection) {
+        synchronized (this) {
+            loading = true;
+        }
+
+        String qry = """
+            SELECT ParkingInfo_ID, User_ID, ParkingSpot_ID, Date_Of_Placing_Order,
+                   Actual_start_time, Actual_end_time, IsLate, IsExtended, IsOrderedEnum
+            FROM parkinginfo_all
+            WHERE statusEnum = 'finished'
+            ORDER BY ParkingInfo_ID
+            """;
+
+        long start = System.currentTimeMillis();
+        try (PreparedStatement stmt = connection.prepareStatement(qry, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            stmt.setFetchSize(Integer.MIN_VALUE);    // MySQL: stream rows one by one
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    Timestamp orderTime = rs.getTimestamp("Date_Of_Placing_Order");
+                    Timestamp startTime = rs.getTimestamp("Actual_start_time");
+                    Timestamp endTime = rs.getTimestamp("Actual_end_time");
+                    if (orderTime == null || startTime == null || endTime == null) {
+                        continue;
+                    }
+
+                    LocalDateTime started = startTime.toLocalDateTime();
+                    int duration = (int) Duration.between(started, endTime.toLocalDateTime()).toMinutes();
+                    append(rs.getInt("ParkingInfo_ID"), started, orderTime.toLocalDateTime().toLocalDate(),
+                           duration, rs.getInt("User_ID"), rs.getInt("ParkingSpot_ID"),
+                           flags("yes".equals(rs.getString("IsLate")),
+                                 "yes".equals(rs.getString("IsExtended")),
+                                 "yes".equals(rs.getString("IsOrderedEnum"))));
+                }
+            }
+        } catch (SQLException e) {
+            System.out.println("Error loading session column store: " + e.getMessage());
+        }
+
+        synchronized (this) {
+            // Apply exits that happened during the load, unless the load already saw them
+            int loadedRows = size;
+            for (ParkingEvent event : pendingEvents) {
+                if (Arrays.binarySearch(parkingInfoId, 0, loadedRows, event.getParkingInfoId()) < 0) {
+                    appendEvent(event);
+                }
+            }
+            pendingEvents.clear();
+            loading = false;
+            loaded = true;
+        }
+
+        System.out.println("Session column store loaded: " + size() + " sessions in " +
+                           (System.currentTimeMillis() - start) + " ms");
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    @Override
+    public synchronized void onParkingEvent(ParkingEvent event) {
+        if (event.getType() != ParkingEvent.Type.EXIT || event.getStartTime() == null) {
+            return;
+        }
+        if (loading) {
+            pendingEvents.add(event);
+        } else {
+            appendEvent(event);
+        }
+    }
+
+    private void appendEvent(ParkingEvent event) {
+        append(event.getParkingInfoId(), event.getStartTime(), event.getOrderDate(), event.getDurationMinutes(),
+               event.getUserId(), event.getSpotId(), flags(event.isLate(), event.isExtended(), event.isReservation()));
+    }
+
+    private static byte flags(boolean late, boolean extended, boolean reservation) {
+        return (byte) ((late ? FLAG_LATE : 0) | (extended ? FLAG_EXTENDED : 0) | (reservation ? FLAG_RESERVATION : 0));
+    }
+
+    private synchronized void append(int id, LocalDateTime start, LocalDate order, int duration, int user, int spot, byte flag) {
+        if (size == parkingInfoId.length) {
+            int capacity = size * 2;
+            parkingInfoId = Arrays.copyOf(parkingInfoId, capacity);
+            startEpoch = Arrays.copyOf(startEpoch, capacity);
+            startHour = Arrays.copyOf(startHour, capacity);
+            orderDay = Arrays.copyOf(orderDay, capacity);
+            durationMinutes = Arrays.copyOf(durationMinutes, capacity);
+            userId = Arrays.copyOf(userId, capacity);
+            spotId = Arrays.copyOf(spotId, capacity);
+            flags = Arrays.copyOf(flags, capacity);
+        }
+        parkingInfoId[size] = id;
+        startEpoch[size] = start.atZone(ZONE).toEpochSecond();
+        startHour[size] = (byte) start.getHour();
+        orderDay[size] = (int) order.toEpochDay();
+        durationMinutes[size] = duration;
+        userId[size] = user;
+        spotId[size] = spot;
+        flags[size] = flag;
+        size++;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * A consistent read-only view of the columns. Rows below size never change,
+     * so a snapshot can be scanned without holding the lock.
+     */
+    public synchronized Columns snapshot() {
+        return new Columns(startEpoch, startHour, orderDay, durationMinutes, userId, spotId, flags, size);
+    }
+
+    /**
+     * Filter rows and aggregate them into groups, scanning in parallel
+     * @param filter which rows to include
+     * @param grouping maps a row to a group in [0, groupCount), or -1 to skip it
+     */
+    public GroupStats groupBy(RowFilter filter, RowGrouping grouping, int groupCount) {
+        Columns columns = snapshot();
+        return ForkJoinPool.commonPool().invoke(new ScanTask(columns, filter, grouping, groupCount, 0, columns.size));
+    }
+
+    /**
+     * Count and aggregate the rows that match a filter
+     */
+    public GroupStats aggregate(RowFilter filter) {
+        return groupBy(filter, (c, row) -> 0, 1);
+    }
+
+    @FunctionalInterface
+    public interface RowFilter {
+        boolean test(Columns columns, int row);
+    }
+
+    @FunctionalInterface
+    public interface RowGrouping {
+        int group(Columns columns, int row);
+    }
+
+    /**
+     * Read access to one row of each column
+     */
+    public static final class Columns {
+        private final long[] startEpoch;
+        private final byte[] startHour;
+        private final int[] orderDay;
+        private final int[] durationMinutes;
+        private final int[] userId;
+        private final int[] spotId;
+        private final byte[] flags;
+        private final int size;
+
+        private Columns(long[] startEpoch, byte[] startHour, int[] orderDay, int[] durationMinutes, int[] userId,
+                        int[] spotId, byte[] flags, int size) {
+            this.startEpoch = startEpoch;
+            this.startHour = startHour;
+            this.orderDay = orderDay;
+            this.durationMinutes = durationMinutes;
+            this.userId = userId;
+            this.spotId = spotId;
+            this.flags = flags;
+            this.size = size;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public long startEpoch(int row) {
+            return startEpoch[row];
+        }
+
+        /**
+         * Hour of day (0-23, server time zone) the car entered
+         */
+        public int startHour(int row) {
+            return startHour[row];
+        }
+
+        public int orderDay(int row) {
+            return orderDay[row];
+        }
+
+        public int durationMinutes(int row) {
+            return durationMinutes[row];
+        }
+
+        public int userId(int row) {
+            return userId[row];
+        }
+
+        public int spotId(int row) {
+            return spotId[row];
+        }
+
+        public boolean isLate(int row) {
+            return (flags[row] & FLAG_LATE) != 0;
+        }
+
+        public boolean isExtended(int row) {
+            return (flags[row] & FLAG_EXTENDED) != 0;
+        }
+
+        public boolean isReservation(int row) {
+            return (flags[row] & FLAG_RESERVATION) != 0;
+        }
+    }
+
+    /**
+     * Per-group aggregates of a scan
+     */
+    public static final class GroupStats {
+        public final long[] count;
+        public final long[] totalDuration;
+        public final long[] lateCount;
+        public final long[] extendedCount;
+        public final int[] minDuration;
+        public final int[] maxDuration;
+
+        GroupStats(int groupCount) {
+            count = new long[groupCount];
+            totalDuration = new long[groupCount];
+            lateCount = new long[groupCount];
+            extendedCount = new long[groupCount];
+            minDuration = new int[groupCount];
+            maxDuration = new int[groupCount];
+            Arrays.fill(minDuration, Integer.MAX_VALUE);
+            Arrays.fill(maxDuration, Integer.MIN_VALUE);
+        }
+
+        void merge(GroupStats other) {
+            for (int g = 0; g < count.length; g++) {
+                count[g] += other.count[g];
+                totalDuration[g] += other.totalDuration[g];
+                lateCount[g] += other.lateCount[g];
+                extendedCount[g] += other.extendedCount[g];
+                minDuration[g] = Math.min(minDuration[g], other.minDuration[g]);
+                maxDuration[g] = Math.max(maxDuration[g], other.maxDuration[g]);
+            }
+        }
+
+        public double averageDuration(int group) {
+            return count[group] == 0 ? 0.0 : (double) totalDuration[group] / count[group];
+        }
+    }
+
+    /**
+     * Splits the row range in half until it is small enough to scan directly
+     */
+    private static class ScanTask extends RecursiveTask<GroupStats> {
+        private static final long serialVersionUID = 1L;
+
+        private final transient Columns columns;
+        private final transient RowFilter filter;
+        private final transient RowGrouping grouping;
+        private final int groupCount;
+        private final int from;
+        private final int to;
+
+        ScanTask(Columns columns, RowFilter filter, RowGrouping grouping, int groupCount, int from, int to) {
+            this.columns = columns;
+            this.filter = filter;
+            this.grouping = grouping;
+            this.groupCount = groupCount;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected GroupStats compute() {
+            if (to - from > SCAN_CHUNK) {
+                int middle = (from + to) >>> 1;
+                ScanTask left = new ScanTask(columns, filter, grouping, groupCount, from, middle);
+                ScanTask right = new ScanTask(columns, filter, grouping, groupCount, middle, to);
+                left.fork();
+                GroupStats result = right.compute();
+                result.merge(left.join());
+                return result;
+            }
+
+            GroupStats stats = new GroupStats(groupCount);
+            for (int row = from; row < to; row++) {
+                if (!filter.test(columns, row)) {
+                    continue;
+                }
+                int group = grouping.group(columns, row);
+                if (group < 0 || group >= groupCount) {
+                    continue;
+                }
+                int duration = columns.durationMinutes[row];
+                stats.count[group]++;
+                stats.totalDuration[group] += duration;
+                if (columns.isLate(row)) {
+                    stats.lateCount[group]++;
+                }
+                if (columns.isExtended(row)) {
+                    stats.extendedCount[group]++;
+                }
+                if (duration < stats.minDuration[group]) {
+                    stats.minDuration[group] = duration;
+                }
+                if (duration > stats.maxDuration[group]) {
+                    stats.maxDuration[group] = duration;
+                }
+            }
+            return stats;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package controllers;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * SessionSketches keeps quantile sketches of finished sessions, one pair per day
+ * (by order date, like the rollups) and one pair per parking spot:
+ * parking duration, and how many minutes late the late exits were.
+ *
+ * A period's percentiles are a merge of its day sketches - at most one merge per day,
+ * however many sessions the period has. Loaded from parkinginfo at startup and then
+ * fed by EXIT events.
+ */
+public class SessionSketches implements ParkingEventListener {
+
+    /**
+     * Duration and lateness sketches of one day, spot or period
+     */
+    public static class Sketches {
+        private final QuantileSketch duration = new QuantileSketch();
+        private final QuantileSketch lateness = new QuantileSketch();
+
+        public QuantileSketch getDuration() {
+            return duration;
+        }
+
+        /**
+         * Minutes past the expected end, late exits only
+         */
+        public QuantileSketch getLateness() {
+            return lateness;
+        }
+
+        void add(int durationMinutes, boolean late, int lateMinutes) {
+            duration.add(durationMinutes);
+            if (late) {
+                lateness.add(lateMinutes);
+            }
+        }
+
+        void merge(Sketches other) {
+            duration.merge(other.duration);
+            lateness.merge(other.lateness);
+        }
+    }
+
+    private final Map<LocalDate, Sketches> byDay = new HashMap<>();
+    private final Map<Integer, Sketches> bySpot = new HashMap<>();
+
+    // Exit events are held back until the initial load is done
+    private final List<ParkingEvent> pendingEvents = new ArrayList<>();
+    private boolean loaded = false;
+    private final CompletableFuture<Void> loadedFuture = new CompletableFuture<>();
+
+    /**
+     * Build the sketches from every finished session (streamed, one row at a time)
+     */
+    public void load(Connection connection) {
+        String qry = """
+            SELECT ParkingInfo_ID, ParkingSpot_ID, DATE(Date_Of_Placing_Order) as Order_Day,
+                   TIMESTAMPDIFF(MINUTE, Actual_start_time, Actual_end_time) as Duration_Min,
+                   IsLate = 'yes' as Late,
+                   GREATEST(0, COALESCE(TIMESTAMPDIFF(MINUTE, Estimated_end_time, Actual_end_time), 0)) as Late_Min
+            FROM parkinginfo_all
+            WHERE statusEnum = 'finished'
+            AND Actual_start_time IS NOT NULL AND Actual_end_time IS NOT NULL
+            """;
+
+        long start = System.currentTimeMillis();
+        BitSet seen = new BitSet();
+        long sessions = 0;
+        try (PreparedStatement stmt = connection.prepareStatement(qry, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            stmt.setFetchSize(Integer.MIN_VALUE);    // MySQL: stream rows one by one
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    Date orderDay = rs.getDate("Order_Day");
+                    if (orderDay == null) {
+                        continue;
+                    }
+                    seen.set(rs.getInt("ParkingInfo_ID"));
+                    add(orderDay.toLocalDate(), rs.getInt("ParkingSpot_ID"), rs.getInt("Duration_Min"),
+                        rs.getBoolean("Late"), rs.getInt("Late_Min"));
+                    sessions++;
+                }
+            }
+        } catch (SQLException e) {
+            System.out.println("Error loading session sketches: " + e.getMessage());
+        }
+
+        finishLoading(seen);
+        System.out.println("Session sketches loaded: " + sessions + " sessions, " + byDay.size() + " days in " +
+                           (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /**
+     * Mark the sketches as loaded without reading anything (no database)
+     */
+    public void skipLoad() {
+        finishLoading(new BitSet());
+    }
+
+    private synchronized void finishLoading(BitSet seen) {
+        // Apply exits that happened before or during the load, unless the load already counted them
+        for (ParkingEvent event : pendingEvents) {
+            if (!seen.get(event.getParkingInfoId())) {
+                addEvent(event);
+            }
+        }
+        pendingEvents.clear();
+        loaded = true;
+        loadedFuture.complete(null);
+    }
+
+    /**
+     * Completes once the initial load is done
+     */
+    public CompletableFuture<Void> whenLoaded() {
+        return loadedFuture;
+    }
+
+    @Override
+    public synchronized void onParkingEvent(ParkingEvent event) {
+        if (event.getType() != ParkingEvent.Type.EXIT || event.getStartTime() == null) {
+            return;
+        }
+        if (loaded) {
+            addEvent(event);
+        } else {
+            pendingEvents.add(event);
+        }
+    }
+
+    private void addEvent(ParkingEvent event) {
+        add(event.getOrderDate(), event.getSpotId(), event.getDurationMinutes(), event.isLate(), event.getLateMinutes());
+    }
+
+    private synchronized void add(LocalDate day, int spotId, int durationMinutes, boolean late, int lateMinutes) {
+        byDay.computeIfAbsent(day, d -> new Sketches()).add(durationMinutes, late, lateMinutes);
+        bySpot.computeIfAbsent(spotId, s -> new Sketches()).add(durationMinutes, late, lateMinutes);
+    }
+
+    /**
+     * Merged sketches of the days in [from, to)
+     */
+    public synchronized Sketches getPeriod(LocalDate from, LocalDate to) {
+        Sketches merged = new Sketches();
+        for (LocalDate day = from; day.isBefore(to); day = day.plusDays(1)) {
+            Sketches daily = byDay.get(day);
+            if (daily != null) {
+                merged.merge(daily);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * A copy of the all-time sketches of every spot, by spot ID
+     */
+    public synchronized TreeMap<Integer, Sketches> getSpots() {
+        TreeMap<Integer, Sketches> spots = new TreeMap<>();
+        for (Map.Entry<Integer, Sketches> entry : bySpot.entrySet()) {
+            Sketches copy = new Sketches();
+            copy.merge(entry.getValue());
+            spots.put(entry.getKey(), copy);
+        }
+        return spots;
+    }
+}
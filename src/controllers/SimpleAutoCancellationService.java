@@ -1,31 +1,43 @@
 package controllers;
 
 import java.sql.Connection;
+import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import services.EmailService;
+import services.EmailService.NotificationType;
 
 /**
  * Enhanced Automatic Service for:
  * 1. Reservation Cancellation (15-minute rule for preorders)
  * 2. Late Pickup Monitoring (15-minute rule for active parkings)
  * 
- * Runs every minute to check both conditions and send email notifications
+ * Runs every minute to check both conditions and send email notifications.
+ * "Now" comes from the parking controller's clock, so a simulation can drive the
+ * checks with runChecks() on simulated time instead of starting the service.
  */
 public class SimpleAutoCancellationService {
     
     private final ParkingController parkingController;
     private final ScheduledExecutorService scheduler;
-    private static final int LATE_THRESHOLD_MINUTES = 15;
+    static final int LATE_THRESHOLD_MINUTES = 15;
     private boolean isRunning = false;
     
+    // Totals since the service was created
+    private final AtomicLong cancelledTotal = new AtomicLong();
+    private final AtomicLong latePickupTotal = new AtomicLong();
+    
     public SimpleAutoCancellationService(ParkingController parkingController) {
         this.parkingController = parkingController;
         this.scheduler = Executors.newScheduledThreadPool(1);
@@ -52,14 +64,21 @@ public class SimpleAutoCancellationService {
         // Schedule to run every minute
         scheduler.scheduleAtFixedRate(() -> {
             try {
-                checkAndCancelLatePreorders();
-                checkAndNotifyLatePickups();
+                runChecks();
             } catch (Exception e) {
                 System.err.println("Error in auto-monitoring service: " + e.getMessage());
             }
         }, 0, 1, TimeUnit.MINUTES);
     }
     
+    /**
+     * Run both checks once, at the controller clock's current time
+     */
+    public void runChecks() {
+        checkAndCancelLatePreorders();
+        checkAndNotifyLatePickups();
+    }
+    
     /**
      * Stop the automatic monitoring service
      */
@@ -76,7 +95,7 @@ public class SimpleAutoCancellationService {
     /**
      * Check for and cancel late preorder reservations
      */
-    private void checkAndCancelLatePreorders() {
+    protected void checkAndCancelLatePreorders() {
         String query = """
             SELECT 
                 pi.ParkingInfo_ID,
@@ -86,22 +105,27 @@ public class SimpleAutoCancellationService {
                 u.Email,
                 u.Name,
                 u.Phone,
-                TIMESTAMPDIFF(MINUTE, pi.Estimated_start_time, NOW()) as minutes_late,
+                TIMESTAMPDIFF(MINUTE, pi.Estimated_start_time, ?) as minutes_late,
                 pi.Estimated_start_time
             FROM parkinginfo pi
             JOIN users u ON pi.User_ID = u.User_ID
             WHERE pi.statusEnum = 'preorder'
-            AND DATE(pi.Estimated_start_time) = CURDATE()
+            AND DATE(pi.Estimated_start_time) = ?
             AND pi.ParkingSpot_ID IS NOT NULL
             AND pi.Estimated_start_time IS NOT NULL
-            AND TIMESTAMPDIFF(MINUTE, pi.Estimated_start_time, NOW()) >= ?
+            AND TIMESTAMPDIFF(MINUTE, pi.Estimated_start_time, ?) >= ?
             """;
         
+        LocalDateTime now = now();
         try (PreparedStatement stmt = parkingController.getConnection().prepareStatement(query)) {
-            stmt.setInt(1, LATE_THRESHOLD_MINUTES);
+            stmt.setTimestamp(1, Timestamp.valueOf(now));
+            stmt.setDate(2, Date.valueOf(now.toLocalDate()));
+            stmt.setTimestamp(3, Timestamp.valueOf(now));
+            stmt.setInt(4, LATE_THRESHOLD_MINUTES);
             
             try (ResultSet rs = stmt.executeQuery()) {
                 int cancelledCount = 0;
+                List<EmailService.Notification> notifications = new ArrayList<>();
                 
                 while (rs.next()) {
                     int reservationCode = rs.getInt("ParkingInfo_ID");
@@ -114,18 +138,25 @@ public class SimpleAutoCancellationService {
                     if (cancelLateReservation(reservationCode, spotId)) {
                         cancelledCount++;
                         
-                        // Send email notification for auto-cancellation
+                        // Queue email notification for auto-cancellation
                         if (userEmail != null && fullName != null) {
-                            EmailService.sendReservationCancelled(userEmail, fullName, String.valueOf(reservationCode));
+                            notifications.add(new EmailService.Notification(
+                                NotificationType.RESERVATION_CANCELLED, userEmail, fullName, String.valueOf(reservationCode)));
                         }
                         
                         System.out.println(String.format(
-                            "✅ AUTO-CANCELLED: Reservation %d for %s (Spot %d) - %d minutes late - Email sent",
+                            "✅ AUTO-CANCELLED: Reservation %d for %s (Spot %d) - %d minutes late - Email queued",
                             reservationCode, userName, spotId, minutesLate
                         ));
                     }
                 }
                 
+                // Send all cancellation emails over one SMTP connection
+                if (!notifications.isEmpty()) {
+                    EmailService.sendNotifications(notifications);
+                }
+                
+                cancelledTotal.addAndGet(cancelledCount);
                 if (cancelledCount > 0) {
                     System.out.println(String.format(
                         "[%s] Auto-cancellation: %d preorder reservations cancelled",
@@ -141,7 +172,7 @@ public class SimpleAutoCancellationService {
     /**
      * NEW METHOD: Check for late pickups in active parkings and send notifications
      */
-    private void checkAndNotifyLatePickups() {
+    protected void checkAndNotifyLatePickups() {
         String query = """
             SELECT 
                 pi.ParkingInfo_ID,
@@ -151,7 +182,7 @@ public class SimpleAutoCancellationService {
                 u.Email,
                 u.Name,
                 u.Phone,
-                TIMESTAMPDIFF(MINUTE, pi.Estimated_end_time, NOW()) as minutes_late,
+                TIMESTAMPDIFF(MINUTE, pi.Estimated_end_time, ?) as minutes_late,
                 pi.Estimated_end_time,
                 pi.IsLate
             FROM parkinginfo pi
@@ -159,15 +190,19 @@ public class SimpleAutoCancellationService {
             WHERE pi.statusEnum = 'active'
             AND pi.Actual_end_time IS NULL
             AND pi.Estimated_end_time IS NOT NULL
-            AND TIMESTAMPDIFF(MINUTE, pi.Estimated_end_time, NOW()) >= ?
+            AND TIMESTAMPDIFF(MINUTE, pi.Estimated_end_time, ?) >= ?
             AND pi.IsLate = 'no'
             """;
         
+        LocalDateTime now = now();
         try (PreparedStatement stmt = parkingController.getConnection().prepareStatement(query)) {
-            stmt.setInt(1, LATE_THRESHOLD_MINUTES);
+            stmt.setTimestamp(1, Timestamp.valueOf(now));
+            stmt.setTimestamp(2, Timestamp.valueOf(now));
+            stmt.setInt(3, LATE_THRESHOLD_MINUTES);
             
             try (ResultSet rs = stmt.executeQuery()) {
                 int notifiedCount = 0;
+                List<EmailService.Notification> notifications = new ArrayList<>();
                 
                 while (rs.next()) {
                     int parkingInfoId = rs.getInt("ParkingInfo_ID");
@@ -177,16 +212,28 @@ public class SimpleAutoCancellationService {
                     int spotId = rs.getInt("ParkingSpot_ID");
                     int minutesLate = rs.getInt("minutes_late");
                     
-                    if (markAsLateAndNotify(parkingInfoId, userEmail, fullName)) {
+                    if (markAsLate(parkingInfoId)) {
                         notifiedCount++;
                         
+                        // Queue late pickup email notification
+                        if (userEmail != null && fullName != null) {
+                            notifications.add(new EmailService.Notification(
+                                NotificationType.LATE_PICKUP, userEmail, fullName));
+                        }
+                        
                         System.out.println(String.format(
-                            "⏰ LATE PICKUP: Parking %d for %s (Spot %d) - %d minutes late - Email sent",
+                            "⏰ LATE PICKUP: Parking %d for %s (Spot %d) - %d minutes late - Email queued",
                             parkingInfoId, userName, spotId, minutesLate
                         ));
                     }
                 }
                 
+                // Send all late pickup emails over one SMTP connection
+                if (!notifications.isEmpty()) {
+                    EmailService.sendNotifications(notifications);
+                }
+                
+                latePickupTotal.addAndGet(notifiedCount);
                 if (notifiedCount > 0) {
                     System.out.println(String.format(
                         "[%s] Late pickup monitoring: %d customers notified",
@@ -200,9 +247,9 @@ public class SimpleAutoCancellationService {
     }
     
     /**
-     * Mark parking as late and send email notification
+     * Mark parking as late (the caller sends the email notification)
      */
-    private boolean markAsLateAndNotify(int parkingInfoId, String userEmail, String fullName) {
+    private boolean markAsLate(int parkingInfoId) {
         Connection conn = parkingController.getConnection();
         
         try {
@@ -219,14 +266,7 @@ public class SimpleAutoCancellationService {
                 updated = stmt.executeUpdate();
             }
             
-            if (updated > 0) {
-                // Send late pickup email notification
-                if (userEmail != null && fullName != null) {
-                    EmailService.sendLatePickupNotification(userEmail, fullName);
-                }
-                return true;
-            }
-            return false;
+            return updated > 0;
             
         } catch (SQLException e) {
             System.err.println("Error marking parking as late: " + e.getMessage());
@@ -259,6 +299,7 @@ public class SimpleAutoCancellationService {
                     // Only active parkings set isOccupied=true
                     System.out.println("Preorder reservation " + reservationCode + 
                                      " cancelled. Spot " + spotId + " remains available for others.");
+                    parkingController.publishParkingEvent(ParkingEvent.Type.CANCEL, reservationCode);
                     return true;
                 }
             }
@@ -276,12 +317,13 @@ public class SimpleAutoCancellationService {
     public boolean activateReservation(int reservationCode) {
         String query = """
             UPDATE parkinginfo 
-            SET statusEnum = 'active', Actual_start_time = NOW()
+            SET statusEnum = 'active', Actual_start_time = ?
             WHERE ParkingInfo_ID = ? AND statusEnum = 'preorder'
             """;
         
         try (PreparedStatement stmt = parkingController.getConnection().prepareStatement(query)) {
-            stmt.setInt(1, reservationCode);
+            stmt.setTimestamp(1, Timestamp.valueOf(now()));
+            stmt.setInt(2, reservationCode);
             int updated = stmt.executeUpdate();
             
             if (updated > 0) {
@@ -308,13 +350,14 @@ public class SimpleAutoCancellationService {
             // 1. Update reservation status to finished and set actual end time
             String finishQuery = """
                 UPDATE parkinginfo 
-                SET statusEnum = 'finished', Actual_end_time = NOW()
+                SET statusEnum = 'finished', Actual_end_time = ?
                 WHERE ParkingInfo_ID = ? AND statusEnum = 'active'
                 """;
             
             int updated = 0;
             try (PreparedStatement stmt = conn.prepareStatement(finishQuery)) {
-                stmt.setInt(1, reservationCode);
+                stmt.setTimestamp(1, Timestamp.valueOf(now()));
+                stmt.setInt(2, reservationCode);
                 updated = stmt.executeUpdate();
             }
             
@@ -337,6 +380,7 @@ public class SimpleAutoCancellationService {
             
             conn.commit();
             System.out.println("Reservation " + reservationCode + " finished and spot " + spotId + " freed");
+            parkingController.publishParkingEvent(ParkingEvent.Type.EXIT, reservationCode);
             return true;
             
         } catch (SQLException e) {
@@ -360,7 +404,28 @@ public class SimpleAutoCancellationService {
      * Get current timestamp for logging
      */
     private String getCurrentTimestamp() {
-        return LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+        return now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+    }
+    
+    /**
+     * The current time on the parking controller's clock
+     */
+    protected LocalDateTime now() {
+        return LocalDateTime.now(parkingController.getClock());
+    }
+    
+    /**
+     * Reservations auto-cancelled so far
+     */
+    public long getCancelledCount() {
+        return cancelledTotal.get();
+    }
+    
+    /**
+     * Parked cars marked late (and notified) so far
+     */
+    public long getLatePickupCount() {
+        return latePickupTotal.get();
     }
     
     /**
@@ -0,0 +1,60 @@
+package controllers;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * A clock that only moves when it is told to. Give it to the controllers (setClock) to run
+ * the time rules - reservation window, late exits, the 15-minute checks - on simulated time.
+ */
+public class SimulatedClock extends Clock {
+
+    private final ZoneId zone;
+    private volatile Instant instant;
+
+    public SimulatedClock(LocalDateTime start) {
+        this(start, ZoneId.systemDefault());
+    }
+
+    public SimulatedClock(LocalDateTime start, ZoneId zone) {
+        this.zone = zone;
+        this.instant = start.atZone(zone).toInstant();
+    }
+
+    private SimulatedClock(Instant instant, ZoneId zone) {
+        this.zone = zone;
+        this.instant = instant;
+    }
+
+    /**
+     * Move the clock to a later (or the same) time
+     */
+    public void advanceTo(LocalDateTime time) {
+        Instant next = time.atZone(zone).toInstant();
+        if (next.isBefore(instant)) {
+            throw new IllegalArgumentException("The clock can't go back from " + getTime() + " to " + time);
+        }
+        instant = next;
+    }
+
+    public LocalDateTime getTime() {
+        return LocalDateTime.ofInstant(instant, zone);
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+        return new SimulatedClock(instant, zone);
+    }
+
+    @Override
+    public Instant instant() {
+        return instant;
+    }
+}
@@ -0,0 +1,112 @@
+package controllers;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * The settings of one ParkingSimulator run, given as key=value arguments:
+ *   start=2026-10-19     first simulated day (default today)
+ *   days=1               days to simulate (7 = a week)
+ *   spots=100 subscribers=400
+ *   walkIns=300          walk-in arrivals per day
+ *   reservations=60      reservations booked per day (2-6 days ahead)
+ *   noShow=0.10          share of reservations nobody turns up for
+ *   lateArrival=0.05     share of reserved arrivals after the 15-minute grace
+ *   overstay=0.15        share of parked cars that stay past their expected exit
+ *   extend=0.10          share of parked cars that extend by 1-2 hours
+ *   profile=0,0,...      24 hourly weights of the arrival times (default: a weekday with a morning rush)
+ *   seed=1 report=simulationReport.txt
+ *   db=jdbc:h2:mem:bpark;...  the embedded database (default EmbeddedParkingDatabase.DEFAULT_URL;
+ *                        a jdbc:h2:file: URL keeps the simulated sessions for a look afterwards)
+ */
+public class SimulationScenario {
+
+    private static final double[] WEEKDAY_PROFILE = {
+        0, 0, 0, 0, 0, 1, 3, 9, 14, 10, 6, 5, 5, 5, 4, 4, 3, 2, 1, 1, 0.5, 0.5, 0, 0
+    };
+
+    LocalDate start = LocalDate.now();
+    int days = 1;
+    int spots = 100;
+    int subscribers = 400;
+    double walkInsPerDay = 300;
+    double reservationsPerDay = 60;
+    double noShowRate = 0.10;
+    double lateArrivalRate = 0.05;
+    double overstayRate = 0.15;
+    double extendRate = 0.10;
+    double[] profile = WEEKDAY_PROFILE.clone();
+    long seed = 1;
+    String reportFile;
+    String databaseUrl = EmbeddedParkingDatabase.DEFAULT_URL;
+
+    private double profileTotal = Arrays.stream(WEEKDAY_PROFILE).sum();
+
+    public static SimulationScenario parse(String[] args) {
+        SimulationScenario scenario = new SimulationScenario();
+        for (String arg : args) {
+            String[] kv = arg.split("=", 2);
+            if (kv.length != 2) {
+                throw new IllegalArgumentException("Expected key=value: " + arg);
+            }
+            String value = kv[1].trim();
+            switch (kv[0].trim()) {
+            case "start":        scenario.start = LocalDate.parse(value); break;
+            case "days":         scenario.days = Integer.parseInt(value); break;
+            case "spots":        scenario.spots = Integer.parseInt(value); break;
+            case "subscribers":  scenario.subscribers = Integer.parseInt(value); break;
+            case "walkIns":      scenario.walkInsPerDay = Double.parseDouble(value); break;
+            case "reservations": scenario.reservationsPerDay = Double.parseDouble(value); break;
+            case "noShow":       scenario.noShowRate = Double.parseDouble(value); break;
+            case "lateArrival":  scenario.lateArrivalRate = Double.parseDouble(value); break;
+            case "overstay":     scenario.overstayRate = Double.parseDouble(value); break;
+            case "extend":       scenario.extendRate = Double.parseDouble(value); break;
+            case "profile":      scenario.setProfile(value); break;
+            case "seed":         scenario.seed = Long.parseLong(value); break;
+            case "report":       scenario.reportFile = value; break;
+            case "db":           scenario.databaseUrl = value; break;
+            default:
+                throw new IllegalArgumentException("Unknown setting: " + kv[0]);
+            }
+        }
+        return scenario;
+    }
+
+    private void setProfile(String value) {
+        String[] parts = value.split(",");
+        if (parts.length != 24) {
+            throw new IllegalArgumentException("The profile needs 24 hourly weights: " + value);
+        }
+        profileTotal = 0;
+        for (int hour = 0; hour < 24; hour++) {
+            profile[hour] = Double.parseDouble(parts[hour].trim());
+            profileTotal += profile[hour];
+        }
+        if (profileTotal <= 0) {
+            throw new IllegalArgumentException("The profile needs a positive weight: " + value);
+        }
+    }
+
+    /**
+     * A random minute of the day (0-1439), by the hourly profile
+     */
+    public int pickMinuteOfDay(Random random) {
+        double r = random.nextDouble() * profileTotal;
+        for (int hour = 0; hour < 24; hour++) {
+            r -= profile[hour];
+            if (r < 0) {
+                return hour * 60 + random.nextInt(60);
+            }
+        }
+        return 12 * 60;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s + %d day(s), %d spots, %d subscribers, %.0f walk-ins/day, %.0f reservations/day, "
+                             + "no-show %.0f%%, late arrival %.0f%%, overstay %.0f%%, extend %.0f%%",
+                             start, days, spots, subscribers, walkInsPerDay, reservationsPerDay,
+                             noShowRate * 100, lateArrivalRate * 100, overstayRate * 100, extendRate * 100);
+    }
+}
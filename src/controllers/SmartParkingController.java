@@ -7,6 +7,8 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.Clock;
 import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -38,16 +40,43 @@ public class SmartParkingController {
     
     protected Connection conn;
     public int successFlag;
+    
+    // Source of "now" for the booking window, slot and extension rules
+    private volatile Clock clock = Clock.systemDefaultZone();
 
     public SmartParkingController(String dbname, String pass) {
         String connectPath = "jdbc:mysql://localhost/" + dbname + "?serverTimezone=Asia/Jerusalem";
         connectToDB(connectPath, pass);
     }
 
+    /**
+     * No database - for subclasses that override the occupancy lookups (benchmarks)
+     */
+    protected SmartParkingController() {
+    }
+
     public Connection getConnection() {
         return conn;
     }
 
+    public Clock getClock() {
+        return clock;
+    }
+
+    /**
+     * Replace the system clock, e.g. with a SimulatedClock
+     */
+    public void setClock(Clock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * The current time on this controller's clock
+     */
+    protected LocalDateTime now() {
+        return LocalDateTime.now(clock);
+    }
+
     public void connectToDB(String path, String pass) {
         try {
             Class.forName("com.mysql.cj.jdbc.Driver");
@@ -181,7 +210,7 @@ public class SmartParkingController {
 
         try {
             Date reservationDate = Date.valueOf(reservationDateStr);
-            LocalDate today = LocalDate.now();
+            LocalDate today = now().toLocalDate();
             LocalDate resDate = reservationDate.toLocalDate();
             
             if (resDate.isBefore(today.plusDays(1)) || resDate.isAfter(today.plusDays(7))) {
@@ -204,7 +233,7 @@ public class SmartParkingController {
                 stmt.setInt(1, userID);
                 stmt.setInt(2, parkingSpotID);
                 stmt.setDate(3, reservationDate);
-                stmt.setDate(4, Date.valueOf(LocalDate.now()));
+                stmt.setDate(4, Date.valueOf(now().toLocalDate()));
                 stmt.executeUpdate();
                 
                 try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
@@ -239,7 +268,7 @@ public class SmartParkingController {
         }
 
         int parkingCode = generateParkingCode();
-        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime now = now();
         LocalDateTime estimatedEnd = now.plusHours(4);
 
         String qry = "INSERT INTO ParkingInfo (ParkingSpot_ID, User_ID, Date, Code, Actual_start_time, Estimated_start_time, Estimated_end_time, IsOrderedEnum, IsLate, IsExtended) VALUES (?, ?, ?, ?, ?, ?, ?, 'not ordered', false, false)";
@@ -274,7 +303,7 @@ public class SmartParkingController {
                     int userID = rs.getInt("User_ID");
                     int parkingSpotID = rs.getInt("parking_ID");
                     
-                    LocalDate today = LocalDate.now();
+                    LocalDate today = now().toLocalDate();
                     if (!reservationDate.toLocalDate().equals(today)) {
                         if (reservationDate.toLocalDate().isBefore(today)) {
                             cancelReservation(reservationCode);
@@ -292,7 +321,7 @@ public class SmartParkingController {
                     }
 
                     int parkingCode = generateParkingCode();
-                    LocalDateTime now = LocalDateTime.now();
+                    LocalDateTime now = now();
                     LocalDateTime estimatedEnd = now.plusHours(4);
 
                     String insertQry = "INSERT INTO ParkingInfo (ParkingSpot_ID, User_ID, Date, Code, Actual_start_time, Estimated_start_time, Estimated_end_time, IsOrderedEnum, IsLate, IsExtended) VALUES (?, ?, ?, ?, ?, ?, ?, 'ordered', false, false)";
@@ -401,7 +430,7 @@ public class SmartParkingController {
                         Time estimatedEndTime = rs.getTime("Estimated_end_time");
                         int userID = rs.getInt("User_ID");
                         
-                        LocalTime now = LocalTime.now();
+                        LocalTime now = now().toLocalTime();
                         LocalTime estimatedEnd = estimatedEndTime.toLocalTime();
                         
                         boolean isLate = now.isAfter(estimatedEnd);
@@ -692,7 +721,7 @@ public class SmartParkingController {
                 return "Booking time must be in 15-minute intervals (00, 15, 30, 45)";
             }
             
-            LocalDateTime now = LocalDateTime.now();
+            LocalDateTime now = now();
             if (bookingStart.isBefore(now.plusHours(24))) {
                 return "Pre-booking must be at least 24 hours in advance";
             }
@@ -726,7 +755,7 @@ public class SmartParkingController {
      * Handle spontaneous parking entry
      */
     public String enterSpontaneousParking(String userName) {
-        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime now = now();
         
         try {
             SpotAllocation allocation = findOptimalSpontaneousAllocation(now);
@@ -795,7 +824,7 @@ public class SmartParkingController {
                         Date date = rs.getDate("Date");
                         
                         LocalDateTime currentEndTime = LocalDateTime.of(date.toLocalDate(), estimatedEndTime.toLocalTime());
-                        LocalDateTime now = LocalDateTime.now();
+                        LocalDateTime now = now();
                         
                         if (now.isBefore(currentEndTime.minusHours(1))) {
                             return "Extensions can only be requested during the last hour of parking";
@@ -1021,14 +1050,15 @@ public class SmartParkingController {
         String insertQuery = """
             INSERT INTO Reservations 
             (User_ID, parking_ID, reservation_Date, Date_Of_Placing_Order, statusEnum, assigned_parking_spot_id) 
-            VALUES (?, ?, ?, NOW(), 'active', ?)
+            VALUES (?, ?, ?, ?, 'active', ?)
             """;
         
         try (PreparedStatement stmt = conn.prepareStatement(insertQuery, PreparedStatement.RETURN_GENERATED_KEYS)) {
             stmt.setInt(1, userID);
             stmt.setInt(2, spotId);
             stmt.setDate(3, Date.valueOf(startTime.toLocalDate()));
-            stmt.setInt(4, spotId);
+            stmt.setTimestamp(4, Timestamp.valueOf(now()));
+            stmt.setInt(5, spotId);
             stmt.executeUpdate();
             
             try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
@@ -1047,7 +1077,10 @@ public class SmartParkingController {
         return "Reservation creation failed";
     }
     
-    private int countReservationOverlaps(LocalDateTime startTime, LocalDateTime endTime) throws SQLException {
+    /**
+     * Spots with an active reservation between the dates of startTime and endTime
+     */
+    protected int countReservationOverlaps(LocalDateTime startTime, LocalDateTime endTime) throws SQLException {
         String query = """
             SELECT COUNT(DISTINCT assigned_parking_spot_id) 
             FROM Reservations 
@@ -1071,7 +1104,10 @@ public class SmartParkingController {
         return 0;
     }
     
-    private int getCurrentlyOccupiedSpots() throws SQLException {
+    /**
+     * Spots with a car in them now
+     */
+    protected int getCurrentlyOccupiedSpots() throws SQLException {
         String query = "SELECT COUNT(*) FROM ParkingSpot WHERE isOccupied = true";
         
         try (PreparedStatement stmt = conn.prepareStatement(query)) {
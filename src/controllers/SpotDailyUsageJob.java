@@ -0,0 +1,115 @@
+package controllers;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Backfills parking_spot_daily: finished sessions, occupied minutes, late exits
+ * and extensions per spot and order day.
+ * Sessions after a chunk's first preorder/active session (see AnalyticsBackfill) are added
+ * by a later run, once that session has ended.
+ */
+public class SpotDailyUsageJob implements BackfillJob<Map<Long, long[]>> {
+
+    private static final int SESSIONS = 0;
+    private static final int MINUTES = 1;
+    private static final int LATE = 2;
+    private static final int EXTENDED = 3;
+
+    @Override
+    public String getName() {
+        return "spot-daily";
+    }
+
+    @Override
+    public void prepare(Connection connection) throws SQLException {
+        String table = """
+            CREATE TABLE IF NOT EXISTS parking_spot_daily (
+                Usage_Date DATE NOT NULL,
+                ParkingSpot_ID INT NOT NULL,
+                Sessions INT NOT NULL DEFAULT 0,
+                Occupied_Min BIGINT NOT NULL DEFAULT 0,
+                Late_Count INT NOT NULL DEFAULT 0,
+                Extended_Count INT NOT NULL DEFAULT 0,
+                PRIMARY KEY (Usage_Date, ParkingSpot_ID)
+            )
+            """;
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute(table);
+        }
+    }
+
+    @Override
+    public void reset(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.executeUpdate("DELETE FROM parking_spot_daily");
+        }
+    }
+
+    @Override
+    public String getQuery() {
+        return """
+            SELECT DATE(Date_Of_Placing_Order) as Usage_Date, ParkingSpot_ID,
+                   TIMESTAMPDIFF(MINUTE, Actual_start_time, Actual_end_time) as Duration_Min,
+                   IsLate, IsExtended
+            FROM parkinginfo_all
+            WHERE ParkingInfo_ID >= ? AND ParkingInfo_ID < ?
+            AND statusEnum = 'finished'
+            AND Actual_start_time IS NOT NULL AND Actual_end_time IS NOT NULL
+            """;
+    }
+
+    @Override
+    public Map<Long, long[]> newPartial() {
+        return new HashMap<>();
+    }
+
+    @Override
+    public void accumulate(Map<Long, long[]> partial, ResultSet row) throws SQLException {
+        // Key = epoch day in the high bits, spot in the low 32
+        long key = (row.getDate("Usage_Date").toLocalDate().toEpochDay() << 32) | row.getInt("ParkingSpot_ID");
+        long[] totals = partial.computeIfAbsent(key, k -> new long[4]);
+        totals[SESSIONS]++;
+        totals[MINUTES] += Math.max(0, row.getLong("Duration_Min"));
+        if ("yes".equals(row.getString("IsLate"))) {
+            totals[LATE]++;
+        }
+        if ("yes".equals(row.getString("IsExtended"))) {
+            totals[EXTENDED]++;
+        }
+    }
+
+    @Override
+    public void write(Connection connection, Map<Long, long[]> partial) throws SQLException {
+        String qry = """
+            INSERT INTO parking_spot_daily
+            (Usage_Date, ParkingSpot_ID, Sessions, Occupied_Min, Late_Count, Extended_Count)
+            VALUES (?, ?, ?, ?, ?, ?)
+            ON DUPLICATE KEY UPDATE
+                Sessions = Sessions + VALUES(Sessions),
+                Occupied_Min = Occupied_Min + VALUES(Occupied_Min),
+                Late_Count = Late_Count + VALUES(Late_Count),
+                Extended_Count = Extended_Count + VALUES(Extended_Count)
+            """;
+
+        try (PreparedStatement stmt = connection.prepareStatement(qry)) {
+            for (Map.Entry<Long, long[]> entry : partial.entrySet()) {
+                long[] totals = entry.getValue();
+                stmt.setObject(1, LocalDate.ofEpochDay(entry.getKey() >> 32));
+                stmt.setInt(2, (int) (entry.getKey() & 0xFFFFFFFFL));
+                stmt.setLong(3, totals[SESSIONS]);
+                stmt.setLong(4, totals[MINUTES]);
+                stmt.setLong(5, totals[LATE]);
+                stmt.setLong(6, totals[EXTENDED]);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+}
@@ -1,7 +1,11 @@
 package controllers;
 
+import javafx.application.Platform;
+import javafx.beans.property.SimpleStringProperty;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
+import javafx.geometry.Orientation;
+import javafx.scene.Node;
 import javafx.scene.control.*;
 import javafx.scene.layout.VBox;
 import javafx.scene.layout.GridPane;
@@ -14,8 +18,10 @@ import java.time.format.DateTimeFormatter;
 import java.util.ResourceBundle;
 
 import client.BParkClientApp;
+import client.ResponseCache;
 import entities.Message;
 import entities.Message.MessageType;
+import entities.ParkingHistoryPage;
 import entities.ParkingOrder;
 
 public class SubscriberController implements Initializable {
@@ -47,6 +53,7 @@ public class SubscriberController implements Initializable {
     @FXML private TableColumn<ParkingOrder, String> colExit;
     @FXML private TableColumn<ParkingOrder, String> colSpot;
     @FXML private TableColumn<ParkingOrder, String> colStatus;
+    @FXML private Label lblHistoryStatus;
     
     // Profile update
     @FXML private TextField txtPhone;
@@ -57,6 +64,12 @@ public class SubscriberController implements Initializable {
     
     private ObservableList<ParkingOrder> parkingHistory = FXCollections.observableArrayList();
     
+    // History paging: the next page is fetched when the table is scrolled near its end
+    private static final int MAX_HISTORY_ROWS = 1000;
+    private String historyCursor;
+    private boolean historyLoading = false;
+    private boolean historyComplete = true;
+    
     @Override
     public void initialize(URL location, ResourceBundle resources) {
         setupUI();
@@ -90,7 +103,10 @@ public class SubscriberController implements Initializable {
         // Setup parking history table
         if (tableParkingHistory != null) {
             tableParkingHistory.setItems(parkingHistory);
-            // Setup column cell value factories here
+            setupHistoryColumns();
+            
+            // The scroll bar exists once the table has its skin
+            tableParkingHistory.skinProperty().addListener((obs, oldSkin, newSkin) -> attachHistoryScrollListener());
         }
     }
     
@@ -182,8 +198,89 @@ public class SubscriberController implements Initializable {
     
     @FXML
     private void handleViewHistory() {
-        Message msg = new Message(MessageType.GET_PARKING_HISTORY, BParkClientApp.getCurrentUser());
-        BParkClientApp.sendMessage(msg);
+        // Start over from the newest session
+        parkingHistory.clear();
+        historyCursor = null;
+        historyComplete = false;
+        loadNextHistoryPage();
+    }
+    
+    private void loadNextHistoryPage() {
+        if (historyLoading || historyComplete) {
+            return;
+        }
+        historyLoading = true;
+        
+        String request = ParkingHistoryPage.request(BParkClientApp.getCurrentUser(), 
+                                                    ParkingHistoryPage.DEFAULT_PAGE_SIZE, historyCursor);
+        // Pages after the first only move when a session on them changes; once all are finished they never do
+        boolean firstPage = historyCursor == null;
+        ResponseCache.request(new Message(MessageType.GET_PARKING_HISTORY_PAGE, request), 
+                              response -> !firstPage && isFinal((ParkingHistoryPage) response.getContent())).whenComplete((response, error) -> 
+            Platform.runLater(() -> {
+                historyLoading = false;
+                if (error != null) {
+                    updateHistoryStatus("Could not load history: " + error.getMessage());
+                    return;
+                }
+                appendHistoryPage((ParkingHistoryPage) response.getContent());
+            }));
+    }
+    
+    private void appendHistoryPage(ParkingHistoryPage page) {
+        parkingHistory.addAll(page.getOrders());
+        historyCursor = page.getNextCursor();
+        historyComplete = !page.hasMore() || parkingHistory.size() >= MAX_HISTORY_ROWS;
+        
+        if (page.hasMore() && historyComplete) {
+            updateHistoryStatus("Showing your latest " + parkingHistory.size() + " sessions");
+        } else {
+            updateHistoryStatus(parkingHistory.size() + " sessions" + (page.hasMore() ? " - scroll for more" : ""));
+        }
+    }
+    
+    private static boolean isFinal(ParkingHistoryPage page) {
+        for (ParkingOrder order : page.getOrders()) {
+            if (!"finished".equals(order.getStatus()) && !"cancelled".equals(order.getStatus())) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private void updateHistoryStatus(String text) {
+        if (lblHistoryStatus != null) {
+            lblHistoryStatus.setText(text);
+        }
+    }
+    
+    private void setupHistoryColumns() {
+        colDate.setCellValueFactory(cellData -> 
+            new SimpleStringProperty(cellData.getValue().getFormattedOrderDate()));
+        colEntry.setCellValueFactory(cellData -> 
+            new SimpleStringProperty(cellData.getValue().getFormattedEntryTime()));
+        colExit.setCellValueFactory(cellData -> 
+            new SimpleStringProperty(cellData.getValue().getFormattedExitTime()));
+        colSpot.setCellValueFactory(cellData -> 
+            new SimpleStringProperty(cellData.getValue().getSpotNumber()));
+        colStatus.setCellValueFactory(cellData -> 
+            new SimpleStringProperty(cellData.getValue().getStatus()));
+    }
+    
+    /**
+     * Fetch the next page when the table is scrolled into its last tenth
+     */
+    private void attachHistoryScrollListener() {
+        for (Node node : tableParkingHistory.lookupAll(".scroll-bar")) {
+            if (node instanceof ScrollBar && ((ScrollBar) node).getOrientation() == Orientation.VERTICAL) {
+                ScrollBar scrollBar = (ScrollBar) node;
+                scrollBar.valueProperty().addListener((obs, oldValue, newValue) -> {
+                    if (newValue.doubleValue() >= scrollBar.getMax() * 0.9) {
+                        loadNextHistoryPage();
+                    }
+                });
+            }
+        }
     }
     
     @FXML
@@ -249,6 +346,9 @@ public class SubscriberController implements Initializable {
     
     @FXML
     private void handleLogout() {
+        ResponseCache.clear();
+        BParkClientApp.setSessionToken(null);
+        
         // Send logout notification
         BParkClientApp.sendStringMessage("LoggedOut " + BParkClientApp.getCurrentUser());
         
@@ -0,0 +1,69 @@
+package entities;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+
+/**
+ * The changes to the active parking sessions between two versions.
+ * When fullSnapshot is set, "added" holds every active session and the client
+ * replaces what it has; otherwise the client applies removed, changed, then added.
+ */
+public class ActiveParkingsDelta implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private long epoch;                  // identifies the server run - versions restart with it
+    private long fromVersion;
+    private long toVersion;
+    private boolean fullSnapshot;
+    private ArrayList<ParkingOrder> added = new ArrayList<>();
+    private ArrayList<ParkingOrder> changed = new ArrayList<>();
+    private ArrayList<Integer> removed = new ArrayList<>();     // order IDs
+
+    public ActiveParkingsDelta() {}
+
+    public ActiveParkingsDelta(long epoch, long fromVersion, long toVersion, boolean fullSnapshot) {
+        this.epoch = epoch;
+        this.fromVersion = fromVersion;
+        this.toVersion = toVersion;
+        this.fullSnapshot = fullSnapshot;
+    }
+
+    public long getEpoch() {
+        return epoch;
+    }
+
+    public long getFromVersion() {
+        return fromVersion;
+    }
+
+    public long getToVersion() {
+        return toVersion;
+    }
+
+    public boolean isFullSnapshot() {
+        return fullSnapshot;
+    }
+
+    public ArrayList<ParkingOrder> getAdded() {
+        return added;
+    }
+
+    public ArrayList<ParkingOrder> getChanged() {
+        return changed;
+    }
+
+    public ArrayList<Integer> getRemoved() {
+        return removed;
+    }
+
+    public boolean isEmpty() {
+        return !fullSnapshot && added.isEmpty() && changed.isEmpty() && removed.isEmpty();
+    }
+
+    /**
+     * Request content for GET_ACTIVE_PARKINGS_DELTA: "epoch,version" of what the client has
+     */
+    public static String request(long epoch, long version) {
+        return epoch + "," + version;
+    }
+}
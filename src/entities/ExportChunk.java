@@ -0,0 +1,106 @@
+package entities;
+
+import java.io.Serializable;
+
+/**
+ * One piece of a streamed data export (parking history or stored reports).
+ * The server sends the chunks of an export in order; the client appends them
+ * to a file until it receives the chunk marked as last.
+ */
+public class ExportChunk implements Serializable {
+    private static final long serialVersionUID = 1L;
+    
+    private String exportId;
+    private String format;      // "CSV" or "BINARY"
+    private int sequence;       // 0, 1, 2, ... in sending order
+    private byte[] data;
+    private boolean last;
+    private long totalRows;     // set on the last chunk
+    private String errorMessage; // set on the last chunk if the export failed
+    
+    // Constructors
+    public ExportChunk() {}
+    
+    public ExportChunk(String exportId, String format, int sequence, byte[] data, boolean last) {
+        this.exportId = exportId;
+        this.format = format;
+        this.sequence = sequence;
+        this.data = data;
+        this.last = last;
+    }
+    
+    // Getters and Setters
+    public String getExportId() {
+        return exportId;
+    }
+    
+    public void setExportId(String exportId) {
+        this.exportId = exportId;
+    }
+    
+    public String getFormat() {
+        return format;
+    }
+    
+    public void setFormat(String format) {
+        this.format = format;
+    }
+    
+    public int getSequence() {
+        return sequence;
+    }
+    
+    public void setSequence(int sequence) {
+        this.sequence = sequence;
+    }
+    
+    public byte[] getData() {
+        return data;
+    }
+    
+    public void setData(byte[] data) {
+        this.data = data;
+    }
+    
+    public boolean isLast() {
+        return last;
+    }
+    
+    public void setLast(boolean last) {
+        this.last = last;
+    }
+    
+    public long getTotalRows() {
+        return totalRows;
+    }
+    
+    public void setTotalRows(long totalRows) {
+        this.totalRows = totalRows;
+    }
+    
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+    
+    public void setErrorMessage(String errorMessage) {
+        this.errorMessage = errorMessage;
+    }
+    
+    /**
+     * File extension for the export format
+     */
+    public String getFileExtension() {
+        return "BINARY".equals(format) ? "bpx" : "csv";
+    }
+    
+    @Override
+    public String toString() {
+        return "ExportChunk{" +
+                "exportId='" + exportId + '\'' +
+                ", format=" + format +
+                ", sequence=" + sequence +
+                ", bytes=" + (data != null ? data.length : 0) +
+                ", last=" + last +
+                '}';
+    }
+}
@@ -23,6 +23,23 @@ public class Message implements Serializable {
      */
     private Serializable content;
 
+    /**
+     * Correlates a response with its request: the server copies it from the request
+     * into the response. 0 when the sender does not wait for a specific response.
+     */
+    private long requestId;
+
+    /**
+     * Version of the content: a request carries the version the client has cached,
+     * the response the current one. The server answers NOT_MODIFIED when they match.
+     */
+    private String etag;
+
+    /**
+     * The sender's session (issued at login), so a reconnected client can resume it
+     */
+    private String sessionToken;
+
     /**
      * The message type enumeration for parking system operations.
      */
@@ -206,7 +223,63 @@ public class Message implements Serializable {
         /**
          * Cancellation response  
          */
-        CANCELLATION_RESPONSE
+        CANCELLATION_RESPONSE,
+        
+        /**
+         * Request a streamed export - content "dataset,format[,userName]"
+         * (dataset PARKING_HISTORY or REPORTS, format CSV or BINARY)
+         */
+        EXPORT_DATA,
+        /**
+         * One chunk of an export (ExportChunk), sent repeatedly until the last one
+         */
+        EXPORT_CHUNK,
+        
+        /**
+         * Get the day-of-week x hour occupancy heatmap of the last four weeks
+         */
+        GET_OCCUPANCY_HEATMAP,
+        /**
+         * Occupancy heatmap response (OccupancyHeatmap)
+         */
+        OCCUPANCY_HEATMAP_RESPONSE,
+        
+        /**
+         * Get the changes to the active parkings - content "epoch,version" the client has ("0,0" for everything)
+         */
+        GET_ACTIVE_PARKINGS_DELTA,
+        /**
+         * Active parkings changes response (ActiveParkingsDelta)
+         */
+        ACTIVE_PARKINGS_DELTA_RESPONSE,
+        
+        /**
+         * Get one page of a user's parking history - content "userName,pageSize[,cursor]"
+         */
+        GET_PARKING_HISTORY_PAGE,
+        /**
+         * Parking history page response (ParkingHistoryPage)
+         */
+        PARKING_HISTORY_PAGE_RESPONSE,
+        
+        /**
+         * Response to a request whose etag is still current - the client's cached copy is valid (no content)
+         */
+        NOT_MODIFIED,
+        
+        /**
+         * Response to a request the server failed to handle - the reason (String)
+         */
+        ERROR_RESPONSE,
+        
+        /**
+         * Resume the session of the message's session token after a reconnect
+         */
+        RESUME_SESSION,
+        /**
+         * Resume response - "SUCCESS,userName" or "EXPIRED"
+         */
+        RESUME_SESSION_RESPONSE
     }
 
     // Constructors ******************************************************
@@ -258,4 +331,58 @@ public class Message implements Serializable {
     public void setContent(Serializable content) {
         this.content = content;
     }
+
+    /**
+     * Returns the request ID of the message.
+     * 
+     * @return the request ID, or 0 if the message is not part of a request/response pair
+     */
+    public long getRequestId() {
+        return requestId;
+    }
+
+    /**
+     * Sets the request ID of the message.
+     * 
+     * @param requestId the new request ID
+     */
+    public void setRequestId(long requestId) {
+        this.requestId = requestId;
+    }
+
+    /**
+     * Returns the content version of the message.
+     * 
+     * @return the etag, or null if the content is not versioned
+     */
+    public String getEtag() {
+        return etag;
+    }
+
+    /**
+     * Sets the content version of the message.
+     * 
+     * @param etag the new etag
+     */
+    public void setEtag(String etag) {
+        this.etag = etag;
+    }
+
+    /**
+     * Returns the session token of the message.
+     * 
+     * @return the session token, or null before login
+     */
+    public String getSessionToken() {
+        return sessionToken;
+    }
+
+    /**
+     * Sets the session token of the message.
+     * 
+     * @param sessionToken the new session token
+     */
+    public void setSessionToken(String sessionToken) {
+        this.sessionToken = sessionToken;
+    }
 }
\ No newline at end of file
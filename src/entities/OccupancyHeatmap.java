@@ -0,0 +1,106 @@
+package entities;
+
+import java.io.Serializable;
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.format.TextStyle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Day-of-week x hour-of-day usage of the parking lot over the last few weeks.
+ * Row 0 is Monday, column 0 is 00:00-01:00.
+ */
+public class OccupancyHeatmap implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public static final int DAYS = 7;
+    public static final int HOURS = 24;
+
+    private int windowDays;
+    private LocalDateTime generatedAt;
+    private int[][] entries = new int[DAYS][HOURS];           // total entries in the window
+    private int[][] exits = new int[DAYS][HOURS];             // total exits in the window
+    private double[][] averageOccupancy = new double[DAYS][HOURS];  // average cars parked during the hour
+
+    public OccupancyHeatmap() {}
+
+    public OccupancyHeatmap(int windowDays, LocalDateTime generatedAt) {
+        this.windowDays = windowDays;
+        this.generatedAt = generatedAt;
+    }
+
+    public int getWindowDays() {
+        return windowDays;
+    }
+
+    public LocalDateTime getGeneratedAt() {
+        return generatedAt;
+    }
+
+    public int[][] getEntries() {
+        return entries;
+    }
+
+    public int[][] getExits() {
+        return exits;
+    }
+
+    public double[][] getAverageOccupancy() {
+        return averageOccupancy;
+    }
+
+    public int getEntries(DayOfWeek day, int hour) {
+        return entries[day.getValue() - 1][hour];
+    }
+
+    public int getExits(DayOfWeek day, int hour) {
+        return exits[day.getValue() - 1][hour];
+    }
+
+    public double getAverageOccupancy(DayOfWeek day, int hour) {
+        return averageOccupancy[day.getValue() - 1][hour];
+    }
+
+    /**
+     * Highest average occupancy of any cell (for scaling a heatmap)
+     */
+    public double getMaxOccupancy() {
+        double max = 0;
+        for (double[] day : averageOccupancy) {
+            for (double value : day) {
+                max = Math.max(max, value);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * The busiest cells by average occupancy, e.g. "Sun 10:00 (4.5 cars)"
+     */
+    public List<String> getPeakHours(int limit) {
+        List<int[]> cells = new ArrayList<>();
+        for (int d = 0; d < DAYS; d++) {
+            for (int h = 0; h < HOURS; h++) {
+                if (averageOccupancy[d][h] > 0) {
+                    cells.add(new int[] {d, h});
+                }
+            }
+        }
+        cells.sort((a, b) -> Double.compare(averageOccupancy[b[0]][b[1]], averageOccupancy[a[0]][a[1]]));
+
+        List<String> peaks = new ArrayList<>();
+        for (int[] cell : cells.subList(0, Math.min(limit, cells.size()))) {
+            String day = DayOfWeek.of(cell[0] + 1).getDisplayName(TextStyle.SHORT, Locale.ENGLISH);
+            peaks.add(String.format("%s %02d:00 (%.1f cars)", day, cell[1], averageOccupancy[cell[0]][cell[1]]));
+        }
+        return peaks;
+    }
+
+    @Override
+    public String toString() {
+        return "OccupancyHeatmap{windowDays=" + windowDays + ", generatedAt=" + generatedAt +
+               ", peaks=" + getPeakHours(3) + "}";
+    }
+}
@@ -0,0 +1,41 @@
+package entities;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+
+/**
+ * One page of a subscriber's parking history, newest first.
+ * nextCursor is passed back to get the following page; null on the last page.
+ */
+public class ParkingHistoryPage implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 200;
+
+    private ArrayList<ParkingOrder> orders = new ArrayList<>();
+    private String nextCursor;
+
+    public ArrayList<ParkingOrder> getOrders() {
+        return orders;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    public boolean hasMore() {
+        return nextCursor != null;
+    }
+
+    /**
+     * Request content for GET_PARKING_HISTORY_PAGE: "userName,pageSize[,cursor]"
+     */
+    public static String request(String userName, int pageSize, String cursor) {
+        return userName + "," + pageSize + (cursor != null ? "," + cursor : "");
+    }
+}
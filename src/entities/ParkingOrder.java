@@ -23,6 +23,7 @@ public class ParkingOrder implements Serializable {
     private boolean isExtended;
     private String status; // "Active", "Completed"
     private String spotNumber;
+    private LocalDateTime orderDate;   // when the order was placed (history only)
     
     // Constructors
     public ParkingOrder() {}
@@ -129,7 +130,22 @@ public class ParkingOrder implements Serializable {
         this.spotNumber = spotNumber;
     }
     
+    public LocalDateTime getOrderDate() {
+        return orderDate;
+    }
+    
+    public void setOrderDate(LocalDateTime orderDate) {
+        this.orderDate = orderDate;
+    }
+    
     // Utility methods
+    public String getFormattedOrderDate() {
+        if (orderDate != null) {
+            return orderDate.format(DateTimeFormatter.ofPattern("yyyy-MM-dd"));
+        }
+        return "";
+    }
+    
     public String getFormattedEntryTime() {
         if (entryTime != null) {
             return entryTime.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
@@ -21,6 +21,12 @@ public class ParkingReport implements Serializable {
     private int extensions;
     private int minParkingTime;
     private int maxParkingTime;
+    private int medianParkingTime;     // p50, in minutes
+    private int p90ParkingTime;
+    private int p99ParkingTime;
+    private int medianLateMinutes;     // minutes past the expected end, late exits only
+    private int p90LateMinutes;
+    private int p99LateMinutes;
     
     // Subscriber Status Report fields
     private int activeSubscribers;
@@ -103,6 +109,54 @@ public class ParkingReport implements Serializable {
         this.maxParkingTime = maxParkingTime;
     }
 
+    public int getMedianParkingTime() {
+        return medianParkingTime;
+    }
+
+    public void setMedianParkingTime(int medianParkingTime) {
+        this.medianParkingTime = medianParkingTime;
+    }
+
+    public int getP90ParkingTime() {
+        return p90ParkingTime;
+    }
+
+    public void setP90ParkingTime(int p90ParkingTime) {
+        this.p90ParkingTime = p90ParkingTime;
+    }
+
+    public int getP99ParkingTime() {
+        return p99ParkingTime;
+    }
+
+    public void setP99ParkingTime(int p99ParkingTime) {
+        this.p99ParkingTime = p99ParkingTime;
+    }
+
+    public int getMedianLateMinutes() {
+        return medianLateMinutes;
+    }
+
+    public void setMedianLateMinutes(int medianLateMinutes) {
+        this.medianLateMinutes = medianLateMinutes;
+    }
+
+    public int getP90LateMinutes() {
+        return p90LateMinutes;
+    }
+
+    public void setP90LateMinutes(int p90LateMinutes) {
+        this.p90LateMinutes = p90LateMinutes;
+    }
+
+    public int getP99LateMinutes() {
+        return p99LateMinutes;
+    }
+
+    public void setP99LateMinutes(int p99LateMinutes) {
+        this.p99LateMinutes = p99LateMinutes;
+    }
+
     public int getActiveSubscribers() {
         return activeSubscribers;
     }
@@ -193,7 +247,11 @@ public class ParkingReport implements Serializable {
                 ", reportDate=" + reportDate +
                 ", totalParkings=" + totalParkings +
                 ", averageParkingTime=" + averageParkingTime +
+                ", medianParkingTime=" + medianParkingTime +
+                ", p90ParkingTime=" + p90ParkingTime +
+                ", p99ParkingTime=" + p99ParkingTime +
                 ", lateExits=" + lateExits +
+                ", p90LateMinutes=" + p90LateMinutes +
                 ", extensions=" + extensions +
                 ", activeSubscribers=" + activeSubscribers +
                 ", totalOrders=" + totalOrders +
@@ -0,0 +1,63 @@
+package server;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.function.Consumer;
+
+import entities.ExportChunk;
+import entities.Message;
+import entities.Message.MessageType;
+
+/**
+ * A channel that turns the bytes of an export into EXPORT_CHUNK messages for one client.
+ * Each write becomes one chunk; sending blocks on the client socket, which keeps
+ * the export from running ahead of the network.
+ * The final chunk (with the row count or the error) is sent by finish().
+ * The sender must write under the connection's lock and reset the stream after each
+ * chunk (ParkingServer.send), so sent chunks are not retained by either end.
+ */
+public class ExportChunkChannel implements WritableByteChannel {
+
+    private final String exportId;
+    private final String format;
+    private final Consumer<Message> sender;
+    private int sequence = 0;
+    private boolean open = true;
+
+    public ExportChunkChannel(String exportId, String format, Consumer<Message> sender) {
+        this.exportId = exportId;
+        this.format = format;
+        this.sender = sender;
+    }
+
+    @Override
+    public int write(ByteBuffer src) {
+        int length = src.remaining();
+        byte[] data = new byte[length];
+        src.get(data);
+        sender.accept(new Message(MessageType.EXPORT_CHUNK, new ExportChunk(exportId, format, sequence++, data, false)));
+        return length;
+    }
+
+    /**
+     * Send the terminating chunk
+     * @param totalRows rows exported
+     * @param errorMessage why the export failed, or null if it completed
+     */
+    public void finish(long totalRows, String errorMessage) {
+        ExportChunk last = new ExportChunk(exportId, format, sequence++, new byte[0], true);
+        last.setTotalRows(totalRows);
+        last.setErrorMessage(errorMessage);
+        sender.accept(new Message(MessageType.EXPORT_CHUNK, last));
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() {
+        open = false;
+    }
+}
@@ -0,0 +1,333 @@
+package server;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import client.sdk.BParkSdkClient;
+import controllers.InMemoryParkingController;
+import controllers.InMemoryReportController;
+import controllers.QuantileSketch;
+import entities.Message;
+import entities.Message.MessageType;
+import entities.ParkingHistoryPage;
+import server.LoadScenario.Operation;
+import services.EmailService;
+import services.InMemoryNotificationSink;
+
+/**
+ * LoadHarness simulates a rush of subscribers against a ParkingServer and reports the
+ * throughput and latency percentiles of every request type.
+ *
+ * Each simulated subscriber is a BParkSdkClient with its own connection. Arrivals follow
+ * the scenario's curve (Poisson within each tick); an arriving subscriber does one
+ * operation from the mix and waits for the answer - a parked car exits or extends, any
+ * other enters. If every subscriber is still waiting, the arrival queues until one is free.
+ * Latency is measured from the arrival's scheduled time, not from when it was sent, so a
+ * slow server shows up in the percentiles instead of just lowering the request rate
+ * (no coordinated omission).
+ *
+ * The OCSF connections keep Nagle's algorithm on (no TCP_NODELAY). A request split over
+ * several small writes can wait for the peer's delayed ACK, which adds up to ~40 ms on
+ * some systems. The report repeats this, so compare runs on the same OS.
+ *
+ * Without server=host:port it starts its own server on in-memory controllers and an
+ * in-memory email sink, so it runs without MySQL or SMTP.
+ *
+ * Usage: java server.LoadHarness [key=value ...]   (see LoadScenario)
+ */
+public class LoadHarness {
+
+    private static final long TICK_MILLIS = 50;
+    private static final long DRAIN_MILLIS = 10_000;
+
+    /**
+     * Latencies of one request type
+     */
+    private static class Stats {
+        final QuantileSketch micros = new QuantileSketch();
+        long errors = 0;
+    }
+
+    private final LoadScenario scenario;
+    private final Random random;
+    private final List<BParkSdkClient> clients = new ArrayList<>();
+    // Free clients, and the scheduled times (System.nanoTime) of arrivals waiting for one - both guarded by dispatchLock
+    private final ArrayDeque<Integer> idleClients = new ArrayDeque<>();
+    private final ArrayDeque<Long> backlog = new ArrayDeque<>();
+    private final Object dispatchLock = new Object();
+    private final AtomicReferenceArray<String> parkingCodes;
+    private final Map<MessageType, Stats> stats = new EnumMap<>(MessageType.class);
+    private final AtomicLong arrivals = new AtomicLong();
+    private final AtomicLong queued = new AtomicLong();
+    private int maxBacklog = 0;
+
+    private ParkingServer embeddedServer;
+
+    public LoadHarness(LoadScenario scenario) {
+        this.scenario = scenario;
+        this.random = new Random(scenario.seed);
+        this.parkingCodes = new AtomicReferenceArray<>(scenario.clients);
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadScenario scenario = LoadScenario.parse(args);
+        LoadHarness harness = new LoadHarness(scenario);
+        String report;
+        try {
+            harness.start();
+            report = harness.run();
+        } finally {
+            harness.stop();
+        }
+
+        System.out.println(report);
+        if (scenario.reportFile != null) {
+            Files.writeString(Paths.get(scenario.reportFile), report);
+            System.out.println("Report written to " + scenario.reportFile);
+        }
+    }
+
+    /**
+     * Start the embedded server (if needed), then connect and log in every client
+     */
+    public void start() throws IOException {
+        String host = scenario.serverHost;
+        if (host == null) {
+            startEmbeddedServer();
+            host = "localhost";
+        }
+
+        List<CompletableFuture<?>> logins = new ArrayList<>();
+        for (int i = 0; i < scenario.clients; i++) {
+            BParkSdkClient client = new BParkSdkClient(host, scenario.port);
+            client.connect();
+            clients.add(client);
+            logins.add(client.login("sub" + (i + 1)));
+            synchronized (dispatchLock) {
+                idleClients.add(i);
+            }
+        }
+        CompletableFuture.allOf(logins.toArray(new CompletableFuture<?>[0])).join();
+        System.out.println("Load harness: " + scenario);
+    }
+
+    private void startEmbeddedServer() throws IOException {
+        EmailService.setNotificationSink(new InMemoryNotificationSink());
+
+        InMemoryParkingController parkingController = new InMemoryParkingController(scenario.clients, scenario.spots);
+        InMemoryReportController reportController = new InMemoryReportController(parkingController);
+        parkingController.addParkingEventListener(reportController.getOccupancyTracker());
+        ParkingServer.parkingController = parkingController;
+        ParkingServer.reportController = reportController;
+
+        embeddedServer = new ParkingServer(scenario.port);
+        embeddedServer.listen();
+    }
+
+    /**
+     * Generate the load for the scenario's duration, wait for the last answers
+     * @return the report
+     */
+    public String run() throws InterruptedException {
+        long start = System.nanoTime();
+        long end = start + scenario.durationSeconds * 1_000_000_000L;
+        double tickSeconds = TICK_MILLIS / 1000.0;
+
+        for (long now = start; now < end; now = System.nanoTime()) {
+            double progress = (double) (now - start) / (end - start);
+            int count = poisson(scenario.rateAt(progress) * tickSeconds);
+            for (int i = 0; i < count; i++) {
+                arrive(now);
+            }
+            Thread.sleep(TICK_MILLIS);
+        }
+        double elapsedSeconds = (System.nanoTime() - start) / 1_000_000_000.0;
+
+        long drainUntil = System.currentTimeMillis() + DRAIN_MILLIS;
+        while (!isDrained() && System.currentTimeMillis() < drainUntil) {
+            Thread.sleep(TICK_MILLIS);
+        }
+        return report(elapsedSeconds);
+    }
+
+    /**
+     * Close the clients and the embedded server
+     */
+    public void stop() {
+        for (BParkSdkClient client : clients) {
+            client.close();
+        }
+        if (embeddedServer != null) {
+            embeddedServer.shutdown();
+        }
+    }
+
+    private boolean isDrained() {
+        synchronized (dispatchLock) {
+            return backlog.isEmpty() && idleClients.size() == clients.size();
+        }
+    }
+
+    // Load *************************************************************
+
+    /**
+     * An arrival scheduled at the given time - sent now if a client is free, otherwise queued
+     */
+    private void arrive(long scheduled) {
+        arrivals.incrementAndGet();
+        synchronized (dispatchLock) {
+            if (idleClients.isEmpty()) {
+                queued.incrementAndGet();
+            }
+            backlog.add(scheduled);
+            maxBacklog = Math.max(maxBacklog, backlog.size());
+        }
+        dispatch();
+    }
+
+    /**
+     * Pair waiting arrivals with free clients
+     */
+    private void dispatch() {
+        synchronized (dispatchLock) {
+            while (!backlog.isEmpty() && !idleClients.isEmpty()) {
+                send(idleClients.poll(), backlog.poll());
+            }
+        }
+    }
+
+    private void send(int index, long scheduled) {
+        BParkSdkClient client = clients.get(index);
+        String userName = "sub" + (index + 1);
+        String parkingCode = parkingCodes.get(index);
+        Operation operation = scenario.pick(random);
+        if (parkingCode == null && (operation == Operation.EXIT || operation == Operation.EXTEND)) {
+            operation = Operation.ENTER;
+        } else if (parkingCode != null && operation == Operation.ENTER) {
+            operation = Operation.EXIT;
+        }
+
+        CompletableFuture<?> call;
+        switch (operation) {
+        case ENTER:
+            call = client.enterParking(userName).thenAccept(result -> parkingCodes.set(index, parkingCodeOf(result)));
+            break;
+        case EXIT:
+            call = client.exitParking(parkingCode).thenAccept(result -> parkingCodes.set(index, null));
+            break;
+        case EXTEND:
+            call = client.extendParking(parkingCode, 1 + random.nextInt(2));
+            break;
+        case RESERVE:
+            LocalDateTime date = LocalDateTime.now().plusDays(2 + random.nextInt(4)).withMinute(0).withSecond(0);
+            call = client.reserve(userName, date.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm")));
+            break;
+        case HISTORY:
+            call = client.getParkingHistoryPage(userName, ParkingHistoryPage.DEFAULT_PAGE_SIZE, null);
+            break;
+        case REPORT:
+            call = client.request(new Message(MessageType.MANAGER_GET_REPORTS, "ALL"));
+            break;
+        default:
+            call = client.getAvailableSpots();
+            break;
+        }
+
+        MessageType type = operation.getRequestType();
+        call.whenComplete((result, error) -> {
+            record(type, (System.nanoTime() - scheduled) / 1000, error != null);
+            synchronized (dispatchLock) {
+                idleClients.add(index);
+            }
+            dispatch();
+        });
+    }
+
+    /**
+     * The parking code in "Entry successful. Parking code: 1234. Spot: 5" (null if the entry failed)
+     */
+    private static String parkingCodeOf(String result) {
+        int at = result.indexOf("Parking code: ");
+        if (at < 0) {
+            return null;
+        }
+        int from = at + "Parking code: ".length();
+        int to = result.indexOf('.', from);
+        return result.substring(from, to < 0 ? result.length() : to);
+    }
+
+    private int poisson(double mean) {
+        if (mean > 30) {
+            return (int) Math.max(0, Math.round(mean + Math.sqrt(mean) * random.nextGaussian()));
+        }
+        double limit = Math.exp(-mean);
+        double product = random.nextDouble();
+        int count = 0;
+        while (product > limit) {
+            product *= random.nextDouble();
+            count++;
+        }
+        return count;
+    }
+
+    // Report ***********************************************************
+
+    private synchronized void record(MessageType type, long micros, boolean failed) {
+        Stats typeStats = stats.computeIfAbsent(type, t -> new Stats());
+        if (failed) {
+            typeStats.errors++;
+        } else {
+            typeStats.micros.add(micros);
+        }
+    }
+
+    private synchronized String report(double elapsedSeconds) {
+        int unanswered;
+        int backlogPeak;
+        synchronized (dispatchLock) {
+            unanswered = backlog.size() + clients.size() - idleClients.size();
+            backlogPeak = maxBacklog;
+        }
+
+        StringBuilder report = new StringBuilder();
+        report.append("=== Load report: ").append(scenario).append(" ===").append(System.lineSeparator());
+        report.append(String.format("%d arrivals in %.1f s, %d queued behind busy clients (peak backlog %d), %d unanswered%n",
+                                    arrivals.get(), elapsedSeconds, queued.get(), backlogPeak, unanswered));
+        report.append("Latency from each arrival's scheduled time, queueing included. "
+                      + "Sockets without TCP_NODELAY - delayed ACKs may add up to ~40 ms.")
+              .append(System.lineSeparator());
+        report.append(String.format("%-28s %9s %9s %7s %9s %9s %9s %9s%n",
+                                    "Request", "count", "req/s", "errors", "p50 ms", "p90 ms", "p99 ms", "max ms"));
+
+        long errors = 0;
+        QuantileSketch all = new QuantileSketch();
+        for (Map.Entry<MessageType, Stats> entry : stats.entrySet()) {
+            Stats typeStats = entry.getValue();
+            appendRow(report, entry.getKey().toString(), typeStats.micros, typeStats.errors, elapsedSeconds);
+            all.merge(typeStats.micros);
+            errors += typeStats.errors;
+        }
+        appendRow(report, "ALL", all, errors, elapsedSeconds);
+        return report.toString();
+    }
+
+    private static void appendRow(StringBuilder report, String label, QuantileSketch micros, long errors,
+                                  double elapsedSeconds) {
+        report.append(String.format("%-28s %9d %9.1f %7d %9.2f %9.2f %9.2f %9.2f%n", label,
+                                    micros.getCount(), micros.getCount() / elapsedSeconds, errors,
+                                    micros.quantile(0.5) / 1000.0, micros.quantile(0.9) / 1000.0,
+                                    micros.quantile(0.99) / 1000.0, micros.getMax() / 1000.0));
+    }
+}
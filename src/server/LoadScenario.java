@@ -0,0 +1,150 @@
+package server;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+
+import entities.Message.MessageType;
+
+/**
+ * The settings of one LoadHarness run, given as key=value arguments:
+ *   clients=200          simulated subscribers (one connection each)
+ *   duration=60          seconds of load
+ *   peakRate=200         arrivals per second at the top of the curve
+ *   curve=MORNING_RUSH   FLAT, RAMP or MORNING_RUSH (quiet start, peak at about a third, tail off)
+ *   mix=enter:35,exit:30,availability:20,reserve:5,extend:5,history:4,report:1
+ *   server=host:port     run against a running server instead of an embedded in-memory one
+ *   port=5599 spots=100 seed=1 report=loadReport.txt
+ */
+public class LoadScenario {
+
+    /**
+     * The shape of the arrival rate over the run, as a fraction of the peak
+     */
+    public enum Curve {
+        FLAT, RAMP, MORNING_RUSH;
+
+        double rateAt(double progress) {
+            switch (this) {
+            case RAMP:
+                return progress;
+            case MORNING_RUSH:
+                double x = (progress - 0.35) / 0.12;
+                return 0.15 + 0.85 * Math.exp(-x * x);
+            default:
+                return 1.0;
+            }
+        }
+    }
+
+    /**
+     * What a simulated subscriber does on arrival
+     */
+    public enum Operation {
+        ENTER(MessageType.ENTER_PARKING),
+        EXIT(MessageType.EXIT_PARKING),
+        AVAILABILITY(MessageType.CHECK_PARKING_AVAILABILITY),
+        RESERVE(MessageType.RESERVE_PARKING),
+        EXTEND(MessageType.EXTEND_PARKING),
+        HISTORY(MessageType.GET_PARKING_HISTORY_PAGE),
+        REPORT(MessageType.MANAGER_GET_REPORTS);
+
+        private final MessageType requestType;
+
+        Operation(MessageType requestType) {
+            this.requestType = requestType;
+        }
+
+        public MessageType getRequestType() {
+            return requestType;
+        }
+    }
+
+    int clients = 200;
+    int durationSeconds = 60;
+    double peakRate = 200;
+    Curve curve = Curve.MORNING_RUSH;
+    final Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+    String serverHost;          // null = embedded server
+    int port = 5599;
+    int spots = 100;
+    long seed = 1;
+    String reportFile;
+
+    private int totalWeight;
+
+    public static LoadScenario parse(String[] args) {
+        LoadScenario scenario = new LoadScenario();
+        scenario.setMix("enter:35,exit:30,availability:20,reserve:5,extend:5,history:4,report:1");
+
+        for (String arg : args) {
+            String[] kv = arg.split("=", 2);
+            if (kv.length != 2) {
+                throw new IllegalArgumentException("Expected key=value: " + arg);
+            }
+            String value = kv[1].trim();
+            switch (kv[0].trim()) {
+            case "clients":  scenario.clients = Integer.parseInt(value); break;
+            case "duration": scenario.durationSeconds = Integer.parseInt(value); break;
+            case "peakRate": scenario.peakRate = Double.parseDouble(value); break;
+            case "curve":    scenario.curve = Curve.valueOf(value.toUpperCase()); break;
+            case "mix":      scenario.setMix(value); break;
+            case "port":     scenario.port = Integer.parseInt(value); break;
+            case "spots":    scenario.spots = Integer.parseInt(value); break;
+            case "seed":     scenario.seed = Long.parseLong(value); break;
+            case "report":   scenario.reportFile = value; break;
+            case "server":
+                String[] hostPort = value.split(":");
+                scenario.serverHost = hostPort[0];
+                if (hostPort.length > 1) {
+                    scenario.port = Integer.parseInt(hostPort[1]);
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown setting: " + kv[0]);
+            }
+        }
+        return scenario;
+    }
+
+    private void setMix(String value) {
+        mix.clear();
+        totalWeight = 0;
+        for (String part : value.split(",")) {
+            String[] opWeight = part.split(":");
+            int weight = Integer.parseInt(opWeight[1].trim());
+            mix.put(Operation.valueOf(opWeight[0].trim().toUpperCase()), weight);
+            totalWeight += weight;
+        }
+        if (totalWeight <= 0) {
+            throw new IllegalArgumentException("The mix needs a positive weight: " + value);
+        }
+    }
+
+    /**
+     * Arrivals per second at a point of the run (0 = start, 1 = end)
+     */
+    public double rateAt(double progress) {
+        return peakRate * curve.rateAt(Math.max(0, Math.min(1, progress)));
+    }
+
+    /**
+     * A random operation, by the mix weights
+     */
+    public Operation pick(Random random) {
+        int r = random.nextInt(totalWeight);
+        for (Map.Entry<Operation, Integer> entry : mix.entrySet()) {
+            r -= entry.getValue();
+            if (r < 0) {
+                return entry.getKey();
+            }
+        }
+        return Operation.AVAILABILITY;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d clients, %d s, peak %.0f/s, %s curve, mix %s, %s", clients, durationSeconds,
+                             peakRate, curve, mix, serverHost != null ? serverHost + ":" + port : "embedded in-memory server");
+    }
+}
@@ -1,28 +1,34 @@
 package server;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.Serializable;
 import java.net.InetAddress;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
+import common.MessageCodec;
+import controllers.ExportWriter;
 import controllers.ParkingController;
 import controllers.ReportController;
+import entities.ActiveParkingsDelta;
 import entities.Message;
 import entities.Message.MessageType;
+import entities.ParkingHistoryPage;
 import entities.ParkingOrder;
 import entities.ParkingReport;
 import entities.ParkingSubscriber;
 import ocsf.server.AbstractServer;
 import ocsf.server.ConnectionToClient;
 import serverGUI.ServerPortFrame;
+import services.EmailService;
 
 /**
  * ParkingServer - Main server for the ParkB automatic parking management system
@@ -43,6 +49,9 @@ public class ParkingServer extends AbstractServer {
     
     // Connection management
     public Map<ConnectionToClient, String> clientsMap = new HashMap<>();
+    
+    // Logged-in sessions, resumable after a reconnect
+    private final SessionRegistry sessions = new SessionRegistry();
     public static String serverIp;
     
     // Connection pool with timer for cleanup
@@ -77,6 +86,7 @@ public class ParkingServer extends AbstractServer {
             synchronized (clientsMap) {
                 System.out.println("Connection Pool Status - Active connections: " + clientsMap.size());
                 cleanupInactiveConnections();
+                sessions.expire();
             }
         }, 0, TIMER_INTERVAL, TimeUnit.SECONDS);
     }
@@ -129,19 +139,37 @@ public class ParkingServer extends AbstractServer {
 private synchronized void handleMessageObject(Message message, ConnectionToClient client) {
     Message ret;
     
+    // A request replayed after a reconnect runs only once
+    SessionRegistry.Session session = sessions.touch(message.getSessionToken(), client);
+    if (session != null && isReplayable(message)) {
+        switch (sessions.begin(session, message.getRequestId())) {
+        case ANSWERED:
+            sendResponse(client, sessions.getResponse(session, message.getRequestId()));
+            return;
+        case RUNNING:
+            return;    // its response goes to this connection when it's ready
+        default:
+            break;
+        }
+    }
+    
+    boolean async = false;    // answered later, when its future completes
     try {
         switch (message.getType()) {
         case SUBSCRIBER_LOGIN:
             String subscriberCode = (String) message.getContent();
             ParkingSubscriber subscriber = parkingController.getUserInfo(subscriberCode);
             ret = new Message(MessageType.SUBSCRIBER_LOGIN_RESPONSE, subscriber);
-            client.sendToClient(serialize(ret));
+            if (subscriber != null) {
+                ret.setSessionToken(sessions.create(subscriberCode, client));
+            }
+            reply(client, message, ret);
             break;
             
         case CHECK_PARKING_AVAILABILITY:
             int availableSpots = parkingController.getAvailableParkingSpots();
             ret = new Message(MessageType.PARKING_AVAILABILITY_RESPONSE, availableSpots);
-            client.sendToClient(serialize(ret));
+            reply(client, message, ret);
             break;
             
         case RESERVE_PARKING:
@@ -150,21 +178,21 @@ private synchronized void handleMessageObject(Message message, ConnectionToClien
             String reservationDate = reservationData[1];
             String reservationResult = parkingController.makeReservation(reservationUserName, reservationDate);
             ret = new Message(MessageType.RESERVATION_RESPONSE, reservationResult);
-            client.sendToClient(serialize(ret));
+            reply(client, message, ret);
             break;
             
         case ENTER_PARKING:
             String enterUserName = (String) message.getContent();
             String enterResult = parkingController.enterParking(enterUserName);
             ret = new Message(MessageType.ENTER_PARKING_RESPONSE, enterResult);
-            client.sendToClient(serialize(ret));
+            reply(client, message, ret);
             break;
             
         case EXIT_PARKING:
             String exitParkingCode = (String) message.getContent();
             String exitResult = parkingController.exitParking(exitParkingCode);
             ret = new Message(MessageType.EXIT_PARKING_RESPONSE, exitResult);
-            client.sendToClient(serialize(ret));
+            reply(client, message, ret);
             break;
             
         case EXTEND_PARKING:
@@ -174,7 +202,7 @@ private synchronized void handleMessageObject(Message message, ConnectionToClien
             int hours = Integer.parseInt(extendData[1]);
             String extendResult = parkingController.extendParkingTime(extendCode, hours);
             ret = new Message(MessageType.EXTEND_PARKING_RESPONSE, extendResult);
-            client.sendToClient(serialize(ret));
+            reply(client, message, ret);
             break;
 
         case REGISTER_SUBSCRIBER:
@@ -196,54 +224,85 @@ private synchronized void handleMessageObject(Message message, ConnectionToClien
             } else {
                 ret = new Message(MessageType.REGISTRATION_RESPONSE, "ERROR: Invalid registration data format");
             }
-            client.sendToClient(serialize(ret));
+            reply(client, message, ret);
             break;
             
         case GENERATE_USERNAME:
             String baseName = (String) message.getContent();
             String generatedUsername = parkingController.generateUniqueUsername(baseName);
             ret = new Message(MessageType.USERNAME_RESPONSE, generatedUsername);
-            client.sendToClient(serialize(ret));
+            reply(client, message, ret);
             break;
 
         case REQUEST_LOST_CODE:
             String lostCodeUserName = (String) message.getContent();
             String lostCodeResult = parkingController.sendLostParkingCode(lostCodeUserName);
             ret = new Message(MessageType.LOST_CODE_RESPONSE, lostCodeResult);
-            client.sendToClient(serialize(ret));
+            reply(client, message, ret);
             break;
             
         case GET_PARKING_HISTORY:
             String historyUserName = (String) message.getContent();
             ArrayList<ParkingOrder> history = parkingController.getParkingHistory(historyUserName);
             ret = new Message(MessageType.PARKING_HISTORY_RESPONSE, history);
-            client.sendToClient(serialize(ret));
+            reply(client, message, versioned(message, ret));
+            break;
+            
+        case GET_PARKING_HISTORY_PAGE:
+            // Expected format: "userName,pageSize[,cursor]"
+            String[] pageData = ((String) message.getContent()).split(",", 3);
+            int pageSize = pageData.length > 1 ? Integer.parseInt(pageData[1].trim()) : ParkingHistoryPage.DEFAULT_PAGE_SIZE;
+            String cursor = pageData.length > 2 ? pageData[2].trim() : null;
+            ParkingHistoryPage historyPage = parkingController.getParkingHistoryPage(pageData[0].trim(), pageSize, cursor);
+            ret = new Message(MessageType.PARKING_HISTORY_PAGE_RESPONSE, historyPage);
+            reply(client, message, versioned(message, ret));
             break;
             
         case MANAGER_GET_REPORTS:
+            // Generated on the report executor - gate messages are not held up meanwhile
             String reportType = (String) message.getContent();
-            ArrayList<ParkingReport> reports = reportController.getParkingReports(reportType);
-            ret = new Message(MessageType.MANAGER_SEND_REPORTS, reports);
-            client.sendToClient(serialize(ret));
+            reportController.getParkingReportsAsync(reportType).whenComplete((reports, error) -> {
+                if (error != null) {
+                    replyError(client, message, error);
+                } else {
+                    sendResponse(client, message, versioned(message, new Message(MessageType.MANAGER_SEND_REPORTS, reports)));
+                }
+            });
+            async = true;
             break;
             
         case GET_ACTIVE_PARKINGS:
             ArrayList<ParkingOrder> activeParkings = parkingController.getActiveParkings();
             ret = new Message(MessageType.ACTIVE_PARKINGS_RESPONSE, activeParkings);
-            client.sendToClient(serialize(ret));
+            reply(client, message, ret);
+            break;
+            
+        case GET_ACTIVE_PARKINGS_DELTA:
+            // Expected format: "epoch,version" of the client's copy
+            String[] deltaData = ((String) message.getContent()).split(",");
+            long clientEpoch = Long.parseLong(deltaData[0].trim());
+            long clientVersion = deltaData.length > 1 ? Long.parseLong(deltaData[1].trim()) : 0;
+            ActiveParkingsDelta delta = parkingController.getActiveParkingsTracker().getDelta(clientEpoch, clientVersion);
+            ret = new Message(MessageType.ACTIVE_PARKINGS_DELTA_RESPONSE, delta);
+            reply(client, message, ret);
             break;
             
         case UPDATE_SUBSCRIBER_INFO:
             String updateResult = parkingController.updateSubscriberInfo((String) message.getContent());
             ret = new Message(MessageType.UPDATE_SUBSCRIBER_RESPONSE, updateResult);
-            client.sendToClient(serialize(ret));
+            reply(client, message, ret);
             break;
             
         case GENERATE_MONTHLY_REPORTS:
             String monthYear = (String) message.getContent();
-            ArrayList<ParkingReport> monthlyReports = reportController.generateMonthlyReports(monthYear);
-            ret = new Message(MessageType.MONTHLY_REPORTS_RESPONSE, monthlyReports);
-            client.sendToClient(serialize(ret));
+            reportController.generateMonthlyReportsAsync(monthYear).whenComplete((monthlyReports, error) -> {
+                if (error != null) {
+                    replyError(client, message, error);
+                } else {
+                    sendResponse(client, message, versioned(message, new Message(MessageType.MONTHLY_REPORTS_RESPONSE, monthlyReports)));
+                }
+            });
+            async = true;
             break;
             
         case ACTIVATE_RESERVATION:
@@ -261,7 +320,7 @@ private synchronized void handleMessageObject(Message message, ConnectionToClien
                     ret = new Message(MessageType.ACTIVATION_RESPONSE, "ERROR: Invalid reservation code format");
                 }
             }
-            client.sendToClient(serialize(ret));
+            reply(client, message, ret);
             break;
             
         case CANCEL_RESERVATION:
@@ -279,38 +338,91 @@ private synchronized void handleMessageObject(Message message, ConnectionToClien
                     ret = new Message(MessageType.CANCELLATION_RESPONSE, "ERROR: Invalid reservation code format");
                 }
             }
-            client.sendToClient(serialize(ret));
+            reply(client, message, ret);
+            break;
+            
+        case EXPORT_DATA:
+            // Expected format: "dataset,format[,userName]" - streamed back as EXPORT_CHUNK messages
+            String[] exportData = ((String) message.getContent()).split(",", 3);
+            String dataset = exportData[0].trim();
+            String exportFormat = exportData.length > 1 ? exportData[1].trim().toUpperCase() : "CSV";
+            String exportUser = exportData.length > 2 ? exportData[2].trim() : null;
+            String exportId = dataset.toLowerCase() + "-" + System.currentTimeMillis();
+            ExportChunkChannel exportChannel = new ExportChunkChannel(exportId, exportFormat, 
+                                                                      chunk -> sendResponse(client, message, chunk));
+            
+            ExportWriter.Format format;
+            try {
+                format = ExportWriter.Format.valueOf(exportFormat);
+            } catch (IllegalArgumentException e) {
+                exportChannel.finish(0, "Unknown export format: " + exportFormat);
+                break;
+            }
+            
+            reportController.exportDataAsync(dataset, format, exportUser, exportChannel).whenComplete((rows, error) -> {
+                if (error != null) {
+                    Throwable cause = error.getCause() != null ? error.getCause() : error;
+                    System.out.println("Export " + exportId + " failed: " + cause.getMessage());
+                    exportChannel.finish(0, cause.getMessage());
+                } else {
+                    System.out.println("Export " + exportId + " sent: " + rows + " rows");
+                    exportChannel.finish(rows, null);
+                }
+            });
             break;
             
         // The following message types are for smart parking features (if implemented)
         case GET_TIME_SLOTS:
             // Implementation for time slot availability
             ret = new Message(MessageType.TIME_SLOTS_RESPONSE, "Time slots feature not implemented");
-            client.sendToClient(serialize(ret));
+            reply(client, message, ret);
             break;
             
         case MAKE_PREBOOKING:
             // Implementation for pre-booking
             ret = new Message(MessageType.PREBOOKING_RESPONSE, "Pre-booking feature not implemented");
-            client.sendToClient(serialize(ret));
+            reply(client, message, ret);
             break;
             
         case SPONTANEOUS_PARKING:
             // Implementation for spontaneous parking
             ret = new Message(MessageType.SPONTANEOUS_RESPONSE, "Spontaneous parking feature not implemented");
-            client.sendToClient(serialize(ret));
+            reply(client, message, ret);
             break;
             
         case REQUEST_EXTENSION:
             // Implementation for extension request
             ret = new Message(MessageType.EXTENSION_RESPONSE, "Extension request feature not implemented");
-            client.sendToClient(serialize(ret));
+            reply(client, message, ret);
+            break;
+            
+        case GET_OCCUPANCY_HEATMAP:
+            ret = new Message(MessageType.OCCUPANCY_HEATMAP_RESPONSE, reportController.getOccupancyHeatmap());
+            reply(client, message, ret);
+            break;
+            
+        case RESUME_SESSION:
+            // The connection was attached to the session above; the client replays its open requests next
+            ret = new Message(MessageType.RESUME_SESSION_RESPONSE, 
+                              session != null ? "SUCCESS," + session.getUserName() : "EXPIRED");
+            reply(client, message, ret);
             break;
             
         case GET_SYSTEM_STATUS:
-            // Implementation for system status
-            ret = new Message(MessageType.SYSTEM_STATUS_RESPONSE, "System status feature not implemented");
-            client.sendToClient(serialize(ret));
+            String systemStatus = EmailService.getNotificationStatus();
+            systemStatus += System.lineSeparator() + parkingController.getActiveParkingsTracker().getStatistics();
+            systemStatus += System.lineSeparator() + "Sessions - " + sessions.size() + " resumable";
+            if (parkingController.getArchiveService() != null) {
+                systemStatus += System.lineSeparator() + parkingController.getArchiveService().getStatus();
+            }
+            if (reportController != null) {
+                systemStatus += System.lineSeparator() + reportController.getReportCache().getStatistics();
+                if (reportController.getMonthlyReportScheduler() != null) {
+                    systemStatus += System.lineSeparator() + reportController.getMonthlyReportScheduler().getStatus();
+                }
+            }
+            ret = new Message(MessageType.SYSTEM_STATUS_RESPONSE, systemStatus);
+            reply(client, message, ret);
             break;
             
         case MANAGER_LOGIN:
@@ -318,18 +430,138 @@ private synchronized void handleMessageObject(Message message, ConnectionToClien
             String managerCode = (String) message.getContent();
             ParkingSubscriber manager = parkingController.getUserInfo(managerCode);
             ret = new Message(MessageType.MANAGER_LOGIN_RESPONSE, manager);
-            client.sendToClient(serialize(ret));
+            if (manager != null) {
+                ret.setSessionToken(sessions.create(managerCode, client));
+            }
+            reply(client, message, ret);
             break;
             
         default:
             System.out.println("Unknown message type: " + message.getType());
+            replyError(client, message, "Unknown message type: " + message.getType());
             break;
         }
     } catch (IOException e) {
         e.printStackTrace();
+    } catch (RuntimeException e) {
+        System.out.println("Error handling " + message.getType() + ": " + e);
+        replyError(client, message, e);
+    } finally {
+        // Whatever happened, a request answered here is no longer running
+        if (session != null && !async) {
+            sessions.abandon(session, message.getRequestId());
+        }
     }
 }
     
+    /**
+     * Tag a response with the version (hash) of its content; if the client already
+     * has that version, send a NOT_MODIFIED without content instead
+     */
+    private Message versioned(Message request, Message response) {
+        String etag = etagOf(response.getContent());
+        if (etag == null) {
+            return response;
+        }
+        Message versioned = etag.equals(request.getEtag()) ? new Message(MessageType.NOT_MODIFIED, null) : response;
+        versioned.setEtag(etag);
+        return versioned;
+    }
+    
+    private String etagOf(Serializable content) {
+        byte[] bytes = serialize(new Message(null, content));
+        if (bytes == null) {
+            return null;
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(digest, 16));
+        } catch (NoSuchAlgorithmException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * Send the response to a request, tagged with the request's ID
+     */
+    private void reply(ConnectionToClient client, Message request, Message response) throws IOException {
+        response.setRequestId(request.getRequestId());
+        client = remember(client, request, response);
+        send(client, serialize(response));
+    }
+    
+    /**
+     * Send the response to a request from outside the message handler (e.g. when an async report completes)
+     */
+    private void sendResponse(ConnectionToClient client, Message request, Message response) {
+        response.setRequestId(request.getRequestId());
+        client = remember(client, request, response);
+        sendResponse(client, response);
+    }
+    
+    /**
+     * Tell the client its request failed. The error isn't remembered, so a replay runs the request again.
+     */
+    private void replyError(ConnectionToClient client, Message request, Throwable error) {
+        Throwable cause = error.getCause() != null ? error.getCause() : error;
+        replyError(client, request, cause.getMessage() != null ? cause.getMessage() : cause.toString());
+    }
+    
+    private void replyError(ConnectionToClient client, Message request, String reason) {
+        Message response = new Message(MessageType.ERROR_RESPONSE, reason);
+        response.setRequestId(request.getRequestId());
+        SessionRegistry.Session session = sessions.find(request.getSessionToken());
+        if (session != null && isReplayable(request)) {
+            sessions.abandon(session, request.getRequestId());
+            client = session.getConnection();
+        }
+        sendResponse(client, response);
+    }
+    
+    /**
+     * Keep a session request's response for replays
+     * @return where to send it - the session's current connection, which changes if the client reconnected meanwhile
+     */
+    private ConnectionToClient remember(ConnectionToClient client, Message request, Message response) {
+        SessionRegistry.Session session = sessions.find(request.getSessionToken());
+        if (session == null || !isReplayable(request)) {
+            return client;
+        }
+        sessions.finish(session, request.getRequestId(), response);
+        return session.getConnection();
+    }
+    
+    /**
+     * Requests with one response; exports stream many chunks and are simply started again
+     */
+    private static boolean isReplayable(Message request) {
+        return request.getRequestId() != 0 && request.getType() != MessageType.EXPORT_DATA;
+    }
+    
+    /**
+     * Send a response from outside the message handler (e.g. when an async report completes)
+     */
+    private void sendResponse(ConnectionToClient client, Message response) {
+        try {
+            send(client, serialize(response));
+        } catch (IOException e) {
+            System.out.println("Failed to send " + response.getType() + " to client: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Write to a client, one writer at a time per connection: async reports and exports
+     * send from their own threads while the handler thread replies.
+     * Every message is a fresh byte array, so the stream is reset after each one;
+     * otherwise both ends keep every message (every export chunk) sent on the connection.
+     */
+    private static void send(ConnectionToClient client, Object msg) throws IOException {
+        synchronized (client) {
+            client.sendToClient(msg);
+            client.resetOutput();
+        }
+    }
+    
     /**
      * Handle String messages (following your string handling pattern)
      */
@@ -344,7 +576,7 @@ private synchronized void handleMessageObject(Message message, ConnectionToClien
                 
             case "login:":
                 String loginResult = parkingController.checkLogin(arr[1], arr.length > 2 ? arr[2] : "");
-                client.sendToClient("login: " + loginResult);
+                send(client, "login: " + loginResult);
                 break;
                 
             case "LoggedOut":
@@ -353,48 +585,48 @@ private synchronized void handleMessageObject(Message message, ConnectionToClien
                 
             case "getParkingSpots":
                 int availableSpots = parkingController.getAvailableParkingSpots();
-                client.sendToClient("availableSpots " + availableSpots);
+                send(client, "availableSpots " + availableSpots);
                 break;
                 
             case "enterParking":
                 String enterResult = parkingController.enterParking(arr[1]);
-                client.sendToClient("enterResult " + enterResult);
+                send(client, "enterResult " + enterResult);
                 break;
                 
             case "enterWithReservation":
                 String reservationResult = parkingController.enterParkingWithReservation(Integer.parseInt(arr[1]));
-                client.sendToClient("reservationResult " + reservationResult);
+                send(client, "reservationResult " + reservationResult);
                 break;
                 
             case "exitParking":
                 String exitResult = parkingController.exitParking(arr[1]);
-                client.sendToClient("exitResult " + exitResult);
+                send(client, "exitResult " + exitResult);
                 break;
                 
             case "extendParking":
                 String extendResult = parkingController.extendParkingTime(arr[1], Integer.parseInt(arr[2]));
-                client.sendToClient("extendResult " + extendResult);
+                send(client, "extendResult " + extendResult);
                 break;
                 
             case "getLostCode":
                 String lostCode = parkingController.sendLostParkingCode(arr[1]);
-                client.sendToClient("parkingCode " + lostCode);
+                send(client, "parkingCode " + lostCode);
                 break;
                 
             case "makeReservation":
                 // Format: makeReservation userName reservationDate
                 String makeReservationResult = parkingController.makeReservation(arr[1], arr[2]);
-                client.sendToClient("reservationResult " + makeReservationResult);
+                send(client, "reservationResult " + makeReservationResult);
                 break;
                 
             case "cancelReservation":
                 String cancelResult = parkingController.cancelReservation(Integer.parseInt(arr[1]));
-                client.sendToClient("cancelResult " + cancelResult);
+                send(client, "cancelResult " + cancelResult);
                 break;
                 
             case "getReports":
                 // This could be enhanced to return actual report data
-                client.sendToClient("reports " + "Available reports: parking_time, subscriber_status");
+                send(client, "reports " + "Available reports: parking_time, subscriber_status");
                 break;
                 
             default:
@@ -404,7 +636,7 @@ private synchronized void handleMessageObject(Message message, ConnectionToClien
         } catch (Exception e) {
             e.printStackTrace();
             try {
-                client.sendToClient("error " + e.getMessage());
+                send(client, "error " + e.getMessage());
             } catch (IOException ioException) {
                 ioException.printStackTrace();
             }
@@ -415,31 +647,14 @@ private synchronized void handleMessageObject(Message message, ConnectionToClien
      * Serializes a Message object to byte array (following your pattern)
      */
     private byte[] serialize(Message msg) {
-        try {
-            ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
-            ObjectOutputStream out = new ObjectOutputStream(byteStream);
-            out.writeObject(msg);
-            out.flush();
-            return byteStream.toByteArray();
-        } catch (Exception ex) {
-            ex.printStackTrace();
-        }
-        return null;
+        return MessageCodec.serialize(msg);
     }
     
     /**
      * Deserializes byte array to Message object (following your pattern)
      */
     private Object deserialize(Object msg) {
-        try {
-            byte[] messageBytes = (byte[]) msg;
-            ByteArrayInputStream byteStream = new ByteArrayInputStream(messageBytes);
-            ObjectInputStream objectStream = new ObjectInputStream(byteStream);
-            return objectStream.readObject();
-        } catch (Exception ex) {
-            ex.printStackTrace();
-        }
-        return null;
+        return MessageCodec.deserialize(msg);
     }
 
     /**
@@ -569,6 +784,9 @@ private synchronized void handleMessageObject(Message message, ConnectionToClien
         if (parkingController != null) {
             parkingController.shutdown();
         }
+        if (reportController != null) {
+            reportController.shutdown();
+        }
         
         if (connectionPoolTimer != null) {
             connectionPoolTimer.shutdown();
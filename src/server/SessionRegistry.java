@@ -0,0 +1,183 @@
+package server;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import entities.Message;
+import ocsf.server.ConnectionToClient;
+
+/**
+ * SessionRegistry keeps logged-in sessions alive across reconnects.
+ *
+ * A login returns a session token; the client sends it with every message. After a
+ * network drop the client reconnects and sends RESUME_SESSION with the token, then replays
+ * the requests that never got a response. The session remembers its last responses by
+ * request ID, so a replayed request that already ran gets the same response again
+ * instead of running twice (no double entry or exit). Responses to requests still
+ * running go to the session's current connection.
+ *
+ * Sessions expire after bpark.session.ttlMinutes (default 30) without a message.
+ */
+public class SessionRegistry {
+
+    private static final long TTL_MILLIS = Long.getLong("bpark.session.ttlMinutes", 30) * 60_000;
+    private static final int REMEMBERED_RESPONSES = 64;
+
+    /**
+     * One logged-in client
+     */
+    public static class Session {
+        private final String token;
+        private final String userName;
+        private volatile ConnectionToClient connection;
+        private volatile long lastSeen = System.currentTimeMillis();
+
+        // Responses by request ID (most recent), and requests still running
+        private final Map<Long, Message> responses = new LinkedHashMap<>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Message> eldest) {
+                return size() > REMEMBERED_RESPONSES;
+            }
+        };
+        private final Set<Long> running = new HashSet<>();
+
+        Session(String token, String userName, ConnectionToClient connection) {
+            this.token = token;
+            this.userName = userName;
+            this.connection = connection;
+        }
+
+        public String getToken() {
+            return token;
+        }
+
+        public String getUserName() {
+            return userName;
+        }
+
+        public ConnectionToClient getConnection() {
+            return connection;
+        }
+    }
+
+    /**
+     * What to do with an incoming request
+     */
+    public enum Replay {
+        NEW,            // not seen before - handle it
+        ANSWERED,       // already answered - resend the remembered response
+        RUNNING         // still being handled - its response will go to the current connection
+    }
+
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final SecureRandom random = new SecureRandom();
+
+    /**
+     * Start a session for a user who just logged in
+     * @return the session token
+     */
+    public String create(String userName, ConnectionToClient connection) {
+        byte[] bytes = new byte[24];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        sessions.put(token, new Session(token, userName, connection));
+        return token;
+    }
+
+    /**
+     * The session for a token, without touching it (null if unknown)
+     */
+    public Session find(String token) {
+        return token != null ? sessions.get(token) : null;
+    }
+
+    /**
+     * The live session for a token (null if unknown or expired); the message's
+     * connection becomes the session's connection
+     */
+    public Session touch(String token, ConnectionToClient connection) {
+        if (token == null) {
+            return null;
+        }
+        Session session = sessions.get(token);
+        if (session == null) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        if (now - session.lastSeen > TTL_MILLIS) {
+            sessions.remove(token);
+            return null;
+        }
+        session.lastSeen = now;
+        session.connection = connection;
+        return session;
+    }
+
+    /**
+     * Register an incoming request of the session
+     */
+    public Replay begin(Session session, long requestId) {
+        synchronized (session) {
+            if (session.responses.containsKey(requestId)) {
+                return Replay.ANSWERED;
+            }
+            if (!session.running.add(requestId)) {
+                return Replay.RUNNING;
+            }
+            return Replay.NEW;
+        }
+    }
+
+    /**
+     * The remembered response of an answered request
+     */
+    public Message getResponse(Session session, long requestId) {
+        synchronized (session) {
+            return session.responses.get(requestId);
+        }
+    }
+
+    /**
+     * Remember the response of a request
+     */
+    public void finish(Session session, long requestId, Message response) {
+        synchronized (session) {
+            session.running.remove(requestId);
+            session.responses.put(requestId, response);
+        }
+    }
+
+    /**
+     * Forget a request that ended without a response to remember (it failed),
+     * so a replay runs it again instead of waiting for it
+     */
+    public void abandon(Session session, long requestId) {
+        synchronized (session) {
+            session.running.remove(requestId);
+        }
+    }
+
+    /**
+     * Drop sessions that have been idle past the TTL
+     */
+    public void expire() {
+        long now = System.currentTimeMillis();
+        for (Iterator<Session> it = sessions.values().iterator(); it.hasNext();) {
+            if (now - it.next().lastSeen > TTL_MILLIS) {
+                it.remove();
+            }
+        }
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+}
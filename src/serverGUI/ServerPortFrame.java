@@ -68,6 +68,25 @@ public class ServerPortFrame extends Application {
                 ParkingServer.parkingController = new ParkingController(dbName, dbPassword);
                 ParkingServer.reportController = new ReportController(dbName, dbPassword);
                 
+                // Keep the report rollups up to date with every exit/cancellation
+                if (ParkingServer.reportController.getRollupService() != null) {
+                    ParkingServer.parkingController.addParkingEventListener(
+                        ParkingServer.reportController.getRollupService());
+                }
+                // Registered after the rollups so a recomputed report sees the updated rows
+                ParkingServer.parkingController.addParkingEventListener(
+                    ParkingServer.reportController.getReportCache());
+                ParkingServer.parkingController.addParkingEventListener(
+                    ParkingServer.reportController.getSessionStore());
+                ParkingServer.parkingController.addParkingEventListener(
+                    ParkingServer.reportController.getSessionSketches());
+                ParkingServer.parkingController.addParkingEventListener(
+                    ParkingServer.reportController.getOccupancyTracker());
+                if (ParkingServer.reportController.getMonthlyReportScheduler() != null) {
+                    ParkingServer.parkingController.addParkingEventListener(
+                        ParkingServer.reportController.getMonthlyReportScheduler());
+                }
+                
                 if (ParkingServer.parkingController.successFlag == 1) {
                     // Start the server
                     ServerUI.runServer(ParkingServer.DEFAULT_PORT.toString());
@@ -0,0 +1,122 @@
+package services;
+
+/**
+ * CircuitBreaker stops calling a dependency that keeps failing or timing out.
+ *
+ * CLOSED    - calls go through; consecutive failures (or very slow calls) are counted.
+ * OPEN      - after too many failures calls are rejected immediately for a cool-down period.
+ * HALF_OPEN - after the cool-down a single trial call is let through;
+ *             success closes the breaker, failure opens it again.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final String name;
+    private final int failureThreshold;
+    private final long openDurationMillis;
+    private final long slowCallMillis;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures = 0;
+    private long openedAt = 0;
+    private boolean trialInProgress = false;
+
+    // Statistics
+    private long rejectedCalls = 0;
+    private long timesOpened = 0;
+
+    /**
+     * @param failureThreshold consecutive failures that open the breaker
+     * @param openDurationMillis how long to reject calls before trying again
+     * @param slowCallMillis calls slower than this count as failures even if they succeed
+     */
+    public CircuitBreaker(String name, int failureThreshold, long openDurationMillis, long slowCallMillis) {
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.openDurationMillis = openDurationMillis;
+        this.slowCallMillis = slowCallMillis;
+    }
+
+    /**
+     * Check whether a call may be attempted now.
+     * Every allowed call must be followed by recordSuccess or recordFailure.
+     */
+    public synchronized boolean allowRequest() {
+        switch (state) {
+            case CLOSED:
+                return true;
+
+            case OPEN:
+                if (System.currentTimeMillis() - openedAt >= openDurationMillis) {
+                    state = State.HALF_OPEN;
+                    trialInProgress = true;
+                    System.out.println("Circuit breaker " + name + " is HALF_OPEN - trying one call");
+                    return true;
+                }
+                rejectedCalls++;
+                return false;
+
+            case HALF_OPEN:
+            default:
+                // Only one trial call at a time
+                if (!trialInProgress) {
+                    trialInProgress = true;
+                    return true;
+                }
+                rejectedCalls++;
+                return false;
+        }
+    }
+
+    public synchronized void recordSuccess(long durationMillis) {
+        if (durationMillis > slowCallMillis) {
+            // The dependency answered, but too slowly to keep calling it inline
+            recordFailure();
+            return;
+        }
+
+        if (state != State.CLOSED) {
+            System.out.println("✅ Circuit breaker " + name + " is CLOSED again");
+        }
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        trialInProgress = false;
+    }
+
+    public synchronized void recordFailure() {
+        consecutiveFailures++;
+        trialInProgress = false;
+
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            if (state != State.OPEN) {
+                timesOpened++;
+                System.out.println("⚠️ Circuit breaker " + name + " is OPEN after " + consecutiveFailures + " failures");
+            }
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+        }
+    }
+
+    public synchronized State getState() {
+        // Report HALF_OPEN as soon as the cool-down is over, even before the next call
+        if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openDurationMillis) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    public synchronized String getStatus() {
+        String status = String.format("%s breaker: %s (consecutive failures: %d, rejected: %d, opened: %d times)",
+            name, getState(), consecutiveFailures, rejectedCalls, timesOpened);
+        if (state == State.OPEN) {
+            long retryIn = Math.max(0, openDurationMillis - (System.currentTimeMillis() - openedAt));
+            status += String.format(", retry in %d sec", retryIn / 1000);
+        }
+        return status;
+    }
+}
@@ -1,17 +1,11 @@
 package services;
 
-import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.Properties;
-
-import javax.mail.Authenticator;
-import javax.mail.Message;
-import javax.mail.PasswordAuthentication;
-import javax.mail.Session;
-import javax.mail.Transport;
-import javax.mail.internet.InternetAddress;
-import javax.mail.internet.MimeMessage;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
 
 /**
  * EmailService for BPark System - Hebrew Only Handles all email notifications
@@ -28,6 +22,13 @@ public class EmailService {
     private static final String COMPANY_NAME = "BPARK";
     private static final String LOGO_URL = "https://i.postimg.cc/7LFkRhp3/Screenshot-2025-06-04-180239.jpg";
     
+    // Where rendered emails go - chosen by the bpark.notification.sink property on first use
+    private static NotificationSink notificationSink;
+    
+    // Buffers routine notifications per recipient into digests (null when coalescing is disabled)
+    private static NotificationCoalescer coalescer;
+    private static boolean coalescerInitialized = false;
+    
     // Email notification types
     public enum NotificationType {
         LATE_PICKUP,
@@ -40,35 +41,145 @@ public class EmailService {
         WELCOME_MESSAGE
     }
     
+    // Routine updates that may wait a few seconds and be merged into one digest.
+    // Confirmations, code recovery and registration emails are always sent immediately -
+    // the subscriber is waiting for them.
+    private static final Set<NotificationType> COALESCABLE_TYPES = EnumSet.of(
+        NotificationType.RESERVATION_CANCELLED,
+        NotificationType.LATE_PICKUP,
+        NotificationType.PARKING_EXPIRED);
+    
     /**
      * Main method to send any type of email notification (Hebrew only)
+     * @return true if the email was sent - or, for the routine types, accepted into a digest
      */
     public static boolean sendNotification(NotificationType type, String recipientEmail, 
                                          String customerName, Object... additionalData) {
+        NotificationCoalescer digests = getCoalescer();
+        if (digests != null && COALESCABLE_TYPES.contains(type)) {
+            if (digests.submit(new Notification(type, recipientEmail, customerName, additionalData))) {
+                return true;
+            }
+            System.err.println("❌ Failed to send email: " + type + " to " + recipientEmail);
+            return false;
+        }
+        
         try {
-            Session session = createEmailSession();
-            MimeMessage message = new MimeMessage(session);
-            
-            // Set sender
-            message.setFrom(new InternetAddress(GMAIL_USERNAME, COMPANY_NAME + " System"));
-            message.addRecipient(Message.RecipientType.TO, new InternetAddress(recipientEmail));
-            
-            // Get email content based on type
-            EmailContent content = generateEmailContent(type, customerName, additionalData);
-            message.setSubject(content.subject);
-            message.setContent(content.htmlBody, "text/html; charset=UTF-8");
-            
-            Transport.send(message);
-            System.out.println("✅ Email sent successfully: " + type + " to " + recipientEmail);
-            return true;
-            
+            OutgoingEmail email = renderNotification(type, recipientEmail, customerName, additionalData);
+            if (getNotificationSink().send(email)) {
+                System.out.println("✅ Email sent successfully: " + type + " to " + recipientEmail);
+                return true;
+            }
         } catch (Exception e) {
-            System.err.println("❌ Failed to send email: " + type + " to " + recipientEmail);
             e.printStackTrace();
-            return false;
+        }
+        System.err.println("❌ Failed to send email: " + type + " to " + recipientEmail);
+        return false;
+    }
+    
+    /**
+     * Send several notifications over one SMTP connection
+     * (used by the auto-monitoring service when many customers are notified at once)
+     * @return number of emails that were sent successfully
+     */
+    public static int sendNotifications(List<Notification> notifications) {
+        NotificationCoalescer digests = getCoalescer();
+        List<OutgoingEmail> emails = new ArrayList<>();
+        int queued = 0;
+        for (Notification notification : notifications) {
+            if (digests != null && COALESCABLE_TYPES.contains(notification.type)) {
+                if (digests.submit(notification)) {
+                    queued++;
+                } else {
+                    System.err.println("❌ Failed to build email: " + notification.type + " to " + notification.recipientEmail);
+                }
+                continue;
+            }
+            try {
+                emails.add(renderNotification(notification));
+            } catch (Exception e) {
+                System.err.println("❌ Failed to build email: " + notification.type + " to " + notification.recipientEmail);
+            }
+        }
+        
+        int sent = deliver(emails);
+        if (queued > 0) {
+            System.out.println("✅ " + queued + " notifications queued for digest");
+        }
+        return sent + queued;
+    }
+    
+    /**
+     * Hand rendered emails to the sink as one batch (used directly by the coalescer)
+     * @return number of emails that were sent successfully
+     */
+    static int deliver(List<OutgoingEmail> emails) {
+        if (emails.isEmpty()) {
+            return 0;
+        }
+        
+        int sent = getNotificationSink().sendBatch(emails);
+        System.out.println("✅ Email batch sent: " + sent + "/" + emails.size() + " emails");
+        return sent;
+    }
+    
+    /**
+     * A notification waiting to be sent as part of a batch
+     */
+    public static class Notification {
+        final NotificationType type;
+        final String recipientEmail;
+        final String customerName;
+        final Object[] additionalData;
+        
+        public Notification(NotificationType type, String recipientEmail, String customerName, Object... additionalData) {
+            this.type = type;
+            this.recipientEmail = recipientEmail;
+            this.customerName = customerName;
+            this.additionalData = additionalData;
         }
     }
     
+    /**
+     * Render a notification into a ready-to-send email without sending it
+     */
+    public static OutgoingEmail renderNotification(NotificationType type, String recipientEmail, 
+                                                   String customerName, Object... additionalData) {
+        EmailContent content = generateEmailContent(type, customerName, additionalData);
+        return new OutgoingEmail(type, recipientEmail, content.subject, content.htmlBody);
+    }
+    
+    static OutgoingEmail renderNotification(Notification notification) {
+        return renderNotification(notification.type, notification.recipientEmail, 
+                                  notification.customerName, notification.additionalData);
+    }
+    
+    /**
+     * Render several notifications for the same recipient as one digest email.
+     * The customer name of the latest notification is used for the greeting.
+     */
+    static OutgoingEmail renderDigest(List<Notification> notifications) {
+        LocalDateTime now = LocalDateTime.now();
+        String currentDate = now.format(DATE_FORMAT);
+        String currentTime = now.format(TIME_FORMAT);
+        Notification latest = notifications.get(notifications.size() - 1);
+        
+        List<EmailTemplate.Fragment> sections = new ArrayList<>();
+        for (Notification notification : notifications) {
+            sections.add(createDigestSection(notification));
+        }
+        
+        String subject = DIGEST_SUBJECT.render(notifications.size());
+        String content = createEmailTemplate(currentDate, currentTime,
+            "סיכום עדכוני חניה",
+            GREETING.with(latest.customerName),
+            DIGEST_MESSAGE.with(notifications.size(), sections),
+            "<strong>הערה:</strong> העדכונים מוצגים לפי סדר התרחשותם.",
+            "#d1ecf1", "#17a2b8"
+        );
+        return new OutgoingEmail(latest.type, latest.recipientEmail, subject, content);
+    }
+    
     /**
      * Specific methods for easy integration
      */
@@ -109,25 +220,104 @@ public class EmailService {
     }
     
     /**
-     * Create email session with Gmail SMTP configuration
+     * Get the configured notification sink.
+     * bpark.notification.sink selects it: "smtp" (default, Gmail), "memory" or "spool"
+     * (files written to bpark.notification.spoolDir).
+     * The sink is wrapped with a circuit breaker and an outbox so a slow mail provider
+     * never blocks the caller.
      */
-    private static Session createEmailSession() {
-        Properties properties = new Properties();
-        properties.put("mail.smtp.host", "smtp.gmail.com");
-        properties.put("mail.smtp.port", "587");
-        properties.put("mail.smtp.auth", "true");
-        properties.put("mail.smtp.starttls.enable", "true");
-        properties.put("mail.smtp.starttls.required", "true");
-        properties.put("mail.smtp.ssl.protocols", "TLSv1.2");
-        properties.put("mail.smtp.connectiontimeout", "10000");
-        properties.put("mail.smtp.timeout", "10000");
-        
-        return Session.getInstance(properties, new Authenticator() {
-            @Override
-            protected PasswordAuthentication getPasswordAuthentication() {
-                return new PasswordAuthentication(GMAIL_USERNAME, GMAIL_APP_PASSWORD);
+    public static synchronized NotificationSink getNotificationSink() {
+        if (notificationSink == null) {
+            String sinkType = System.getProperty("bpark.notification.sink", "smtp");
+            switch (sinkType.toLowerCase()) {
+                case "memory":
+                    notificationSink = new InMemoryNotificationSink();
+                    break;
+                case "spool":
+                    notificationSink = new FileSpoolNotificationSink(
+                        System.getProperty("bpark.notification.spoolDir", "mail-spool"));
+                    break;
+                default:
+                    notificationSink = new SmtpNotificationSink(GMAIL_USERNAME, COMPANY_NAME + " System", 
+                                                                GMAIL_USERNAME, GMAIL_APP_PASSWORD);
+                    break;
+            }
+            System.out.println("Email notifications go to: " + notificationSink.getClass().getSimpleName());
+            ResilientNotificationSink resilientSink = new ResilientNotificationSink(notificationSink);
+            resilientSink.start();
+            notificationSink = resilientSink;
+        }
+        return notificationSink;
+    }
+    
+    /**
+     * Get the digest coalescer, or null when coalescing is disabled.
+     * bpark.notification.coalesceSeconds sets the window (default 30, 0 sends every email immediately)
+     */
+    private static synchronized NotificationCoalescer getCoalescer() {
+        if (!coalescerInitialized) {
+            coalescerInitialized = true;
+            int windowSeconds = Integer.getInteger("bpark.notification.coalesceSeconds", 30);
+            if (windowSeconds > 0) {
+                coalescer = new NotificationCoalescer(windowSeconds * 1000L);
+                System.out.println("Email notifications are coalesced into digests every " + windowSeconds + " seconds");
             }
-        });
+        }
+        return coalescer;
+    }
+    
+    /**
+     * Replace the notification sink (load tests and offline runs)
+     */
+    public static synchronized void setNotificationSink(NotificationSink sink) {
+        if (notificationSink != null && notificationSink != sink) {
+            notificationSink.close();
+        }
+        notificationSink = sink;
+    }
+    
+    /**
+     * Delivery statistics of the current sink (emails/sec, reconnects, failures)
+     */
+    public static synchronized String getTransportStatistics() {
+        if (notificationSink == null) {
+            return "No email sent yet";
+        }
+        return notificationSink.getStatistics();
+    }
+    
+    /**
+     * Circuit breaker, outbox and digest state for the system status screen
+     */
+    public static synchronized String getNotificationStatus() {
+        StringBuilder status = new StringBuilder();
+        if (notificationSink instanceof ResilientNotificationSink) {
+            status.append(((ResilientNotificationSink) notificationSink).getStatus());
+        } else if (notificationSink != null) {
+            status.append(notificationSink.getStatistics());
+        } else {
+            status.append("Email breaker: CLOSED (no email sent yet)");
+        }
+        if (coalescer != null) {
+            status.append(System.lineSeparator()).append(coalescer.getStatistics());
+        }
+        return status.toString();
+    }
+    
+    /**
+     * Close the notification sink - call when shutting down the server
+     */
+    public static synchronized void shutdown() {
+        if (coalescer != null) {
+            System.out.println(coalescer.getStatistics());
+            coalescer.shutdown();
+            coalescer = null;
+            coalescerInitialized = false;
+        }
+        if (notificationSink != null) {
+            System.out.println(notificationSink.getStatistics());
+            notificationSink.close();
+        }
     }
     
     /**
@@ -135,8 +325,9 @@ public class EmailService {
      */
     private static EmailContent generateEmailContent(NotificationType type, String customerName, 
                                                    Object... additionalData) {
-        String currentDate = LocalDate.now().format(DateTimeFormatter.ofPattern("dd/MM/yyyy"));
-        String currentTime = LocalDateTime.now().format(DateTimeFormatter.ofPattern("HH:mm"));
+        LocalDateTime now = LocalDateTime.now();
+        String currentDate = now.format(DATE_FORMAT);
+        String currentTime = now.format(TIME_FORMAT);
         
         switch (type) {
             case LATE_PICKUP:
@@ -151,7 +342,7 @@ public class EmailService {
                 String reservationCode = (String) additionalData[0];
                 String reservationDate = (String) additionalData[1];
                 String spotNumber = (String) additionalData[2];
-                return createReservationContent(customerName, reservationCode, reservationDate, spotNumber);
+                return createReservationContent(customerName, reservationCode, reservationDate, spotNumber, currentDate, currentTime);
                 
             case RESERVATION_CANCELLED:
                 String cancelledCode = (String) additionalData[0];
@@ -165,7 +356,7 @@ public class EmailService {
                 String extendCode = (String) additionalData[0];
                 Integer hours = (Integer) additionalData[1];
                 String newEndTime = (String) additionalData[2];
-                return createExtensionContent(customerName, extendCode, hours, newEndTime);
+                return createExtensionContent(customerName, extendCode, hours, newEndTime, currentDate, currentTime);
                 
             case PARKING_EXPIRED:
                 String expiredSpot = (String) additionalData[0];
@@ -174,10 +365,10 @@ public class EmailService {
             case WELCOME_MESSAGE:
                 String welcomeUsername = (String) additionalData[0];
                 Integer welcomeUserID = (Integer) additionalData[1];
-                return createWelcomeContent(customerName, welcomeUsername, welcomeUserID);
+                return createWelcomeContent(customerName, welcomeUsername, welcomeUserID, currentDate, currentTime);
                 
             default:
-                return createDefaultContent(customerName);
+                return createDefaultContent(customerName, currentDate, currentTime);
         }
     }
     
@@ -194,15 +385,178 @@ public class EmailService {
         }
     }
     
+    // ========== PRECOMPILED TEMPLATES ==========
+    // Parsed once at class load. The static header and footer (logo, support details,
+    // signature) are plain literal chunks of LAYOUT, so they are built only once.
+    
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm");
+    
+    private static final EmailTemplate GREETING = EmailTemplate.compile("שלום {{name}},", "name");
+    private static final EmailTemplate WELCOME_GREETING = EmailTemplate.compile("שלום {{name}} וברוכים הבאים!", "name");
+    
+    private static final EmailTemplate LATE_PICKUP_SUBJECT = EmailTemplate.compile(
+        "הודעה על איחור באיסוף הרכב - {{date}}", "date");
+    private static final EmailTemplate LATE_PICKUP_GREETING = EmailTemplate.compile(
+        "לקוח/ה יקר/ה {{name}},", "name");
+    
+    private static final EmailTemplate REGISTRATION_MESSAGE = EmailTemplate.compile(
+        "ברוכים הבאים למערכת החניון החכם BPARK!<br>" +
+        "רישומך הושלם בהצלחה.<br><br>" +
+        "<strong>מספר מזהה הלקוח שלך הוא:</strong> {{userID}}<br>" +
+        "<strong>שם המשתמש שלך:</strong> {{username}}<br><br>" +
+        "כעת תוכל להזמין מקומות חניה, לנהל הזמנות ולקבל עדכונים בזמן אמת.",
+        "userID", "username");
+    
+    private static final EmailTemplate RESERVATION_SUBJECT = EmailTemplate.compile(
+        "אישור הזמנת חניה - קוד {{code}}", "code");
+    private static final EmailTemplate RESERVATION_MESSAGE = EmailTemplate.compile(
+        "הזמנת החניה שלך אושרה בהצלחה!<br><br>" +
+        "<strong>קוד הזמנה:</strong> {{code}}<br>" +
+        "<strong>תאריך:</strong> {{reservationDate}}<br>" +
+        "<strong>מקום חניה:</strong> {{spot}}<br><br>" +
+        "אנא הגע עם קוד ההזמנה למכונת הכניסה.",
+        "code", "reservationDate", "spot");
+    
+    private static final EmailTemplate CANCELLATION_SUBJECT = EmailTemplate.compile(
+        "ביטול הזמנת חניה - קוד {{code}}", "code");
+    private static final EmailTemplate CANCELLATION_MESSAGE = EmailTemplate.compile(
+        "הזמנת החניה שלך בוטלה.<br><br>" +
+        "<strong>קוד הזמנה מבוטל:</strong> {{code}}<br><br>" +
+        "הביטול יכול להיות מסיבות הבאות:<br>" +
+        "• איחור של מעל 15 דקות (ביטול אוטומטי)<br>" +
+        "• ביטול ידני על ידך<br>" +
+        "• בעיה טכנית במערכת",
+        "code");
+    
+    private static final EmailTemplate CODE_RECOVERY_MESSAGE = EmailTemplate.compile(
+        "לפי בקשתך, להלן קוד החניה הפעיל שלך:<br><br>" +
+        "<div style='background:#e2f3ff;padding:15px;border-radius:8px;text-align:center;font-size:24px;font-weight:bold;color:#1a237e;'>" +
+        "{{code}}</div><br>" +
+        "השתמש בקוד זה כדי לצאת מהחניון או לבצע פעולות נוספות.",
+        "code");
+    
+    private static final EmailTemplate EXTENSION_SUBJECT = EmailTemplate.compile(
+        "אישור הארכת חניה - קוד {{code}}", "code");
+    private static final EmailTemplate EXTENSION_MESSAGE = EmailTemplate.compile(
+        "הארכת החניה שלך אושרה בהצלחה!<br><br>" +
+        "<strong>קוד חניה:</strong> {{code}}<br>" +
+        "<strong>זמן הארכה:</strong> {{hours}} שעות<br>" +
+        "<strong>זמן סיום חדש:</strong> {{newEndTime}}<br><br>" +
+        "תוכל כעת להישאר בחניון עד לזמן החדש.",
+        "code", "hours", "newEndTime");
+    
+    private static final EmailTemplate EXPIRED_SUBJECT = EmailTemplate.compile(
+        "הודעה על פקיעת זמן חניה - {{date}}", "date");
+    private static final EmailTemplate EXPIRED_MESSAGE = EmailTemplate.compile(
+        "זמן החניה שלך פג במקום {{spot}}.<br><br>" +
+        "אנא הגע לאסוף את רכבך בהקדם האפשרי.<br>" +
+        "החל מרגע זה עלולים לחול חיובים נוספים.",
+        "spot");
+    
+    private static final EmailTemplate WELCOME_MESSAGE_BODY = EmailTemplate.compile(
+        "אנחנו שמחים שהצטרפת למערכת החניון החכם שלנו.<br><br>" +
+        "<strong>מספר מזהה הלקוח שלך הוא:</strong> {{userID}}<br>" +
+        "<strong>שם המשתמש שלך:</strong> {{username}}<br><br>" +
+        "במערכת שלנו תוכל:<br>" +
+        "• להזמין מקומות חניה מראש<br>" +
+        "• לנהל הזמנות קיימות<br>" +
+        "• לקבל התראות בזמן אמת<br>" +
+        "• לשחזר קודי חניה<br>" +
+        "• להאריך זמן חניה",
+        "userID", "username");
+    
+    private static final EmailTemplate DIGEST_SUBJECT = EmailTemplate.compile(
+        "סיכום עדכוני חניה - {{count}} הודעות", "count");
+    private static final EmailTemplate DIGEST_MESSAGE = EmailTemplate.compile(
+        "להלן {{count}} העדכונים האחרונים בחשבונך:<br><br>{{sections}}",
+        "count", "sections");
+    private static final EmailTemplate DIGEST_SECTION = EmailTemplate.compile(
+        "<strong>{{title}}</strong><br>{{details}}<br><br>",
+        "title", "details");
+    private static final EmailTemplate DIGEST_CODE = EmailTemplate.compile(
+        "<strong>קוד:</strong> {{code}}", "code");
+    private static final EmailTemplate DIGEST_SPOT = EmailTemplate.compile(
+        "<strong>מקום חניה:</strong> {{spot}} - אנא הגע לאסוף את רכבך בהקדם.", "spot");
+    
+    private static final EmailTemplate ALERT = EmailTemplate.compile(
+        "<p style='font-size:15px;color:#444;margin-bottom:20px;padding:10px;background:{{bgColor}};border-right:4px solid {{borderColor}};'>" +
+        "{{message}}</p>",
+        "bgColor", "borderColor", "message");
+    
+    /**
+     * HTML email layout (Hebrew RTL design)
+     */
+    private static final EmailTemplate LAYOUT = EmailTemplate.compile(
+        "<!DOCTYPE html>" +
+        "<html dir='rtl'>" +
+        "<head>" +
+        "<meta charset='UTF-8'>" +
+        "<meta name='viewport' content='width=device-width, initial-scale=1.0'>" +
+        "</head>" +
+        "<body style='margin:0;padding:20px;background:#f0f0f0;font-family:Arial,sans-serif;'>" +
+        
+        "<table style='max-width:600px;margin:auto;border:1px solid #eee;font-family:Arial,sans-serif;background:#fff;'>" +
+        
+        "<tr>" +
+        "<td style='padding:0;text-align:center;'>" +
+        "<img src='" + LOGO_URL + "' alt='" + COMPANY_NAME + "' style='width:100%;max-width:600px;height:auto;display:block;'>" +
+        "</td>" +
+        "</tr>" +
+        
+        "<tr>" +
+        "<td style='padding:30px 20px 10px 20px;'>" +
+        "<h2 style='color:#1a237e;margin:0 0 16px 0;'>{{title}}</h2>" +
+        
+        "<p style='font-size:16px;color:#333;margin-bottom:18px;'>{{greeting}}</p>" +
+        
+        "<div style='background:#f9f9f9;padding:15px;border-right:4px solid #1a237e;margin-bottom:20px;'>" +
+        "<p style='margin:0;font-size:15px;color:#444;'>" +
+        "<strong>תאריך:</strong> {{date}}<br>" +
+        "<strong>שעה:</strong> {{time}}" +
+        "</p>" +
+        "</div>" +
+        
+        "<p style='font-size:15px;color:#444;margin-bottom:16px;line-height:1.6;'>{{mainMessage}}</p>" +
+        
+        "{{alert}}" +
+        
+        "<p style='font-size:15px;color:#444;margin-bottom:20px;'>" +
+        "לפרטים נוספים ולסיוע ניתן לפנות אלינו במוקד BPARK בטלפון: " +
+        "<strong>" + SUPPORT_PHONE + "</strong><br>" +
+        "או במייל: " + 
+        "<a href='mailto:" + SUPPORT_EMAIL + "' style='color:#1a237e;text-decoration:none;'>" + SUPPORT_EMAIL + "</a>" +
+        "</p>" +
+        "</td>" +
+        "</tr>" +
+        
+        "<tr>" +
+        "<td style='padding:15px 20px 30px 20px;'>" +
+        "<p style='font-size:16px;color:#1a237e;margin:0;font-weight:bold;'>בברכה,<br>צוות BPARK</p>" +
+        "</td>" +
+        "</tr>" +
+        
+        "<tr>" +
+        "<td style='background:#f5f5f5;text-align:center;padding:15px;color:#999;font-size:12px;'>" +
+        "הודעה זו נשלחה באופן אוטומטי ב-{{date}} בשעה {{time}}<br>" +
+        "אין להשיב להודעה זו" +
+        "</td>" +
+        "</tr>" +
+        
+        "</table>" +
+        "</body>" +
+        "</html>",
+        "title", "greeting", "date", "time", "mainMessage", "alert");
+    
     /**
      * Create late pickup notification content (your original design)
      */
     private static EmailContent createLatePickupContent(String customerName, String date, String time) {
-        String subject = "הודעה על איחור באיסוף הרכב - " + date;
-        String content = createEmailTemplate(customerName, date, time,
+        String subject = LATE_PICKUP_SUBJECT.render(date);
+        String content = createEmailTemplate(date, time,
             "הודעה על איחור באיסוף הרכב",
             (customerName != null && !customerName.trim().isEmpty() ? 
-                "לקוח/ה יקר/ה " + customerName + "," : "לקוח/ה יקר/ה,"),
+                LATE_PICKUP_GREETING.with(customerName) : "לקוח/ה יקר/ה,"),
             "ברצוננו להודיעך כי חלה חריגה בזמן איסוף הרכב מהחניון, מעבר לזמן שהוזמן מראש.<br>" +
             "נודה לך אם תוכל/י להגיע לאסוף את רכבך בהקדם.",
             "<strong>לתשומת לבך:</strong> ייתכן שיחולו חיובים נוספים בגין שהות מעבר לזמן שהוזמן.",
@@ -216,14 +570,10 @@ public class EmailService {
      */
     private static EmailContent createRegistrationContent(String customerName, String username, int userID, String date, String time) {
         String subject = "ברוכים הבאים ל-BPARK - רישום מוצלח!";
-        String content = createEmailTemplate(customerName, date, time,
+        String content = createEmailTemplate(date, time,
             "ברוכים הבאים ל-BPARK!",
-            "שלום " + customerName + " וברוכים הבאים!",
-            "ברוכים הבאים למערכת החניון החכם BPARK!<br>" +
-            "רישומך הושלם בהצלחה.<br><br>" +
-            "<strong>מספר מזהה הלקוח שלך הוא:</strong> " + userID + "<br>" +
-            "<strong>שם המשתמש שלך:</strong> " + username + "<br><br>" +
-            "כעת תוכל להזמין מקומות חניה, לנהל הזמנות ולקבל עדכונים בזמן אמת.",
+            WELCOME_GREETING.with(customerName),
+            REGISTRATION_MESSAGE.with(userID, username),
             "<strong>טיפ:</strong> שמור את מספר המזהה ושם המשתמש שלך במקום בטוח לכניסה מהירה למערכת.",
             "#d4edda", "#28a745"
         );
@@ -234,17 +584,12 @@ public class EmailService {
      * Create reservation confirmation content
      */
     private static EmailContent createReservationContent(String customerName, String reservationCode, 
-                                                       String reservationDate, String spotNumber) {
-        String subject = "אישור הזמנת חניה - קוד " + reservationCode;
-        String content = createEmailTemplate(customerName, LocalDate.now().format(DateTimeFormatter.ofPattern("dd/MM/yyyy")), 
-            LocalDateTime.now().format(DateTimeFormatter.ofPattern("HH:mm")),
+                                                       String reservationDate, String spotNumber, String date, String time) {
+        String subject = RESERVATION_SUBJECT.render(reservationCode);
+        String content = createEmailTemplate(date, time,
             "אישור הזמנת חניה",
-            "שלום " + customerName + ",",
-            "הזמנת החניה שלך אושרה בהצלחה!<br><br>" +
-            "<strong>קוד הזמנה:</strong> " + reservationCode + "<br>" +
-            "<strong>תאריך:</strong> " + reservationDate + "<br>" +
-            "<strong>מקום חניה:</strong> " + spotNumber + "<br><br>" +
-            "אנא הגע עם קוד ההזמנה למכונת הכניסה.",
+            GREETING.with(customerName),
+            RESERVATION_MESSAGE.with(reservationCode, reservationDate, spotNumber),
             "<strong>חשוב:</strong> הגעה מאוחרת מעל 15 דקות עלולה לגרום לביטול אוטומטי של ההזמנה.",
             "#d1ecf1", "#17a2b8"
         );
@@ -255,16 +600,11 @@ public class EmailService {
      * Create cancellation notification content
      */
     private static EmailContent createCancellationContent(String customerName, String reservationCode, String date, String time) {
-        String subject = "ביטול הזמנת חניה - קוד " + reservationCode;
-        String content = createEmailTemplate(customerName, date, time,
+        String subject = CANCELLATION_SUBJECT.render(reservationCode);
+        String content = createEmailTemplate(date, time,
             "ביטול הזמנת חניה",
-            "שלום " + customerName + ",",
-            "הזמנת החניה שלך בוטלה.<br><br>" +
-            "<strong>קוד הזמנה מבוטל:</strong> " + reservationCode + "<br><br>" +
-            "הביטול יכול להיות מסיבות הבאות:<br>" +
-            "• איחור של מעל 15 דקות (ביטול אוטומטי)<br>" +
-            "• ביטול ידני על ידך<br>" +
-            "• בעיה טכנית במערכת",
+            GREETING.with(customerName),
+            CANCELLATION_MESSAGE.with(reservationCode),
             "<strong>הערה:</strong> אם לא ביטלת בעצמך, ניתן ליצור הזמנה חדשה דרך המערכת.",
             "#f8d7da", "#dc3545"
         );
@@ -276,13 +616,10 @@ public class EmailService {
      */
     private static EmailContent createCodeRecoveryContent(String customerName, String parkingCode, String date, String time) {
         String subject = "שחזור קוד חניה - BPARK";
-        String content = createEmailTemplate(customerName, date, time,
+        String content = createEmailTemplate(date, time,
             "שחזור קוד חניה",
-            "שלום " + customerName + ",",
-            "לפי בקשתך, להלן קוד החניה הפעיל שלך:<br><br>" +
-            "<div style='background:#e2f3ff;padding:15px;border-radius:8px;text-align:center;font-size:24px;font-weight:bold;color:#1a237e;'>" +
-            parkingCode + "</div><br>" +
-            "השתמש בקוד זה כדי לצאת מהחניון או לבצע פעולות נוספות.",
+            GREETING.with(customerName),
+            CODE_RECOVERY_MESSAGE.with(parkingCode),
             "<strong>אבטחה:</strong> אל תשתף קוד זה עם אחרים. הוא תקף רק עבור ההזמנה הנוכחית שלך.",
             "#d1ecf1", "#17a2b8"
         );
@@ -292,17 +629,13 @@ public class EmailService {
     /**
      * Create extension confirmation content
      */
-    private static EmailContent createExtensionContent(String customerName, String parkingCode, int hours, String newEndTime) {
-        String subject = "אישור הארכת חניה - קוד " + parkingCode;
-        String content = createEmailTemplate(customerName, LocalDate.now().format(DateTimeFormatter.ofPattern("dd/MM/yyyy")), 
-            LocalDateTime.now().format(DateTimeFormatter.ofPattern("HH:mm")),
+    private static EmailContent createExtensionContent(String customerName, String parkingCode, int hours, String newEndTime,
+                                                       String date, String time) {
+        String subject = EXTENSION_SUBJECT.render(parkingCode);
+        String content = createEmailTemplate(date, time,
             "אישור הארכת חניה",
-            "שלום " + customerName + ",",
-            "הארכת החניה שלך אושרה בהצלחה!<br><br>" +
-            "<strong>קוד חניה:</strong> " + parkingCode + "<br>" +
-            "<strong>זמן הארכה:</strong> " + hours + " שעות<br>" +
-            "<strong>זמן סיום חדש:</strong> " + newEndTime + "<br><br>" +
-            "תוכל כעת להישאר בחניון עד לזמן החדש.",
+            GREETING.with(customerName),
+            EXTENSION_MESSAGE.with(parkingCode, hours, newEndTime),
             "<strong>תזכורת:</strong> אנא הקפד לצאת עד לזמן החדש כדי למנוע חיובים נוספים.",
             "#d4edda", "#28a745"
         );
@@ -313,13 +646,11 @@ public class EmailService {
      * Create expired parking notification content
      */
     private static EmailContent createExpiredContent(String customerName, String spotNumber, String date, String time) {
-        String subject = "הודעה על פקיעת זמן חניה - " + date;
-        String content = createEmailTemplate(customerName, date, time,
+        String subject = EXPIRED_SUBJECT.render(date);
+        String content = createEmailTemplate(date, time,
             "הודעה על פקיעת זמן חניה",
-            "שלום " + customerName + ",",
-            "זמן החניה שלך פג במקום " + spotNumber + ".<br><br>" +
-            "אנא הגע לאסוף את רכבך בהקדם האפשרי.<br>" +
-            "החל מרגע זה עלולים לחול חיובים נוספים.",
+            GREETING.with(customerName),
+            EXPIRED_MESSAGE.with(spotNumber),
             "<strong>חשוב:</strong> יש לפנות את מקום החניה כדי לא לחסום אותו עבור לקוחות אחרים.",
             "#fff3cd", "#ffc107"
         );
@@ -329,21 +660,12 @@ public class EmailService {
     /**
      * Create welcome message content - UPDATED WITH USER_ID
      */
-    private static EmailContent createWelcomeContent(String customerName, String username, int userID) {
+    private static EmailContent createWelcomeContent(String customerName, String username, int userID, String date, String time) {
         String subject = "ברוכים הבאים ל-BPARK - מערכת חניון חכמה!";
-        String content = createEmailTemplate(customerName, LocalDate.now().format(DateTimeFormatter.ofPattern("dd/MM/yyyy")), 
-            LocalDateTime.now().format(DateTimeFormatter.ofPattern("HH:mm")),
+        String content = createEmailTemplate(date, time,
             "ברוכים הבאים ל-BPARK!",
-            "שלום " + customerName + " וברוכים הבאים!",
-            "אנחנו שמחים שהצטרפת למערכת החניון החכם שלנו.<br><br>" +
-            "<strong>מספר מזהה הלקוח שלך הוא:</strong> " + userID + "<br>" +
-            "<strong>שם המשתמש שלך:</strong> " + username + "<br><br>" +
-            "במערכת שלנו תוכל:<br>" +
-            "• להזמין מקומות חניה מראש<br>" +
-            "• לנהל הזמנות קיימות<br>" +
-            "• לקבל התראות בזמן אמת<br>" +
-            "• לשחזר קודי חניה<br>" +
-            "• להאריך זמן חניה",
+            WELCOME_GREETING.with(customerName),
+            WELCOME_MESSAGE_BODY.with(userID, username),
             "<strong>התחל עכשיו:</strong> היכנס למערכת עם שם המשתמש שלך ותתחיל ליהנות מחניה חכמה!",
             "#d4edda", "#28a745"
         );
@@ -353,79 +675,40 @@ public class EmailService {
     /**
      * Create default content for unknown types
      */
-    private static EmailContent createDefaultContent(String customerName) {
+    private static EmailContent createDefaultContent(String customerName, String date, String time) {
         return new EmailContent("הודעה מ-BPARK", 
-            createEmailTemplate(customerName, LocalDate.now().format(DateTimeFormatter.ofPattern("dd/MM/yyyy")), 
-                LocalDateTime.now().format(DateTimeFormatter.ofPattern("HH:mm")),
-                "הודעה מ-BPARK", "שלום " + customerName + ",", 
+            createEmailTemplate(date, time,
+                "הודעה מ-BPARK", GREETING.with(customerName), 
                 "קיבלת הודעה מצוות BPARK.", "", "#d1ecf1", "#17a2b8"));
     }
     
     /**
-     * Create HTML email template (Hebrew RTL design)
+     * One line of a digest email (only the COALESCABLE_TYPES get here). Only inline markup
+     * is used because the sections are rendered inside the layout's main paragraph.
+     */
+    private static EmailTemplate.Fragment createDigestSection(Notification notification) {
+        Object[] data = notification.additionalData;
+        switch (notification.type) {
+            case RESERVATION_CANCELLED:
+                return DIGEST_SECTION.with("ביטול הזמנת חניה", DIGEST_CODE.with(data[0]));
+            case PARKING_EXPIRED:
+                return DIGEST_SECTION.with("פקיעת זמן חניה", DIGEST_SPOT.with(data[0]));
+            case LATE_PICKUP:
+                return DIGEST_SECTION.with("איחור באיסוף הרכב", 
+                    "חלה חריגה בזמן איסוף הרכב מהחניון. ייתכן שיחולו חיובים נוספים.");
+            default:
+                return DIGEST_SECTION.with("הודעה מ-BPARK", "קיבלת הודעה מצוות BPARK.");
+        }
+    }
+    
+    /**
+     * Render the HTML email layout (Hebrew RTL design).
+     * greeting and mainMessage may be plain strings or template fragments.
      */
-    private static String createEmailTemplate(String customerName, String date, String time, 
-                                            String title, String greeting, String mainMessage, 
-                                            String alertMessage, String alertBgColor, String alertBorderColor) {
-        return "<!DOCTYPE html>" +
-               "<html dir='rtl'>" +
-               "<head>" +
-               "<meta charset='UTF-8'>" +
-               "<meta name='viewport' content='width=device-width, initial-scale=1.0'>" +
-               "</head>" +
-               "<body style='margin:0;padding:20px;background:#f0f0f0;font-family:Arial,sans-serif;'>" +
-               
-               "<table style='max-width:600px;margin:auto;border:1px solid #eee;font-family:Arial,sans-serif;background:#fff;'>" +
-               
-               "<tr>" +
-               "<td style='padding:0;text-align:center;'>" +
-               "<img src='" + LOGO_URL + "' alt='" + COMPANY_NAME + "' style='width:100%;max-width:600px;height:auto;display:block;'>" +
-               "</td>" +
-               "</tr>" +
-               
-               "<tr>" +
-               "<td style='padding:30px 20px 10px 20px;'>" +
-               "<h2 style='color:#1a237e;margin:0 0 16px 0;'>" + title + "</h2>" +
-               
-               "<p style='font-size:16px;color:#333;margin-bottom:18px;'>" + greeting + "</p>" +
-               
-               "<div style='background:#f9f9f9;padding:15px;border-right:4px solid #1a237e;margin-bottom:20px;'>" +
-               "<p style='margin:0;font-size:15px;color:#444;'>" +
-               "<strong>תאריך:</strong> " + date + "<br>" +
-               "<strong>שעה:</strong> " + time +
-               "</p>" +
-               "</div>" +
-               
-               "<p style='font-size:15px;color:#444;margin-bottom:16px;line-height:1.6;'>" + mainMessage + "</p>" +
-               
-               (alertMessage.isEmpty() ? "" :
-               "<p style='font-size:15px;color:#444;margin-bottom:20px;padding:10px;background:" + alertBgColor + ";border-right:4px solid " + alertBorderColor + ";'>" +
-               alertMessage + "</p>") +
-               
-               "<p style='font-size:15px;color:#444;margin-bottom:20px;'>" +
-               "לפרטים נוספים ולסיוע ניתן לפנות אלינו במוקד BPARK בטלפון: " +
-               "<strong>" + SUPPORT_PHONE + "</strong><br>" +
-               "או במייל: " + 
-               "<a href='mailto:" + SUPPORT_EMAIL + "' style='color:#1a237e;text-decoration:none;'>" + SUPPORT_EMAIL + "</a>" +
-               "</p>" +
-               "</td>" +
-               "</tr>" +
-               
-               "<tr>" +
-               "<td style='padding:15px 20px 30px 20px;'>" +
-               "<p style='font-size:16px;color:#1a237e;margin:0;font-weight:bold;'>בברכה,<br>צוות BPARK</p>" +
-               "</td>" +
-               "</tr>" +
-               
-               "<tr>" +
-               "<td style='background:#f5f5f5;text-align:center;padding:15px;color:#999;font-size:12px;'>" +
-               "הודעה זו נשלחה באופן אוטומטי ב-" + date + " בשעה " + time + "<br>" +
-               "אין להשיב להודעה זו" +
-               "</td>" +
-               "</tr>" +
-               
-               "</table>" +
-               "</body>" +
-               "</html>";
-    }
-}
\ No newline at end of file
+    private static String createEmailTemplate(String date, String time, String title, Object greeting, 
+                                            Object mainMessage, String alertMessage, 
+                                            String alertBgColor, String alertBorderColor) {
+        Object alert = alertMessage.isEmpty() ? "" : ALERT.with(alertBgColor, alertBorderColor, alertMessage);
+        return LAYOUT.render(title, greeting, date, time, mainMessage, alert);
+    }
+}
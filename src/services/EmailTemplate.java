@@ -0,0 +1,168 @@
+package services;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * EmailTemplate is an HTML template parsed once into literal chunks and placeholder slots.
+ * Placeholders are written as {{name}} and are bound to arguments by position,
+ * in the order the names were declared when the template was compiled.
+ *
+ * Rendering only appends the pre-split literals and argument values into a
+ * StringBuilder that is reused per thread, so no intermediate strings are built.
+ * An argument may itself be a Fragment (a template with its own arguments)
+ * or a list of fragments, which are rendered in place into the same buffer.
+ */
+public final class EmailTemplate {
+
+    private static final int INITIAL_BUFFER_SIZE = 8 * 1024;
+    private static final ThreadLocal<StringBuilder> BUFFER =
+        ThreadLocal.withInitial(() -> new StringBuilder(INITIAL_BUFFER_SIZE));
+
+    private final String[] literals;          // literals[i] comes before slot i, the last one after all slots
+    private final int[] slotArguments;         // argument index rendered in each slot
+    private final int[] placeholderOffsets;    // where each placeholder starts in the source (for diagnostics)
+    private final String[] argumentNames;
+    private final int literalLength;           // used to size the buffer
+
+    private EmailTemplate(String[] literals, int[] slotArguments, int[] placeholderOffsets, String[] argumentNames) {
+        this.literals = literals;
+        this.slotArguments = slotArguments;
+        this.placeholderOffsets = placeholderOffsets;
+        this.argumentNames = argumentNames;
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+    }
+
+    /**
+     * Parse a template once.
+     * @param source template text with {{name}} placeholders
+     * @param argumentNames the names used in the template, in the order arguments are passed to render
+     * @throws IllegalArgumentException if the template uses an undeclared name or has an unclosed placeholder
+     */
+    public static EmailTemplate compile(String source, String... argumentNames) {
+        List<String> literals = new ArrayList<>();
+        List<Integer> slots = new ArrayList<>();
+        List<Integer> offsets = new ArrayList<>();
+        List<String> names = Arrays.asList(argumentNames);
+
+        int position = 0;
+        while (true) {
+            int open = source.indexOf("{{", position);
+            if (open < 0) {
+                break;
+            }
+            int close = source.indexOf("}}", open + 2);
+            if (close < 0) {
+                throw new IllegalArgumentException("Unclosed placeholder at offset " + open);
+            }
+
+            String name = source.substring(open + 2, close).trim();
+            int argumentIndex = names.indexOf(name);
+            if (argumentIndex < 0) {
+                throw new IllegalArgumentException("Undeclared placeholder {{" + name + "}} at offset " + open);
+            }
+
+            literals.add(source.substring(position, open));
+            slots.add(argumentIndex);
+            offsets.add(open);
+            position = close + 2;
+        }
+        literals.add(source.substring(position));
+
+        return new EmailTemplate(
+            literals.toArray(new String[0]),
+            slots.stream().mapToInt(Integer::intValue).toArray(),
+            offsets.stream().mapToInt(Integer::intValue).toArray(),
+            argumentNames.clone());
+    }
+
+    /**
+     * Render into the caller's buffer
+     */
+    public void renderTo(StringBuilder out, Object... arguments) {
+        if (arguments.length != argumentNames.length) {
+            throw new IllegalArgumentException("Template expects " + argumentNames.length +
+                                               " arguments " + Arrays.toString(argumentNames) +
+                                               " but got " + arguments.length);
+        }
+
+        for (int i = 0; i < slotArguments.length; i++) {
+            out.append(literals[i]);
+            appendValue(out, arguments[slotArguments[i]]);
+        }
+        out.append(literals[literals.length - 1]);
+    }
+
+    /**
+     * Render into the thread's reused buffer and return the result
+     */
+    public String render(Object... arguments) {
+        StringBuilder buffer = BUFFER.get();
+        buffer.setLength(0);
+        buffer.ensureCapacity(literalLength + 256);
+        renderTo(buffer, arguments);
+        String result = buffer.toString();
+
+        // Don't keep a huge buffer around after an unusually large email
+        if (buffer.capacity() > 16 * INITIAL_BUFFER_SIZE) {
+            BUFFER.remove();
+        }
+        return result;
+    }
+
+    /**
+     * Bind arguments without rendering - the fragment is rendered in place
+     * when it is passed as an argument of another template
+     */
+    public Fragment with(Object... arguments) {
+        return new Fragment(this, arguments);
+    }
+
+    private static void appendValue(StringBuilder out, Object value) {
+        if (value instanceof Fragment) {
+            Fragment fragment = (Fragment) value;
+            fragment.template.renderTo(out, fragment.arguments);
+        } else if (value instanceof Iterable) {
+            // A list of values/fragments is rendered one after the other
+            for (Object item : (Iterable<?>) value) {
+                appendValue(out, item);
+            }
+        } else {
+            // Same as the old string concatenation: a missing value prints as "null"
+            out.append(value);
+        }
+    }
+
+    public int getPlaceholderCount() {
+        return slotArguments.length;
+    }
+
+    public int[] getPlaceholderOffsets() {
+        return placeholderOffsets.clone();
+    }
+
+    /**
+     * A template together with its arguments, rendered lazily
+     */
+    public static final class Fragment {
+        private final EmailTemplate template;
+        private final Object[] arguments;
+
+        private Fragment(EmailTemplate template, Object[] arguments) {
+            this.template = template;
+            this.arguments = arguments;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder out = new StringBuilder();
+            template.renderTo(out, arguments);
+            return out.toString();
+        }
+    }
+}
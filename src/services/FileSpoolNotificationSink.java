@@ -0,0 +1,62 @@
+package services;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes each notification as a .eml file into a spool directory instead of sending it.
+ * The files can be inspected by hand or replayed to a real SMTP server later.
+ */
+public class FileSpoolNotificationSink implements NotificationSink {
+
+    private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private final Path spoolDir;
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    public FileSpoolNotificationSink(String spoolDir) {
+        this.spoolDir = Paths.get(spoolDir);
+        try {
+            Files.createDirectories(this.spoolDir);
+        } catch (IOException e) {
+            System.err.println("Could not create notification spool directory " + spoolDir + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public boolean send(OutgoingEmail email) {
+        String fileName = LocalDateTime.now().format(FILE_TIME) + "-" + sequence.incrementAndGet() + ".eml";
+        String content = "To: " + email.getRecipientEmail() + "\r\n" +
+                         "Subject: " + email.getSubject() + "\r\n" +
+                         "X-BPark-Type: " + email.getType() + "\r\n" +
+                         "Content-Type: text/html; charset=UTF-8\r\n" +
+                         "\r\n" +
+                         email.getHtmlBody() + "\r\n";
+        try {
+            Files.write(spoolDir.resolve(fileName), content.getBytes(StandardCharsets.UTF_8));
+            written.incrementAndGet();
+            return true;
+        } catch (IOException e) {
+            failed.incrementAndGet();
+            System.err.println("❌ Failed to spool email: " + email + " - " + e.getMessage());
+            return false;
+        }
+    }
+
+    public Path getSpoolDir() {
+        return spoolDir;
+    }
+
+    @Override
+    public String getStatistics() {
+        return "File spool sink (" + spoolDir.toAbsolutePath() + ") - written: " + written.get() + ", failed: " + failed.get();
+    }
+}
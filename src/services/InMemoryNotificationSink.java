@@ -0,0 +1,58 @@
+package services;
+
+import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.List;
+
+/**
+ * Keeps notifications in memory instead of sending them.
+ * Used for offline runs and load tests - only the most recent emails are kept
+ * so a long run does not grow memory without bound.
+ */
+public class InMemoryNotificationSink implements NotificationSink {
+
+    private static final int DEFAULT_CAPACITY = 10_000;
+
+    private final int capacity;
+    private final ArrayDeque<OutgoingEmail> recentEmails = new ArrayDeque<>();
+    private long acceptedCount = 0;
+
+    public InMemoryNotificationSink() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public InMemoryNotificationSink(int capacity) {
+        this.capacity = capacity;
+    }
+
+    @Override
+    public synchronized boolean send(OutgoingEmail email) {
+        if (recentEmails.size() >= capacity) {
+            recentEmails.removeFirst();
+        }
+        recentEmails.addLast(email);
+        acceptedCount++;
+        return true;
+    }
+
+    /**
+     * Snapshot of the most recent emails (oldest first)
+     */
+    public synchronized List<OutgoingEmail> getRecentEmails() {
+        return new ArrayList<>(recentEmails);
+    }
+
+    public synchronized long getAcceptedCount() {
+        return acceptedCount;
+    }
+
+    public synchronized void clear() {
+        recentEmails.clear();
+        acceptedCount = 0;
+    }
+
+    @Override
+    public synchronized String getStatistics() {
+        return "In-memory sink - accepted: " + acceptedCount + ", retained: " + recentEmails.size();
+    }
+}
@@ -0,0 +1,179 @@
+package services;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tiny embedded SMTP receiver used as a local stand-in for Gmail.
+ * Accepts every message (no TLS, no authentication), counts it and throws it away,
+ * so reservation and cancellation flows can be load tested without sending real mail.
+ *
+ * Point the SMTP sink at it with:
+ *   -Dbpark.smtp.host=localhost -Dbpark.smtp.port=2525 -Dbpark.smtp.auth=false -Dbpark.smtp.starttls=false
+ */
+public class LocalSmtpServer {
+
+    private final int requestedPort;
+    private ServerSocket serverSocket;
+    private ExecutorService connectionPool;
+    private volatile boolean running = false;
+
+    private final AtomicLong connectionsAccepted = new AtomicLong();
+    private final AtomicLong messagesReceived = new AtomicLong();
+    private final AtomicLong bytesReceived = new AtomicLong();
+
+    /**
+     * @param port port to listen on, 0 picks any free port
+     */
+    public LocalSmtpServer(int port) {
+        this.requestedPort = port;
+    }
+
+    public synchronized void start() throws IOException {
+        if (running) {
+            return;
+        }
+        serverSocket = new ServerSocket(requestedPort, 50, InetAddress.getLoopbackAddress());
+        connectionPool = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "local-smtp");
+            t.setDaemon(true);
+            return t;
+        });
+        running = true;
+
+        Thread acceptThread = new Thread(this::acceptLoop, "local-smtp-accept");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+        System.out.println("Local SMTP stand-in listening on port " + getPort());
+    }
+
+    public synchronized void stop() {
+        running = false;
+        try {
+            if (serverSocket != null) {
+                serverSocket.close();
+            }
+        } catch (IOException e) {
+            // Already closed
+        }
+        if (connectionPool != null) {
+            connectionPool.shutdownNow();
+        }
+    }
+
+    public int getPort() {
+        return serverSocket != null ? serverSocket.getLocalPort() : requestedPort;
+    }
+
+    public long getMessagesReceived() {
+        return messagesReceived.get();
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived.get();
+    }
+
+    public long getConnectionsAccepted() {
+        return connectionsAccepted.get();
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                connectionsAccepted.incrementAndGet();
+                connectionPool.execute(() -> handleConnection(socket));
+            } catch (SocketException e) {
+                // Server socket closed by stop()
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("Local SMTP accept failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Minimal SMTP dialogue: greeting, EHLO/HELO, MAIL, RCPT, DATA, RSET, NOOP, QUIT
+     */
+    private void handleConnection(Socket socket) {
+        try (Socket s = socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+             OutputStream out = s.getOutputStream()) {
+
+            reply(out, "220 localhost BPark SMTP stand-in ready");
+
+            String line;
+            while ((line = in.readLine()) != null) {
+                String command = line.length() >= 4 ? line.substring(0, 4).toUpperCase() : line.toUpperCase();
+
+                switch (command) {
+                    case "EHLO":
+                        reply(out, "250-localhost\r\n250-8BITMIME\r\n250 SIZE 10485760");
+                        break;
+                    case "HELO":
+                    case "MAIL":
+                    case "RCPT":
+                    case "RSET":
+                    case "NOOP":
+                        reply(out, "250 OK");
+                        break;
+                    case "DATA":
+                        reply(out, "354 End data with <CR><LF>.<CR><LF>");
+                        readMessageBody(in);
+                        messagesReceived.incrementAndGet();
+                        reply(out, "250 OK queued");
+                        break;
+                    case "QUIT":
+                        reply(out, "221 Bye");
+                        return;
+                    default:
+                        reply(out, "502 Command not implemented");
+                        break;
+                }
+            }
+        } catch (IOException e) {
+            // Client dropped the connection
+        }
+    }
+
+    private void readMessageBody(BufferedReader in) throws IOException {
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (line.equals(".")) {
+                return;
+            }
+            bytesReceived.addAndGet(line.length() + 2);
+        }
+    }
+
+    private void reply(OutputStream out, String response) throws IOException {
+        out.write((response + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+
+    /**
+     * Run the stand-in on its own: java services.LocalSmtpServer [port]
+     */
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 2525;
+        LocalSmtpServer server = new LocalSmtpServer(port);
+        server.start();
+
+        while (true) {
+            Thread.sleep(10_000);
+            System.out.println("Local SMTP stand-in - connections: " + server.getConnectionsAccepted() +
+                               ", messages: " + server.getMessagesReceived());
+        }
+    }
+}
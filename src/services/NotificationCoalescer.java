@@ -0,0 +1,161 @@
+package services;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import services.EmailService.Notification;
+
+/**
+ * NotificationCoalescer buffers notifications per recipient for a short window
+ * and sends a single digest instead of one email per event.
+ * A subscriber whose reservations are cancelled and who is reminded of a late pickup within
+ * the window gets one email, and bulk runs of the auto-monitoring service are flushed together
+ * in one batch. Confirmations are not coalesced (see EmailService).
+ *
+ * The window is set by bpark.notification.coalesceSeconds (0 disables coalescing).
+ */
+public class NotificationCoalescer {
+
+    private static final int MAX_EVENTS_PER_DIGEST = 20;
+
+    private final long windowMillis;
+    private final ScheduledExecutorService flusher;
+
+    // Pending digests by recipient, in arrival order
+    private final Map<String, PendingDigest> pending = new LinkedHashMap<>();
+
+    // Statistics
+    private long eventsReceived = 0;
+    private long emailsSent = 0;
+
+    public NotificationCoalescer(long windowMillis) {
+        this.windowMillis = windowMillis;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "notification-coalescer");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(this::flushDue, 1, 1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Queue a notification. It will be sent when the recipient's window closes.
+     * @return false if the notification has no recipient address
+     */
+    public boolean submit(Notification notification) {
+        if (notification.recipientEmail == null || notification.recipientEmail.isBlank()) {
+            return false;
+        }
+        List<Notification> fullDigest = null;
+
+        synchronized (this) {
+            eventsReceived++;
+            String key = notification.recipientEmail.trim().toLowerCase();
+            PendingDigest digest = pending.get(key);
+            if (digest == null) {
+                digest = new PendingDigest(System.currentTimeMillis() + windowMillis);
+                pending.put(key, digest);
+            }
+            digest.events.add(notification);
+
+            // Don't let one recipient's digest grow without bound
+            if (digest.events.size() >= MAX_EVENTS_PER_DIGEST) {
+                pending.remove(key);
+                fullDigest = digest.events;
+            }
+        }
+
+        if (fullDigest != null) {
+            List<List<Notification>> digests = new ArrayList<>();
+            digests.add(fullDigest);
+            send(digests);
+        }
+        return true;
+    }
+
+    /**
+     * Send every digest whose window has closed, as one batch
+     */
+    private void flushDue() {
+        try {
+            send(takeDigests(false));
+        } catch (Exception e) {
+            System.err.println("Error flushing notification digests: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Send everything that is still buffered, regardless of the window
+     */
+    public void flushAll() {
+        send(takeDigests(true));
+    }
+
+    private synchronized List<List<Notification>> takeDigests(boolean all) {
+        List<List<Notification>> due = new ArrayList<>();
+        long now = System.currentTimeMillis();
+
+        Iterator<PendingDigest> it = pending.values().iterator();
+        while (it.hasNext()) {
+            PendingDigest digest = it.next();
+            if (all || digest.dueAt <= now) {
+                due.add(digest.events);
+                it.remove();
+            }
+        }
+        return due;
+    }
+
+    private void send(List<List<Notification>> digests) {
+        if (digests.isEmpty()) {
+            return;
+        }
+
+        List<OutgoingEmail> emails = new ArrayList<>();
+        for (List<Notification> events : digests) {
+            try {
+                emails.add(events.size() == 1 ? EmailService.renderNotification(events.get(0))
+                                              : EmailService.renderDigest(events));
+            } catch (Exception e) {
+                System.err.println("❌ Failed to build digest for " + events.get(0).recipientEmail + ": " + e.getMessage());
+            }
+        }
+
+        int sent = EmailService.deliver(emails);
+        synchronized (this) {
+            emailsSent += sent;
+        }
+    }
+
+    public synchronized int getPendingRecipients() {
+        return pending.size();
+    }
+
+    public synchronized String getStatistics() {
+        return String.format("Coalescer - events: %d, emails sent: %d, pending recipients: %d",
+            eventsReceived, emailsSent, pending.size());
+    }
+
+    /**
+     * Flush whatever is buffered and stop the flusher thread
+     */
+    public void shutdown() {
+        flusher.shutdown();
+        flushAll();
+    }
+
+    private static class PendingDigest {
+        final long dueAt;
+        final List<Notification> events = new ArrayList<>();
+
+        PendingDigest(long dueAt) {
+            this.dueAt = dueAt;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package services;
+
+import java.util.List;
+
+/**
+ * Destination for rendered email notifications.
+ * EmailService renders the content and hands it to the configured sink:
+ * SMTP for production, in-memory or file spool for offline runs and load tests.
+ */
+public interface NotificationSink {
+
+    /**
+     * Deliver a single email
+     * @return true if the email was accepted by the sink, false if it may succeed later
+     * @throws UndeliverableEmailException if the email can never be delivered
+     */
+    boolean send(OutgoingEmail email);
+
+    /**
+     * Deliver several emails at once
+     * @return number of emails accepted by the sink
+     */
+    default int sendBatch(List<OutgoingEmail> emails) {
+        int sent = 0;
+        for (OutgoingEmail email : emails) {
+            if (send(email)) {
+                sent++;
+            }
+        }
+        return sent;
+    }
+
+    /**
+     * Human readable delivery statistics for the server console
+     */
+    String getStatistics();
+
+    /**
+     * Release any connections or files held by the sink
+     */
+    default void close() {
+    }
+}
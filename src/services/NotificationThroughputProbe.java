@@ -0,0 +1,76 @@
+package services;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import services.EmailService.NotificationType;
+
+/**
+ * Measures email throughput (emails/sec) against the local SMTP stand-in.
+ * Compares a new connection per email (the old behaviour) with the shared
+ * transport, batched sends and the in-memory sink.
+ *
+ * Usage: java services.NotificationThroughputProbe [emailCount]
+ */
+public class NotificationThroughputProbe {
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+
+        LocalSmtpServer smtpServer = new LocalSmtpServer(0);
+        smtpServer.start();
+
+        System.setProperty("bpark.smtp.host", "localhost");
+        System.setProperty("bpark.smtp.port", String.valueOf(smtpServer.getPort()));
+        System.setProperty("bpark.smtp.auth", "false");
+        System.setProperty("bpark.smtp.starttls", "false");
+
+        List<OutgoingEmail> emails = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            emails.add(EmailService.renderNotification(NotificationType.RESERVATION_CANCELLED,
+                "user" + i + "@example.com", "User " + i, String.valueOf(100000 + i)));
+        }
+
+        System.out.println("=== Notification throughput (" + count + " emails) ===");
+
+        // 1. New connection for every email
+        long start = System.nanoTime();
+        for (OutgoingEmail email : emails) {
+            SmtpNotificationSink sink = new SmtpNotificationSink("probe@bpark.local", "BPARK", null, null);
+            sink.send(email);
+            sink.close();
+        }
+        report("Connection per email", count, System.nanoTime() - start);
+
+        // 2. Shared transport, one email at a time
+        SmtpNotificationSink sharedSink = new SmtpNotificationSink("probe@bpark.local", "BPARK", null, null);
+        start = System.nanoTime();
+        for (OutgoingEmail email : emails) {
+            sharedSink.send(email);
+        }
+        report("Shared transport", count, System.nanoTime() - start);
+
+        // 3. Shared transport, batched
+        start = System.nanoTime();
+        sharedSink.sendBatch(emails);
+        report("Shared transport (batch)", count, System.nanoTime() - start);
+        System.out.println(sharedSink.getStatistics());
+        sharedSink.close();
+
+        // 4. In-memory sink (no network at all)
+        InMemoryNotificationSink memorySink = new InMemoryNotificationSink();
+        start = System.nanoTime();
+        memorySink.sendBatch(emails);
+        report("In-memory sink", count, System.nanoTime() - start);
+
+        System.out.println("SMTP stand-in received " + smtpServer.getMessagesReceived() +
+                           " messages over " + smtpServer.getConnectionsAccepted() + " connections");
+        smtpServer.stop();
+    }
+
+    private static void report(String label, int count, long elapsedNanos) {
+        double seconds = elapsedNanos / 1_000_000_000.0;
+        System.out.println(String.format("%-28s %8.1f emails/sec (%.0f ms total)",
+            label + ":", count / seconds, seconds * 1000));
+    }
+}
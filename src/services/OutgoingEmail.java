@@ -0,0 +1,41 @@
+package services;
+
+import services.EmailService.NotificationType;
+
+/**
+ * A fully rendered email ready to be handed to a NotificationSink
+ */
+public class OutgoingEmail {
+    private final NotificationType type;
+    private final String recipientEmail;
+    private final String subject;
+    private final String htmlBody;
+
+    public OutgoingEmail(NotificationType type, String recipientEmail, String subject, String htmlBody) {
+        this.type = type;
+        this.recipientEmail = recipientEmail;
+        this.subject = subject;
+        this.htmlBody = htmlBody;
+    }
+
+    public NotificationType getType() {
+        return type;
+    }
+
+    public String getRecipientEmail() {
+        return recipientEmail;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public String getHtmlBody() {
+        return htmlBody;
+    }
+
+    @Override
+    public String toString() {
+        return "OutgoingEmail{" + type + " to " + recipientEmail + ", subject='" + subject + "'}";
+    }
+}
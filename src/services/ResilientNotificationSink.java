@@ -0,0 +1,340 @@
+package services;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Protects the server from a slow or unavailable mail provider.
+ *
+ * Callers never talk to the real sink: send() and sendBatch() only put the email in an
+ * in-memory outbox and return, so a request thread never waits on SMTP. The outbox is
+ * drained by a small pool of sender threads behind a bulkhead (at most maxConcurrentSends
+ * emails inside the real sink at once) and a circuit breaker; while the breaker is open,
+ * emails wait in the outbox and delivery is retried every few seconds.
+ *
+ * A failed email goes to the back of the outbox and is tried again after the drain interval,
+ * so one bad address can't hold up the rest. After maxAttempts failures it is moved to the
+ * dead letters. An email the sink reports as undeliverable (invalid or rejected address)
+ * is dead-lettered right away and doesn't count against the breaker - the provider answered.
+ *
+ * Call start() once to start the sender threads.
+ * Settings: bpark.notification.maxConcurrentSends (default 2),
+ * bpark.notification.maxAttempts (default 5),
+ * bpark.notification.outboxCapacity (default 5000),
+ * bpark.notification.breakerFailures (default 3),
+ * bpark.notification.breakerOpenSeconds (default 60).
+ */
+public class ResilientNotificationSink implements NotificationSink {
+
+    private static final long DRAIN_INTERVAL_SECONDS = 5;
+    private static final long SLOW_SEND_MILLIS = 5000;
+    private static final int DEAD_LETTER_CAPACITY = 100;
+
+    /**
+     * An email in the outbox and how often it has failed
+     */
+    private static class QueuedEmail {
+        final OutgoingEmail email;
+        int attempts = 0;
+        long retryAt = 0;
+
+        QueuedEmail(OutgoingEmail email) {
+            this.email = email;
+        }
+    }
+
+    private final NotificationSink delegate;
+    private final CircuitBreaker breaker;
+    private final int maxConcurrentSends;
+    private final Semaphore bulkhead;
+    private final int maxAttempts;
+    private final int outboxCapacity;
+    private final ArrayDeque<QueuedEmail> outbox = new ArrayDeque<>();
+    private final ArrayDeque<OutgoingEmail> deadLetters = new ArrayDeque<>();
+    private final ScheduledExecutorService drainer;
+    private final ExecutorService senders;
+    private final AtomicBoolean started = new AtomicBoolean();
+    private final AtomicBoolean drainPending = new AtomicBoolean();
+
+    // Statistics
+    private long queued = 0;
+    private long delivered = 0;
+    private long failedAttempts = 0;
+    private long deadLettered = 0;
+    private long dropped = 0;
+
+    public ResilientNotificationSink(NotificationSink delegate) {
+        this.delegate = delegate;
+        this.breaker = new CircuitBreaker("Email",
+            Integer.getInteger("bpark.notification.breakerFailures", 3),
+            Integer.getInteger("bpark.notification.breakerOpenSeconds", 60) * 1000L,
+            SLOW_SEND_MILLIS);
+        this.maxConcurrentSends = Math.max(1, Integer.getInteger("bpark.notification.maxConcurrentSends", 2));
+        this.bulkhead = new Semaphore(maxConcurrentSends);
+        this.maxAttempts = Math.max(1, Integer.getInteger("bpark.notification.maxAttempts", 5));
+        this.outboxCapacity = Integer.getInteger("bpark.notification.outboxCapacity", 5000);
+
+        this.drainer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "notification-outbox");
+            t.setDaemon(true);
+            return t;
+        });
+        AtomicInteger senderCount = new AtomicInteger();
+        this.senders = Executors.newFixedThreadPool(maxConcurrentSends, r -> {
+            Thread t = new Thread(r, "notification-sender-" + senderCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Start draining the outbox (every few seconds, and whenever new mail arrives)
+     */
+    public void start() {
+        if (started.compareAndSet(false, true)) {
+            drainer.scheduleWithFixedDelay(this::drainOutbox, DRAIN_INTERVAL_SECONDS, DRAIN_INTERVAL_SECONDS, TimeUnit.SECONDS);
+            wakeSender();
+        }
+    }
+
+    /**
+     * Queue the email for the sender threads
+     * @return true if the email was accepted into the outbox
+     */
+    @Override
+    public boolean send(OutgoingEmail email) {
+        boolean accepted = enqueue(email);
+        wakeSender();
+        return accepted;
+    }
+
+    /**
+     * Queue a batch for the sender threads
+     * @return number of emails accepted into the outbox
+     */
+    @Override
+    public int sendBatch(List<OutgoingEmail> emails) {
+        int accepted = 0;
+        for (OutgoingEmail email : emails) {
+            if (enqueue(email)) {
+                accepted++;
+            }
+        }
+        wakeSender();
+        return accepted;
+    }
+
+    /**
+     * One call into the real sink, reported to the breaker; a failure goes back to the outbox
+     * or, when it can never succeed or has run out of attempts, to the dead letters
+     */
+    private void deliver(QueuedEmail queuedEmail) {
+        OutgoingEmail email = queuedEmail.email;
+        long start = System.currentTimeMillis();
+        boolean sent;
+        try {
+            sent = delegate.send(email);
+        } catch (UndeliverableEmailException e) {
+            breaker.recordSuccess(System.currentTimeMillis() - start);
+            deadLetter(email, e.getMessage());
+            return;
+        } catch (Exception e) {
+            sent = false;
+        }
+
+        if (sent) {
+            breaker.recordSuccess(System.currentTimeMillis() - start);
+            synchronized (this) {
+                delivered++;
+            }
+            return;
+        }
+        breaker.recordFailure();
+        retryLater(queuedEmail);
+    }
+
+    private synchronized boolean enqueue(OutgoingEmail email) {
+        if (outbox.size() >= outboxCapacity) {
+            dropped++;
+            System.err.println("❌ Email outbox is full, dropping: " + email);
+            return false;
+        }
+        outbox.addLast(new QueuedEmail(email));
+        queued++;
+        return true;
+    }
+
+    /**
+     * Have the drainer drain the outbox now (at most one wake-up is pending at a time)
+     */
+    private void wakeSender() {
+        if (started.get() && drainPending.compareAndSet(false, true)) {
+            try {
+                drainer.execute(() -> {
+                    drainPending.set(false);
+                    drainOutbox();
+                });
+            } catch (RejectedExecutionException e) {
+                drainPending.set(false);
+            }
+        }
+    }
+
+    private synchronized QueuedEmail pollOutbox() {
+        return outbox.pollFirst();
+    }
+
+    private synchronized void returnToOutbox(QueuedEmail queuedEmail) {
+        outbox.addFirst(queuedEmail);
+    }
+
+    private synchronized void retryLater(QueuedEmail queuedEmail) {
+        failedAttempts++;
+        queuedEmail.attempts++;
+        if (queuedEmail.attempts >= maxAttempts) {
+            deadLetter(queuedEmail.email, "failed " + queuedEmail.attempts + " times");
+            return;
+        }
+        queuedEmail.retryAt = System.currentTimeMillis() + DRAIN_INTERVAL_SECONDS * 1000;
+        outbox.addLast(queuedEmail);
+    }
+
+    private synchronized void deadLetter(OutgoingEmail email, String reason) {
+        if (deadLetters.size() >= DEAD_LETTER_CAPACITY) {
+            deadLetters.removeFirst();
+        }
+        deadLetters.addLast(email);
+        deadLettered++;
+        System.err.println("❌ Email given up (" + reason + "): " + email);
+    }
+
+    /**
+     * Hand queued emails to the sender threads while the bulkhead and the breaker allow (drainer thread only)
+     */
+    private void drainOutbox() {
+        try {
+            int remaining = getOutboxSize();
+            while (remaining-- > 0 && bulkhead.tryAcquire()) {
+                QueuedEmail queuedEmail = pollOutbox();
+                if (queuedEmail == null) {
+                    bulkhead.release();
+                    return;
+                }
+                if (!hasRecipient(queuedEmail.email)) {
+                    deadLetter(queuedEmail.email, "no recipient address");
+                    bulkhead.release();
+                    continue;
+                }
+                if (queuedEmail.retryAt > System.currentTimeMillis()) {
+                    // Failed recently - its turn comes again on a later drain
+                    synchronized (this) {
+                        outbox.addLast(queuedEmail);
+                    }
+                    bulkhead.release();
+                    continue;
+                }
+                if (!breaker.allowRequest()) {
+                    returnToOutbox(queuedEmail);
+                    bulkhead.release();
+                    return;
+                }
+                try {
+                    senders.execute(() -> {
+                        try {
+                            deliver(queuedEmail);
+                        } finally {
+                            bulkhead.release();
+                            wakeSender();
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    returnToOutbox(queuedEmail);
+                    bulkhead.release();
+                    return;
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("Error draining email outbox: " + e.getMessage());
+        }
+    }
+
+    private static boolean hasRecipient(OutgoingEmail email) {
+        return email.getRecipientEmail() != null && !email.getRecipientEmail().isBlank();
+    }
+
+    public synchronized int getOutboxSize() {
+        return outbox.size();
+    }
+
+    /**
+     * The most recent emails that were given up on (oldest first)
+     */
+    public synchronized List<OutgoingEmail> getDeadLetters() {
+        return new ArrayList<>(deadLetters);
+    }
+
+    public CircuitBreaker.State getBreakerState() {
+        return breaker.getState();
+    }
+
+    /**
+     * Breaker, bulkhead and outbox state for the system status screen
+     */
+    public synchronized String getStatus() {
+        return breaker.getStatus()
+            + String.format("%nEmail senders: %d/%d busy", maxConcurrentSends - bulkhead.availablePermits(), maxConcurrentSends)
+            + String.format("%nEmail outbox: %d waiting, %d queued, %d delivered, %d failed attempts, %d dead-lettered, %d dropped",
+                outbox.size(), queued, delivered, failedAttempts, deadLettered, dropped);
+    }
+
+    public NotificationSink getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public String getStatistics() {
+        return delegate.getStatistics() + System.lineSeparator() + getStatus();
+    }
+
+    /**
+     * Let the senders finish, make a last attempt to deliver the outbox, then close the real sink
+     */
+    @Override
+    public void close() {
+        drainer.shutdown();
+        senders.shutdown();
+        try {
+            drainer.awaitTermination(SLOW_SEND_MILLIS, TimeUnit.MILLISECONDS);
+            senders.awaitTermination(SLOW_SEND_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        int remaining = getOutboxSize();
+        QueuedEmail queuedEmail;
+        while (remaining-- > 0 && (queuedEmail = pollOutbox()) != null) {
+            if (!hasRecipient(queuedEmail.email)) {
+                deadLetter(queuedEmail.email, "no recipient address");
+            } else if (breaker.allowRequest()) {
+                deliver(queuedEmail);
+            } else {
+                returnToOutbox(queuedEmail);
+                break;
+            }
+        }
+        int undelivered = getOutboxSize();
+        if (undelivered > 0) {
+            System.err.println("⚠️ " + undelivered + " emails left undelivered in the outbox");
+        }
+        delegate.close();
+    }
+}
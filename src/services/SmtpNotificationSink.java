@@ -0,0 +1,81 @@
+package services;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.mail.Message;
+import javax.mail.SendFailedException;
+import javax.mail.internet.AddressException;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+
+/**
+ * Sends notifications through a real SMTP server over a shared, long-lived connection
+ */
+public class SmtpNotificationSink implements NotificationSink {
+
+    private final SmtpTransportManager transportManager;
+    private final String fromAddress;
+    private final String fromName;
+
+    public SmtpNotificationSink(String fromAddress, String fromName, String username, String password) {
+        this.transportManager = new SmtpTransportManager(username, password);
+        this.fromAddress = fromAddress;
+        this.fromName = fromName;
+    }
+
+    /**
+     * @throws UndeliverableEmailException for an invalid address or recipients the server rejected
+     */
+    @Override
+    public boolean send(OutgoingEmail email) {
+        try {
+            transportManager.send(createMessage(email));
+            return true;
+        } catch (AddressException | SendFailedException e) {
+            throw new UndeliverableEmailException(email + " - " + e.getMessage(), e);
+        } catch (Exception e) {
+            System.err.println("❌ SMTP delivery failed: " + email + " - " + e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public int sendBatch(List<OutgoingEmail> emails) {
+        List<MimeMessage> messages = new ArrayList<>();
+        for (OutgoingEmail email : emails) {
+            try {
+                messages.add(createMessage(email));
+            } catch (Exception e) {
+                System.err.println("❌ Failed to build email: " + email + " - " + e.getMessage());
+            }
+        }
+        return messages.isEmpty() ? 0 : transportManager.sendBatch(messages);
+    }
+
+    /**
+     * Build a ready-to-send message on the shared mail session
+     */
+    private MimeMessage createMessage(OutgoingEmail email) throws Exception {
+        MimeMessage message = new MimeMessage(transportManager.getSession());
+        message.setFrom(new InternetAddress(fromAddress, fromName));
+        message.addRecipient(Message.RecipientType.TO, new InternetAddress(email.getRecipientEmail()));
+        message.setSubject(email.getSubject(), "UTF-8");
+        message.setContent(email.getHtmlBody(), "text/html; charset=UTF-8");
+        return message;
+    }
+
+    public SmtpTransportManager getTransportManager() {
+        return transportManager;
+    }
+
+    @Override
+    public String getStatistics() {
+        return transportManager.getStatistics();
+    }
+
+    @Override
+    public void close() {
+        transportManager.close();
+    }
+}
@@ -0,0 +1,202 @@
+package services;
+
+import java.util.List;
+import java.util.Properties;
+
+import javax.mail.Authenticator;
+import javax.mail.MessagingException;
+import javax.mail.PasswordAuthentication;
+import javax.mail.SendFailedException;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.internet.MimeMessage;
+
+/**
+ * SmtpTransportManager keeps a single authenticated SMTP connection open
+ * and reuses it for every outgoing email.
+ * The mail Session is created once, the Transport is connected lazily and
+ * reconnected automatically when the server drops it.
+ *
+ * Connection settings default to Gmail and can be overridden with system
+ * properties (bpark.smtp.host, bpark.smtp.port, bpark.smtp.auth, bpark.smtp.starttls)
+ * so the same code can be pointed at a local SMTP server for load testing.
+ */
+public class SmtpTransportManager {
+
+    private final String host;
+    private final int port;
+    private final String username;
+    private final String password;
+    private final boolean auth;
+    private final Session session;
+
+    private Transport transport;
+
+    // Statistics
+    private long messagesSent = 0;
+    private long sendFailures = 0;
+    private long reconnects = 0;
+    private long totalSendNanos = 0;
+
+    public SmtpTransportManager(String username, String password) {
+        this.host = System.getProperty("bpark.smtp.host", "smtp.gmail.com");
+        this.port = Integer.getInteger("bpark.smtp.port", 587);
+        this.auth = Boolean.parseBoolean(System.getProperty("bpark.smtp.auth", "true"));
+        boolean startTls = Boolean.parseBoolean(System.getProperty("bpark.smtp.starttls", "true"));
+        this.username = username;
+        this.password = password;
+        this.session = createSession(startTls);
+    }
+
+    /**
+     * Create the mail session once - it is thread safe and shared by all messages
+     */
+    private Session createSession(boolean startTls) {
+        Properties properties = new Properties();
+        properties.put("mail.smtp.host", host);
+        properties.put("mail.smtp.port", String.valueOf(port));
+        properties.put("mail.smtp.auth", String.valueOf(auth));
+        properties.put("mail.smtp.starttls.enable", String.valueOf(startTls));
+        properties.put("mail.smtp.starttls.required", String.valueOf(startTls));
+        if (startTls) {
+            properties.put("mail.smtp.ssl.protocols", "TLSv1.2");
+        }
+        properties.put("mail.smtp.connectiontimeout", "10000");
+        properties.put("mail.smtp.timeout", "10000");
+
+        if (!auth) {
+            return Session.getInstance(properties);
+        }
+
+        return Session.getInstance(properties, new Authenticator() {
+            @Override
+            protected PasswordAuthentication getPasswordAuthentication() {
+                return new PasswordAuthentication(username, password);
+            }
+        });
+    }
+
+    public Session getSession() {
+        return session;
+    }
+
+    /**
+     * Send one message over the shared connection.
+     * If the connection turns out to be broken, reconnect and retry once.
+     * @throws SendFailedException if the server rejected some recipients - not resent,
+     *         the others may already have it
+     */
+    public synchronized void send(MimeMessage message) throws MessagingException {
+        long start = System.nanoTime();
+        try {
+            sendWithRetry(message);
+            messagesSent++;
+        } catch (MessagingException e) {
+            sendFailures++;
+            throw e;
+        } finally {
+            totalSendNanos += System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Send a batch of messages over one authenticated session.
+     * @return number of messages that were sent successfully
+     */
+    public synchronized int sendBatch(List<MimeMessage> messages) {
+        int sent = 0;
+        for (MimeMessage message : messages) {
+            try {
+                send(message);
+                sent++;
+            } catch (MessagingException e) {
+                System.err.println("Failed to send message in batch: " + e.getMessage());
+            }
+        }
+        return sent;
+    }
+
+    private void sendWithRetry(MimeMessage message) throws MessagingException {
+        message.saveChanges();
+        Transport connected = ensureConnected();
+        try {
+            connected.sendMessage(message, message.getAllRecipients());
+        } catch (SendFailedException e) {
+            throw e;
+        } catch (MessagingException | IllegalStateException e) {
+            if (e instanceof MessagingException && connected.isConnected()) {
+                // The server answered - resending won't change its mind
+                throw (MessagingException) e;
+            }
+            // Connection timed out or was dropped on the server side - reconnect and try again
+            System.out.println("SMTP connection lost (" + e.getMessage() + "), reconnecting...");
+            closeTransport();
+            reconnects++;
+            ensureConnected().sendMessage(message, message.getAllRecipients());
+        }
+    }
+
+    /**
+     * Returns a connected transport, opening a new connection if needed
+     */
+    private Transport ensureConnected() throws MessagingException {
+        if (transport != null && transport.isConnected()) {
+            return transport;
+        }
+
+        closeTransport();
+        transport = session.getTransport("smtp");
+        if (auth) {
+            transport.connect(host, port, username, password);
+        } else {
+            transport.connect(host, port, null, null);
+        }
+        System.out.println("SMTP connection opened to " + host + ":" + port);
+        return transport;
+    }
+
+    private void closeTransport() {
+        if (transport != null) {
+            try {
+                transport.close();
+            } catch (MessagingException e) {
+                // Connection is already gone - nothing to do
+            }
+            transport = null;
+        }
+    }
+
+    /**
+     * Close the shared connection (called on server shutdown)
+     */
+    public synchronized void close() {
+        closeTransport();
+    }
+
+    public synchronized long getMessagesSent() {
+        return messagesSent;
+    }
+
+    public synchronized long getSendFailures() {
+        return sendFailures;
+    }
+
+    public synchronized long getReconnects() {
+        return reconnects;
+    }
+
+    /**
+     * Throughput of the time actually spent sending (emails per second)
+     */
+    public synchronized double getEmailsPerSecond() {
+        if (totalSendNanos == 0) {
+            return 0.0;
+        }
+        return messagesSent / (totalSendNanos / 1_000_000_000.0);
+    }
+
+    public synchronized String getStatistics() {
+        return String.format("SMTP %s:%d - sent: %d, failed: %d, reconnects: %d, throughput: %.1f emails/sec",
+            host, port, messagesSent, sendFailures, reconnects, getEmailsPerSecond());
+    }
+}
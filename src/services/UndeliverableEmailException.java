@@ -0,0 +1,14 @@
+package services;
+
+/**
+ * Thrown by a NotificationSink for an email that can never be delivered
+ * (invalid address, recipient rejected by the mail server) - sending it again won't help.
+ */
+public class UndeliverableEmailException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public UndeliverableEmailException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}